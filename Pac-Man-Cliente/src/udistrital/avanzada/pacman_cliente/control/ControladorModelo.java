@@ -83,7 +83,59 @@ public class ControladorModelo {
             conexion.setFrameListener(listener);
         }
     }
-
+    
+    
+    /**
+     * Establece el listener de mensajes del protocolo binario.
+     * Delega al ConexionServidor.
+     * 
+     * @param listener Listener a notificar
+     */
+    public void setJuegoListener(ConexionServidor.JuegoListener listener) {
+        conexion.setJuegoListener(listener);
+    }
+    
+    /**
+     * Indica la partida a ver como espectador al conectar.
+     * Delega al ConexionServidor.
+     * 
+     * @param jugador Jugador a espectar o null para jugar
+     */
+    public void setJugadorEspectado(String jugador) {
+        conexion.setJugadorEspectado(jugador);
+    }
+    
+    /**
+     * Envía un usuario o contraseña al servidor.
+     * Valida que esté conectado antes de enviar.
+     * 
+     * @param credencial Credencial a enviar
+     * @throws IOException Si hay error de envío
+     * @throws IllegalStateException Si no está conectado
+     */
+    public void enviarCredencial(String credencial) throws IOException {
+        if (!conexion.isConectado()) {
+            throw new IllegalStateException("No hay conexión activa");
+        }
+        
+        conexion.enviarCredencial(credencial);
+    }
+    
+    /**
+     * Envía un movimiento al servidor.
+     * Valida que esté conectado antes de enviar.
+     * 
+     * @param direccion Dirección del movimiento
+     * @throws IOException Si hay error de envío
+     * @throws IllegalStateException Si no está conectado
+     */
+    public void enviarMovimiento(String direccion) throws IOException {
+        if (!conexion.isConectado()) {
+            throw new IllegalStateException("No hay conexión activa");
+        }
+        
+        conexion.enviarMovimiento(direccion);
+    }
     
     /**
      * Envía un mensaje al servidor.
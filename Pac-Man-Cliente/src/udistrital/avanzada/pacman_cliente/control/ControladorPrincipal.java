@@ -5,6 +5,8 @@ import java.io.File;
 import java.io.IOException;
 import udistrital.avanzada.pacman_cliente.modelo.ConexionServidor;
 import udistrital.avanzada.pacman_cliente.modelo.Estado;
+import udistrital.avanzada.pacman_cliente.modelo.FrameRecibido;
+import udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario;
 import udistrital.avanzada.pacman_cliente.util.ConfiguracionCliente;
 import udistrital.avanzada.pacman_cliente.util.DecodificadorFrames;
 import udistrital.avanzada.pacman_cliente.vista.ListenerBotonConectar;
@@ -35,6 +37,7 @@ public class ControladorPrincipal implements
         ListenerBotonConectar.AccionConectar,
         ListenerBotonDesconectar.AccionDesconectar,
         ConexionServidor.FrameListener,
+        ConexionServidor.JuegoListener,
         ListenerBotonEnviar.AccionEnviar,
         ListenerTeclaEnter.AccionEnter {
 
@@ -49,6 +52,8 @@ public class ControladorPrincipal implements
     private boolean esperandoUsuario;
     private boolean esperandoPassword;
     private boolean esperandoMovimiento;
+    private String usuarioEnviado;
+    private String jugadorEspectado;
 
     private DecodificadorFrames decodificador;
     private long contadorFrames;
@@ -72,6 +77,8 @@ public class ControladorPrincipal implements
 
         // 2. Configurar modelo para que notifique a este orquestador
         controladorModelo.setMensajeListener(this);
+        controladorModelo.setFrameListener(this);
+        controladorModelo.setJuegoListener(this);
 
         // 3. Esperar a que la ventana esté lista
         esperarVentanaLista();
@@ -162,6 +169,8 @@ public class ControladorPrincipal implements
             // 3. Conectar al servidor
             String ip = configuracion.getServidorIP();
             int puerto = configuracion.getServidorPuerto();
+            jugadorEspectado = configuracion.getJugadorEspectado();
+            controladorModelo.setJugadorEspectado(jugadorEspectado);
 
             controladorVista.mostrarInfo("Conectando a " + ip + ":" + puerto + "...");
 
@@ -169,18 +178,10 @@ public class ControladorPrincipal implements
             controladorModelo.cambiarEstado(Estado.CONECTANDO);
             controladorVista.actualizarEstado(Estado.CONECTANDO);
 
-            // Conectar (asíncrono, las respuestas llegan por callback)
+            // Conectar (asíncrono, las respuestas llegan por callback;
+            // los listeners se registran en inicializar())
             controladorModelo.conectarAlServidor(ip, puerto);
 
-            // Conectar (asíncrono, las respuestas llegan por callback)
-            controladorModelo.conectarAlServidor(ip, puerto);
-
-            // AGREGAR ESTAS LÍNEAS:
-            // Configurar listener de frames
-            controladorModelo.setFrameListener(this);
-
-            controladorVista.mostrarInfo("Conexión establecida");
-
             controladorVista.mostrarInfo("Conexión establecida");
             controladorVista.mostrarInfo("Esperando solicitud del servidor...");
 
@@ -196,16 +197,30 @@ public class ControladorPrincipal implements
     }
 
     /**
-     * Implementación de FrameListener. Recibe frames de video y los visualiza.
+     * Implementación de FrameListener. Decodifica el frame (completo o
+     * delta) sobre el frame compuesto y lo visualiza. Corre en el hilo de
+     * frames de la conexión, en paralelo con la lectura del siguiente.
      */
     @Override
-    public void onFrameRecibido(byte[] frameBytes) {
+    public void onFrameRecibido(FrameRecibido frame) {
         try {
-            // Decodificar JPEG a imagen
-            BufferedImage imagen = decodificador.decodificarJPEG(frameBytes);
+            BufferedImage imagen;
+            if (frame.isDelta()) {
+                // Componer los tiles modificados sobre el último frame
+                imagen = decodificador.decodificarFragmentos(frame.getAncho(),
+                        frame.getAlto(), frame.getCantidad(), frame.getPosicionesX(),
+                        frame.getPosicionesY(), frame.getCodecs(), frame.getLongitudes(),
+                        frame.getDatos());
+                if (imagen == null) {
+                    return;
+                }
+            } else {
+                imagen = decodificador.decodificarFrame(frame.getCodec(), frame.getDatos(), 0,
+                        frame.getLongitud());
+            }
 
-            // Actualizar panel de video
-            controladorVista.actualizarFrameVideo(imagen);
+            // Actualizar panel de video (copia la imagen, que se reutiliza)
+            controladorVista.actualizarFrameVideo(imagen, frame.getMarcaTiempo());
 
             // Estadísticas de FPS (opcional, para debugging)
             actualizarEstadisticasFPS();
@@ -308,7 +323,8 @@ public class ControladorPrincipal implements
      */
     private void enviarUsuario(String usuario) throws IOException {
         controladorVista.mostrarInfo("Enviando usuario: " + usuario);
-        controladorModelo.enviarMensaje(usuario);
+        controladorModelo.enviarCredencial(usuario);
+        usuarioEnviado = usuario;
         esperandoUsuario = false;
     }
 
@@ -320,7 +336,7 @@ public class ControladorPrincipal implements
      */
     private void enviarPassword(String password) throws IOException {
         controladorVista.mostrarInfo("Enviando contraseña: " + "*".repeat(password.length()));
-        controladorModelo.enviarMensaje(password);
+        controladorModelo.enviarCredencial(password);
         esperandoPassword = false;
     }
 
@@ -340,7 +356,7 @@ public class ControladorPrincipal implements
         }
 
         controladorVista.mostrarInfo("Enviando comando: " + comandoUpper);
-        controladorModelo.enviarMensaje(comandoUpper);
+        controladorModelo.enviarMovimiento(comandoUpper);
         esperandoMovimiento = false;
 
         // Deshabilitar campo temporalmente
@@ -387,6 +403,77 @@ public class ControladorPrincipal implements
         reiniciarProtocolo();
     }
 
+    // ========== IMPLEMENTACIÓN: JuegoListener (Protocolo Binario) ==========
+    @Override
+    public void onSolicitudAutenticacion(boolean password) {
+        if (password) {
+            manejarSolicitudPassword();
+        } else {
+            manejarSolicitudUsuario();
+        }
+    }
+
+    @Override
+    public void onResultadoAutenticacion(int resultado) {
+        switch (resultado) {
+            case ProtocoloBinario.AUTENTICACION_OK:
+                manejarAutenticacionExitosa();
+                if (jugadorEspectado != null) {
+                    manejarEspectadorIniciado();
+                    break;
+                }
+                manejarJuegoIniciado();
+                manejarSolicitudMovimiento();
+                break;
+
+            case ProtocoloBinario.AUTENTICACION_RECHAZADA:
+                manejarAutenticacionFallida();
+                break;
+
+            default:
+                manejarErrorServidor();
+                break;
+        }
+    }
+
+    @Override
+    public void onResultadoMovimiento(boolean limiteAlcanzado, int casillasMovidas,
+                                      String nombreFruta, int puntosGanados) {
+        if (limiteAlcanzado) {
+            controladorVista.mostrarMensaje("Límite alcanzado: movido " + casillasMovidas + " casillas");
+        } else {
+            controladorVista.mostrarMensaje("Movido " + casillasMovidas + " casillas");
+        }
+
+        if (nombreFruta != null) {
+            controladorVista.mostrarMensaje("¡Fruta comida! " + nombreFruta + " (+" + puntosGanados + ")");
+        }
+
+        // El servidor ya procesó el movimiento: se puede enviar el siguiente
+        manejarSolicitudMovimiento();
+    }
+
+    @Override
+    public void onPuntaje(int puntaje, long tiempoSegundos, int frutasRestantes) {
+        controladorModelo.actualizarEstadoJuego(puntaje, tiempoSegundos, frutasRestantes);
+        controladorVista.actualizarInformacionJuego(puntaje, tiempoSegundos, frutasRestantes);
+    }
+
+    @Override
+    public void onFinJuego(String jugador, int puntaje, long tiempoSegundos) {
+        controladorVista.mostrarMensaje(String.format("%s terminó con %d puntos en %d segundos",
+                jugador, puntaje, tiempoSegundos));
+        onPuntaje(puntaje, tiempoSegundos, 0);
+        manejarJuegoTerminado();
+
+        // El espectador no tiene nada más que hacer en la conexión
+        if (jugadorEspectado != null) {
+            controladorModelo.desconectar();
+            controladorVista.actualizarEstado(Estado.DESCONECTADO);
+            reiniciarProtocolo();
+        }
+    }
+
     /**
      * Procesa un mensaje recibido del servidor. LÓGICA CENTRAL DEL PROTOCOLO.
      *
@@ -395,20 +482,31 @@ public class ControladorPrincipal implements
     private void procesarMensajeServidor(String mensaje) {
         controladorVista.mostrarMensaje(mensaje);
 
-        // Interpretar comandos del servidor
+        // Interpretar comandos del servidor (con los nombres que envía
+        // el servidor en el protocolo de texto y los anteriores)
         switch (mensaje) {
+            case "SOLICITUD_USUARIO":
             case "SOLICITAR_USUARIO":
                 manejarSolicitudUsuario();
                 break;
 
+            case "SOLICITUD_PASSWORD":
             case "SOLICITAR_PASSWORD":
                 manejarSolicitudPassword();
                 break;
 
+            case "AUTENTICADO":
+                // El servidor inicia el juego y espera movimientos de inmediato
+                manejarAutenticacionExitosa();
+                manejarJuegoIniciado();
+                manejarSolicitudMovimiento();
+                break;
+
             case "AUTENTICACION_EXITOSA":
                 manejarAutenticacionExitosa();
                 break;
 
+            case "RECHAZADO":
             case "AUTENTICACION_FALLIDA":
                 manejarAutenticacionFallida();
                 break;
@@ -425,6 +523,7 @@ public class ControladorPrincipal implements
                 manejarJuegoTerminado();
                 break;
 
+            case "ERROR_BD":
             case "ERROR_SERVIDOR":
                 manejarErrorServidor();
                 break;
@@ -461,7 +560,7 @@ public class ControladorPrincipal implements
      * Maneja autenticación exitosa.
      */
     private void manejarAutenticacionExitosa() {
-        String usuario = controladorVista.obtenerComando(); // Último ingresado
+        String usuario = usuarioEnviado;
         controladorModelo.establecerAutenticacion(usuario);
 
         controladorVista.mostrarInfo("¡Autenticación exitosa!");
@@ -493,6 +592,20 @@ public class ControladorPrincipal implements
         controladorVista.mostrarPanelVideo(true);
     }
 
+    /**
+     * Maneja el inicio de una conexión de espectador: se ve la partida
+     * pero no se envían movimientos.
+     */
+    private void manejarEspectadorIniciado() {
+        controladorModelo.cambiarEstado(Estado.JUGANDO);
+        controladorVista.actualizarEstado(Estado.JUGANDO);
+        controladorVista.habilitarComando(false);
+
+        controladorVista.mostrarInfo("=== ESPECTANDO A " + jugadorEspectado + " ===");
+
+        controladorVista.mostrarPanelVideo(true);
+    }
+
     /**
      * Maneja solicitud de movimiento.
      */
@@ -533,6 +646,14 @@ public class ControladorPrincipal implements
      * @param mensaje Mensaje informativo
      */
     private void procesarMensajeInformativo(String mensaje) {
+        // Respuesta a un movimiento: se puede enviar el siguiente
+        if (mensaje.startsWith("MOVIMIENTO_OK") || mensaje.startsWith("LIMITE_ALCANZADO")) {
+            manejarSolicitudMovimiento();
+        } else if (mensaje.startsWith("JUEGO_TERMINADO|")) {
+            manejarJuegoTerminado();
+            return;
+        }
+
         // Intentar extraer información del juego
         try {
             if (mensaje.contains("Puntaje total:")) {
@@ -77,10 +77,11 @@ public class ControladorVista {
      * Actualiza el frame de video en la ventana.
      *
      * @param frame Frame a mostrar
+     * @param marcaTiempo Marca de tiempo de presentación en milisegundos
      */
-    public void actualizarFrameVideo(BufferedImage frame) {
+    public void actualizarFrameVideo(BufferedImage frame, long marcaTiempo) {
         if (ventana != null) {
-            ventana.actualizarFrameVideo(frame);
+            ventana.actualizarFrameVideo(frame, marcaTiempo);
         }
     }
 
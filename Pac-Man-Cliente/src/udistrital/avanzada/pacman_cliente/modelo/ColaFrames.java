@@ -0,0 +1,73 @@
+package udistrital.avanzada.pacman_cliente.modelo;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Intercambio de frames entre el hilo que lee el socket y el que los
+ * decodifica. Hay una cantidad fija de buffers: el lector toma uno libre,
+ * lo llena y lo publica; el decodificador lo procesa y lo devuelve.
+ * Si el decodificador se atrasa, el lector espera un buffer libre y la
+ * presión llega al servidor por TCP en lugar de acumular memoria.
+ * Los frames se entregan en orden, porque los delta dependen del anterior.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class ColaFrames {
+    
+    private final BlockingQueue<FrameRecibido> libres;
+    private final BlockingQueue<FrameRecibido> listos;
+    
+    /**
+     * Constructor de la cola.
+     * 
+     * @param buffers Cantidad de buffers de frame
+     */
+    public ColaFrames(int buffers) {
+        this.libres = new ArrayBlockingQueue<>(buffers);
+        this.listos = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            libres.add(new FrameRecibido());
+        }
+    }
+    
+    /**
+     * Obtiene un buffer libre para recibir, esperando si no hay.
+     * 
+     * @return Buffer a llenar
+     * @throws InterruptedException Si el hilo es interrumpido
+     */
+    public FrameRecibido obtenerLibre() throws InterruptedException {
+        return libres.take();
+    }
+    
+    /**
+     * Entrega un frame completo al decodificador.
+     * 
+     * @param frame Frame recibido
+     */
+    public void publicar(FrameRecibido frame) {
+        listos.add(frame);
+    }
+    
+    /**
+     * Devuelve un buffer sin publicarlo (lectura fallida).
+     * 
+     * @param frame Buffer obtenido con obtenerLibre
+     */
+    public void liberar(FrameRecibido frame) {
+        libres.add(frame);
+    }
+    
+    /**
+     * Toma el siguiente frame a decodificar, esperando si no hay.
+     * Debe devolverse con liberar al terminar.
+     * 
+     * @return Frame recibido
+     * @throws InterruptedException Si el hilo es interrumpido
+     */
+    public FrameRecibido tomar() throws InterruptedException {
+        return listos.take();
+    }
+}
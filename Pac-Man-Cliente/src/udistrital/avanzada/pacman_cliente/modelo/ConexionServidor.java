@@ -1,14 +1,30 @@
 package udistrital.avanzada.pacman_cliente.modelo;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import udistrital.avanzada.pacman_cliente.protocolo.CodificadorMensajes;
+import udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes;
+import udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario;
+import udistrital.avanzada.pacman_cliente.protocolo.TipoMensaje;
 
 /**
  * Clase que encapsula la conexión con el servidor.
  * MODIFICADA para usar DataInputStream/DataOutputStream
  * Compatible con el servidor.
+ * 
+ * Si el servidor ofrece el protocolo binario, lo acepta y desde la
+ * confirmación recibe mensajes binarios tipados (JuegoListener);
+ * con servidores antiguos sigue usando el protocolo de texto. Al
+ * aceptar informa los codecs de frame que sabe decodificar, incluida la
+ * escena del juego, que se dibuja localmente en lugar de recibir video.
+ * Si se indicó un jugador a espectar, pide además ver su partida.
+ * 
+ * Los frames se leen en buffers reutilizables (ColaFrames) y se entregan
+ * al FrameListener en un hilo propio, de modo que leer el siguiente
+ * frame del socket y decodificar el anterior ocurren a la vez.
  * @author Steban
  * @version 1.0
  */
@@ -20,8 +36,24 @@ public class ConexionServidor {
         void onConexionCerrada();
     }
     
+    /**
+     * Recibe los frames en el hilo de frames. El buffer se reutiliza al
+     * volver de la llamada, así que no debe conservarse.
+     */
     public interface FrameListener {
-        void onFrameRecibido(byte[] frameBytes);
+        void onFrameRecibido(FrameRecibido frame);
+    }
+    
+    /**
+     * Mensajes tipados del protocolo binario.
+     */
+    public interface JuegoListener {
+        void onSolicitudAutenticacion(boolean password);
+        void onResultadoAutenticacion(int resultado);
+        void onResultadoMovimiento(boolean limiteAlcanzado, int casillasMovidas,
+                                   String nombreFruta, int puntosGanados);
+        void onPuntaje(int puntaje, long tiempoSegundos, int frutasRestantes);
+        void onFinJuego(String jugador, int puntaje, long tiempoSegundos);
     }
     
     private Socket socket;
@@ -30,7 +62,21 @@ public class ConexionServidor {
     private boolean conectado;
     private MensajeListener listener;
     private FrameListener frameListener;
+    private JuegoListener juegoListener;
     private Thread threadEscucha;
+    private Thread threadFrames;
+    
+    /**
+     * Buffers de frame: uno en lectura, uno en cola y uno decodificándose
+     */
+    private static final int BUFFERS_FRAME = 3;
+    private ColaFrames colaFrames;
+    
+    // Protocolo binario: se escribe en binario desde la aceptación
+    // y se lee en binario desde la confirmación del servidor
+    private volatile boolean binarioSalida;
+    private CodificadorMensajes codificador;
+    private String jugadorEspectado;
     
     public ConexionServidor() {
         this.conectado = false;
@@ -44,41 +90,100 @@ public class ConexionServidor {
         this.frameListener = listener;
     }
     
+    public void setJuegoListener(JuegoListener listener) {
+        this.juegoListener = listener;
+    }
+    
+    /**
+     * Indica la partida a ver como espectador en la próxima conexión.
+     * Solo lo soporta el protocolo binario.
+     * 
+     * @param jugador Jugador a espectar o null para jugar
+     */
+    public void setJugadorEspectado(String jugador) {
+        this.jugadorEspectado = jugador;
+    }
+    
     public void conectar(String ip, int puerto) throws IOException {
         if (conectado) {
             throw new IllegalStateException("Ya existe una conexión activa");
         }
         
         socket = new Socket(ip, puerto);
-        entrada = new DataInputStream(socket.getInputStream());
+        entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
         salida = new DataOutputStream(socket.getOutputStream());
+        codificador = new CodificadorMensajes(salida);
+        binarioSalida = false;
+        colaFrames = new ColaFrames(BUFFERS_FRAME);
         conectado = true;
         
+        iniciarHiloFrames();
         iniciarEscucha();
     }
     
+    /**
+     * Inicia el hilo que entrega los frames recibidos al FrameListener.
+     */
+    private void iniciarHiloFrames() {
+        ColaFrames cola = colaFrames;
+        threadFrames = new Thread(() -> {
+            try {
+                while (conectado) {
+                    FrameRecibido frame = cola.tomar();
+                    try {
+                        if (frameListener != null) {
+                            frameListener.onFrameRecibido(frame);
+                        }
+                    } finally {
+                        cola.liberar(frame);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Desconexión
+            }
+        }, "frames");
+        
+        threadFrames.setDaemon(true);
+        threadFrames.start();
+    }
+    
     private void iniciarEscucha() {
         threadEscucha = new Thread(() -> {
             try {
+                boolean negociando = false;
+                
                 while (conectado) {
                     // Leer tipo de mensaje
-                    String tipo = entrada.readUTF();
+                    TipoMensaje tipo = TipoMensaje.fromCodigo(entrada.readUTF());
                     
-                    if ("FRAME_VIDEO".equals(tipo)) {
+                    if (tipo == TipoMensaje.FRAME_VIDEO) {
                         recibirFrame();
+                    } else if (tipo == TipoMensaje.FRAME_DELTA) {
+                        recibirFrameDelta();
                     } else {
                         // Leer contenido del mensaje
                         String contenido = entrada.readUTF();
                         
-                        if (listener != null) {
+                        if (ProtocoloBinario.OFERTA.equals(contenido)) {
+                            aceptarProtocoloBinario();
+                            negociando = true;
+                        } else if (ProtocoloBinario.ACEPTACION.equals(contenido)) {
+                            // Confirmación: lo que sigue es binario
+                            escucharBinario();
+                            break;
+                        } else if (!negociando && listener != null) {
+                            // Durante la negociación se ignoran los mensajes de texto
                             listener.onMensajeRecibido(contenido);
                         }
                     }
                 }
-            } catch (IOException e) {
+            } catch (IOException | IllegalArgumentException e) {
+                // Un tipo desconocido desincroniza el stream: se cierra la conexión
                 if (conectado && listener != null) {
                     listener.onError("Error de lectura: " + e.getMessage());
                 }
+            } catch (InterruptedException e) {
+                // Desconexión mientras se esperaba un buffer de frame
             } finally {
                 if (conectado) {
                     desconectar();
@@ -93,20 +198,190 @@ public class ConexionServidor {
         threadEscucha.start();
     }
     
-    private void recibirFrame() {
+    /**
+     * Acepta la oferta de protocolo binario del servidor.
+     * 
+     * @throws IOException Si hay error de envío
+     */
+    private void aceptarProtocoloBinario() throws IOException {
+        synchronized (salida) {
+            salida.writeUTF(ProtocoloBinario.ACEPTACION);
+            salida.flush();
+            binarioSalida = true;
+            codificador.escribirCodecs(ProtocoloBinario.CODEC_JPEG, ProtocoloBinario.CODEC_PALETA,
+                    ProtocoloBinario.CODEC_ESCENA);
+            if (jugadorEspectado != null) {
+                codificador.escribirEspectar(jugadorEspectado);
+            }
+        }
+    }
+    
+    /**
+     * Lee mensajes binarios hasta que se cierre la conexión.
+     * 
+     * @throws IOException Si hay error de lectura o un mensaje es inválido
+     */
+    private void escucharBinario() throws IOException, InterruptedException {
+        DecodificadorMensajes decodificador = new DecodificadorMensajes(entrada);
+        
+        while (conectado) {
+            switch (decodificador.leerEncabezado()) {
+                case ProtocoloBinario.FRAME:
+                    recibirFrameBinario(decodificador);
+                    break;
+                case ProtocoloBinario.FRAME_DELTA:
+                    recibirFrameDeltaBinario(decodificador);
+                    break;
+                case ProtocoloBinario.SOLICITUD_AUTENTICACION:
+                    boolean password = decodificador.leerByte() == ProtocoloBinario.SOLICITUD_PASSWORD;
+                    if (juegoListener != null) {
+                        juegoListener.onSolicitudAutenticacion(password);
+                    }
+                    break;
+                case ProtocoloBinario.RESULTADO_AUTENTICACION:
+                    int resultado = decodificador.leerByte();
+                    if (juegoListener != null) {
+                        juegoListener.onResultadoAutenticacion(resultado);
+                    }
+                    break;
+                case ProtocoloBinario.RESULTADO_MOVIMIENTO:
+                    recibirResultadoMovimiento(decodificador);
+                    break;
+                case ProtocoloBinario.PUNTAJE:
+                    int puntaje = decodificador.leerVarint();
+                    int tiempo = decodificador.leerVarint();
+                    int frutas = decodificador.leerVarint();
+                    if (juegoListener != null) {
+                        juegoListener.onPuntaje(puntaje, tiempo, frutas);
+                    }
+                    break;
+                case ProtocoloBinario.FIN_JUEGO:
+                    String jugador = decodificador.leerCadena();
+                    int puntajeFinal = decodificador.leerVarint();
+                    int tiempoFinal = decodificador.leerVarint();
+                    if (juegoListener != null) {
+                        juegoListener.onFinJuego(jugador, puntajeFinal, tiempoFinal);
+                    }
+                    break;
+                case ProtocoloBinario.TEXTO:
+                    String texto = decodificador.leerCadena();
+                    if (listener != null) {
+                        listener.onMensajeRecibido(texto);
+                    }
+                    break;
+                default:
+                    // Opcode de una versión posterior: se ignora
+                    break;
+            }
+            decodificador.descartarResto();
+        }
+    }
+    
+    private void recibirResultadoMovimiento(DecodificadorMensajes decodificador) throws IOException {
+        int banderas = decodificador.leerByte();
+        int casillas = decodificador.leerVarint();
+        String fruta = null;
+        int puntos = 0;
+        if ((banderas & ProtocoloBinario.BANDERA_FRUTA) != 0) {
+            fruta = decodificador.leerCadena();
+            puntos = decodificador.leerVarint();
+        }
+        
+        if (juegoListener != null) {
+            juegoListener.onResultadoMovimiento(
+                (banderas & ProtocoloBinario.BANDERA_LIMITE) != 0, casillas, fruta, puntos);
+        }
+    }
+    
+    private void recibirFrameBinario(DecodificadorMensajes decodificador)
+            throws IOException, InterruptedException {
+        FrameRecibido frame = colaFrames.obtenerLibre();
         try {
-            int tamaño = entrada.readInt();
-            byte[] frameBytes = new byte[tamaño];
-            entrada.readFully(frameBytes);
+            frame.setMarcaTiempo(decodificador.leerVarint());
+            int codec = decodificador.leerByte();
+            frame.prepararKeyframe(codec, decodificador.getRestante());
+            decodificador.leerBytes(frame.getDatos(), 0, frame.getLongitud());
+        } catch (IOException e) {
+            colaFrames.liberar(frame);
+            throw e;
+        }
+        colaFrames.publicar(frame);
+    }
+    
+    private void recibirFrameDeltaBinario(DecodificadorMensajes decodificador)
+            throws IOException, InterruptedException {
+        FrameRecibido frame = colaFrames.obtenerLibre();
+        try {
+            frame.setMarcaTiempo(decodificador.leerVarint());
+            int ancho = decodificador.leerVarint();
+            int alto = decodificador.leerVarint();
+            int cantidad = decodificador.leerVarint();
+            if (cantidad > decodificador.getRestante()) {
+                throw new IOException("Cantidad de tiles inválida: " + cantidad);
+            }
             
-            if (frameListener != null) {
-                frameListener.onFrameRecibido(frameBytes);
+            frame.prepararDelta(ancho, alto, cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                int x = decodificador.leerVarint();
+                int y = decodificador.leerVarint();
+                int codec = decodificador.leerByte();
+                int longitud = decodificador.leerVarint();
+                int desplazamiento = frame.agregarTile(x, y, codec, longitud);
+                decodificador.leerBytes(frame.getDatos(), desplazamiento, longitud);
             }
         } catch (IOException e) {
-            if (conectado && listener != null) {
-                listener.onError("Error al recibir frame: " + e.getMessage());
+            colaFrames.liberar(frame);
+            throw e;
+        }
+        colaFrames.publicar(frame);
+    }
+    
+    private void recibirFrame() throws IOException, InterruptedException {
+        int tamaño = entrada.readInt();
+        if (tamaño < 0) {
+            throw new IOException("Tamaño de frame inválido: " + tamaño);
+        }
+        
+        FrameRecibido frame = colaFrames.obtenerLibre();
+        try {
+            // El formato de texto no lleva marca: se usa la hora de llegada
+            frame.setMarcaTiempo(System.currentTimeMillis());
+            frame.prepararKeyframe(ProtocoloBinario.CODEC_JPEG, tamaño);
+            entrada.readFully(frame.getDatos(), 0, tamaño);
+        } catch (IOException e) {
+            colaFrames.liberar(frame);
+            throw e;
+        }
+        colaFrames.publicar(frame);
+    }
+    
+    private void recibirFrameDelta() throws IOException, InterruptedException {
+        FrameRecibido frame = colaFrames.obtenerLibre();
+        try {
+            int ancho = entrada.readInt();
+            int alto = entrada.readInt();
+            int cantidad = entrada.readInt();
+            if (cantidad < 0) {
+                throw new IOException("Cantidad de tiles inválida: " + cantidad);
             }
+            
+            frame.setMarcaTiempo(System.currentTimeMillis());
+            frame.prepararDelta(ancho, alto, cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                int x = entrada.readShort();
+                int y = entrada.readShort();
+                int longitud = entrada.readInt();
+                if (longitud < 0) {
+                    throw new IOException("Tamaño de tile inválido: " + longitud);
+                }
+                int desplazamiento = frame.agregarTile(x, y, ProtocoloBinario.CODEC_JPEG, longitud);
+                entrada.readFully(frame.getDatos(), desplazamiento, longitud);
+            }
+        } catch (IOException e) {
+            colaFrames.liberar(frame);
+            throw e;
         }
+        colaFrames.publicar(frame);
     }
     
     public void enviarMensaje(String mensaje) throws IOException {
@@ -115,15 +390,65 @@ public class ConexionServidor {
         }
         
         synchronized (salida) {
-            salida.writeUTF("CMD");
+            salida.writeUTF(TipoMensaje.COMANDO.getCodigo());
             salida.writeUTF(mensaje);
             salida.flush();
         }
     }
     
+    /**
+     * Envía un usuario o contraseña en el protocolo activo.
+     * 
+     * @param credencial Texto de la credencial
+     * @throws IOException Si hay error de envío
+     */
+    public void enviarCredencial(String credencial) throws IOException {
+        if (!conectado) {
+            throw new IllegalStateException("No hay conexión activa");
+        }
+        
+        synchronized (salida) {
+            if (!binarioSalida) {
+                // En el protocolo de texto las credenciales van sin tipo
+                salida.writeUTF(credencial);
+                salida.flush();
+                return;
+            }
+            codificador.escribirCredencial(credencial);
+        }
+    }
+    
+    /**
+     * Envía un movimiento en el protocolo activo.
+     * 
+     * @param direccion ARRIBA, ABAJO, IZQUIERDA o DERECHA
+     * @throws IOException Si hay error de envío
+     */
+    public void enviarMovimiento(String direccion) throws IOException {
+        if (!conectado) {
+            throw new IllegalStateException("No hay conexión activa");
+        }
+        
+        synchronized (salida) {
+            if (!binarioSalida) {
+                enviarMensaje(direccion);
+                return;
+            }
+            codificador.escribirMovimiento(ProtocoloBinario.codigoDireccion(direccion));
+        }
+    }
+    
     public void desconectar() {
         conectado = false;
         
+        if (threadFrames != null) {
+            threadFrames.interrupt();
+        }
+        if (threadEscucha != null && threadEscucha != Thread.currentThread()) {
+            // Puede estar esperando un buffer de frame libre
+            threadEscucha.interrupt();
+        }
+        
         try {
             if (entrada != null) entrada.close();
             if (salida != null) salida.close();
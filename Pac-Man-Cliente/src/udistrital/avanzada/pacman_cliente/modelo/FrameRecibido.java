@@ -0,0 +1,181 @@
+package udistrital.avanzada.pacman_cliente.modelo;
+
+import java.util.Arrays;
+
+/**
+ * Buffer reutilizable donde el hilo de lectura deja un frame recibido.
+ * Guarda un keyframe (bytes completos) o un frame delta (tiles
+ * concatenados con su posición, codec y longitud). Los arreglos solo crecen,
+ * así que tras los primeros frames recibir no reserva memoria.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class FrameRecibido {
+    
+    private boolean delta;
+    private long marcaTiempo;
+    private int codec;
+    private int ancho;
+    private int alto;
+    private int cantidad;
+    private byte[] datos;
+    private int longitud;
+    private int[] posicionesX;
+    private int[] posicionesY;
+    private int[] codecs;
+    private int[] longitudes;
+    
+    /**
+     * Constructor del buffer.
+     */
+    public FrameRecibido() {
+        this.datos = new byte[32 * 1024];
+        this.posicionesX = new int[64];
+        this.posicionesY = new int[64];
+        this.codecs = new int[64];
+        this.longitudes = new int[64];
+    }
+    
+    /**
+     * Prepara el buffer para un keyframe de la longitud indicada.
+     * 
+     * @param codec Codec del frame (CODEC_*)
+     * @param longitud Bytes del frame
+     */
+    public void prepararKeyframe(int codec, int longitud) {
+        this.delta = false;
+        this.codec = codec;
+        this.cantidad = 0;
+        this.longitud = 0;
+        reservar(longitud);
+        this.longitud = longitud;
+    }
+    
+    /**
+     * Prepara el buffer para un frame delta.
+     * 
+     * @param ancho Ancho del frame completo
+     * @param alto Alto del frame completo
+     * @param cantidad Cantidad de tiles
+     */
+    public void prepararDelta(int ancho, int alto, int cantidad) {
+        this.delta = true;
+        this.ancho = ancho;
+        this.alto = alto;
+        this.cantidad = 0;
+        this.longitud = 0;
+        if (posicionesX.length < cantidad) {
+            int capacidad = Math.max(cantidad, posicionesX.length * 2);
+            posicionesX = new int[capacidad];
+            posicionesY = new int[capacidad];
+            codecs = new int[capacidad];
+            longitudes = new int[capacidad];
+        }
+    }
+    
+    /**
+     * Reserva espacio para un tile al final de los datos.
+     * Los bytes del tile deben leerse en getDatos() desde el desplazamiento
+     * devuelto.
+     * 
+     * @param x Coordenada X del tile
+     * @param y Coordenada Y del tile
+     * @param codec Codec del tile (CODEC_*)
+     * @param bytes Bytes codificados del tile
+     * @return Desplazamiento donde escribir el tile
+     */
+    public int agregarTile(int x, int y, int codec, int bytes) {
+        int desplazamiento = longitud;
+        reservar(longitud + bytes);
+        posicionesX[cantidad] = x;
+        posicionesY[cantidad] = y;
+        codecs[cantidad] = codec;
+        longitudes[cantidad] = bytes;
+        cantidad++;
+        longitud += bytes;
+        return desplazamiento;
+    }
+    
+    /**
+     * Asegura capacidad conservando los bytes ya recibidos.
+     */
+    private void reservar(int capacidad) {
+        if (datos.length < capacidad) {
+            datos = Arrays.copyOf(datos, Math.max(capacidad, datos.length * 2));
+        }
+    }
+    
+    /**
+     * Establece la marca de tiempo de presentación del frame.
+     * Solo importa la diferencia entre marcas de frames sucesivos.
+     * 
+     * @param marcaTiempo Marca en milisegundos
+     */
+    public void setMarcaTiempo(long marcaTiempo) {
+        this.marcaTiempo = marcaTiempo;
+    }
+    
+    public long getMarcaTiempo() {
+        return marcaTiempo;
+    }
+    
+    /**
+     * Obtiene el codec de un keyframe.
+     * 
+     * @return Código CODEC_* de ProtocoloBinario
+     */
+    public int getCodec() {
+        return codec;
+    }
+    
+    public boolean isDelta() {
+        return delta;
+    }
+    
+    public int getAncho() {
+        return ancho;
+    }
+    
+    public int getAlto() {
+        return alto;
+    }
+    
+    /**
+     * Obtiene la cantidad de tiles de un frame delta.
+     * 
+     * @return Cantidad de tiles
+     */
+    public int getCantidad() {
+        return cantidad;
+    }
+    
+    public byte[] getDatos() {
+        return datos;
+    }
+    
+    /**
+     * Obtiene los bytes válidos en getDatos().
+     * 
+     * @return Longitud de los datos
+     */
+    public int getLongitud() {
+        return longitud;
+    }
+    
+    public int[] getPosicionesX() {
+        return posicionesX;
+    }
+    
+    public int[] getPosicionesY() {
+        return posicionesY;
+    }
+    
+    public int[] getCodecs() {
+        return codecs;
+    }
+    
+    public int[] getLongitudes() {
+        return longitudes;
+    }
+}
@@ -0,0 +1,305 @@
+package udistrital.avanzada.pacman_cliente.protocolo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Escribe mensajes del protocolo binario en un stream.
+ * Arma la carga de los mensajes de control en un buffer reutilizable;
+ * los frames se escriben directamente, sin copiarlos.
+ * No es thread-safe: los escritores de una conexión deben serializarse.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CodificadorMensajes {
+    
+    private final DataOutputStream salida;
+    private byte[] carga;
+    private int tamanio;
+    
+    /**
+     * Constructor del codificador.
+     * 
+     * @param salida Stream de salida de la conexión
+     */
+    public CodificadorMensajes(DataOutputStream salida) {
+        this.salida = salida;
+        this.carga = new byte[256];
+        this.tamanio = 0;
+    }
+    
+    // ========== CLIENTE -> SERVIDOR ==========
+    
+    /**
+     * Envía un usuario o contraseña.
+     * 
+     * @param credencial Texto de la credencial
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirCredencial(String credencial) throws IOException {
+        tamanio = 0;
+        agregarCadena(credencial);
+        enviar(ProtocoloBinario.CREDENCIAL);
+    }
+    
+    /**
+     * Envía un movimiento.
+     * 
+     * @param codigoDireccion Código de la dirección
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirMovimiento(int codigoDireccion) throws IOException {
+        tamanio = 0;
+        agregarByte(codigoDireccion);
+        enviar(ProtocoloBinario.MOVIMIENTO);
+    }
+    
+    /**
+     * Informa los codecs de frame que el cliente sabe decodificar.
+     * 
+     * @param codecs Códigos CODEC_* soportados
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirCodecs(int... codecs) throws IOException {
+        tamanio = 0;
+        agregarVarint(codecs.length);
+        for (int codec : codecs) {
+            agregarByte(codec);
+        }
+        enviar(ProtocoloBinario.CODECS);
+    }
+    
+    /**
+     * Pide ver la partida de otro jugador como espectador.
+     * 
+     * @param jugador Jugador cuya partida se quiere ver
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirEspectar(String jugador) throws IOException {
+        tamanio = 0;
+        agregarCadena(jugador);
+        enviar(ProtocoloBinario.ESPECTAR);
+    }
+    
+    // ========== SERVIDOR -> CLIENTE ==========
+    
+    /**
+     * Solicita una credencial al cliente.
+     * 
+     * @param tipo SOLICITUD_USUARIO o SOLICITUD_PASSWORD
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirSolicitudAutenticacion(int tipo) throws IOException {
+        tamanio = 0;
+        agregarByte(tipo);
+        enviar(ProtocoloBinario.SOLICITUD_AUTENTICACION);
+    }
+    
+    /**
+     * Informa el resultado de la autenticación.
+     * 
+     * @param resultado AUTENTICACION_OK, AUTENTICACION_RECHAZADA o AUTENTICACION_ERROR
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirResultadoAutenticacion(int resultado) throws IOException {
+        tamanio = 0;
+        agregarByte(resultado);
+        enviar(ProtocoloBinario.RESULTADO_AUTENTICACION);
+    }
+    
+    /**
+     * Informa el resultado de un movimiento.
+     * 
+     * @param limiteAlcanzado true si Pac-Man llegó al borde
+     * @param casillasMovidas Casillas recorridas
+     * @param nombreFruta Fruta comida o null si no comió
+     * @param puntosGanados Puntos de la fruta comida
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirResultadoMovimiento(boolean limiteAlcanzado, int casillasMovidas,
+                                            String nombreFruta, int puntosGanados) throws IOException {
+        int banderas = 0;
+        if (limiteAlcanzado) {
+            banderas |= ProtocoloBinario.BANDERA_LIMITE;
+        }
+        if (nombreFruta != null) {
+            banderas |= ProtocoloBinario.BANDERA_FRUTA;
+        }
+        
+        tamanio = 0;
+        agregarByte(banderas);
+        agregarVarint(casillasMovidas);
+        if (nombreFruta != null) {
+            agregarCadena(nombreFruta);
+            agregarVarint(puntosGanados);
+        }
+        enviar(ProtocoloBinario.RESULTADO_MOVIMIENTO);
+    }
+    
+    /**
+     * Envía el estado actual del juego.
+     * 
+     * @param puntaje Puntaje acumulado
+     * @param tiempoSegundos Tiempo transcurrido
+     * @param frutasRestantes Frutas que quedan
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirPuntaje(int puntaje, long tiempoSegundos, int frutasRestantes) throws IOException {
+        tamanio = 0;
+        agregarVarint(puntaje);
+        agregarVarint((int) tiempoSegundos);
+        agregarVarint(frutasRestantes);
+        enviar(ProtocoloBinario.PUNTAJE);
+    }
+    
+    /**
+     * Envía el resultado final del juego.
+     * 
+     * @param jugador Nombre del jugador
+     * @param puntaje Puntaje final
+     * @param tiempoSegundos Duración del juego
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirFinJuego(String jugador, int puntaje, long tiempoSegundos) throws IOException {
+        tamanio = 0;
+        agregarCadena(jugador);
+        agregarVarint(puntaje);
+        agregarVarint((int) tiempoSegundos);
+        enviar(ProtocoloBinario.FIN_JUEGO);
+    }
+    
+    /**
+     * Envía un mensaje de texto libre.
+     * 
+     * @param texto Texto a enviar
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirTexto(String texto) throws IOException {
+        tamanio = 0;
+        agregarCadena(texto);
+        enviar(ProtocoloBinario.TEXTO);
+    }
+    
+    /**
+     * Envía un frame completo.
+     * 
+     * @param marcaTiempo Milisegundos de presentación desde el inicio del streaming
+     * @param codec Codec de los datos (CODEC_*)
+     * @param datos Arreglo con los bytes codificados
+     * @param longitud Cantidad de bytes válidos desde el inicio
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirFrame(int marcaTiempo, int codec, byte[] datos, int longitud)
+            throws IOException {
+        salida.write(ProtocoloBinario.FRAME);
+        escribirVarint(ProtocoloBinario.tamanioVarint(marcaTiempo) + 1 + longitud);
+        escribirVarint(marcaTiempo);
+        salida.write(codec);
+        salida.write(datos, 0, longitud);
+        salida.flush();
+    }
+    
+    /**
+     * Envía los tiles modificados de un frame. Los bytes de los tiles
+     * van consecutivos en datos, en el mismo orden que las posiciones.
+     * 
+     * @param marcaTiempo Milisegundos de presentación desde el inicio del streaming
+     * @param ancho Ancho del frame
+     * @param alto Alto del frame
+     * @param cantidad Cantidad de tiles
+     * @param posicionesX Coordenada X de cada tile
+     * @param posicionesY Coordenada Y de cada tile
+     * @param codecs Codec de cada tile (CODEC_*)
+     * @param longitudes Bytes codificados de cada tile
+     * @param datos Bytes codificados de todos los tiles
+     * @throws IOException Si hay error al enviar
+     */
+    public void escribirFrameDelta(int marcaTiempo, int ancho, int alto, int cantidad,
+                                   int[] posicionesX, int[] posicionesY, int[] codecs,
+                                   int[] longitudes, byte[] datos) throws IOException {
+        // Calcular la longitud de la carga para no copiar los tiles
+        int longitudCarga = ProtocoloBinario.tamanioVarint(marcaTiempo)
+            + ProtocoloBinario.tamanioVarint(ancho)
+            + ProtocoloBinario.tamanioVarint(alto)
+            + ProtocoloBinario.tamanioVarint(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            longitudCarga += ProtocoloBinario.tamanioVarint(posicionesX[i])
+                + ProtocoloBinario.tamanioVarint(posicionesY[i])
+                + 1
+                + ProtocoloBinario.tamanioVarint(longitudes[i])
+                + longitudes[i];
+        }
+        
+        salida.write(ProtocoloBinario.FRAME_DELTA);
+        escribirVarint(longitudCarga);
+        escribirVarint(marcaTiempo);
+        escribirVarint(ancho);
+        escribirVarint(alto);
+        escribirVarint(cantidad);
+        
+        int desplazamiento = 0;
+        for (int i = 0; i < cantidad; i++) {
+            escribirVarint(posicionesX[i]);
+            escribirVarint(posicionesY[i]);
+            salida.write(codecs[i]);
+            escribirVarint(longitudes[i]);
+            salida.write(datos, desplazamiento, longitudes[i]);
+            desplazamiento += longitudes[i];
+        }
+        salida.flush();
+    }
+    
+    // ========== AUXILIARES ==========
+    
+    /**
+     * Escribe el mensaje armado en la carga.
+     */
+    private void enviar(int opcode) throws IOException {
+        salida.write(opcode);
+        escribirVarint(tamanio);
+        salida.write(carga, 0, tamanio);
+        salida.flush();
+    }
+    
+    /**
+     * Escribe un varint directamente en el stream.
+     */
+    private void escribirVarint(int valor) throws IOException {
+        while ((valor & ~0x7F) != 0) {
+            salida.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        salida.write(valor);
+    }
+    
+    private void agregarByte(int valor) {
+        asegurarCapacidad(1);
+        carga[tamanio++] = (byte) valor;
+    }
+    
+    private void agregarVarint(int valor) {
+        asegurarCapacidad(5);
+        while ((valor & ~0x7F) != 0) {
+            carga[tamanio++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        carga[tamanio++] = (byte) valor;
+    }
+    
+    private void agregarCadena(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        agregarVarint(bytes.length);
+        asegurarCapacidad(bytes.length);
+        System.arraycopy(bytes, 0, carga, tamanio, bytes.length);
+        tamanio += bytes.length;
+    }
+    
+    private void asegurarCapacidad(int adicional) {
+        if (tamanio + adicional > carga.length) {
+            carga = Arrays.copyOf(carga, Math.max(carga.length * 2, tamanio + adicional));
+        }
+    }
+}
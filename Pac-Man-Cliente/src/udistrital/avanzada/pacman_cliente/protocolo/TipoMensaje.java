@@ -1,8 +1,9 @@
-package udistrital.avanzada.pacman_servidor.modelo;
+package udistrital.avanzada.pacman_cliente.protocolo;
 
 /**
  * Enumeración que representa los tipos de mensajes del protocolo de comunicación
  * entre cliente y servidor. Cada tipo tiene un código corto para transmisión eficiente.
+ * DEBE ser idéntico en Pac-Man-Servidor y Pac-Man-Cliente.
  * 
  * @author Steban
  * @version 1.0
@@ -23,6 +24,11 @@ public enum TipoMensaje {
      */
     FRAME_VIDEO("FRM"),
     
+    /**
+     * Frame de video parcial: solo los tiles que cambiaron desde el último envío
+     */
+    FRAME_DELTA("FRD"),
+    
     /**
      * Mensajes de autenticación (bidireccional)
      */
@@ -55,17 +61,46 @@ public enum TipoMensaje {
     
     /**
      * Obtiene el TipoMensaje a partir de un código.
+     * Se resuelve con un switch (tabla por hash), en tiempo constante.
      * 
      * @param codigo Código a buscar
      * @return TipoMensaje correspondiente
      * @throws IllegalArgumentException si el código no existe
      */
     public static TipoMensaje fromCodigo(String codigo) {
-        for (TipoMensaje tipo : values()) {
-            if (tipo.codigo.equals(codigo)) {
-                return tipo;
-            }
+        TipoMensaje tipo = buscar(codigo);
+        if (tipo == null) {
+            throw new IllegalArgumentException("Código de mensaje desconocido: " + codigo);
+        }
+        return tipo;
+    }
+    
+    /**
+     * Obtiene el TipoMensaje a partir de un código, sin lanzar excepción.
+     * 
+     * @param codigo Código a buscar
+     * @return TipoMensaje correspondiente o null si el código no existe
+     */
+    public static TipoMensaje buscar(String codigo) {
+        if (codigo == null) {
+            return null;
+        }
+        
+        switch (codigo) {
+            case "CMD":
+                return COMANDO;
+            case "MSG":
+                return MENSAJE_TEXTO;
+            case "FRM":
+                return FRAME_VIDEO;
+            case "FRD":
+                return FRAME_DELTA;
+            case "AUT":
+                return AUTENTICACION;
+            case "RES":
+                return RESULTADO;
+            default:
+                return null;
         }
-        throw new IllegalArgumentException("Código de mensaje desconocido: " + codigo);
     }
 }
\ No newline at end of file
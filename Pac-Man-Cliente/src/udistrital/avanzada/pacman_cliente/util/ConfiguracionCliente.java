@@ -86,6 +86,19 @@ public class ConfiguracionCliente {
         }
     }
     
+    /**
+     * Obtiene el jugador cuya partida se quiere ver como espectador.
+     * 
+     * @return Nombre del jugador o null para jugar normalmente
+     */
+    public String getJugadorEspectado() {
+        String jugador = properties.getProperty("espectador.jugador");
+        if (jugador == null || jugador.trim().isEmpty()) {
+            return null;
+        }
+        return jugador.trim();
+    }
+    
     /**
      * Verifica si la configuración está cargada.
      * 
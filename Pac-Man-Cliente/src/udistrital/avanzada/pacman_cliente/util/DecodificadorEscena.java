@@ -0,0 +1,387 @@
+package udistrital.avanzada.pacman_cliente.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario;
+
+/**
+ * Decodifica escenas CODEC_ESCENA: el servidor envía la posición de
+ * Pac-Man y de las frutas y aquí se dibujan, de modo que la imagen es
+ * idéntica a la que habría llegado como video.
+ * Primero se lee la escena, para conocer el tamaño, y luego se dibuja.
+ * 
+ * Los métodos de dibujo son una COPIA A MANO de PacMan.dibujar y de
+ * dibujar en cada subclase de Fruta del servidor (el cliente no tiene el
+ * modelo del servidor). Un cambio de dibujo en el servidor debe
+ * repetirse aquí: DibujoEscenaTest, en las pruebas del servidor, dibuja
+ * la misma escena en los dos lados y falla si difiere un solo píxel.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+class DecodificadorEscena {
+    
+    private static final int TAMANIO_PACMAN = 30;
+    private static final Color COLOR_FONDO = Color.BLACK;
+    private static final Color VERDE_TALLO = new Color(34, 139, 34);
+    private static final Color MARRON = new Color(139, 69, 19);
+    private static final Color DORADO = new Color(255, 215, 0);
+    
+    private byte[] datos;
+    private int posicion;
+    private int fin;
+    
+    // Escena leída
+    private int ancho;
+    private int alto;
+    private int pacmanX;
+    private int pacmanY;
+    private String direccion;
+    private int cantidadFrutas;
+    private String[] frutas = new String[4];
+    private int[] frutasX = new int[4];
+    private int[] frutasY = new int[4];
+    
+    /**
+     * Lee una escena.
+     * 
+     * @param datos Buffer con la escena codificada
+     * @param desplazamiento Posición del primer byte
+     * @param longitud Bytes de la escena
+     * @throws IOException Si la escena es inválida
+     */
+    void leer(byte[] datos, int desplazamiento, int longitud) throws IOException {
+        this.datos = datos;
+        this.posicion = desplazamiento;
+        this.fin = desplazamiento + longitud;
+        
+        ancho = leerVarint();
+        alto = leerVarint();
+        if (ancho <= 0 || alto <= 0) {
+            throw new IOException("Tamaño de escena inválido: " + ancho + "x" + alto);
+        }
+        
+        try {
+            pacmanX = leerVarint();
+            pacmanY = leerVarint();
+            direccion = ProtocoloBinario.nombreDireccion(leerByte());
+            
+            cantidadFrutas = leerVarint();
+            if (cantidadFrutas > fin - posicion) {
+                throw new IOException("Cantidad de frutas inválida: " + cantidadFrutas);
+            }
+            if (frutas.length < cantidadFrutas) {
+                frutas = new String[cantidadFrutas];
+                frutasX = new int[cantidadFrutas];
+                frutasY = new int[cantidadFrutas];
+            }
+            for (int i = 0; i < cantidadFrutas; i++) {
+                frutas[i] = ProtocoloBinario.nombreFruta(leerByte());
+                frutasX[i] = leerVarint();
+                frutasY[i] = leerVarint();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Escena inválida: " + e.getMessage(), e);
+        }
+    }
+    
+    int getAncho() {
+        return ancho;
+    }
+    
+    int getAlto() {
+        return alto;
+    }
+    
+    /**
+     * Dibuja la escena leída con leer sobre toda la imagen.
+     * 
+     * @param destino Imagen del tamaño de la escena
+     */
+    void dibujarEn(BufferedImage destino) {
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setColor(COLOR_FONDO);
+            g.fillRect(0, 0, ancho, alto);
+            
+            // Mismo orden que Juego.dibujar en el servidor
+            dibujarPacMan(g, pacmanX, pacmanY);
+            for (int i = 0; i < cantidadFrutas; i++) {
+                dibujarFruta(g, frutas[i], frutasX[i], frutasY[i]);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+    
+    /**
+     * Dibuja a Pac-Man mirando hacia la dirección leída.
+     */
+    private void dibujarPacMan(Graphics2D g, int x, int y) {
+        // Cuerpo amarillo
+        g.setColor(Color.YELLOW);
+        g.fillOval(x, y, TAMANIO_PACMAN, TAMANIO_PACMAN);
+        
+        // Boca (triángulo negro) y desplazamiento del ojo según dirección
+        int[] xPoints = {x + TAMANIO_PACMAN / 2, 0, 0};
+        int[] yPoints = {y + TAMANIO_PACMAN / 2, 0, 0};
+        int deltaX = 0;
+        int deltaY = 0;
+        switch (direccion) {
+            case "DERECHA":
+                xPoints[1] = x + TAMANIO_PACMAN;
+                yPoints[1] = y + TAMANIO_PACMAN / 4;
+                xPoints[2] = x + TAMANIO_PACMAN;
+                yPoints[2] = y + 3 * TAMANIO_PACMAN / 4;
+                deltaX = 1;
+                break;
+            case "IZQUIERDA":
+                xPoints[1] = x;
+                yPoints[1] = y + TAMANIO_PACMAN / 4;
+                xPoints[2] = x;
+                yPoints[2] = y + 3 * TAMANIO_PACMAN / 4;
+                deltaX = -1;
+                break;
+            case "ARRIBA":
+                xPoints[1] = x + TAMANIO_PACMAN / 4;
+                yPoints[1] = y;
+                xPoints[2] = x + 3 * TAMANIO_PACMAN / 4;
+                yPoints[2] = y;
+                deltaY = -1;
+                break;
+            case "ABAJO":
+                xPoints[1] = x + TAMANIO_PACMAN / 4;
+                yPoints[1] = y + TAMANIO_PACMAN;
+                xPoints[2] = x + 3 * TAMANIO_PACMAN / 4;
+                yPoints[2] = y + TAMANIO_PACMAN;
+                deltaY = 1;
+                break;
+        }
+        g.setColor(Color.BLACK);
+        g.fillPolygon(xPoints, yPoints, 3);
+        
+        // Ojo
+        int eyeSize = 4;
+        int eyeX = x + TAMANIO_PACMAN / 2 + (deltaX * 5);
+        int eyeY = y + TAMANIO_PACMAN / 3 + (deltaY * 5);
+        g.fillOval(eyeX, eyeY, eyeSize, eyeSize);
+    }
+    
+    /**
+     * Dibuja una fruta según su nombre.
+     */
+    private void dibujarFruta(Graphics2D g, String nombre, int x, int y) {
+        switch (nombre) {
+            case "Cereza":
+                dibujarCereza(g, x, y);
+                break;
+            case "Fresa":
+                dibujarFresa(g, x, y);
+                break;
+            case "Naranja":
+                dibujarNaranja(g, x, y);
+                break;
+            case "Manzana":
+                dibujarManzana(g, x, y);
+                break;
+            case "Melon":
+                dibujarMelon(g, x, y);
+                break;
+            case "Galaxian":
+                dibujarGalaxian(g, x, y);
+                break;
+            case "Campana":
+                dibujarCampana(g, x, y);
+                break;
+            case "Llave":
+                dibujarLlave(g, x, y);
+                break;
+        }
+    }
+    
+    private void dibujarCereza(Graphics2D g, int x, int y) {
+        // Dos círculos rojos (cerezas)
+        g.setColor(Color.RED);
+        g.fillOval(x, y + 5, 10, 10);
+        g.fillOval(x + 12, y + 5, 10, 10);
+        
+        // Tallo verde
+        g.setColor(VERDE_TALLO);
+        g.drawLine(x + 5, y + 5, x + 10, y);
+        g.drawLine(x + 17, y + 5, x + 10, y);
+    }
+    
+    private void dibujarFresa(Graphics2D g, int x, int y) {
+        // Cuerpo rojo de la fresa
+        g.setColor(Color.RED);
+        int[] xPoints = {x + 12, x + 20, x + 15, x + 9, x + 4};
+        int[] yPoints = {y + 5, y + 10, y + 20, y + 20, y + 10};
+        g.fillPolygon(xPoints, yPoints, 5);
+        
+        // Hojas verdes superiores
+        g.setColor(VERDE_TALLO);
+        g.fillOval(x + 6, y, 12, 6);
+        
+        // Semillas amarillas
+        g.setColor(Color.YELLOW);
+        g.fillOval(x + 8, y + 10, 2, 2);
+        g.fillOval(x + 14, y + 10, 2, 2);
+        g.fillOval(x + 11, y + 14, 2, 2);
+        g.fillOval(x + 8, y + 16, 2, 2);
+        g.fillOval(x + 14, y + 16, 2, 2);
+    }
+    
+    private void dibujarNaranja(Graphics2D g, int x, int y) {
+        // Círculo naranja
+        g.setColor(Color.ORANGE);
+        g.fillOval(x + 2, y + 5, 18, 18);
+        
+        // Borde
+        g.setColor(new Color(255, 140, 0));
+        g.drawOval(x + 2, y + 5, 18, 18);
+        
+        // Tallo verde
+        g.setColor(VERDE_TALLO);
+        g.fillRect(x + 10, y + 3, 3, 4);
+        
+        // Hoja
+        g.fillOval(x + 13, y + 2, 5, 4);
+        
+        // Textura (puntos)
+        g.setColor(new Color(255, 165, 0));
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                g.fillOval(x + 6 + i * 4, y + 9 + j * 4, 1, 1);
+            }
+        }
+    }
+    
+    private void dibujarManzana(Graphics2D g, int x, int y) {
+        // Cuerpo rojo
+        g.setColor(Color.RED);
+        g.fillOval(x + 3, y + 8, 8, 10);
+        g.fillOval(x + 11, y + 8, 8, 10);
+        g.fillOval(x + 5, y + 10, 12, 12);
+        
+        // Brillo (highlight)
+        g.setColor(new Color(255, 100, 100));
+        g.fillOval(x + 7, y + 11, 4, 4);
+        
+        // Tallo marrón
+        g.setColor(MARRON);
+        g.fillRect(x + 11, y + 5, 2, 5);
+        
+        // Hoja verde
+        g.setColor(VERDE_TALLO);
+        g.fillOval(x + 13, y + 4, 5, 4);
+    }
+    
+    private void dibujarMelon(Graphics2D g, int x, int y) {
+        // Cuerpo verde claro
+        g.setColor(new Color(144, 238, 144));
+        g.fillOval(x + 2, y + 6, 20, 16);
+        
+        // Rayas verdes oscuras
+        g.setColor(VERDE_TALLO);
+        for (int i = 0; i < 4; i++) {
+            g.drawArc(x + 4 + i * 4, y + 6, 4, 16, 90, 180);
+        }
+        
+        // Tallo marrón
+        g.setColor(MARRON);
+        g.fillRect(x + 10, y + 4, 3, 4);
+        
+        // Curva del tallo
+        g.drawArc(x + 12, y + 2, 4, 4, 0, 180);
+    }
+    
+    private void dibujarGalaxian(Graphics2D g, int x, int y) {
+        // Cuerpo azul
+        g.setColor(new Color(0, 100, 255));
+        int[] xBody = {x + 12, x + 18, x + 15, x + 9, x + 6};
+        int[] yBody = {y + 5, y + 12, y + 20, y + 20, y + 12};
+        g.fillPolygon(xBody, yBody, 5);
+        
+        // Alas amarillas
+        g.setColor(Color.YELLOW);
+        int[] xWingL = {x + 6, x + 2, x + 9};
+        int[] yWingL = {y + 12, y + 15, y + 15};
+        g.fillPolygon(xWingL, yWingL, 3);
+        
+        int[] xWingR = {x + 18, x + 22, x + 15};
+        int[] yWingR = {y + 12, y + 15, y + 15};
+        g.fillPolygon(xWingR, yWingR, 3);
+        
+        // Cabina roja
+        g.setColor(Color.RED);
+        g.fillOval(x + 10, y + 8, 4, 4);
+        
+        // Detalles blancos
+        g.setColor(Color.WHITE);
+        g.fillOval(x + 11, y + 9, 2, 2);
+    }
+    
+    private void dibujarCampana(Graphics2D g, int x, int y) {
+        // Cuerpo dorado de la campana
+        g.setColor(DORADO);
+        int[] xPoints = {x + 12, x + 6, x + 5, x + 19, x + 18};
+        int[] yPoints = {y + 6, y + 12, y + 18, y + 18, y + 12};
+        g.fillPolygon(xPoints, yPoints, 5);
+        
+        // Borde inferior
+        g.setColor(new Color(218, 165, 32));
+        g.drawLine(x + 5, y + 18, x + 19, y + 18);
+        g.drawArc(x + 5, y + 16, 14, 4, 0, -180);
+        
+        // Manija superior
+        g.setColor(DORADO);
+        g.fillRect(x + 11, y + 3, 2, 4);
+        g.fillOval(x + 9, y + 2, 6, 3);
+        
+        // Badajo (clapper)
+        g.setColor(MARRON);
+        g.fillOval(x + 11, y + 17, 2, 4);
+        
+        // Brillo
+        g.setColor(Color.YELLOW);
+        g.drawLine(x + 8, y + 10, x + 8, y + 14);
+    }
+    
+    private void dibujarLlave(Graphics2D g, int x, int y) {
+        // Cabeza de la llave
+        g.setColor(DORADO);
+        g.fillOval(x, y, 10, 10);
+        g.setColor(Color.BLACK);
+        g.drawOval(x, y, 10, 10);
+        g.fillOval(x + 3, y + 3, 4, 4); // Agujero
+        
+        // Cuerpo
+        g.setColor(DORADO);
+        g.fillRect(x + 8, y + 4, 12, 3);
+        
+        // Dientes
+        g.fillRect(x + 18, y + 2, 2, 3);
+        g.fillRect(x + 18, y + 5, 2, 3);
+    }
+    
+    private int leerByte() throws IOException {
+        if (posicion >= fin) {
+            throw new IOException("Escena truncada");
+        }
+        return datos[posicion++] & 0xFF;
+    }
+    
+    private int leerVarint() throws IOException {
+        int valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+            int b = leerByte();
+            valor |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Varint demasiado largo");
+    }
+}
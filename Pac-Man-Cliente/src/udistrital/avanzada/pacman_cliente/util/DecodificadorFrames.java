@@ -1,14 +1,27 @@
 package udistrital.avanzada.pacman_cliente.util;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario;
 
 /**
- * Decodifica frames de video JPEG comprimidos.
+ * Decodifica frames de video comprimidos (JPEG o paleta indexada) y
+ * escenas del juego, que se dibujan localmente.
  * Convierte bytes en imágenes BufferedImage para visualización.
  * 
+ * Para el streaming mantiene un frame compuesto reutilizable: los
+ * keyframes se decodifican sobre él y los tiles de un frame delta se
+ * decodifican directamente en su posición, con un único ImageReader
+ * que lee del buffer de recepción. Así un frame no reserva memoria
+ * salvo cuando cambia la resolución. Cada frame o tile indica su codec.
+ * No es thread-safe: lo usa solo el hilo que procesa los frames.
+ * 
  * PRINCIPIO: Single Responsibility
  * - Solo maneja decodificación de imágenes
  * - No conoce sockets ni vista
@@ -18,6 +31,13 @@ import java.io.IOException;
  */
 public class DecodificadorFrames {
     
+    private ImageReader lectorJPEG;
+    private ImageReadParam parametros;
+    private EntradaBytesImagen entrada;
+    private BufferedImage frameCompuesto;
+    private final DecodificadorPaleta decodificadorPaleta = new DecodificadorPaleta();
+    private final DecodificadorEscena decodificadorEscena = new DecodificadorEscena();
+    
     /**
      * Decodifica un array de bytes JPEG a BufferedImage.
      * 
@@ -41,6 +61,138 @@ public class DecodificadorFrames {
         return imagen;
     }
     
+    /**
+     * Decodifica un keyframe sobre el frame compuesto.
+     * La imagen devuelta se reutiliza en el siguiente frame: quien la
+     * reciba debe copiarla antes de volver a llamar al decodificador.
+     * 
+     * @param codec Codec del frame (CODEC_*)
+     * @param datos Buffer con el frame codificado
+     * @param desplazamiento Posición del primer byte
+     * @param longitud Bytes del frame
+     * @return Frame compuesto
+     * @throws IOException Si hay error al decodificar
+     */
+    public BufferedImage decodificarFrame(int codec, byte[] datos, int desplazamiento,
+                                          int longitud) throws IOException {
+        if (codec == ProtocoloBinario.CODEC_PALETA) {
+            decodificadorPaleta.leerEncabezado(datos, desplazamiento, longitud);
+            prepararFrame(decodificadorPaleta.getAncho(), decodificadorPaleta.getAlto());
+            decodificadorPaleta.decodificarEn(frameCompuesto, 0, 0);
+            return frameCompuesto;
+        }
+        if (codec == ProtocoloBinario.CODEC_ESCENA) {
+            decodificadorEscena.leer(datos, desplazamiento, longitud);
+            prepararFrame(decodificadorEscena.getAncho(), decodificadorEscena.getAlto());
+            decodificadorEscena.dibujarEn(frameCompuesto);
+            return frameCompuesto;
+        }
+        
+        prepararLector(codec, datos, desplazamiento, longitud);
+        prepararFrame(lectorJPEG.getWidth(0), lectorJPEG.getHeight(0));
+        leerEn(0, 0);
+        return frameCompuesto;
+    }
+    
+    /**
+     * Reserva el frame compuesto si no existe o cambió de tamaño.
+     */
+    private void prepararFrame(int ancho, int alto) {
+        if (frameCompuesto == null || frameCompuesto.getWidth() != ancho
+                || frameCompuesto.getHeight() != alto) {
+            frameCompuesto = new BufferedImage(ancho, alto, BufferedImage.TYPE_3BYTE_BGR);
+        }
+    }
+    
+    /**
+     * Decodifica los tiles de un frame delta sobre el último keyframe.
+     * Si los tiles cubren todo el frame (un keyframe en franjas) no hace
+     * falta keyframe previo. La imagen devuelta se reutiliza igual que en
+     * decodificarFrame.
+     * 
+     * @param ancho Ancho del frame completo
+     * @param alto Alto del frame completo
+     * @param cantidad Cantidad de tiles
+     * @param posicionesX Coordenada X de cada tile
+     * @param posicionesY Coordenada Y de cada tile
+     * @param codecs Codec de cada tile (CODEC_*)
+     * @param longitudes Bytes de cada tile
+     * @param datos Tiles codificados concatenados
+     * @return Frame compuesto, o null si no hay keyframe de ese tamaño
+     * @throws IOException Si hay error al decodificar
+     */
+    public BufferedImage decodificarFragmentos(int ancho, int alto, int cantidad,
+                                               int[] posicionesX, int[] posicionesY,
+                                               int[] codecs, int[] longitudes, byte[] datos)
+            throws IOException {
+        // Sin keyframe previo del mismo tamaño solo sirve si lo cubre entero
+        boolean sinReferencia = frameCompuesto == null || frameCompuesto.getWidth() != ancho
+                || frameCompuesto.getHeight() != alto;
+        prepararFrame(ancho, alto);
+        
+        long areaCubierta = 0;
+        int desplazamiento = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (codecs[i] == ProtocoloBinario.CODEC_PALETA) {
+                decodificadorPaleta.leerEncabezado(datos, desplazamiento, longitudes[i]);
+                decodificadorPaleta.decodificarEn(frameCompuesto, posicionesX[i], posicionesY[i]);
+                areaCubierta += (long) decodificadorPaleta.getAncho() * decodificadorPaleta.getAlto();
+            } else {
+                prepararLector(codecs[i], datos, desplazamiento, longitudes[i]);
+                leerEn(posicionesX[i], posicionesY[i]);
+                areaCubierta += (long) lectorJPEG.getWidth(0) * lectorJPEG.getHeight(0);
+            }
+            desplazamiento += longitudes[i];
+        }
+        
+        // Los tiles no se superponen: si no suman el frame, falta el resto
+        if (sinReferencia && areaCubierta < (long) ancho * alto) {
+            frameCompuesto = null;
+            return null;
+        }
+        return frameCompuesto;
+    }
+    
+    /**
+     * Apunta el lector JPEG reutilizable a un rango del buffer.
+     */
+    private void prepararLector(int codec, byte[] datos, int desplazamiento, int longitud)
+            throws IOException {
+        if (codec != ProtocoloBinario.CODEC_JPEG) {
+            throw new IOException("Codec de frame desconocido: " + codec);
+        }
+        if (longitud < 2) {
+            throw new IOException("Array de bytes vacío o nulo");
+        }
+        
+        if (lectorJPEG == null) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReadersByFormatName("jpeg");
+            if (!lectores.hasNext()) {
+                throw new IOException("No hay decodificador JPEG disponible");
+            }
+            lectorJPEG = lectores.next();
+            parametros = lectorJPEG.getDefaultReadParam();
+            entrada = new EntradaBytesImagen();
+        }
+        
+        entrada.reiniciar(datos, desplazamiento, longitud);
+        lectorJPEG.setInput(entrada, true, true);
+    }
+    
+    /**
+     * Decodifica la imagen actual del lector en el frame compuesto.
+     */
+    private void leerEn(int x, int y) throws IOException {
+        parametros.setDestination(frameCompuesto);
+        parametros.setDestinationOffset(new Point(x, y));
+        try {
+            lectorJPEG.read(0, parametros);
+        } catch (IllegalArgumentException e) {
+            // Destino incompatible (por ejemplo un JPEG en escala de grises)
+            throw new IOException("No se pudo decodificar la imagen JPEG", e);
+        }
+    }
+    
     /**
      * Verifica si un array de bytes es una imagen JPEG válida.
      * 
@@ -0,0 +1,139 @@
+package udistrital.avanzada.pacman_cliente.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+
+/**
+ * Decodifica imágenes CODEC_PALETA (paleta indexada con runs) escribiendo
+ * los píxeles directamente en el raster de una imagen TYPE_3BYTE_BGR.
+ * Primero se lee el encabezado, para conocer el tamaño, y luego se
+ * decodifican los runs en la posición indicada.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+class DecodificadorPaleta {
+    
+    // Paleta separada por canal, en el orden del raster BGR
+    private final byte[] azules = new byte[256];
+    private final byte[] verdes = new byte[256];
+    private final byte[] rojos = new byte[256];
+    private int cantidadColores;
+    
+    private byte[] datos;
+    private int posicion;
+    private int fin;
+    private int ancho;
+    private int alto;
+    
+    /**
+     * Lee el tamaño y la paleta de una imagen.
+     * 
+     * @param datos Buffer con la imagen codificada
+     * @param desplazamiento Posición del primer byte
+     * @param longitud Bytes de la imagen
+     * @throws IOException Si el encabezado es inválido
+     */
+    void leerEncabezado(byte[] datos, int desplazamiento, int longitud) throws IOException {
+        this.datos = datos;
+        this.posicion = desplazamiento;
+        this.fin = desplazamiento + longitud;
+        
+        ancho = leerVarint();
+        alto = leerVarint();
+        cantidadColores = leerByte() + 1;
+        if (ancho <= 0 || alto <= 0) {
+            throw new IOException("Tamaño de imagen inválido: " + ancho + "x" + alto);
+        }
+        
+        for (int i = 0; i < cantidadColores; i++) {
+            rojos[i] = (byte) leerByte();
+            verdes[i] = (byte) leerByte();
+            azules[i] = (byte) leerByte();
+        }
+    }
+    
+    int getAncho() {
+        return ancho;
+    }
+    
+    int getAlto() {
+        return alto;
+    }
+    
+    /**
+     * Decodifica los runs de la imagen leída con leerEncabezado.
+     * 
+     * @param destino Imagen TYPE_3BYTE_BGR donde escribir
+     * @param x Columna de la esquina superior izquierda
+     * @param y Fila de la esquina superior izquierda
+     * @throws IOException Si los datos son inválidos o no caben en el destino
+     */
+    void decodificarEn(BufferedImage destino, int x, int y) throws IOException {
+        int anchoDestino = destino.getWidth();
+        if (x < 0 || y < 0 || x + ancho > anchoDestino || y + alto > destino.getHeight()) {
+            throw new IOException("La imagen no cabe en el frame");
+        }
+        
+        byte[] pixeles = ((DataBufferByte) destino.getRaster().getDataBuffer()).getData();
+        int fila = 0;
+        int columna = 0;
+        int indicePixel = (y * anchoDestino + x) * 3;
+        
+        while (posicion < fin) {
+            int color = leerByte();
+            int repeticiones = leerVarint() + 1;
+            if (color >= cantidadColores) {
+                throw new IOException("Color fuera de la paleta: " + color);
+            }
+            byte azul = azules[color];
+            byte verde = verdes[color];
+            byte rojo = rojos[color];
+            
+            // Un run puede seguir en las filas siguientes
+            while (repeticiones > 0) {
+                if (fila == alto) {
+                    throw new IOException("Runs exceden el tamaño de la imagen");
+                }
+                int cantidad = Math.min(repeticiones, ancho - columna);
+                for (int i = 0; i < cantidad; i++) {
+                    pixeles[indicePixel++] = azul;
+                    pixeles[indicePixel++] = verde;
+                    pixeles[indicePixel++] = rojo;
+                }
+                repeticiones -= cantidad;
+                columna += cantidad;
+                
+                if (columna == ancho) {
+                    columna = 0;
+                    fila++;
+                    indicePixel = ((y + fila) * anchoDestino + x) * 3;
+                }
+            }
+        }
+        
+        if (fila != alto) {
+            throw new IOException("Imagen incompleta");
+        }
+    }
+    
+    private int leerByte() throws IOException {
+        if (posicion >= fin) {
+            throw new IOException("Imagen truncada");
+        }
+        return datos[posicion++] & 0xFF;
+    }
+    
+    private int leerVarint() throws IOException {
+        int valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+            int b = leerByte();
+            valor |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Varint demasiado largo");
+    }
+}
@@ -0,0 +1,66 @@
+package udistrital.avanzada.pacman_cliente.util;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * ImageInputStream sobre un rango de un arreglo de bytes.
+ * Permite que el ImageReader lea directamente del buffer de recepción,
+ * sin copiarlo ni crear un stream nuevo por frame.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+class EntradaBytesImagen extends ImageInputStreamImpl {
+    
+    private byte[] datos;
+    private int inicio;
+    private int longitud;
+    
+    /**
+     * Apunta el stream a un nuevo rango y vuelve al inicio.
+     * 
+     * @param datos Arreglo con los bytes
+     * @param inicio Posición del primer byte
+     * @param longitud Cantidad de bytes
+     */
+    void reiniciar(byte[] datos, int inicio, int longitud) {
+        this.datos = datos;
+        this.inicio = inicio;
+        this.longitud = longitud;
+        this.streamPos = 0;
+        this.flushedPos = 0;
+        this.bitOffset = 0;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        bitOffset = 0;
+        if (streamPos >= longitud) {
+            return -1;
+        }
+        return datos[inicio + (int) streamPos++] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] destino, int desplazamiento, int cantidad) throws IOException {
+        bitOffset = 0;
+        if (cantidad == 0) {
+            return 0;
+        }
+        int disponibles = (int) (longitud - streamPos);
+        if (disponibles <= 0) {
+            return -1;
+        }
+        
+        int leidos = Math.min(cantidad, disponibles);
+        System.arraycopy(datos, inicio + (int) streamPos, destino, desplazamiento, leidos);
+        streamPos += leidos;
+        return leidos;
+    }
+    
+    @Override
+    public long length() {
+        return longitud;
+    }
+}
@@ -3,11 +3,20 @@ package udistrital.avanzada.pacman_cliente.vista;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Panel especializado para mostrar frames de video.
  * Actualiza la imagen mostrada de forma eficiente.
  * 
+ * Los frames recibidos pasan por un pequeño buffer de jitter: cada uno se
+ * presenta según la marca de tiempo con que lo capturó el servidor más un
+ * retardo fijo, así las ráfagas de la red no se ven como saltos. Un timer
+ * al ritmo de refresco de la pantalla presenta el frame que corresponda y
+ * repinta solo si cambió; la imagen escalada se guarda y se reutiliza
+ * mientras no cambien el frame ni el tamaño del panel.
+ * 
  * PRINCIPIO: Single Responsibility
  * - Solo maneja visualización de imágenes
  * - No conoce red ni lógica de negocio
@@ -17,10 +26,54 @@ import java.awt.image.BufferedImage;
  */
 public class PanelVideo extends JPanel {
     
-    private BufferedImage frameActual;
+    /**
+     * Retardo agregado a cada frame para absorber variaciones de la red
+     */
+    private static final long RETARDO_JITTER_MS = 50;
+    
+    /**
+     * Atraso sobre el tránsito mínimo a partir del cual se recalcula la
+     * referencia (servidor reiniciado, pausa larga de la red)
+     */
+    private static final long ATRASO_MAXIMO_MS = 500;
+    
+    /**
+     * Frames que pueden esperar su turno; si llega uno más se descarta el más viejo
+     */
+    private static final int CAPACIDAD_JITTER = 4;
+    
+    /**
+     * Periodo del timer de presentación (aprox. 60 Hz)
+     */
+    private static final int INTERVALO_PRESENTACION_MS = 16;
+    
+    /**
+     * Frame copiado desde el decodificador y su marca de tiempo.
+     */
+    private static class FramePendiente {
+        BufferedImage imagen;
+        long marcaTiempo;
+    }
+    
     private final Object lock = new Object();
+    private final Deque<FramePendiente> pendientes = new ArrayDeque<>();
+    private final Deque<FramePendiente> libres = new ArrayDeque<>();
+    private final Timer temporizador;
     private boolean escalar;
     
+    // Frame en pantalla; solo lo reemplaza el EDT
+    private FramePendiente mostrado;
+    private long versionMostrada;
+    
+    // Diferencia mínima observada entre la hora local y la marca del servidor
+    private long desfase;
+    private boolean hayDesfase;
+    private int framesDescartados;
+    
+    // Caché del frame escalado (solo EDT)
+    private BufferedImage escalado;
+    private long versionEscalada = -1;
+    
     /**
      * Constructor que inicializa el panel.
      * 
@@ -33,6 +86,9 @@ public class PanelVideo extends JPanel {
         setPreferredSize(new Dimension(ancho, alto));
         setBackground(Color.BLACK);
         setDoubleBuffered(true); // Para evitar parpadeo
+        
+        temporizador = new Timer(INTERVALO_PRESENTACION_MS, e -> presentarPendientes());
+        temporizador.setCoalesce(true);
     }
     
     /**
@@ -46,23 +102,92 @@ public class PanelVideo extends JPanel {
     }
     
     /**
-     * Actualiza el frame mostrado.
+     * Agrega un frame al buffer de jitter.
+     * El frame se copia a un buffer propio, porque el decodificador
+     * reutiliza la imagen para el frame siguiente.
      * Thread-safe para uso desde múltiples hilos.
      * 
      * @param nuevoFrame Nueva imagen a mostrar
+     * @param marcaTiempo Marca de tiempo de presentación en milisegundos
      */
-    public void actualizarFrame(BufferedImage nuevoFrame) {
+    public void actualizarFrame(BufferedImage nuevoFrame, long marcaTiempo) {
+        long ahora = System.currentTimeMillis();
+        
         synchronized (lock) {
-            this.frameActual = nuevoFrame;
+            // El tránsito mínimo aproxima la diferencia entre relojes
+            long transito = ahora - marcaTiempo;
+            if (!hayDesfase || transito < desfase || transito - desfase > ATRASO_MAXIMO_MS) {
+                desfase = transito;
+                hayDesfase = true;
+            }
+            
+            FramePendiente frame = libres.pollFirst();
+            if (frame == null) {
+                if (pendientes.size() >= CAPACIDAD_JITTER) {
+                    frame = pendientes.pollFirst();
+                    framesDescartados++;
+                } else {
+                    frame = new FramePendiente();
+                }
+            }
+            
+            copiarEn(frame, nuevoFrame);
+            frame.marcaTiempo = marcaTiempo;
+            pendientes.addLast(frame);
+            
+            if (!temporizador.isRunning()) {
+                temporizador.start();
+            }
+        }
+    }
+    
+    /**
+     * Copia la imagen en el buffer del frame, reservándolo si no existe
+     * o cambió de tamaño. Debe llamarse con el lock tomado.
+     */
+    private void copiarEn(FramePendiente frame, BufferedImage imagen) {
+        int ancho = imagen.getWidth();
+        int alto = imagen.getHeight();
+        if (frame.imagen == null || frame.imagen.getWidth() != ancho
+                || frame.imagen.getHeight() != alto) {
+            frame.imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
         }
         
-        // Redibujar en el EDT
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                repaint();
+        Graphics2D g2d = frame.imagen.createGraphics();
+        g2d.drawImage(imagen, 0, 0, null);
+        g2d.dispose();
+    }
+    
+    /**
+     * Presenta el frame más reciente cuyo instante ya llegó.
+     * Lo llama el timer en el EDT; se detiene cuando no quedan frames.
+     */
+    private void presentarPendientes() {
+        long ahora = System.currentTimeMillis();
+        boolean cambio = false;
+        
+        synchronized (lock) {
+            // El instante se calcula con el desfase actual, que pudo bajar
+            // después de encolar el frame
+            long limite = ahora - desfase - RETARDO_JITTER_MS;
+            while (!pendientes.isEmpty() && pendientes.peekFirst().marcaTiempo <= limite) {
+                // Si varios vencieron en el mismo tick se muestra solo el último
+                if (mostrado != null) {
+                    libres.addLast(mostrado);
+                }
+                mostrado = pendientes.pollFirst();
+                cambio = true;
             }
-        });
+            
+            if (pendientes.isEmpty()) {
+                temporizador.stop();
+            }
+        }
+        
+        if (cambio) {
+            versionMostrada++;
+            repaint();
+        }
     }
     
     /**
@@ -70,7 +195,12 @@ public class PanelVideo extends JPanel {
      */
     public void limpiar() {
         synchronized (lock) {
-            this.frameActual = null;
+            temporizador.stop();
+            libres.addAll(pendientes);
+            pendientes.clear();
+            // El frame mostrado puede estar pintándose: no se recicla
+            mostrado = null;
+            hayDesfase = false;
         }
         repaint();
     }
@@ -79,51 +209,72 @@ public class PanelVideo extends JPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         
+        BufferedImage frameActual;
         synchronized (lock) {
-            if (frameActual != null) {
-                Graphics2D g2d = (Graphics2D) g;
+            frameActual = mostrado != null ? mostrado.imagen : null;
+        }
+        
+        if (frameActual != null) {
+            if (escalar) {
+                // Escalar al tamaño del panel manteniendo aspecto
+                int panelAncho = getWidth();
+                int panelAlto = getHeight();
+                int imgAncho = frameActual.getWidth();
+                int imgAlto = frameActual.getHeight();
+                
+                double escalaAncho = (double) panelAncho / imgAncho;
+                double escalaAlto = (double) panelAlto / imgAlto;
+                double escala = Math.min(escalaAncho, escalaAlto);
+                
+                int nuevoAncho = Math.max(1, (int) (imgAncho * escala));
+                int nuevoAlto = Math.max(1, (int) (imgAlto * escala));
                 
-                // Habilitar antialiasing para mejor calidad
-                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                int x = (panelAncho - nuevoAncho) / 2;
+                int y = (panelAlto - nuevoAlto) / 2;
                 
-                if (escalar) {
-                    // Escalar al tamaño del panel manteniendo aspecto
-                    int panelAncho = getWidth();
-                    int panelAlto = getHeight();
-                    int imgAncho = frameActual.getWidth();
-                    int imgAlto = frameActual.getHeight();
-                    
-                    double escalaAncho = (double) panelAncho / imgAncho;
-                    double escalaAlto = (double) panelAlto / imgAlto;
-                    double escala = Math.min(escalaAncho, escalaAlto);
-                    
-                    int nuevoAncho = (int) (imgAncho * escala);
-                    int nuevoAlto = (int) (imgAlto * escala);
-                    
-                    int x = (panelAncho - nuevoAncho) / 2;
-                    int y = (panelAlto - nuevoAlto) / 2;
-                    
-                    g2d.drawImage(frameActual, x, y, nuevoAncho, nuevoAlto, null);
+                if (nuevoAncho == imgAncho && nuevoAlto == imgAlto) {
+                    g.drawImage(frameActual, x, y, null);
                 } else {
-                    // Dibujar sin escalar, centrado
-                    int x = (getWidth() - frameActual.getWidth()) / 2;
-                    int y = (getHeight() - frameActual.getHeight()) / 2;
-                    g2d.drawImage(frameActual, x, y, null);
+                    g.drawImage(escalar(frameActual, nuevoAncho, nuevoAlto), x, y, null);
                 }
-                
-                g2d.dispose();
             } else {
-                // Mostrar mensaje cuando no hay frame
-                g.setColor(Color.WHITE);
-                g.setFont(new Font("Arial", Font.BOLD, 16));
-                String mensaje = "Esperando video...";
-                FontMetrics fm = g.getFontMetrics();
-                int x = (getWidth() - fm.stringWidth(mensaje)) / 2;
-                int y = (getHeight() + fm.getAscent()) / 2;
-                g.drawString(mensaje, x, y);
+                // Dibujar sin escalar, centrado
+                int x = (getWidth() - frameActual.getWidth()) / 2;
+                int y = (getHeight() - frameActual.getHeight()) / 2;
+                g.drawImage(frameActual, x, y, null);
             }
+        } else {
+            // Mostrar mensaje cuando no hay frame
+            g.setColor(Color.WHITE);
+            g.setFont(new Font("Arial", Font.BOLD, 16));
+            String mensaje = "Esperando video...";
+            FontMetrics fm = g.getFontMetrics();
+            int x = (getWidth() - fm.stringWidth(mensaje)) / 2;
+            int y = (getHeight() + fm.getAscent()) / 2;
+            g.drawString(mensaje, x, y);
+        }
+    }
+    
+    /**
+     * Obtiene el frame escalado, reutilizando el de la caché si el frame
+     * y el tamaño no cambiaron desde el último repintado.
+     */
+    private BufferedImage escalar(BufferedImage frame, int ancho, int alto) {
+        if (escalado == null || escalado.getWidth() != ancho || escalado.getHeight() != alto) {
+            escalado = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+            versionEscalada = -1;
+        }
+        
+        if (versionEscalada != versionMostrada) {
+            Graphics2D g2d = escalado.createGraphics();
+            // Interpolación bilineal para mejor calidad
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(frame, 0, 0, ancho, alto, null);
+            g2d.dispose();
+            versionEscalada = versionMostrada;
         }
+        return escalado;
     }
     
     /**
@@ -133,7 +284,18 @@ public class PanelVideo extends JPanel {
      */
     public BufferedImage getFrameActual() {
         synchronized (lock) {
-            return frameActual;
+            return mostrado != null ? mostrado.imagen : null;
+        }
+    }
+    
+    /**
+     * Obtiene cuántos frames se descartaron por llenarse el buffer de jitter.
+     * 
+     * @return Frames descartados
+     */
+    public int getFramesDescartados() {
+        synchronized (lock) {
+            return framesDescartados;
         }
     }
 }
@@ -167,10 +167,11 @@ public class VentanaCliente extends JFrame {
      * Actualiza el frame de video mostrado.
      *
      * @param frame Nueva imagen a mostrar
+     * @param marcaTiempo Marca de tiempo de presentación en milisegundos
      */
-    public void actualizarFrameVideo(BufferedImage frame) {
+    public void actualizarFrameVideo(BufferedImage frame, long marcaTiempo) {
         if (panelVideo != null) {
-            panelVideo.actualizarFrame(frame);
+            panelVideo.actualizarFrame(frame, marcaTiempo);
         }
     }
 
@@ -1,31 +1,429 @@
 package udistrital.avanzada.pacman_servidor.conexion;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
 
 /**
  * Gestiona el archivo de acceso aleatorio para almacenar resultados de juegos.
  * Implementa operaciones de lectura, escritura y búsqueda en el archivo.
  * 
+ * Las escrituras usan un FileChannel abierto durante toda la vida del
+ * servidor. Cada registro se codifica en un buffer reutilizable con el
+ * formato configurado: el de siempre (nombre en 50 chars UTF-16
+ * big-endian, int y long) o el compacto de FormatoCompacto. Cada segmento
+ * se lee con el formato en que fue escrito, así que los archivos
+ * existentes siguen siendo legibles.
+ * Los guardados concurrentes se agrupan: la primera sesión que llega
+ * escribe en una sola operación todos los registros encolados hasta ese
+ * momento y las demás esperan a que su lote quede escrito. La
+ * sincronización a disco sigue la política configurada.
+ * 
+ * Los registros se guardan en un registro segmentado: el archivo
+ * configurado es el segmento 0 y, cuando el segmento activo llega al
+ * máximo de registros, se abre el siguiente (resultados.dat.000001, ...).
+ * La lista ordenada de segmentos, con la cantidad de registros de cada
+ * uno, hace de índice disperso para ubicar un registro por su número.
+ * 
+ * El ranking, las estadísticas y las posiciones de los registros de cada
+ * jugador salen de un IndiceResultados en memoria que se actualiza con
+ * cada lote escrito, así que el historial de un jugador se lee sin
+ * recorrer el archivo. Al cerrar se guarda una instantánea del índice
+ * junto al archivo; al abrir se carga, se borra y solo se recorren los
+ * registros escritos después de ella. Como se borra al cargarla, solo
+ * existe mientras el archivo está cerrado: si el servidor termina sin
+ * cerrarlo (después de compactar, por ejemplo) se recorren todos.
+ * 
+ * Si se configura un historial por jugador, un hilo de fondo (que arranca
+ * iniciar()) compacta periódicamente los segmentos sellados: los reescribe sin los registros
+ * más antiguos que excedan el historial de cada jugador, salvo los que
+ * están en el ranking o son el mejor de su jugador. La misma pasada
+ * convierte al formato configurado los segmentos sellados escritos en el
+ * otro; el segmento activo se sella antes de recibir registros en un
+ * formato distinto del suyo.
+ * 
+ * Las lecturas recorren los segmentos en bloques contiguos con un
+ * LectorRegistros, sin el bloqueo: toman una referencia a cada segmento
+ * que van a leer, así que un segmento reemplazado o borrado mientras
+ * tanto se cierra recién cuando lo suelta el último lector.
+ * 
  * @author Steban
  * @version 1.0
  */
 public class ArchivoResultadosManager {
     
+    /**
+     * Cuándo se fuerza a disco lo escrito (fsync).
+     */
+    public enum PoliticaSincronizacion {
+        /** Lo decide el sistema operativo */
+        NUNCA,
+        /** Después de cada lote, antes de confirmar el guardado */
+        LOTE,
+        /** Después de un lote, si pasó el intervalo desde la última vez */
+        PERIODICA
+    }
+    
+    /**
+     * Registros que se escriben juntos y el resultado de esa escritura.
+     * Cada sesión espera sobre su propio lote, así que el error de un lote
+     * no lo pisa el resultado del siguiente.
+     */
+    private static final class Lote {
+        
+        private final List<RegistroJuego> registros = new ArrayList<>();
+        private boolean escrito;
+        private IOException error;
+    }
+    
+    /**
+     * Identifica el archivo de instantánea del índice y su versión
+     */
+    private static final int MAGIA_INSTANTANEA = 0x50524958;
+    private static final int VERSION_INSTANTANEA = 3;
+    
+    /**
+     * Valores por defecto del registro segmentado
+     */
+    public static final int REGISTROS_POR_SEGMENTO = 100_000;
+    public static final int SEGUNDOS_COMPACTACION = 300;
+    
     private String rutaArchivo;
+    private final Path rutaInstantanea;
+    private final IndiceResultados indice = new IndiceResultados();
+    
+    // Segmentos en orden; el último es el activo. Se reemplaza (nunca se
+    // modifica) bajo el bloqueo, así que los lectores usan una copia estable
+    private volatile SegmentoResultados[] segmentos;
+    private final int registrosPorSegmento;
+    private final SegmentoResultados.Formato formato;
+    
+    // Compactación: una pasada a la vez
+    private final int historialPorJugador;
+    private final int segundosCompactacion;
+    private final Lock bloqueoCompactacion = new ReentrantLock();
+    private volatile boolean abierto;
+    private boolean cerrado; // Bajo el bloqueo
+    private Thread hiloCompactacion;
+    
+    // Escritura agrupada: política y lote en curso
+    private final PoliticaSincronizacion politica;
+    private final long intervaloSincronizacion;
+    private final Lock bloqueo = new ReentrantLock();
+    private final Condition loteEscrito = bloqueo.newCondition();
+    private Lote loteAbierto = new Lote();
+    private boolean escribiendo;
+    
+    // Solo los usa la sesión que escribe el lote
+    private long ultimaSincronizacion;
+    private long lotesEscritos;
     
     /**
      * Constructor que recibe la ruta del archivo.
+     * Sincroniza a disco después de cada lote.
+     * 
+     * @param rutaArchivo Ruta donde se guardará el archivo
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public ArchivoResultadosManager(String rutaArchivo) throws IOException {
+        this(rutaArchivo, PoliticaSincronizacion.LOTE, 0);
+    }
+    
+    /**
+     * Constructor con política de sincronización.
      * 
      * @param rutaArchivo Ruta donde se guardará el archivo
+     * @param politica Cuándo forzar a disco lo escrito
+     * @param intervaloSincronizacion Milisegundos mínimos entre sincronizaciones (PERIODICA)
+     * @throws IOException Si no se puede abrir el archivo
      */
-    public ArchivoResultadosManager(String rutaArchivo) {
+    public ArchivoResultadosManager(String rutaArchivo, PoliticaSincronizacion politica,
+                                    long intervaloSincronizacion) throws IOException {
+        this(rutaArchivo, politica, intervaloSincronizacion, REGISTROS_POR_SEGMENTO, 0,
+            SEGUNDOS_COMPACTACION);
+    }
+    
+    /**
+     * Constructor del registro segmentado con el formato de siempre.
+     * 
+     * @param rutaArchivo Ruta donde se guardará el archivo (segmento 0)
+     * @param politica Cuándo forzar a disco lo escrito
+     * @param intervaloSincronizacion Milisegundos mínimos entre sincronizaciones (PERIODICA)
+     * @param registrosPorSegmento Registros tras los cuales se abre un segmento nuevo
+     * @param historialPorJugador Registros más recientes a conservar por jugador; 0 conserva todos
+     * @param segundosCompactacion Intervalo entre pasadas de compactación
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public ArchivoResultadosManager(String rutaArchivo, PoliticaSincronizacion politica,
+                                    long intervaloSincronizacion, int registrosPorSegmento,
+                                    int historialPorJugador, int segundosCompactacion)
+            throws IOException {
+        this(rutaArchivo, politica, intervaloSincronizacion, registrosPorSegmento,
+            historialPorJugador, segundosCompactacion, SegmentoResultados.Formato.LEGADO);
+    }
+    
+    /**
+     * Constructor completo.
+     * 
+     * @param rutaArchivo Ruta donde se guardará el archivo (segmento 0)
+     * @param politica Cuándo forzar a disco lo escrito
+     * @param intervaloSincronizacion Milisegundos mínimos entre sincronizaciones (PERIODICA)
+     * @param registrosPorSegmento Registros tras los cuales se abre un segmento nuevo
+     * @param historialPorJugador Registros más recientes a conservar por jugador; 0 conserva todos
+     * @param segundosCompactacion Intervalo entre pasadas de compactación
+     * @param formato Formato de los registros nuevos; los segmentos sellados
+     *                en el otro formato se convierten al compactar
+     * @throws IOException Si no se puede abrir el archivo
+     */
+    public ArchivoResultadosManager(String rutaArchivo, PoliticaSincronizacion politica,
+                                    long intervaloSincronizacion, int registrosPorSegmento,
+                                    int historialPorJugador, int segundosCompactacion,
+                                    SegmentoResultados.Formato formato)
+            throws IOException {
         this.rutaArchivo = rutaArchivo;
+        this.rutaInstantanea = Paths.get(rutaArchivo + ".idx");
+        this.politica = politica;
+        this.intervaloSincronizacion = intervaloSincronizacion;
+        this.registrosPorSegmento = Math.max(1, registrosPorSegmento);
+        this.historialPorJugador = historialPorJugador;
+        this.segundosCompactacion = segundosCompactacion;
+        this.formato = formato;
         verificarYCrearArchivo();
+        
+        this.segmentos = abrirSegmentos();
+        this.ultimaSincronizacion = System.currentTimeMillis();
+        
+        construirIndice();
+        
+        this.abierto = true;
+    }
+    
+    /**
+     * Arranca el hilo de compactación si hay historial que recortar o
+     * segmentos que convertir. Se llama después de construir el archivo,
+     * no desde el constructor, para que el hilo no vea el objeto a medio
+     * construir.
+     */
+    public void iniciar() {
+        if (hiloCompactacion == null && abierto
+                && (historialPorJugador > 0 || hayQueConvertir()) && segundosCompactacion > 0) {
+            hiloCompactacion = Thread.ofPlatform().name("resultados-compactacion").daemon(true)
+                .start(this::compactarPeriodicamente);
+        }
+    }
+    
+    /**
+     * Indica si algún segmento está escrito en un formato distinto del configurado.
+     * 
+     * @return true si la compactación tiene segmentos que convertir
+     */
+    private boolean hayQueConvertir() {
+        for (SegmentoResultados segmento : segmentos) {
+            if (segmento.getFormato() != formato && segmento.getCantidad() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Abre el segmento 0 y los segmentos siguientes que existan, en orden.
+     * 
+     * @return Segmentos abiertos
+     * @throws IOException Si no se puede abrir alguno
+     */
+    private SegmentoResultados[] abrirSegmentos() throws IOException {
+        Path base = Paths.get(rutaArchivo).toAbsolutePath();
+        String prefijo = base.getFileName() + ".";
+        
+        List<Integer> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(base.getParent(),
+                archivo -> archivo.getFileName().toString().startsWith(prefijo))) {
+            for (Path archivo : archivos) {
+                String sufijo = archivo.getFileName().toString().substring(prefijo.length());
+                if (!sufijo.isEmpty() && sufijo.length() <= 9
+                        && sufijo.chars().allMatch(Character::isDigit)) {
+                    numeros.add(Integer.parseInt(sufijo));
+                }
+            }
+        }
+        Collections.sort(numeros);
+        
+        List<SegmentoResultados> abiertos = new ArrayList<>();
+        abiertos.add(SegmentoResultados.abrir(rutaSegmento(0), 0, formato));
+        for (int numero : numeros) {
+            if (numero > 0) {
+                abiertos.add(SegmentoResultados.abrir(rutaSegmento(numero), numero, formato));
+            }
+        }
+        return abiertos.toArray(new SegmentoResultados[0]);
+    }
+    
+    /**
+     * Obtiene el archivo de un segmento.
+     * 
+     * @param numero Número del segmento
+     * @return Ruta del segmento
+     */
+    private Path rutaSegmento(int numero) {
+        return numero == 0 ? Paths.get(rutaArchivo)
+            : Paths.get(rutaArchivo + String.format(".%06d", numero));
+    }
+    
+    /**
+     * Carga la instantánea del índice, si corresponde a estos segmentos, y
+     * agrega los registros escritos después; si no, recorre todos. La
+     * instantánea se borra: desde ahora la compactación puede reescribir
+     * los segmentos que cubre.
+     * 
+     * @throws IOException Si hay error de lectura del archivo o no se puede borrar la instantánea
+     */
+    private void construirIndice() throws IOException {
+        SegmentoResultados[] segs = segmentos;
+        long[] cubierto = cargarInstantanea(segs);
+        Files.deleteIfExists(rutaInstantanea);
+        if (cubierto == null) {
+            indice.reiniciar();
+            cubierto = new long[] {0, 0};
+        }
+        
+        for (int i = (int) cubierto[0]; i < segs.length; i++) {
+            recorrerRegistros(segs[i], i == cubierto[0] ? cubierto[1] : 0);
+        }
+    }
+    
+    /**
+     * Lee la instantánea del índice.
+     * Es válida si los segmentos que cubre siguen iguales (los sellados con
+     * la misma cantidad de registros, el último con al menos esa cantidad)
+     * y el último registro cubierto coincide con el guardado en ella. Esto
+     * detecta cambios hechos al archivo desde fuera mientras estaba
+     * cerrado; la compactación no la invalida porque la instantánea ya no
+     * existe mientras el archivo está abierto.
+     * 
+     * @param segs Segmentos abiertos
+     * @return Segmento y registro desde donde falta recorrer, o null si no hay una válida
+     */
+    private long[] cargarInstantanea(SegmentoResultados[] segs) {
+        if (!Files.exists(rutaInstantanea)) {
+            return null;
+        }
+        
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(rutaInstantanea.toFile())))) {
+            if (entrada.readInt() != MAGIA_INSTANTANEA
+                    || entrada.readInt() != VERSION_INSTANTANEA) {
+                return null;
+            }
+            
+            int cubiertos = entrada.readInt();
+            if (cubiertos < 1 || cubiertos > segs.length) {
+                return null;
+            }
+            long cantidadUltimo = 0;
+            for (int i = 0; i < cubiertos; i++) {
+                int numero = entrada.readInt();
+                long cantidad = entrada.readLong();
+                boolean ultimo = i == cubiertos - 1;
+                if (segs[i].getNumero() != numero
+                        || (ultimo ? segs[i].getCantidad() < cantidad : segs[i].getCantidad() != cantidad)) {
+                    return null;
+                }
+                cantidadUltimo = cantidad;
+            }
+            
+            SegmentoResultados ultimo = segs[cubiertos - 1];
+            if (cantidadUltimo > 0) {
+                byte[] registro = new byte[entrada.readInt()];
+                entrada.readFully(registro);
+                if (!Arrays.equals(registro, ultimo.leerBytes(cantidadUltimo - 1))) {
+                    return null;
+                }
+            }
+            
+            indice.leer(entrada);
+            return new long[] {cubiertos - 1, cantidadUltimo};
+        } catch (IOException e) {
+            System.err.println("Instantánea de resultados ignorada: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Escribe la instantánea del índice para los registros escritos.
+     * Se escribe en un temporal y se renombra, para no dejarla a medias.
+     * 
+     * @throws IOException Si hay error de escritura
+     */
+    private void guardarInstantanea() throws IOException {
+        SegmentoResultados[] segs = segmentos;
+        SegmentoResultados ultimo = segs[segs.length - 1];
+        
+        Path temporal = Paths.get(rutaInstantanea + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporal.toFile())))) {
+            salida.writeInt(MAGIA_INSTANTANEA);
+            salida.writeInt(VERSION_INSTANTANEA);
+            salida.writeInt(segs.length);
+            for (SegmentoResultados segmento : segs) {
+                salida.writeInt(segmento.getNumero());
+                salida.writeLong(segmento.getCantidad());
+            }
+            if (ultimo.getCantidad() > 0) {
+                byte[] registro = ultimo.leerBytes(ultimo.getCantidad() - 1);
+                salida.writeInt(registro.length);
+                salida.write(registro);
+            }
+            indice.escribir(salida);
+        }
+        Files.move(temporal, rutaInstantanea, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Agrega al índice los registros de un segmento.
+     * 
+     * @param segmento Segmento a recorrer
+     * @param desde Índice del primer registro a agregar
+     * @throws IOException Si hay error de lectura
+     */
+    private void recorrerRegistros(SegmentoResultados segmento, long desde) throws IOException {
+        int numero = segmento.getNumero();
+        try (Stream<BloqueRegistros> bloques = segmento.recorrer(desde)) {
+            bloques.forEachOrdered(bloque -> {
+                for (int i = 0; i < bloque.getCantidad(); i++) {
+                    indice.registrar(bloque.getRegistro(i),
+                        SegmentoResultados.posicion(numero, bloque.getPrimerIndice() + i));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
     
     /**
@@ -52,70 +450,140 @@ public class ArchivoResultadosManager {
     
     /**
      * Guarda un registro al final del archivo.
+     * Varias sesiones pueden terminar al mismo tiempo: sus registros se
+     * escriben juntos en un lote. Retorna cuando el registro está escrito
+     * (y sincronizado, según la política).
      * 
      * @param registro Registro a guardar
      * @throws IOException Si hay error de escritura
      */
     public void guardarResultado(RegistroJuego registro) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(rutaArchivo, "rw")) {
-            // Posicionarse al final del archivo
-            raf.seek(raf.length());
+        bloqueo.lock();
+        try {
+            Lote lote = loteAbierto;
+            lote.registros.add(registro);
+            
+            while (!lote.escrito) {
+                if (escribiendo) {
+                    // Otra sesión está escribiendo: el registro irá en el próximo lote
+                    loteEscrito.awaitUninterruptibly();
+                } else {
+                    escribirPendientes();
+                }
+            }
             
-            // Escribir el registro
-            escribirRegistro(raf, registro);
+            if (lote.error != null) {
+                throw new IOException("Error al guardar resultado: " + lote.error.getMessage(),
+                    lote.error);
+            }
+        } finally {
+            bloqueo.unlock();
         }
     }
     
     /**
-     * Escribe un registro en la posición actual del archivo.
-     * 
-     * @param raf RandomAccessFile donde escribir
-     * @param registro Registro a escribir
-     * @throws IOException Si hay error de escritura
+     * Escribe el lote abierto. Se llama con el bloqueo tomado y lo suelta
+     * mientras escribe, para que los guardados que lleguen entretanto se
+     * acumulen en un lote nuevo.
      */
-    private void escribirRegistro(RandomAccessFile raf, RegistroJuego registro) throws IOException {
-        // Escribir nombre (siempre 50 caracteres)
-        String nombre = registro.getNombreJugador();
+    private void escribirPendientes() {
+        Lote lote = loteAbierto;
+        loteAbierto = new Lote();
+        List<RegistroJuego> registros = lote.registros;
+        escribiendo = true;
         
-        // Rellenar con espacios si es necesario
-        StringBuilder nombreFijo = new StringBuilder(nombre);
-        while (nombreFijo.length() < RegistroJuego.LONGITUD_NOMBRE) {
-            nombreFijo.append(" ");
+        IOException error = null;
+        SegmentoResultados activo = null;
+        long primero = 0;
+        try {
+            activo = segmentoActivo();
+            primero = activo.getCantidad();
+        } catch (IOException e) {
+            error = e;
         }
         
-        // Escribir cada carácter (2 bytes por char)
-        for (int i = 0; i < RegistroJuego.LONGITUD_NOMBRE; i++) {
-            raf.writeChar(nombreFijo.charAt(i));
+        if (error == null) {
+            bloqueo.unlock();
+            try {
+                escribirLote(registros, activo);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                bloqueo.lock();
+            }
         }
         
-        // Escribir puntaje (4 bytes)
-        raf.writeInt(registro.getPuntaje());
-        
-        // Escribir tiempo (8 bytes)
-        raf.writeLong(registro.getTiempoSegundos());
+        if (error == null) {
+            // Los lotes se escriben de a uno: el índice los recibe en orden de archivo
+            for (int i = 0; i < registros.size(); i++) {
+                indice.registrar(registros.get(i),
+                    SegmentoResultados.posicion(activo.getNumero(), primero + i));
+            }
+        }
+        escribiendo = false;
+        lote.error = error;
+        lote.escrito = true;
+        loteEscrito.signalAll();
     }
     
     /**
-     * Lee un registro desde la posición actual del archivo.
+     * Obtiene el segmento donde escribir el próximo lote; si el activo
+     * está lleno o tiene registros en otro formato, lo sella y abre el
+     * siguiente. Se llama con el bloqueo tomado.
      * 
-     * @param raf RandomAccessFile desde donde leer
-     * @return Registro leído
-     * @throws IOException Si hay error de lectura
+     * @return Segmento activo
+     * @throws IOException Si no se puede abrir el segmento nuevo
      */
-    private RegistroJuego leerRegistro(RandomAccessFile raf) throws IOException {
-        // Leer nombre (50 caracteres)
-        StringBuilder nombre = new StringBuilder();
-        for (int i = 0; i < RegistroJuego.LONGITUD_NOMBRE; i++) {
-            nombre.append(raf.readChar());
+    private SegmentoResultados segmentoActivo() throws IOException {
+        SegmentoResultados[] segs = segmentos;
+        SegmentoResultados activo = segs[segs.length - 1];
+        if (activo.getFormato() != formato && activo.getCantidad() == 0) {
+            activo.vaciar(formato);
+        }
+        if (activo.getCantidad() < registrosPorSegmento && activo.getFormato() == formato) {
+            return activo;
         }
         
-        // Leer puntaje
-        int puntaje = raf.readInt();
-        
-        // Leer tiempo
-        long tiempo = raf.readLong();
+        if (politica != PoliticaSincronizacion.NUNCA) {
+            activo.forzar();
+        }
+        int numero = activo.getNumero() + 1;
+        SegmentoResultados nuevo = SegmentoResultados.abrir(rutaSegmento(numero), numero, formato);
+        SegmentoResultados[] actualizados = Arrays.copyOf(segs, segs.length + 1);
+        actualizados[segs.length] = nuevo;
+        segmentos = actualizados;
+        return nuevo;
+    }
+    
+    /**
+     * Escribe los registros al final del segmento activo en una sola escritura.
+     * 
+     * @param registros Registros del lote
+     * @param activo Segmento activo
+     * @throws IOException Si hay error de escritura
+     */
+    private void escribirLote(List<RegistroJuego> registros, SegmentoResultados activo)
+            throws IOException {
+        activo.agregar(registros);
+        lotesEscritos++;
         
-        return new RegistroJuego(nombre.toString().trim(), puntaje, tiempo);
+        sincronizar(activo);
+    }
+    
+    /**
+     * Fuerza a disco lo escrito según la política configurada.
+     * 
+     * @param activo Segmento activo
+     * @throws IOException Si falla la sincronización
+     */
+    private void sincronizar(SegmentoResultados activo) throws IOException {
+        long ahora = System.currentTimeMillis();
+        if (politica == PoliticaSincronizacion.LOTE
+                || (politica == PoliticaSincronizacion.PERIODICA
+                    && ahora - ultimaSincronizacion >= intervaloSincronizacion)) {
+            activo.forzar();
+            ultimaSincronizacion = ahora;
+        }
     }
     
     /**
@@ -125,23 +593,110 @@ public class ArchivoResultadosManager {
      * @throws IOException Si hay error de lectura
      */
     public List<RegistroJuego> leerTodosLosRegistros() throws IOException {
-        List<RegistroJuego> registros = new ArrayList<>();
-        
-        try (RandomAccessFile raf = new RandomAccessFile(rutaArchivo, "r")) {
-            long longitudArchivo = raf.length();
+        SegmentoResultados[] segs = tomarSegmentos();
+        try {
+            List<RegistroJuego> registros = new ArrayList<>((int) contarRegistros(segs));
             
-            // Calcular número de registros
-            int numeroRegistros = (int) (longitudArchivo / RegistroJuego.TAMANIO_REGISTRO);
-            
-            // Leer cada registro
-            for (int i = 0; i < numeroRegistros; i++) {
-                raf.seek(i * RegistroJuego.TAMANIO_REGISTRO);
-                RegistroJuego registro = leerRegistro(raf);
-                registros.add(registro);
+            for (SegmentoResultados segmento : segs) {
+                try (Stream<BloqueRegistros> bloques = segmento.recorrer(0)) {
+                    bloques.forEachOrdered(bloque -> {
+                        for (int i = 0; i < bloque.getCantidad(); i++) {
+                            registros.add(bloque.getRegistro(i));
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
             }
+            
+            return registros;
+        } finally {
+            liberarSegmentos(segs);
+        }
+    }
+    
+    /**
+     * Recorre los registros guardados hasta ahora en bloques decodificados
+     * por columnas, sin crear objetos por registro. El flujo admite
+     * parallel() para agregaciones; los bloques se reutilizan, así que
+     * no deben guardarse. Un error de lectura llega como UncheckedIOException.
+     * 
+     * Cada segmento queda tomado hasta que el flujo termina de recorrerlo;
+     * un flujo que no se recorre completo debe cerrarse para soltar los
+     * que faltan.
+     * 
+     * @return Flujo secuencial de bloques, en el orden del archivo
+     * @throws UncheckedIOException Si el archivo ya se cerró
+     */
+    public Stream<BloqueRegistros> recorrerBloques() {
+        SegmentoResultados[] segs;
+        try {
+            segs = tomarSegmentos();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
         
-        return registros;
+        // flatMap cierra el flujo de cada segmento al terminar de recorrerlo
+        Runnable[] liberadores = new Runnable[segs.length];
+        for (int i = 0; i < segs.length; i++) {
+            SegmentoResultados segmento = segs[i];
+            AtomicBoolean liberado = new AtomicBoolean();
+            liberadores[i] = () -> {
+                if (liberado.compareAndSet(false, true)) {
+                    segmento.liberar();
+                }
+            };
+        }
+        return IntStream.range(0, segs.length)
+            .boxed()
+            .flatMap(i -> segs[i].recorrer(0).onClose(liberadores[i]))
+            .onClose(() -> {
+                for (Runnable liberador : liberadores) {
+                    liberador.run();
+                }
+            });
+    }
+    
+    /**
+     * Toma una referencia a cada segmento actual para leerlos sin el
+     * bloqueo. Hay que soltarlas con liberarSegmentos.
+     * 
+     * @return Segmentos tomados
+     * @throws IOException Si el archivo ya se cerró
+     */
+    private SegmentoResultados[] tomarSegmentos() throws IOException {
+        bloqueo.lock();
+        try {
+            return adquirirSegmentos();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Toma una referencia a cada segmento actual. Se llama con el bloqueo
+     * tomado: los segmentos solo se sueltan después de salir de la lista,
+     * que cambia bajo el mismo bloqueo, así que ninguno está cerrado salvo
+     * que se haya cerrado el archivo.
+     * 
+     * @return Segmentos tomados
+     * @throws IOException Si el archivo ya se cerró
+     */
+    private SegmentoResultados[] adquirirSegmentos() throws IOException {
+        SegmentoResultados[] segs = segmentos;
+        for (int i = 0; i < segs.length; i++) {
+            if (!segs[i].adquirir()) {
+                liberarSegmentos(Arrays.copyOf(segs, i));
+                throw new IOException("El archivo de resultados está cerrado");
+            }
+        }
+        return segs;
+    }
+    
+    private static void liberarSegmentos(SegmentoResultados[] segs) {
+        for (SegmentoResultados segmento : segs) {
+            segmento.liberar();
+        }
     }
     
     /**
@@ -152,49 +707,91 @@ public class ArchivoResultadosManager {
      * @throws IOException Si hay error de lectura o índice inválido
      */
     public RegistroJuego leerRegistroPorIndice(int indice) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(rutaArchivo, "r")) {
-            long longitudArchivo = raf.length();
-            int numeroRegistros = (int) (longitudArchivo / RegistroJuego.TAMANIO_REGISTRO);
-            
-            if (indice < 0 || indice >= numeroRegistros) {
-                throw new IOException("Índice fuera de rango: " + indice);
+        if (indice >= 0) {
+            SegmentoResultados[] segs = tomarSegmentos();
+            try {
+                // Saltar segmentos completos según su cantidad de registros
+                long restante = indice;
+                for (SegmentoResultados segmento : segs) {
+                    if (restante < segmento.getCantidad()) {
+                        return segmento.leer(restante);
+                    }
+                    restante -= segmento.getCantidad();
+                }
+            } finally {
+                liberarSegmentos(segs);
             }
-            
-            // Posicionarse en el registro
-            raf.seek(indice * RegistroJuego.TAMANIO_REGISTRO);
-            
-            return leerRegistro(raf);
         }
+        throw new IOException("Índice fuera de rango: " + indice);
     }
     
     /**
-     * Obtiene el mejor jugador (mayor puntaje, menor tiempo en caso de empate).
+     * Obtiene el historial de un jugador desde el índice, leyendo solo
+     * sus registros.
      * 
-     * @return Registro del mejor jugador o null si no hay registros
+     * @param nombreJugador Nombre del jugador
+     * @return Registros del jugador, del más antiguo al más reciente
      * @throws IOException Si hay error de lectura
      */
-    public RegistroJuego obtenerMejorJugador() throws IOException {
-        List<RegistroJuego> registros = leerTodosLosRegistros();
-        
-        if (registros.isEmpty()) {
-            return null;
+    public List<RegistroJuego> obtenerHistorial(String nombreJugador) throws IOException {
+        long[] posiciones;
+        SegmentoResultados[] segs;
+        bloqueo.lock();
+        try {
+            // Posiciones y segmentos de un mismo momento (la compactación cambia ambos)
+            posiciones = indice.getPosiciones(nombreJugador);
+            segs = adquirirSegmentos();
+        } finally {
+            bloqueo.unlock();
         }
         
-        RegistroJuego mejor = registros.get(0);
-        
-        for (RegistroJuego registro : registros) {
-            // Comparar por puntaje primero
-            if (registro.getPuntaje() > mejor.getPuntaje()) {
-                mejor = registro;
-            } 
-            // Si tienen el mismo puntaje, comparar por tiempo (menor es mejor)
-            else if (registro.getPuntaje() == mejor.getPuntaje() && 
-                     registro.getTiempoSegundos() < mejor.getTiempoSegundos()) {
-                mejor = registro;
+        try {
+            List<RegistroJuego> historial = new ArrayList<>(posiciones.length);
+            int s = 0;
+            for (long posicion : posiciones) {
+                // Las posiciones vienen en orden de archivo: los segmentos solo avanzan
+                int numero = SegmentoResultados.numeroDe(posicion);
+                while (segs[s].getNumero() != numero) {
+                    s++;
+                }
+                historial.add(segs[s].leer(SegmentoResultados.registroDe(posicion)));
             }
+            return historial;
+        } finally {
+            liberarSegmentos(segs);
         }
-        
-        return mejor;
+    }
+    
+    /**
+     * Obtiene el mejor jugador (mayor puntaje, menor tiempo en caso de empate).
+     * Se responde desde el índice, sin leer el archivo.
+     * 
+     * @return Registro del mejor jugador o null si no hay registros
+     * @throws IOException Si hay error de lectura
+     */
+    public RegistroJuego obtenerMejorJugador() throws IOException {
+        return indice.getMejor();
+    }
+    
+    /**
+     * Obtiene los mejores registros, del mejor al peor, con el mismo
+     * criterio que obtenerMejorJugador.
+     * 
+     * @param cantidad Registros pedidos (a lo sumo IndiceResultados.TAMANIO_RANKING)
+     * @return Lista con los mejores registros
+     */
+    public List<RegistroJuego> obtenerMejores(int cantidad) {
+        return indice.getMejores(cantidad);
+    }
+    
+    /**
+     * Obtiene el mejor registro de un jugador.
+     * 
+     * @param nombreJugador Nombre del jugador
+     * @return Mejor registro del jugador o null si no tiene registros
+     */
+    public RegistroJuego obtenerMejorDe(String nombreJugador) {
+        return indice.getMejorDe(nombreJugador);
     }
     
     /**
@@ -204,10 +801,15 @@ public class ArchivoResultadosManager {
      * @throws IOException Si hay error de lectura
      */
     public int obtenerCantidadRegistros() throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(rutaArchivo, "r")) {
-            long longitudArchivo = raf.length();
-            return (int) (longitudArchivo / RegistroJuego.TAMANIO_REGISTRO);
+        return (int) contarRegistros(segmentos);
+    }
+    
+    private static long contarRegistros(SegmentoResultados[] segs) {
+        long total = 0;
+        for (SegmentoResultados segmento : segs) {
+            total += segmento.getCantidad();
         }
+        return total;
     }
     
     /**
@@ -226,8 +828,241 @@ public class ArchivoResultadosManager {
      * @throws IOException Si hay error al borrar
      */
     public void borrarTodosLosRegistros() throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(rutaArchivo, "rw")) {
-            raf.setLength(0);
+        bloqueoCompactacion.lock();
+        bloqueo.lock();
+        try {
+            // No truncar debajo de un lote que se está escribiendo
+            while (escribiendo) {
+                loteEscrito.awaitUninterruptibly();
+            }
+            
+            // El segmento 0 se reemplaza por un archivo vacío en lugar de
+            // truncarlo: los lectores en curso siguen leyendo los anteriores
+            Path temporal = Paths.get(rutaArchivo + ".tmp");
+            Files.deleteIfExists(temporal);
+            SegmentoResultados.abrir(temporal, 0, formato).cerrar();
+            Files.move(temporal, rutaSegmento(0), StandardCopyOption.ATOMIC_MOVE);
+            SegmentoResultados vacio = SegmentoResultados.abrir(rutaSegmento(0), 0, formato);
+            
+            SegmentoResultados[] segs = segmentos;
+            segmentos = new SegmentoResultados[] {vacio};
+            for (int i = 1; i < segs.length; i++) {
+                Files.deleteIfExists(segs[i].getRuta());
+            }
+            liberarSegmentos(segs);
+            indice.reiniciar();
+            Files.deleteIfExists(rutaInstantanea);
+        } finally {
+            bloqueo.unlock();
+            bloqueoCompactacion.unlock();
+        }
+    }
+    
+    /**
+     * Compacta los segmentos sellados: descarta los registros más antiguos
+     * que excedan el historial configurado de cada jugador, salvo los que
+     * el índice protege, y reescribe en el formato configurado los que
+     * estén en el otro. Con historial 0 solo convierte.
+     * 
+     * @return Registros descartados
+     * @throws IOException Si hay error al reescribir un segmento
+     */
+    public long compactar() throws IOException {
+        bloqueoCompactacion.lock();
+        try {
+            SegmentoResultados[] sellados;
+            long[] excedentes;
+            bloqueo.lock();
+            try {
+                SegmentoResultados[] segs = segmentos;
+                sellados = Arrays.copyOf(segs, segs.length - 1);
+                excedentes = historialPorJugador > 0
+                    ? indice.getExcedentes(historialPorJugador) : new long[0];
+            } finally {
+                bloqueo.unlock();
+            }
+            
+            // Ordenadas por posición quedan agrupadas por segmento
+            Arrays.sort(excedentes);
+            long descartados = 0;
+            for (SegmentoResultados segmento : sellados) {
+                descartados += compactarSegmento(segmento, excedentes);
+            }
+            return descartados;
+        } finally {
+            bloqueoCompactacion.unlock();
+        }
+    }
+    
+    /**
+     * Reescribe un segmento sellado sin sus registros descartables, en el
+     * formato configurado, y lo reemplaza atómicamente. Un segmento en el
+     * otro formato se reescribe aunque no descarte nada: así se convierte.
+     * 
+     * @param segmento Segmento sellado
+     * @param excedentes Posiciones excedentes de todos los segmentos, ordenadas
+     * @return Registros descartados
+     * @throws IOException Si hay error al reescribir
+     */
+    private long compactarSegmento(SegmentoResultados segmento, long[] excedentes)
+            throws IOException {
+        int numero = segmento.getNumero();
+        int desde = primeraPosicionDesde(excedentes, SegmentoResultados.posicion(numero, 0));
+        int hasta = primeraPosicionDesde(excedentes, SegmentoResultados.posicion(numero + 1, 0));
+        boolean convertir = segmento.getFormato() != formato;
+        if (desde == hasta && !convertir) {
+            return 0;
+        }
+        
+        int cantidad = (int) segmento.getCantidad();
+        boolean[] candidato = new boolean[cantidad];
+        for (int i = desde; i < hasta; i++) {
+            candidato[(int) SegmentoResultados.registroDe(excedentes[i])] = true;
+        }
+        
+        int[] nuevaPosicion = new int[cantidad];
+        int conservados = 0;
+        long descartados = 0;
+        long puntajesDescartados = 0;
+        long tiemposDescartados = 0;
+        Path temporal = Paths.get(segmento.getRuta() + ".tmp");
+        Files.deleteIfExists(temporal);
+        SegmentoResultados salida = SegmentoResultados.abrir(temporal, numero, formato);
+        List<RegistroJuego> conservadosBloque = new ArrayList<>(LectorRegistros.REGISTROS_POR_BLOQUE);
+        
+        try {
+            Iterator<BloqueRegistros> bloques = Spliterators.iterator(
+                new LectorRegistros(segmento, 0, cantidad));
+            while (bloques.hasNext()) {
+                BloqueRegistros bloque = bloques.next();
+                conservadosBloque.clear();
+                for (int i = 0; i < bloque.getCantidad(); i++) {
+                    int registro = (int) bloque.getPrimerIndice() + i;
+                    if (candidato[registro] && !indice.esProtegido(bloque.getNombre(i),
+                            bloque.getPuntaje(i), bloque.getTiempoSegundos(i))) {
+                        nuevaPosicion[registro] = -1;
+                        descartados++;
+                        puntajesDescartados += bloque.getPuntaje(i);
+                        tiemposDescartados += bloque.getTiempoSegundos(i);
+                        continue;
+                    }
+                    
+                    nuevaPosicion[registro] = conservados++;
+                    conservadosBloque.add(bloque.getRegistro(i));
+                }
+                salida.agregar(conservadosBloque);
+            }
+            salida.forzar();
+        } catch (UncheckedIOException e) {
+            salida.cerrar();
+            Files.deleteIfExists(temporal);
+            throw e.getCause();
+        } catch (IOException e) {
+            salida.cerrar();
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        salida.cerrar();
+        
+        if (descartados == 0 && !convertir) {
+            Files.deleteIfExists(temporal);
+            return 0;
+        }
+        
+        bloqueo.lock();
+        try {
+            Files.move(temporal, segmento.getRuta(), StandardCopyOption.ATOMIC_MOVE);
+            SegmentoResultados compactado = SegmentoResultados.abrir(segmento.getRuta(), numero,
+                formato);
+            SegmentoResultados[] actualizados = segmentos.clone();
+            for (int i = 0; i < actualizados.length; i++) {
+                if (actualizados[i] == segmento) {
+                    actualizados[i] = compactado;
+                }
+            }
+            segmentos = actualizados;
+            indice.compactado(numero, nuevaPosicion, descartados, puntajesDescartados,
+                tiemposDescartados);
+        } finally {
+            bloqueo.unlock();
+        }
+        // Se cierra cuando lo suelten los lectores que lo estén recorriendo
+        segmento.liberar();
+        return descartados;
+    }
+    
+    private static int primeraPosicionDesde(long[] posiciones, long posicion) {
+        int indice = Arrays.binarySearch(posiciones, posicion);
+        return indice >= 0 ? indice : -indice - 1;
+    }
+    
+    /**
+     * Ejecuta la compactación cada intervalo mientras el archivo esté abierto.
+     * Se espera con park y no con sleep: interrumpir un hilo que usa un
+     * FileChannel lo cierra.
+     */
+    private void compactarPeriodicamente() {
+        while (abierto) {
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(segundosCompactacion));
+            if (!abierto) {
+                return;
+            }
+            try {
+                compactar();
+            } catch (IOException e) {
+                System.err.println("Error al compactar resultados: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Obtiene la cantidad de lotes escritos desde que se abrió el archivo.
+     * Comparada con la cantidad de guardados, muestra cuánto se agrupan.
+     * 
+     * @return Lotes escritos
+     */
+    public long getLotesEscritos() {
+        bloqueo.lock();
+        try {
+            return lotesEscritos;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Sincroniza lo pendiente y cierra el archivo. Llamar al cerrar el servidor.
+     */
+    public void cerrar() {
+        abierto = false;
+        if (hiloCompactacion != null) {
+            LockSupport.unpark(hiloCompactacion);
+        }
+        
+        bloqueoCompactacion.lock();
+        bloqueo.lock();
+        try {
+            while (escribiendo) {
+                loteEscrito.awaitUninterruptibly();
+            }
+            SegmentoResultados[] segs = segmentos;
+            if (!cerrado) {
+                // Los segmentos se liberan aunque falle forzar o la instantánea
+                try {
+                    for (SegmentoResultados segmento : segs) {
+                        segmento.forzar();
+                    }
+                    guardarInstantanea();
+                } finally {
+                    liberarSegmentos(segs);
+                    cerrado = true;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al cerrar archivo de resultados: " + e.getMessage());
+        } finally {
+            bloqueo.unlock();
+            bloqueoCompactacion.unlock();
         }
     }
     
@@ -238,23 +1073,13 @@ public class ArchivoResultadosManager {
      * @throws IOException Si hay error de lectura
      */
     public String obtenerEstadisticas() throws IOException {
-        List<RegistroJuego> registros = leerTodosLosRegistros();
-        
-        if (registros.isEmpty()) {
+        if (indice.getCantidad() == 0) {
             return "No hay registros disponibles.";
         }
         
-        int totalJugadores = registros.size();
-        int puntajeTotal = 0;
-        long tiempoTotal = 0;
-        
-        for (RegistroJuego registro : registros) {
-            puntajeTotal += registro.getPuntaje();
-            tiempoTotal += registro.getTiempoSegundos();
-        }
-        
-        double puntajePromedio = (double) puntajeTotal / totalJugadores;
-        double tiempoPromedio = (double) tiempoTotal / totalJugadores;
+        long totalJugadores = indice.getCantidad();
+        double puntajePromedio = indice.getPuntajePromedio();
+        double tiempoPromedio = indice.getTiempoPromedio();
         
         StringBuilder stats = new StringBuilder();
         stats.append("=== Estadísticas del Archivo ===\n");
@@ -0,0 +1,215 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * Bloque de registros consecutivos del archivo de resultados, decodificado
+ * en columnas: los nombres como caracteres sin copiar a String, los
+ * puntajes y los tiempos en arreglos primitivos. Los nombres se
+ * materializan solo si se piden, así que un recorrido que agrega puntajes
+ * no crea objetos por registro.
+ * 
+ * El lector reutiliza el bloque: su contenido es válido hasta que el
+ * lector avanza al siguiente.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class BloqueRegistros {
+    
+    private final char[] nombres;
+    private final int[] puntajes;
+    private final long[] tiempos;
+    private int cantidad;
+    private long primerIndice;
+    
+    /**
+     * Constructor del bloque.
+     * 
+     * @param capacidad Cantidad máxima de registros
+     */
+    public BloqueRegistros(int capacidad) {
+        this.nombres = new char[capacidad * RegistroJuego.LONGITUD_NOMBRE];
+        this.puntajes = new int[capacidad];
+        this.tiempos = new long[capacidad];
+    }
+    
+    /**
+     * Decodifica registros en el formato antiguo (tamaño fijo).
+     * 
+     * @param buffer Buffer con los registros desde la posición 0 (big-endian)
+     * @param cantidad Registros en el buffer
+     * @param primerIndice Índice del primer registro dentro de su segmento
+     */
+    void decodificar(ByteBuffer buffer, int cantidad, long primerIndice) {
+        this.cantidad = cantidad;
+        this.primerIndice = primerIndice;
+        
+        int posicion = 0;
+        int caracter = 0;
+        for (int i = 0; i < cantidad; i++) {
+            for (int c = 0; c < RegistroJuego.LONGITUD_NOMBRE; c++) {
+                nombres[caracter++] = buffer.getChar(posicion);
+                posicion += 2;
+            }
+            puntajes[i] = buffer.getInt(posicion);
+            tiempos[i] = buffer.getLong(posicion + 4);
+            posicion += 12;
+        }
+    }
+    
+    /**
+     * Prepara el bloque para recibir registros uno a uno con poner.
+     * 
+     * @param cantidad Registros que tendrá el bloque
+     * @param primerIndice Índice del primer registro dentro de su segmento
+     */
+    void preparar(int cantidad, long primerIndice) {
+        this.cantidad = cantidad;
+        this.primerIndice = primerIndice;
+    }
+    
+    /**
+     * Guarda un registro con el nombre en UTF-8, rellenándolo con espacios
+     * como en el formato antiguo.
+     * 
+     * @param i Registro dentro del bloque
+     * @param buffer Buffer con el nombre (acceso absoluto)
+     * @param inicioNombre Posición del nombre en el buffer
+     * @param bytesNombre Bytes del nombre
+     * @param puntaje Puntaje
+     * @param tiempoSegundos Tiempo en segundos
+     */
+    void poner(int i, ByteBuffer buffer, int inicioNombre, int bytesNombre, int puntaje,
+               long tiempoSegundos) {
+        int caracter = i * RegistroJuego.LONGITUD_NOMBRE;
+        int fin = caracter + RegistroJuego.LONGITUD_NOMBRE;
+        
+        // Casi todos los nombres son ASCII: un byte por carácter
+        int b = 0;
+        while (b < bytesNombre && caracter < fin) {
+            byte valor = buffer.get(inicioNombre + b);
+            if (valor < 0) {
+                break;
+            }
+            nombres[caracter++] = (char) valor;
+            b++;
+        }
+        if (b < bytesNombre) {
+            byte[] resto = new byte[bytesNombre - b];
+            buffer.get(inicioNombre + b, resto);
+            String texto = new String(resto, StandardCharsets.UTF_8);
+            int copiar = Math.min(texto.length(), fin - caracter);
+            texto.getChars(0, copiar, nombres, caracter);
+            caracter += copiar;
+        }
+        while (caracter < fin) {
+            nombres[caracter++] = ' ';
+        }
+        
+        puntajes[i] = puntaje;
+        tiempos[i] = tiempoSegundos;
+    }
+    
+    public int getCantidad() {
+        return cantidad;
+    }
+    
+    /**
+     * Obtiene el índice del primer registro del bloque dentro de su segmento.
+     * 
+     * @return Índice (base 0)
+     */
+    public long getPrimerIndice() {
+        return primerIndice;
+    }
+    
+    public int getPuntaje(int i) {
+        return puntajes[i];
+    }
+    
+    public long getTiempoSegundos(int i) {
+        return tiempos[i];
+    }
+    
+    /**
+     * Columna de puntajes; solo las primeras getCantidad() posiciones son válidas.
+     * 
+     * @return Arreglo interno
+     */
+    public int[] getPuntajes() {
+        return puntajes;
+    }
+    
+    /**
+     * Columna de tiempos; solo las primeras getCantidad() posiciones son válidas.
+     * 
+     * @return Arreglo interno
+     */
+    public long[] getTiempos() {
+        return tiempos;
+    }
+    
+    /**
+     * Obtiene el nombre de un registro sin el relleno (igual que trim()).
+     * 
+     * @param i Registro dentro del bloque
+     * @return Nombre del jugador
+     */
+    public String getNombre(int i) {
+        int inicio = inicioNombre(i);
+        return new String(nombres, inicio, finNombre(i) - inicio);
+    }
+    
+    /**
+     * Compara el nombre de un registro sin materializarlo.
+     * 
+     * @param i Registro dentro del bloque
+     * @param nombre Nombre sin relleno
+     * @return true si el registro es de ese jugador
+     */
+    public boolean nombreIgual(int i, String nombre) {
+        int inicio = inicioNombre(i);
+        int longitud = finNombre(i) - inicio;
+        if (longitud != nombre.length()) {
+            return false;
+        }
+        for (int c = 0; c < longitud; c++) {
+            if (nombres[inicio + c] != nombre.charAt(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Materializa un registro del bloque.
+     * 
+     * @param i Registro dentro del bloque
+     * @return Registro nuevo
+     */
+    public RegistroJuego getRegistro(int i) {
+        return new RegistroJuego(getNombre(i), puntajes[i], tiempos[i]);
+    }
+    
+    private int inicioNombre(int i) {
+        int inicio = i * RegistroJuego.LONGITUD_NOMBRE;
+        int fin = inicio + RegistroJuego.LONGITUD_NOMBRE;
+        while (inicio < fin && nombres[inicio] <= ' ') {
+            inicio++;
+        }
+        return inicio;
+    }
+    
+    private int finNombre(int i) {
+        // Un nombre en blanco queda vacío: no retroceder más allá de su inicio
+        int inicio = inicioNombre(i);
+        int fin = i * RegistroJuego.LONGITUD_NOMBRE + RegistroJuego.LONGITUD_NOMBRE;
+        while (fin > inicio && nombres[fin - 1] <= ' ') {
+            fin--;
+        }
+        return fin;
+    }
+}
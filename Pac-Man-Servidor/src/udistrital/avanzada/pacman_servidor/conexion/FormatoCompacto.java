@@ -0,0 +1,216 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * Formato compacto de los registros de resultados.
+ * Un segmento compacto empieza con una cabecera (magia y versión) y sigue
+ * con registros de tamaño variable:
+ * 
+ *   varint   longitud del nombre en bytes
+ *   bytes    nombre en UTF-8, sin relleno
+ *   varint   puntaje (zig-zag)
+ *   varint   tiempo en segundos (zig-zag)
+ *   int      CRC32C de los campos anteriores
+ * 
+ * Un nombre típico de menos de 12 caracteres ASCII ocupa unos 15-20
+ * bytes en lugar de 112. La magia empieza con 0xFFFF, que como primer
+ * carácter UTF-16 de un registro de formato antiguo nunca aparece, así
+ * que los dos formatos se distinguen por los primeros bytes del archivo.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public final class FormatoCompacto {
+    
+    /**
+     * Magia de la cabecera: 0xFFFF seguido de "PM"
+     */
+    public static final int MAGIA = 0xFFFF504D;
+    
+    /**
+     * Versión del formato
+     */
+    public static final int VERSION = 1;
+    
+    /**
+     * Bytes de la cabecera del segmento (magia y versión)
+     */
+    public static final int TAMANIO_CABECERA = 8;
+    
+    /**
+     * Tamaño máximo de un registro: nombre de 50 caracteres de 3 bytes
+     */
+    public static final int TAMANIO_MAXIMO = 5 + RegistroJuego.LONGITUD_NOMBRE * 3 + 5 + 10 + 4;
+    
+    /**
+     * Resultado de medir: el registro no está completo en el buffer
+     */
+    public static final int INCOMPLETO = -1;
+    
+    /**
+     * Resultado de medir: el registro está dañado (CRC o longitud inválida)
+     */
+    public static final int DANIADO = -2;
+    
+    private FormatoCompacto() {
+    }
+    
+    /**
+     * Escribe la cabecera de un segmento compacto.
+     * 
+     * @param buffer Buffer de destino
+     */
+    public static void escribirCabecera(ByteBuffer buffer) {
+        buffer.putInt(MAGIA);
+        buffer.putInt(VERSION);
+    }
+    
+    /**
+     * Codifica un registro. Como en el formato antiguo, el nombre se corta
+     * en 50 caracteres y se guarda sin los espacios de los extremos.
+     * 
+     * @param registro Registro a codificar
+     * @param buffer Buffer de destino (con arreglo) y al menos TAMANIO_MAXIMO bytes libres
+     */
+    public static void codificar(RegistroJuego registro, ByteBuffer buffer) {
+        int inicio = buffer.position();
+        String nombreJugador = registro.getNombreJugador();
+        if (nombreJugador.length() > RegistroJuego.LONGITUD_NOMBRE) {
+            nombreJugador = nombreJugador.substring(0, RegistroJuego.LONGITUD_NOMBRE);
+        }
+        byte[] nombre = nombreJugador.trim().getBytes(StandardCharsets.UTF_8);
+        escribirVarint(buffer, nombre.length);
+        buffer.put(nombre);
+        int puntaje = registro.getPuntaje();
+        escribirVarint(buffer, ((puntaje << 1) ^ (puntaje >> 31)) & 0xFFFFFFFFL);
+        long tiempo = registro.getTiempoSegundos();
+        escribirVarint(buffer, (tiempo << 1) ^ (tiempo >> 63));
+        
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), buffer.arrayOffset() + inicio, buffer.position() - inicio);
+        buffer.putInt((int) crc.getValue());
+    }
+    
+    /**
+     * Mide un registro y verifica su CRC sin decodificarlo.
+     * 
+     * @param buffer Buffer con los datos (acceso absoluto)
+     * @param posicion Inicio del registro
+     * @param limite Fin de los datos válidos del buffer
+     * @return Longitud del registro, INCOMPLETO o DANIADO
+     */
+    public static int medir(ByteBuffer buffer, int posicion, int limite) {
+        long longitudNombre = leerVarint(buffer, posicion, limite);
+        if (longitudNombre < 0) {
+            return (int) longitudNombre;
+        }
+        int longitudVarint = (int) (longitudNombre >>> 32);
+        // Un varint de 5 bytes puede pasar de 2^31 y quedar negativo
+        int bytesNombre = (int) longitudNombre;
+        if (bytesNombre < 0 || bytesNombre > RegistroJuego.LONGITUD_NOMBRE * 3) {
+            return DANIADO;
+        }
+        
+        int p = posicion + longitudVarint + bytesNombre;
+        for (int campo = 0; campo < 2; campo++) {
+            p = saltarVarint(buffer, p, limite);
+            if (p < 0) {
+                return p;
+            }
+        }
+        if (p + 4 > limite) {
+            return INCOMPLETO;
+        }
+        
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(posicion, p - posicion));
+        if ((int) crc.getValue() != buffer.getInt(p)) {
+            return DANIADO;
+        }
+        return p + 4 - posicion;
+    }
+    
+    /**
+     * Decodifica un registro completo y verificado en un bloque.
+     * 
+     * @param buffer Buffer con los datos (acceso absoluto)
+     * @param posicion Inicio del registro
+     * @param bloque Bloque de destino
+     * @param i Registro dentro del bloque
+     */
+    static void decodificar(ByteBuffer buffer, int posicion, BloqueRegistros bloque, int i) {
+        long longitudNombre = leerVarint(buffer, posicion, buffer.limit());
+        int p = posicion + (int) (longitudNombre >>> 32);
+        int bytesNombre = (int) longitudNombre;
+        int inicioNombre = p;
+        p += bytesNombre;
+        
+        long puntaje = leerVarint(buffer, p, buffer.limit());
+        p += (int) (puntaje >>> 32);
+        int zigzagPuntaje = (int) puntaje;
+        
+        // El tiempo puede ocupar hasta 10 bytes: se lee aparte
+        long zigzagTiempo = 0;
+        for (int desplazamiento = 0; ; desplazamiento += 7) {
+            byte b = buffer.get(p++);
+            zigzagTiempo |= (long) (b & 0x7F) << desplazamiento;
+            if (b >= 0) {
+                break;
+            }
+        }
+        
+        bloque.poner(i, buffer, inicioNombre, bytesNombre,
+            (zigzagPuntaje >>> 1) ^ -(zigzagPuntaje & 1),
+            (zigzagTiempo >>> 1) ^ -(zigzagTiempo & 1));
+    }
+    
+    private static void escribirVarint(ByteBuffer buffer, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+    
+    /**
+     * Lee un varint de hasta 32 bits.
+     * 
+     * @return Bytes usados en los 32 bits altos y el valor en los bajos,
+     *         o INCOMPLETO / DANIADO
+     */
+    private static long leerVarint(ByteBuffer buffer, int posicion, int limite) {
+        int valor = 0;
+        for (int i = 0; i < 5; i++) {
+            if (posicion + i >= limite) {
+                return INCOMPLETO;
+            }
+            byte b = buffer.get(posicion + i);
+            valor |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                return ((long) (i + 1) << 32) | (valor & 0xFFFFFFFFL);
+            }
+        }
+        return DANIADO;
+    }
+    
+    /**
+     * Salta un varint de hasta 64 bits.
+     * 
+     * @return Posición siguiente al varint, o INCOMPLETO / DANIADO
+     */
+    private static int saltarVarint(ByteBuffer buffer, int posicion, int limite) {
+        for (int i = 0; i < 10; i++) {
+            if (posicion + i >= limite) {
+                return INCOMPLETO;
+            }
+            if (buffer.get(posicion + i) >= 0) {
+                return posicion + i + 1;
+            }
+        }
+        return DANIADO;
+    }
+}
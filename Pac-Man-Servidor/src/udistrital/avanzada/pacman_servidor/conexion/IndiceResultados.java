@@ -0,0 +1,338 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * Ranking, estadísticas e historial por jugador de los resultados,
+ * mantenidos en memoria.
+ * Guarda los mejores registros (mayor puntaje, menor tiempo en caso de
+ * empate y, si también empatan, el más antiguo), el mejor registro de
+ * cada jugador, las posiciones de todos sus registros en el registro
+ * segmentado y los totales de puntaje y tiempo. Se construye una vez al
+ * abrir el archivo y se actualiza con cada registro guardado, así que
+ * las consultas no recorren el archivo.
+ * 
+ * Se puede escribir y leer como instantánea para no reconstruirlo desde
+ * cero en cada arranque. Es thread-safe.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class IndiceResultados {
+    
+    /**
+     * Cantidad de registros que conserva el ranking
+     */
+    public static final int TAMANIO_RANKING = 100;
+    
+    /**
+     * Registro con su orden de llegada, para desempatar
+     */
+    private static final class Entrada {
+        
+        private final RegistroJuego registro;
+        private final long orden;
+        
+        private Entrada(RegistroJuego registro, long orden) {
+            this.registro = registro;
+            this.orden = orden;
+        }
+    }
+    
+    /**
+     * Mejor registro y posiciones (en orden de archivo) de un jugador
+     */
+    private static final class Jugador {
+        
+        private Entrada mejor;
+        private long[] posiciones = new long[4];
+        private int cantidad;
+        
+        private void agregarPosicion(long posicion) {
+            if (cantidad == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, cantidad * 2);
+            }
+            posiciones[cantidad++] = posicion;
+        }
+    }
+    
+    private static final Comparator<Entrada> MEJOR_PRIMERO = Comparator
+        .comparingInt((Entrada e) -> -e.registro.getPuntaje())
+        .thenComparingLong(e -> e.registro.getTiempoSegundos())
+        .thenComparingLong(e -> e.orden);
+    
+    private final TreeSet<Entrada> ranking = new TreeSet<>(MEJOR_PRIMERO);
+    private final Map<String, Jugador> jugadores = new HashMap<>();
+    private long cantidad;
+    private long sumaPuntajes;
+    private long sumaTiempos;
+    private long siguienteOrden;
+    
+    /**
+     * Incorpora un registro guardado. Debe llamarse en el orden del archivo.
+     * 
+     * @param registro Registro guardado
+     * @param posicion Posición del registro en el registro segmentado
+     */
+    public synchronized void registrar(RegistroJuego registro, long posicion) {
+        RegistroJuego copia = new RegistroJuego(registro.getNombreJugador().trim(),
+            registro.getPuntaje(), registro.getTiempoSegundos());
+        Entrada entrada = new Entrada(copia, siguienteOrden++);
+        
+        if (ranking.size() < TAMANIO_RANKING) {
+            ranking.add(entrada);
+        } else if (MEJOR_PRIMERO.compare(entrada, ranking.last()) < 0) {
+            ranking.add(entrada);
+            ranking.pollLast();
+        }
+        
+        Jugador jugador = jugadores.computeIfAbsent(copia.getNombreJugador(), n -> new Jugador());
+        if (jugador.mejor == null || MEJOR_PRIMERO.compare(entrada, jugador.mejor) < 0) {
+            jugador.mejor = entrada;
+        }
+        jugador.agregarPosicion(posicion);
+        
+        cantidad++;
+        sumaPuntajes += copia.getPuntaje();
+        sumaTiempos += copia.getTiempoSegundos();
+    }
+    
+    /**
+     * Vacía el índice (el archivo fue borrado).
+     */
+    public synchronized void reiniciar() {
+        ranking.clear();
+        jugadores.clear();
+        cantidad = 0;
+        sumaPuntajes = 0;
+        sumaTiempos = 0;
+        siguienteOrden = 0;
+    }
+    
+    /**
+     * Obtiene el mejor registro.
+     * 
+     * @return Mejor registro o null si no hay registros
+     */
+    public synchronized RegistroJuego getMejor() {
+        return ranking.isEmpty() ? null : ranking.first().registro;
+    }
+    
+    /**
+     * Obtiene los mejores registros, del mejor al peor.
+     * 
+     * @param cantidadMaxima Registros pedidos (a lo sumo TAMANIO_RANKING)
+     * @return Lista con los mejores registros
+     */
+    public synchronized List<RegistroJuego> getMejores(int cantidadMaxima) {
+        List<RegistroJuego> mejores = new ArrayList<>(Math.min(cantidadMaxima, ranking.size()));
+        for (Entrada entrada : ranking) {
+            if (mejores.size() >= cantidadMaxima) {
+                break;
+            }
+            mejores.add(entrada.registro);
+        }
+        return mejores;
+    }
+    
+    /**
+     * Obtiene el mejor registro de un jugador.
+     * 
+     * @param nombreJugador Nombre del jugador
+     * @return Mejor registro del jugador o null si no tiene
+     */
+    public synchronized RegistroJuego getMejorDe(String nombreJugador) {
+        Jugador jugador = jugadores.get(nombreJugador.trim());
+        return jugador != null ? jugador.mejor.registro : null;
+    }
+    
+    /**
+     * Obtiene las posiciones de los registros de un jugador.
+     * 
+     * @param nombreJugador Nombre del jugador
+     * @return Posiciones en orden de archivo (vacío si no tiene registros)
+     */
+    public synchronized long[] getPosiciones(String nombreJugador) {
+        Jugador jugador = jugadores.get(nombreJugador.trim());
+        return jugador != null ? Arrays.copyOf(jugador.posiciones, jugador.cantidad) : new long[0];
+    }
+    
+    /**
+     * Obtiene las posiciones de los registros que exceden el historial:
+     * los más antiguos de cada jugador con más registros que el límite.
+     * 
+     * @param historialPorJugador Registros más recientes a conservar por jugador
+     * @return Posiciones excedentes, sin orden particular
+     */
+    public synchronized long[] getExcedentes(int historialPorJugador) {
+        long total = 0;
+        for (Jugador jugador : jugadores.values()) {
+            total += Math.max(0, jugador.cantidad - historialPorJugador);
+        }
+        
+        long[] excedentes = new long[(int) total];
+        int i = 0;
+        for (Jugador jugador : jugadores.values()) {
+            int sobran = jugador.cantidad - historialPorJugador;
+            if (sobran > 0) {
+                System.arraycopy(jugador.posiciones, 0, excedentes, i, sobran);
+                i += sobran;
+            }
+        }
+        return excedentes;
+    }
+    
+    /**
+     * Indica si un registro debe conservarse aunque exceda el historial:
+     * está (o empata con el último) en el ranking, o es el mejor de su
+     * jugador. Así la compactación no cambia el ranking ni los mejores.
+     * 
+     * @param nombreJugador Nombre del jugador
+     * @param puntaje Puntaje del registro
+     * @param tiempoSegundos Tiempo del registro
+     * @return true si no se puede descartar
+     */
+    public synchronized boolean esProtegido(String nombreJugador, int puntaje, long tiempoSegundos) {
+        if (ranking.size() < TAMANIO_RANKING || !peorQue(puntaje, tiempoSegundos, ranking.last())) {
+            return true;
+        }
+        Jugador jugador = jugadores.get(nombreJugador);
+        return jugador != null && !peorQue(puntaje, tiempoSegundos, jugador.mejor);
+    }
+    
+    private static boolean peorQue(int puntaje, long tiempoSegundos, Entrada entrada) {
+        int puntajeEntrada = entrada.registro.getPuntaje();
+        return puntaje < puntajeEntrada
+            || (puntaje == puntajeEntrada && tiempoSegundos > entrada.registro.getTiempoSegundos());
+    }
+    
+    /**
+     * Actualiza las posiciones de un segmento reescrito por la compactación
+     * y descuenta de los totales los registros descartados.
+     * 
+     * @param numeroSegmento Número del segmento compactado
+     * @param nuevaPosicion Nuevo índice de cada registro del segmento, o -1 si se descartó
+     * @param descartados Registros descartados
+     * @param puntajesDescartados Suma de los puntajes descartados
+     * @param tiemposDescartados Suma de los tiempos descartados
+     */
+    public synchronized void compactado(int numeroSegmento, int[] nuevaPosicion, long descartados,
+                                        long puntajesDescartados, long tiemposDescartados) {
+        for (Jugador jugador : jugadores.values()) {
+            int conservadas = 0;
+            for (int i = 0; i < jugador.cantidad; i++) {
+                long posicion = jugador.posiciones[i];
+                if (SegmentoResultados.numeroDe(posicion) == numeroSegmento) {
+                    int nueva = nuevaPosicion[(int) SegmentoResultados.registroDe(posicion)];
+                    if (nueva < 0) {
+                        continue;
+                    }
+                    posicion = SegmentoResultados.posicion(numeroSegmento, nueva);
+                }
+                jugador.posiciones[conservadas++] = posicion;
+            }
+            jugador.cantidad = conservadas;
+        }
+        
+        cantidad -= descartados;
+        sumaPuntajes -= puntajesDescartados;
+        sumaTiempos -= tiemposDescartados;
+    }
+    
+    public synchronized long getCantidad() {
+        return cantidad;
+    }
+    
+    public synchronized int getCantidadJugadores() {
+        return jugadores.size();
+    }
+    
+    public synchronized double getPuntajePromedio() {
+        return cantidad == 0 ? 0 : (double) sumaPuntajes / cantidad;
+    }
+    
+    public synchronized double getTiempoPromedio() {
+        return cantidad == 0 ? 0 : (double) sumaTiempos / cantidad;
+    }
+    
+    /**
+     * Escribe el índice completo como instantánea.
+     * 
+     * @param salida Flujo de destino
+     * @throws IOException Si hay error de escritura
+     */
+    public synchronized void escribir(DataOutputStream salida) throws IOException {
+        salida.writeLong(cantidad);
+        salida.writeLong(sumaPuntajes);
+        salida.writeLong(sumaTiempos);
+        salida.writeLong(siguienteOrden);
+        
+        // El ranking puede tener entradas que ya no son el mejor de su jugador
+        salida.writeInt(ranking.size());
+        for (Entrada entrada : ranking) {
+            escribirEntrada(salida, entrada);
+        }
+        salida.writeInt(jugadores.size());
+        for (Jugador jugador : jugadores.values()) {
+            escribirEntrada(salida, jugador.mejor);
+            salida.writeInt(jugador.cantidad);
+            for (int i = 0; i < jugador.cantidad; i++) {
+                salida.writeLong(jugador.posiciones[i]);
+            }
+        }
+    }
+    
+    /**
+     * Reemplaza el contenido del índice por una instantánea.
+     * 
+     * @param entrada Flujo de origen
+     * @throws IOException Si hay error de lectura o la instantánea está dañada
+     */
+    public synchronized void leer(DataInputStream entrada) throws IOException {
+        reiniciar();
+        cantidad = entrada.readLong();
+        sumaPuntajes = entrada.readLong();
+        sumaTiempos = entrada.readLong();
+        siguienteOrden = entrada.readLong();
+        
+        int enRanking = entrada.readInt();
+        for (int i = 0; i < enRanking; i++) {
+            ranking.add(leerEntrada(entrada));
+        }
+        int cantidadJugadores = entrada.readInt();
+        for (int i = 0; i < cantidadJugadores; i++) {
+            Jugador jugador = new Jugador();
+            jugador.mejor = leerEntrada(entrada);
+            jugador.cantidad = entrada.readInt();
+            jugador.posiciones = new long[Math.max(4, jugador.cantidad)];
+            for (int p = 0; p < jugador.cantidad; p++) {
+                jugador.posiciones[p] = entrada.readLong();
+            }
+            jugadores.put(jugador.mejor.registro.getNombreJugador(), jugador);
+        }
+    }
+    
+    private static void escribirEntrada(DataOutputStream salida, Entrada entrada)
+            throws IOException {
+        salida.writeUTF(entrada.registro.getNombreJugador());
+        salida.writeInt(entrada.registro.getPuntaje());
+        salida.writeLong(entrada.registro.getTiempoSegundos());
+        salida.writeLong(entrada.orden);
+    }
+    
+    private static Entrada leerEntrada(DataInputStream entrada) throws IOException {
+        RegistroJuego registro = new RegistroJuego(entrada.readUTF(), entrada.readInt(),
+            entrada.readLong());
+        return new Entrada(registro, entrada.readLong());
+    }
+}
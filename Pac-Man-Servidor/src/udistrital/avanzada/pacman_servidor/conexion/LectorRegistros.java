@@ -0,0 +1,214 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * Recorre secuencialmente un rango de registros de un segmento de resultados.
+ * Lee bloques grandes y contiguos con lecturas posicionales del canal (sin
+ * seek por registro) y los decodifica en un BloqueRegistros que se
+ * reutiliza en cada bloque.
+ * 
+ * En el formato antiguo cada bloque es una sola lectura de tamaño exacto.
+ * En el compacto los registros tienen tamaño variable: se leen tramos de
+ * tamaño fijo, se verifica el CRC de cada registro al decodificarlo y lo
+ * que queda de un registro cortado pasa al principio del tramo siguiente.
+ * 
+ * Se divide por la mitad del rango, siempre en un límite de bloque (que
+ * también es una entrada del índice disperso del segmento), así que sirve
+ * para recorridos paralelos: cada parte tiene su propio buffer y su propio
+ * bloque. Las lecturas posicionales de FileChannel pueden hacerse desde
+ * varios hilos a la vez.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class LectorRegistros implements Spliterator<BloqueRegistros> {
+    
+    /**
+     * Registros por bloque (unos 450 KB por lectura)
+     */
+    public static final int REGISTROS_POR_BLOQUE = 4096;
+    
+    /**
+     * Bytes por lectura en el formato compacto (unos 10.000 registros típicos)
+     */
+    private static final int TAMANIO_TRAMO = 256 * 1024;
+    
+    private final SegmentoResultados segmento;
+    private final FileChannel canal;
+    private final boolean compacto;
+    private long actual;
+    private long hasta;
+    private ByteBuffer buffer;
+    private BloqueRegistros bloque;
+    
+    // Formato compacto: posición en el archivo del inicio del buffer, el
+    // siguiente registro dentro del buffer y si ya se ubicó el actual
+    private long inicioBuffer;
+    private int siguiente;
+    private boolean ubicado;
+    
+    /**
+     * Constructor del lector.
+     * 
+     * @param segmento Segmento a recorrer
+     * @param desde Índice del primer registro
+     * @param hasta Índice siguiente al último registro (ya escrito)
+     */
+    public LectorRegistros(SegmentoResultados segmento, long desde, long hasta) {
+        this.segmento = segmento;
+        this.canal = segmento.getCanal();
+        this.compacto = segmento.getFormato() == SegmentoResultados.Formato.COMPACTO;
+        this.actual = desde;
+        this.hasta = hasta;
+    }
+    
+    /**
+     * Crea un flujo de bloques sobre un rango de registros. Con parallel()
+     * los bloques se leen y procesan en paralelo; como se reutilizan, las
+     * operaciones no deben guardar bloques, solo lo que calculen de ellos.
+     * 
+     * @param segmento Segmento a recorrer
+     * @param desde Índice del primer registro
+     * @param hasta Índice siguiente al último registro (ya escrito)
+     * @return Flujo secuencial de bloques
+     */
+    public static Stream<BloqueRegistros> flujo(SegmentoResultados segmento, long desde, long hasta) {
+        return StreamSupport.stream(new LectorRegistros(segmento, desde, hasta), false);
+    }
+    
+    @Override
+    public boolean tryAdvance(Consumer<? super BloqueRegistros> accion) {
+        if (actual >= hasta) {
+            return false;
+        }
+        
+        int cantidad = (int) Math.min(REGISTROS_POR_BLOQUE, hasta - actual);
+        try {
+            if (compacto) {
+                decodificarCompacto(cantidad);
+            } else {
+                leerBloque(cantidad);
+                bloque.decodificar(buffer, cantidad, actual);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al leer resultados", e);
+        }
+        actual += cantidad;
+        accion.accept(bloque);
+        return true;
+    }
+    
+    /**
+     * Lee del canal los bytes de los próximos registros.
+     * 
+     * @param cantidad Registros a leer
+     * @throws IOException Si hay error de lectura o el archivo se acortó
+     */
+    private void leerBloque(int cantidad) throws IOException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(REGISTROS_POR_BLOQUE * RegistroJuego.TAMANIO_REGISTRO);
+            bloque = new BloqueRegistros(REGISTROS_POR_BLOQUE);
+        }
+        
+        long posicion = actual * RegistroJuego.TAMANIO_REGISTRO;
+        buffer.clear();
+        buffer.limit(cantidad * RegistroJuego.TAMANIO_REGISTRO);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) {
+                throw new IOException("Fin de archivo inesperado");
+            }
+        }
+    }
+    
+    /**
+     * Decodifica los próximos registros de un segmento compacto, leyendo
+     * más del canal cada vez que el buffer se queda sin un registro completo.
+     * 
+     * @param cantidad Registros a decodificar
+     * @throws IOException Si hay error de lectura o un registro está dañado
+     */
+    private void decodificarCompacto(int cantidad) throws IOException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(TAMANIO_TRAMO);
+            bloque = new BloqueRegistros(REGISTROS_POR_BLOQUE);
+        }
+        
+        // Desde la entrada del índice disperso se saltan los registros anteriores
+        int i = 0;
+        if (!ubicado) {
+            inicioBuffer = segmento.desplazamiento(actual);
+            buffer.clear().limit(0);
+            siguiente = 0;
+            ubicado = true;
+            i = -(int) (actual % SegmentoResultados.INTERVALO_INDICE);
+        }
+        
+        bloque.preparar(cantidad, actual);
+        while (i < cantidad) {
+            int longitud = FormatoCompacto.medir(buffer, siguiente, buffer.limit());
+            if (longitud == FormatoCompacto.INCOMPLETO) {
+                rellenar();
+                continue;
+            }
+            if (longitud == FormatoCompacto.DANIADO) {
+                throw new IOException("Registro dañado en " + segmento.getRuta() + " cerca del registro "
+                    + (actual + Math.max(i, 0)));
+            }
+            if (i >= 0) {
+                FormatoCompacto.decodificar(buffer, siguiente, bloque, i);
+            }
+            siguiente += longitud;
+            i++;
+        }
+    }
+    
+    /**
+     * Conserva el registro cortado al final del buffer y lee lo que sigue.
+     * 
+     * @throws IOException Si hay error de lectura o el archivo se acortó
+     */
+    private void rellenar() throws IOException {
+        inicioBuffer += siguiente;
+        buffer.position(siguiente);
+        buffer.compact();
+        if (canal.read(buffer, inicioBuffer + buffer.position()) < 0) {
+            throw new IOException("Fin de archivo inesperado");
+        }
+        buffer.flip();
+        siguiente = 0;
+    }
+    
+    @Override
+    public Spliterator<BloqueRegistros> trySplit() {
+        long restantes = hasta - actual;
+        if (restantes < 2L * REGISTROS_POR_BLOQUE) {
+            return null;
+        }
+        
+        // Por ser ORDERED se entrega la primera mitad, alineada a bloques completos
+        long mitad = actual + (restantes / 2 / REGISTROS_POR_BLOQUE) * REGISTROS_POR_BLOQUE;
+        LectorRegistros primera = new LectorRegistros(segmento, actual, mitad);
+        actual = mitad;
+        ubicado = false;
+        return primera;
+    }
+    
+    @Override
+    public long estimateSize() {
+        return (hasta - actual + REGISTROS_POR_BLOQUE - 1) / REGISTROS_POR_BLOQUE;
+    }
+    
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | SIZED | SUBSIZED;
+    }
+}
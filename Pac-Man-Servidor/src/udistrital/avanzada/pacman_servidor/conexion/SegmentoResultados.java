@@ -0,0 +1,464 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * Un archivo del registro segmentado de resultados: registros contiguos
+ * en uno de dos formatos. El antiguo usa registros de tamaño fijo sin
+ * cabecera; el compacto (ver FormatoCompacto) empieza con una cabecera y
+ * usa registros de tamaño variable con CRC. El formato se reconoce al
+ * abrir el archivo. Solo el último segmento recibe registros nuevos; los
+ * anteriores están sellados y solo cambian al compactarse, que los
+ * reescribe completos en un archivo nuevo.
+ * 
+ * La posición de un registro en el registro segmentado es el número del
+ * segmento en los 32 bits altos y el índice dentro del segmento en los
+ * bajos: no cambia al agregar registros ni al compactar otros segmentos.
+ * 
+ * En el formato compacto un registro no se ubica multiplicando, así que
+ * el segmento guarda en memoria un índice disperso con la posición en
+ * bytes de uno de cada INTERVALO_INDICE registros.
+ * 
+ * El archivo se cierra cuando se suelta la última referencia: la del
+ * registro segmentado, que la suelta al reemplazar o borrar el segmento,
+ * y una por cada lector que lo esté recorriendo.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class SegmentoResultados {
+    
+    /**
+     * Formato de los registros de un segmento.
+     */
+    public enum Formato {
+        /** Tamaño fijo: nombre en 50 chars UTF-16, int y long */
+        LEGADO,
+        /** Tamaño variable con cabecera y CRC (FormatoCompacto) */
+        COMPACTO
+    }
+    
+    /**
+     * Registros entre dos entradas del índice disperso
+     */
+    public static final int INTERVALO_INDICE = 64;
+    
+    /**
+     * Bytes leídos por vez al recorrer un segmento compacto al abrirlo
+     */
+    private static final int TAMANIO_LECTURA = 256 * 1024;
+    
+    private final int numero;
+    private final Path ruta;
+    private final FileChannel canal;
+    private volatile Formato formato;
+    private volatile long cantidad;
+    private volatile long bytes;
+    
+    // Posición en bytes de los registros 0, INTERVALO_INDICE, 2 * INTERVALO_INDICE...
+    // Las entradas se escriben antes de publicar la nueva cantidad
+    private volatile long[] desplazamientos = new long[16];
+    
+    // Solo lo usa el escritor del segmento
+    private ByteBuffer bufferEscritura;
+    
+    // La del registro segmentado y una por lector; con 0 el canal está cerrado
+    private final AtomicInteger referencias = new AtomicInteger(1);
+    
+    private SegmentoResultados(int numero, Path ruta, FileChannel canal, Formato formato) {
+        this.numero = numero;
+        this.ruta = ruta;
+        this.canal = canal;
+        this.formato = formato;
+    }
+    
+    /**
+     * Abre (o crea) un segmento. Un registro a medias al final, de una
+     * escritura interrumpida, se descarta para no desalinear los siguientes;
+     * en el formato compacto también se descarta desde el primer registro
+     * cuyo CRC no coincide.
+     * 
+     * @param ruta Archivo del segmento
+     * @param numero Número del segmento
+     * @param formato Formato a usar si el archivo está vacío
+     * @return Segmento abierto
+     * @throws IOException Si no se puede abrir el archivo o su versión no es soportada
+     */
+    public static SegmentoResultados abrir(Path ruta, int numero, Formato formato)
+            throws IOException {
+        FileChannel canal = FileChannel.open(ruta,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            SegmentoResultados segmento;
+            if (esCompacto(canal)) {
+                segmento = new SegmentoResultados(numero, ruta, canal, Formato.COMPACTO);
+                segmento.recorrerAlAbrir();
+            } else {
+                segmento = new SegmentoResultados(numero, ruta, canal, Formato.LEGADO);
+                long tamanio = canal.size() - canal.size() % RegistroJuego.TAMANIO_REGISTRO;
+                if (tamanio != canal.size()) {
+                    canal.truncate(tamanio);
+                }
+                segmento.cantidad = tamanio / RegistroJuego.TAMANIO_REGISTRO;
+                segmento.bytes = tamanio;
+                if (tamanio == 0) {
+                    segmento.vaciar(formato);
+                }
+            }
+            return segmento;
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Lee la cabecera del archivo, si la tiene.
+     * 
+     * @param canal Canal del archivo
+     * @return true si el archivo es de formato compacto
+     * @throws IOException Si hay error de lectura o la versión no es soportada
+     */
+    private static boolean esCompacto(FileChannel canal) throws IOException {
+        if (canal.size() < FormatoCompacto.TAMANIO_CABECERA) {
+            return false;
+        }
+        ByteBuffer cabecera = ByteBuffer.allocate(FormatoCompacto.TAMANIO_CABECERA);
+        while (cabecera.hasRemaining()) {
+            canal.read(cabecera, cabecera.position());
+        }
+        if (cabecera.getInt(0) != FormatoCompacto.MAGIA) {
+            return false;
+        }
+        int version = cabecera.getInt(4);
+        if (version != FormatoCompacto.VERSION) {
+            throw new IOException("Versión de formato no soportada: " + version);
+        }
+        return true;
+    }
+    
+    /**
+     * Recorre un segmento compacto para contar sus registros, construir el
+     * índice disperso y descartar lo que haya después del último registro
+     * completo y válido.
+     * 
+     * @throws IOException Si hay error de lectura
+     */
+    private void recorrerAlAbrir() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_LECTURA);
+        long inicioBuffer = FormatoCompacto.TAMANIO_CABECERA;
+        long registros = 0;
+        int longitud;
+        
+        while (true) {
+            int leidos = canal.read(buffer, inicioBuffer + buffer.position());
+            buffer.flip();
+            int p = 0;
+            while ((longitud = FormatoCompacto.medir(buffer, p, buffer.limit())) > 0) {
+                if (registros % INTERVALO_INDICE == 0) {
+                    anotar(registros, inicioBuffer + p);
+                }
+                p += longitud;
+                registros++;
+            }
+            inicioBuffer += p;
+            if (longitud == FormatoCompacto.DANIADO || leidos < 0) {
+                break;
+            }
+            buffer.position(p);
+            buffer.compact();
+        }
+        
+        cantidad = registros;
+        bytes = inicioBuffer;
+        if (canal.size() != bytes) {
+            if (longitud == FormatoCompacto.DANIADO) {
+                System.err.println("Registro dañado en " + ruta + ": se descartan "
+                    + (canal.size() - bytes) + " bytes desde el registro " + registros);
+            }
+            canal.truncate(bytes);
+        }
+    }
+    
+    /**
+     * Anota en el índice disperso la posición de un registro múltiplo del intervalo.
+     */
+    private void anotar(long registro, long posicion) {
+        int entrada = (int) (registro / INTERVALO_INDICE);
+        long[] actuales = desplazamientos;
+        if (entrada == actuales.length) {
+            actuales = Arrays.copyOf(actuales, entrada * 2);
+        }
+        actuales[entrada] = posicion;
+        desplazamientos = actuales;
+    }
+    
+    /**
+     * Combina un número de segmento y un índice en una posición.
+     * 
+     * @param numero Número del segmento
+     * @param registro Índice del registro dentro del segmento
+     * @return Posición en el registro segmentado
+     */
+    public static long posicion(int numero, long registro) {
+        return ((long) numero << 32) | registro;
+    }
+    
+    public static int numeroDe(long posicion) {
+        return (int) (posicion >>> 32);
+    }
+    
+    public static long registroDe(long posicion) {
+        return posicion & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Codifica registros en el formato del segmento y los escribe al final
+     * en una sola escritura. Solo lo llama un escritor a la vez.
+     * 
+     * @param registros Registros a agregar
+     * @throws IOException Si hay error de escritura
+     */
+    public void agregar(List<RegistroJuego> registros) throws IOException {
+        boolean compacto = formato == Formato.COMPACTO;
+        int maximo = registros.size()
+            * (compacto ? FormatoCompacto.TAMANIO_MAXIMO : RegistroJuego.TAMANIO_REGISTRO);
+        if (bufferEscritura == null || bufferEscritura.capacity() < maximo) {
+            bufferEscritura = ByteBuffer.allocate(Math.max(maximo, 16 * RegistroJuego.TAMANIO_REGISTRO));
+        }
+        
+        long inicio = bytes;
+        long registro = cantidad;
+        ByteBuffer datos = bufferEscritura.clear();
+        for (RegistroJuego nuevo : registros) {
+            if (compacto) {
+                if (registro % INTERVALO_INDICE == 0) {
+                    anotar(registro, inicio + datos.position());
+                }
+                FormatoCompacto.codificar(nuevo, datos);
+            } else {
+                codificarLegado(nuevo, datos);
+            }
+            registro++;
+        }
+        datos.flip();
+        
+        long posicion = inicio;
+        while (datos.hasRemaining()) {
+            posicion += canal.write(datos, posicion);
+        }
+        bytes = posicion;
+        cantidad = registro;
+    }
+    
+    /**
+     * Codifica un registro con el formato antiguo: igual que writeChar,
+     * writeInt y writeLong de RandomAccessFile.
+     * 
+     * @param registro Registro a codificar
+     * @param buffer Buffer de destino (big-endian)
+     */
+    private static void codificarLegado(RegistroJuego registro, ByteBuffer buffer) {
+        // Nombre (siempre 50 caracteres, rellenado con espacios, 2 bytes por char)
+        String nombre = registro.getNombreJugador();
+        for (int i = 0; i < RegistroJuego.LONGITUD_NOMBRE; i++) {
+            buffer.putChar(i < nombre.length() ? nombre.charAt(i) : ' ');
+        }
+        
+        // Puntaje (4 bytes) y tiempo (8 bytes)
+        buffer.putInt(registro.getPuntaje());
+        buffer.putLong(registro.getTiempoSegundos());
+    }
+    
+    /**
+     * Obtiene la posición en bytes desde donde leer un registro: la del
+     * propio registro en el formato antiguo y, en el compacto, la de la
+     * entrada del índice disperso anterior, desde la que hay que saltar
+     * registro % INTERVALO_INDICE registros.
+     * 
+     * @param registro Índice de un registro ya escrito
+     * @return Posición en bytes en el archivo
+     */
+    public long desplazamiento(long registro) {
+        if (formato == Formato.LEGADO) {
+            return registro * RegistroJuego.TAMANIO_REGISTRO;
+        }
+        return desplazamientos[(int) (registro / INTERVALO_INDICE)];
+    }
+    
+    /**
+     * Lee los bytes de un registro, tal como están en el archivo.
+     * 
+     * @param registro Índice del registro dentro del segmento
+     * @return Bytes del registro
+     * @throws IOException Si hay error de lectura o el registro está dañado
+     */
+    public byte[] leerBytes(long registro) throws IOException {
+        long inicio = desplazamiento(registro);
+        if (formato == Formato.LEGADO) {
+            return leerTramo(inicio, RegistroJuego.TAMANIO_REGISTRO).array();
+        }
+        
+        int saltar = (int) (registro % INTERVALO_INDICE);
+        int longitud = (int) Math.min(bytes - inicio, (long) (saltar + 1) * FormatoCompacto.TAMANIO_MAXIMO);
+        ByteBuffer tramo = leerTramo(inicio, longitud);
+        int p = 0;
+        for (int i = 0; ; i++) {
+            int medida = FormatoCompacto.medir(tramo, p, tramo.limit());
+            if (medida < 0) {
+                throw new IOException("Registro dañado en " + ruta + ": " + registro);
+            }
+            if (i == saltar) {
+                return Arrays.copyOfRange(tramo.array(), p, p + medida);
+            }
+            p += medida;
+        }
+    }
+    
+    private ByteBuffer leerTramo(long inicio, int longitud) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(longitud);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, inicio + buffer.position()) < 0) {
+                throw new IOException("Fin de archivo inesperado");
+            }
+        }
+        return buffer.flip();
+    }
+    
+    /**
+     * Lee un registro.
+     * 
+     * @param registro Índice del registro dentro del segmento
+     * @return Registro leído
+     * @throws IOException Si hay error de lectura
+     */
+    public RegistroJuego leer(long registro) throws IOException {
+        BloqueRegistros bloque = new BloqueRegistros(1);
+        ByteBuffer datos = ByteBuffer.wrap(leerBytes(registro));
+        if (formato == Formato.LEGADO) {
+            bloque.decodificar(datos, 1, registro);
+        } else {
+            bloque.preparar(1, registro);
+            FormatoCompacto.decodificar(datos, 0, bloque, 0);
+        }
+        return bloque.getRegistro(0);
+    }
+    
+    /**
+     * Recorre los registros del segmento escritos hasta ahora.
+     * 
+     * @param desde Índice del primer registro
+     * @return Flujo de bloques, en orden
+     */
+    public Stream<BloqueRegistros> recorrer(long desde) {
+        return LectorRegistros.flujo(this, desde, cantidad);
+    }
+    
+    public int getNumero() {
+        return numero;
+    }
+    
+    public Path getRuta() {
+        return ruta;
+    }
+    
+    public FileChannel getCanal() {
+        return canal;
+    }
+    
+    public Formato getFormato() {
+        return formato;
+    }
+    
+    public long getCantidad() {
+        return cantidad;
+    }
+    
+    /**
+     * Obtiene los bytes ocupados por el segmento, cabecera incluida.
+     * 
+     * @return Tamaño en bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * Fuerza a disco lo escrito en el segmento.
+     * 
+     * @throws IOException Si falla la sincronización
+     */
+    public void forzar() throws IOException {
+        canal.force(false);
+    }
+    
+    /**
+     * Borra todos los registros del segmento; los siguientes se escriben
+     * en el formato indicado.
+     * 
+     * @param nuevoFormato Formato de los registros siguientes
+     * @throws IOException Si hay error al truncar o escribir la cabecera
+     */
+    public void vaciar(Formato nuevoFormato) throws IOException {
+        canal.truncate(0);
+        cantidad = 0;
+        bytes = 0;
+        formato = nuevoFormato;
+        if (nuevoFormato == Formato.COMPACTO) {
+            ByteBuffer cabecera = ByteBuffer.allocate(FormatoCompacto.TAMANIO_CABECERA);
+            FormatoCompacto.escribirCabecera(cabecera);
+            cabecera.flip();
+            while (cabecera.hasRemaining()) {
+                canal.write(cabecera, cabecera.position());
+            }
+            bytes = FormatoCompacto.TAMANIO_CABECERA;
+        }
+    }
+    
+    /**
+     * Toma una referencia al segmento para leerlo: el archivo no se cierra
+     * hasta que se libere.
+     * 
+     * @return false si el segmento ya se cerró
+     */
+    public boolean adquirir() {
+        int actuales;
+        do {
+            actuales = referencias.get();
+            if (actuales == 0) {
+                return false;
+            }
+        } while (!referencias.compareAndSet(actuales, actuales + 1));
+        return true;
+    }
+    
+    /**
+     * Suelta una referencia; al soltar la última se cierra el archivo.
+     */
+    public void liberar() {
+        if (referencias.decrementAndGet() == 0) {
+            cerrar();
+        }
+    }
+    
+    /**
+     * Cierra el archivo del segmento sin esperar a sus lectores. Solo para
+     * segmentos que nadie más conoce (como el temporal de una compactación).
+     */
+    public void cerrar() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar segmento " + ruta + ": " + e.getMessage());
+        }
+    }
+}
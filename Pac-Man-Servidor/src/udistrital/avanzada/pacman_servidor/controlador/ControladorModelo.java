@@ -14,15 +14,27 @@ import udistrital.avanzada.pacman_servidor.modelo.*;
 public class ControladorModelo {
     
     private Juego juego;
+    private Runnable accionCambio;
+    
+    /**
+     * Establece la acción a ejecutar cada vez que cambia el estado del juego.
+     * El streaming la usa para emitir frames solo cuando hay cambios.
+     * 
+     * @param accion Runnable a notificar tras cada cambio
+     */
+    public void setAccionCambio(Runnable accion) {
+        this.accionCambio = accion;
+    }
     
     /**
      * Crea un nuevo juego.
      * 
      * @param anchoVentana Ancho del área de juego
      * @param altoVentana Alto del área de juego
+     * @param cantidadFrutas Cantidad de frutas a generar
      */
-    public void crearJuego(int anchoVentana, int altoVentana) {
-        this.juego = new Juego(anchoVentana, altoVentana);
+    public void crearJuego(int anchoVentana, int altoVentana, int cantidadFrutas) {
+        this.juego = new Juego(anchoVentana, altoVentana, cantidadFrutas);
     }
     
     /**
@@ -33,20 +45,42 @@ public class ControladorModelo {
     public void inicializarJuego(String nombreJugador) {
         if (juego != null) {
             juego.inicializar(nombreJugador);
+            notificarCambio();
         }
     }
     
     /**
-     * Procesa un movimiento de Pac-Man.
+     * Encola un movimiento de Pac-Man; se ejecuta en los ticks siguientes.
      * 
      * @param direccion Dirección del movimiento
-     * @return Resultado del movimiento
+     * @return false si no hay juego o hay demasiados movimientos en espera
      */
-    public ResultadoMovimiento moverPacMan(Direccion direccion) {
-        if (juego != null) {
-            return juego.moverPacMan(direccion);
+    public boolean encolarMovimiento(Direccion direccion) {
+        return juego != null && juego.encolarMovimiento(direccion);
+    }
+    
+    /**
+     * Avanza la simulación del juego un tick y notifica si algo cambió.
+     * 
+     * @return Resultado del movimiento que terminó en este tick, o null
+     */
+    public ResultadoMovimiento avanzarTick() {
+        if (juego == null) {
+            return null;
+        }
+        if (juego.avanzarTick()) {
+            notificarCambio();
+        }
+        return juego.tomarMovimientoCompletado();
+    }
+    
+    /**
+     * Notifica que el estado del juego cambió.
+     */
+    private void notificarCambio() {
+        if (accionCambio != null) {
+            accionCambio.run();
         }
-        return null;
     }
     
     /**
@@ -60,6 +94,17 @@ public class ControladorModelo {
         }
     }
     
+    /**
+     * Copia el estado visible del juego en una instantánea.
+     * 
+     * @param destino Instantánea a llenar
+     */
+    public void capturarEstado(EstadoJuego destino) {
+        if (juego != null) {
+            juego.capturarEstado(destino);
+        }
+    }
+    
     /**
      * Verifica si el juego terminó.
      * 
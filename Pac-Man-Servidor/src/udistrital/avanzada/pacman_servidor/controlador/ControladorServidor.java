@@ -1,6 +1,7 @@
 package udistrital.avanzada.pacman_servidor.controlador;
 
 import javax.swing.*;
+import java.awt.GraphicsEnvironment;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
@@ -9,9 +10,12 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.sql.SQLException;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import udistrital.avanzada.pacman_servidor.conexion.*;
 import udistrital.avanzada.pacman_servidor.dao.*;
 import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+import udistrital.avanzada.pacman_servidor.red.ServidorNIO;
 import udistrital.avanzada.pacman_servidor.util.*;
 import udistrital.avanzada.pacman_servidor.vista.PanelJuego;
 import udistrital.avanzada.pacman_servidor.vista.VentanaJuego;
@@ -28,7 +32,9 @@ public class ControladorServidor {
     
     // Controladores especializados
     private ControladorVista controladorVista;
-    private ControladorModelo controladorModelo;
+    
+    // Sesiones de juego activas (una por cliente)
+    private RegistroSesiones registroSesiones;
     
     // Configuración
     private ConfiguracionServidor config;
@@ -40,14 +46,20 @@ public class ControladorServidor {
     
     // Servidor
     private ServerSocket serverSocket;
-    private boolean servidorActivo;
+    private ServidorNIO servidorNIO;
+    
+    // Executors de sesiones (modos HILOS/VIRTUALES), de streaming y de simulación
+    private ExecutorService ejecutorSesiones;
+    private ExecutorService ejecutorStreaming;
+    private MotorSimulacion motorSimulacion;
+    private volatile boolean servidorActivo;
     
     /**
      * Constructor que inicializa los controladores especializados.
      */
     public ControladorServidor() {
         this.controladorVista = new ControladorVista();
-        this.controladorModelo = new ControladorModelo();
+        this.registroSesiones = new RegistroSesiones();
         this.servidorActivo = false;
     }
     
@@ -64,6 +76,22 @@ public class ControladorServidor {
         controladorVista.agregarLog("Esperando configuración...");
     }
     
+    /**
+     * Inicia el servidor sin interfaz gráfica (hosts headless).
+     * Carga la configuración indicada y empieza a escuchar de inmediato.
+     * 
+     * @param archivoConfiguracion Archivo properties del servidor
+     */
+    public void iniciarSinInterfaz(File archivoConfiguracion) {
+        controladorVista.agregarLog("=== Servidor Pac-Man Iniciado (sin interfaz) ===");
+        cargarConfiguracion(archivoConfiguracion);
+        
+        // Solo se inicia si la configuración cargó correctamente
+        if (archivoManager != null) {
+            iniciarServidor();
+        }
+    }
+    
     /**
      * Configura los listeners de la ventana de inicio.
      */
@@ -120,18 +148,26 @@ public class ControladorServidor {
             inicializarBaseDeDatos();
             
             // Inicializar archivo de resultados
-            archivoManager = new ArchivoResultadosManager(config.getRutaArchivoResultados());
-            controladorVista.agregarLog("Archivo de resultados: " + config.getRutaArchivoResultados());
+            archivoManager = new ArchivoResultadosManager(config.getRutaArchivoResultados(),
+                ArchivoResultadosManager.PoliticaSincronizacion.valueOf(
+                    config.getSincronizacionResultados()),
+                config.getIntervaloSincronizacionResultados(),
+                config.getRegistrosPorSegmentoResultados(),
+                config.getHistorialPorJugador(),
+                config.getSegundosCompactacionResultados(),
+                SegmentoResultados.Formato.valueOf(config.getFormatoResultados()));
+            archivoManager.iniciar();
+            controladorVista.agregarLog("Archivo de resultados: " + config.getRutaArchivoResultados()
+                + " (sincronización " + config.getSincronizacionResultados()
+                + ", formato " + config.getFormatoResultados() + ")");
             
             // Habilitar botón de iniciar
             controladorVista.habilitarBotonIniciar(true);
             controladorVista.actualizarEstado("Configuración lista");
-            
+        
         } catch (IOException e) {
             controladorVista.agregarLog("ERROR: No se pudo cargar la configuración");
-            JOptionPane.showMessageDialog(controladorVista.getVentanaInicio(),
-                "Error al cargar configuración: " + e.getMessage(),
-                "Error", JOptionPane.ERROR_MESSAGE);
+            controladorVista.mostrarError("Error al cargar configuración: " + e.getMessage());
         }
     }
     
@@ -158,12 +194,10 @@ public class ControladorServidor {
             usuarioDAO.cargarUsuariosDesdeProperties(usuarios);
             
             controladorVista.agregarLog("Usuarios cargados: " + usuarios.size());
-            
+        
         } catch (SQLException | ClassNotFoundException e) {
             controladorVista.agregarLog("ERROR: No se pudo conectar a la BD");
-            JOptionPane.showMessageDialog(controladorVista.getVentanaInicio(),
-                "Error de base de datos: " + e.getMessage(),
-                "Error", JOptionPane.ERROR_MESSAGE);
+            controladorVista.mostrarError("Error de base de datos: " + e.getMessage());
         }
     }
     
@@ -173,53 +207,130 @@ public class ControladorServidor {
     private void iniciarServidor() {
         try {
             int puerto = config.getPuerto();
-            serverSocket = new ServerSocket(puerto);
-            servidorActivo = true;
-            
-            controladorVista.agregarLog("Servidor escuchando en puerto " + puerto);
-            controladorVista.actualizarEstado("Escuchando conexiones");
+            String modo = config.getModoConexiones();
+            crearEjecutores(modo);
             
-            // Hilo para escuchar conexiones
-            Thread hiloEscucha = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    escucharConexiones();
-                }
-            });
-            hiloEscucha.start();
+            if (modo.equals("NIO")) {
+                iniciarServidorNIO(puerto);
+            } else {
+                serverSocket = new ServerSocket(puerto, config.getBacklog());
+                servidorActivo = true;
+                
+                // Hilo para escuchar conexiones
+                Thread hiloEscucha = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        escucharConexiones();
+                    }
+                });
+                hiloEscucha.start();
+            }
             
+            controladorVista.agregarLog("Servidor escuchando en puerto " + puerto
+                + " (modo " + modo + ")");
+            controladorVista.actualizarEstado("Escuchando conexiones");
+        
         } catch (IOException e) {
             controladorVista.agregarLog("ERROR: No se pudo iniciar el servidor");
-            JOptionPane.showMessageDialog(controladorVista.getVentanaInicio(),
-                "Error al iniciar servidor: " + e.getMessage(),
-                "Error", JOptionPane.ERROR_MESSAGE);
+            controladorVista.mostrarError("Error al iniciar servidor: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Crea los executors según el modo de conexiones.
+     * HILOS: un hilo de plataforma por sesión y por streaming.
+     * VIRTUALES: sesiones y streaming en hilos virtuales.
+     * NIO: el motor usa sus propios hilos; el streaming va en hilos virtuales
+     * para que la cantidad de hilos de plataforma no crezca con los clientes.
+     * En todos los modos las partidas avanzan en el pool fijo de simulación.
+     * 
+     * @param modo Modo de conexiones configurado
+     */
+    private void crearEjecutores(String modo) {
+        motorSimulacion = new MotorSimulacion(config.getHilosSimulacion(),
+            config.getTicksPorSegundo(), config.getSegundosReporteSimulacion(),
+            this::agregarLog);
+        motorSimulacion.iniciar();
+        
+        if (modo.equals("HILOS")) {
+            ejecutorSesiones = Executors.newCachedThreadPool();
+            ejecutorStreaming = Executors.newCachedThreadPool(tarea -> {
+                Thread hilo = new Thread(tarea, "streaming");
+                hilo.setDaemon(true); // Para no bloquear el cierre
+                return hilo;
+            });
+        } else {
+            ejecutorSesiones = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("sesion-", 0).factory());
+            ejecutorStreaming = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("streaming-", 0).factory());
         }
     }
     
     /**
-     * Escucha conexiones de clientes en un bucle.
+     * Obtiene el executor donde corren los bucles de streaming de video.
+     * 
+     * @return Executor de streaming
+     */
+    public ExecutorService getEjecutorStreaming() {
+        return ejecutorStreaming;
+    }
+    
+    /**
+     * Obtiene el planificador de ticks compartido por las partidas.
+     * 
+     * @return Motor de simulación
+     */
+    public MotorSimulacion getMotorSimulacion() {
+        return motorSimulacion;
+    }
+    
+    /**
+     * Inicia el motor NIO: selectores y pool de trabajadores acotados.
+     * Cada conexión recibe su propio ProtocoloSesion.
+     * 
+     * @param puerto Puerto de escucha
+     * @throws IOException Si no se puede abrir el puerto
+     */
+    private void iniciarServidorNIO(int puerto) throws IOException {
+        servidorNIO = new ServidorNIO(puerto, config.getBacklog(),
+            config.getHilosSelectorNIO(),
+            config.getHilosTrabajadoresNIO(),
+            (salida, pendientes) -> new ProtocoloSesion(salida, pendientes, this, usuarioDAO,
+                registroSesiones, controladorVista, archivoManager, config),
+            this::agregarLog);
+        servidorNIO.setBufferEnvio(config.getBufferEnvioSocket());
+        servidorNIO.iniciar();
+        servidorActivo = true;
+    }
+    
+    /**
+     * Escucha conexiones de clientes en un bucle (modos HILOS y VIRTUALES).
      */
     private void escucharConexiones() {
         while (servidorActivo) {
             try {
                 controladorVista.agregarLog("Esperando cliente...");
                 Socket socketCliente = serverSocket.accept();
+                if (config.getBufferEnvioSocket() > 0) {
+                    socketCliente.setSendBufferSize(config.getBufferEnvioSocket());
+                }
                 
                 String ipCliente = socketCliente.getInetAddress().getHostAddress();
                 controladorVista.agregarLog("Cliente conectado desde: " + ipCliente);
                 
-                // Lanzar hilo para atender al cliente
+                // Lanzar la sesión en el executor del modo configurado
                 HiloClienteServidor hiloCliente = new HiloClienteServidor(
                     socketCliente,
                     this,
                     usuarioDAO,
-                    controladorModelo,
+                    registroSesiones,
                     controladorVista,
                     archivoManager,
                     config
                 );
-                hiloCliente.start();
-                
+                ejecutorSesiones.execute(hiloCliente);
+            
             } catch (IOException e) {
                 if (servidorActivo) {
                     controladorVista.agregarLog("ERROR: Fallo al aceptar cliente");
@@ -242,19 +353,25 @@ public class ControladorServidor {
         });
     }
     
+    /**
+     * Indica si debe mostrarse la ventana de monitoreo de cada juego.
+     * Nunca se muestra en un entorno headless.
+     * 
+     * @return true si la ventana de juego está habilitada
+     */
+    public boolean isVentanaJuegoHabilitada() {
+        return config.isVentanaJuegoHabilitada() && !GraphicsEnvironment.isHeadless();
+    }
+    
     /**
      * Configura la acción de dibujar en el panel de juego.
-     * Inyecta la lógica desde el ControladorModelo.
+     * Inyecta la lógica desde el ControladorModelo de la sesión.
      * 
      * @param panelJuego Panel donde se dibuja
+     * @param controladorModelo Modelo de la sesión a dibujar
      */
-    public void configurarDibujadoJuego(PanelJuego panelJuego) {
-        panelJuego.setAccionDibujar(new Runnable() {
-            @Override
-            public void run() {
-                controladorModelo.dibujarJuego(panelJuego.getGraphics());
-            }
-        });
+    public void configurarDibujadoJuego(PanelJuego panelJuego, ControladorModelo controladorModelo) {
+        panelJuego.setAccionDibujar(controladorModelo::dibujarJuego);
     }
     
     /**
@@ -282,12 +399,23 @@ public class ControladorServidor {
             if (serverSocket != null) {
                 serverSocket.close();
             }
+            if (servidorNIO != null) {
+                servidorNIO.detener();
+            }
+            // Antes de interrumpir las sesiones: interrumpir un hilo que
+            // escribe en el archivo de resultados cerraría su canal
+            archivoManager.cerrar();
+            if (ejecutorSesiones != null) {
+                ejecutorSesiones.shutdownNow();
+                ejecutorStreaming.shutdownNow();
+                motorSimulacion.detener();
+            }
             if (conexionBD != null) {
                 conexionBD.cerrarConexion();
             }
             
             System.exit(0);
-            
+        
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null,
                 "Error al leer ranking: " + e.getMessage(),
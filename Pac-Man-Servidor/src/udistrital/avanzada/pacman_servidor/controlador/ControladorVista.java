@@ -1,5 +1,6 @@
 package udistrital.avanzada.pacman_servidor.controlador;
 
+import javax.swing.JOptionPane;
 import udistrital.avanzada.pacman_servidor.vista.VentanaInicioServidor;
 import udistrital.avanzada.pacman_servidor.vista.VentanaJuego;
 
@@ -7,6 +8,8 @@ import udistrital.avanzada.pacman_servidor.vista.VentanaJuego;
  * Controlador dedicado EXCLUSIVAMENTE a la vista.
  * NO conoce el modelo, NO toma decisiones de negocio.
  * Solo actúa como puente entre ControladorServidor y las ventanas.
+ * Sin ventana de inicio (modo headless) escribe el log en consola.
+ * Las ventanas de juego pertenecen a cada sesión y se reciben por parámetro.
  * 
  * @author Steban
  * @version 1.0
@@ -14,7 +17,6 @@ import udistrital.avanzada.pacman_servidor.vista.VentanaJuego;
 public class ControladorVista {
     
     private VentanaInicioServidor ventanaInicio;
-    private VentanaJuego ventanaJuego;
     
     // ========== VENTANA DE INICIO ==========
     
@@ -45,6 +47,22 @@ public class ControladorVista {
     public void agregarLog(String mensaje) {
         if (ventanaInicio != null) {
             ventanaInicio.agregarLog(mensaje);
+        } else {
+            System.out.println(mensaje);
+        }
+    }
+    
+    /**
+     * Muestra un error al operador (diálogo o consola en modo headless).
+     * 
+     * @param mensaje Mensaje de error
+     */
+    public void mostrarError(String mensaje) {
+        if (ventanaInicio != null) {
+            JOptionPane.showMessageDialog(ventanaInicio, mensaje,
+                "Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            System.err.println("ERROR: " + mensaje);
         }
     }
     
@@ -82,21 +100,22 @@ public class ControladorVista {
     // ========== VENTANA DE JUEGO ==========
     
     /**
-     * Crea la ventana de juego.
+     * Crea una ventana de juego para una sesión.
      * 
      * @param ancho Ancho de la ventana
      * @param alto Alto de la ventana
      * @return VentanaJuego creada
      */
     public VentanaJuego crearVentanaJuego(int ancho, int alto) {
-        ventanaJuego = new VentanaJuego(ancho, alto);
-        return ventanaJuego;
+        return new VentanaJuego(ancho, alto);
     }
     
     /**
      * Muestra la ventana de juego.
+     * 
+     * @param ventanaJuego Ventana de la sesión
      */
-    public void mostrarVentanaJuego() {
+    public void mostrarVentanaJuego(VentanaJuego ventanaJuego) {
         if (ventanaJuego != null) {
             ventanaJuego.setVisible(true);
         }
@@ -104,8 +123,10 @@ public class ControladorVista {
     
     /**
      * Oculta la ventana de juego.
+     * 
+     * @param ventanaJuego Ventana de la sesión
      */
-    public void ocultarVentanaJuego() {
+    public void ocultarVentanaJuego(VentanaJuego ventanaJuego) {
         if (ventanaJuego != null) {
             ventanaJuego.setVisible(false);
             ventanaJuego.dispose();
@@ -115,9 +136,10 @@ public class ControladorVista {
     /**
      * Actualiza el nombre del jugador en la vista.
      * 
+     * @param ventanaJuego Ventana de la sesión
      * @param nombre Nombre a mostrar
      */
-    public void actualizarNombreJugador(String nombre) {
+    public void actualizarNombreJugador(VentanaJuego ventanaJuego, String nombre) {
         if (ventanaJuego != null) {
             ventanaJuego.actualizarJugador(nombre);
         }
@@ -126,9 +148,10 @@ public class ControladorVista {
     /**
      * Actualiza el puntaje en la vista.
      * 
+     * @param ventanaJuego Ventana de la sesión
      * @param puntaje Puntaje a mostrar
      */
-    public void actualizarPuntaje(int puntaje) {
+    public void actualizarPuntaje(VentanaJuego ventanaJuego, int puntaje) {
         if (ventanaJuego != null) {
             ventanaJuego.actualizarPuntaje(puntaje);
         }
@@ -137,9 +160,10 @@ public class ControladorVista {
     /**
      * Actualiza el tiempo en la vista.
      * 
+     * @param ventanaJuego Ventana de la sesión
      * @param segundos Tiempo en segundos
      */
-    public void actualizarTiempo(long segundos) {
+    public void actualizarTiempo(VentanaJuego ventanaJuego, long segundos) {
         if (ventanaJuego != null) {
             ventanaJuego.actualizarTiempo(segundos);
         }
@@ -148,9 +172,10 @@ public class ControladorVista {
     /**
      * Actualiza las frutas restantes en la vista.
      * 
+     * @param ventanaJuego Ventana de la sesión
      * @param cantidad Cantidad de frutas
      */
-    public void actualizarFrutas(int cantidad) {
+    public void actualizarFrutas(VentanaJuego ventanaJuego, int cantidad) {
         if (ventanaJuego != null) {
             ventanaJuego.actualizarFrutas(cantidad);
         }
@@ -158,19 +183,12 @@ public class ControladorVista {
     
     /**
      * Solicita redibujar el panel de juego.
+     * 
+     * @param ventanaJuego Ventana de la sesión
      */
-    public void redibujarPanelJuego() {
+    public void redibujarPanelJuego(VentanaJuego ventanaJuego) {
         if (ventanaJuego != null) {
             ventanaJuego.getPanelJuego().redibujar();
         }
     }
-    
-    /**
-     * Obtiene la ventana de juego (para que el orquestador agregue listeners).
-     * 
-     * @return VentanaJuego
-     */
-    public VentanaJuego getVentanaJuego() {
-        return ventanaJuego;
-    }
 }
\ No newline at end of file
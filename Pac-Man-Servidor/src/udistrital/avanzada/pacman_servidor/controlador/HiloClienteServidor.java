@@ -1,55 +1,66 @@
 package udistrital.avanzada.pacman_servidor.controlador;
 
-import javax.swing.*;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
-import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import udistrital.avanzada.pacman_servidor.dao.*;
 import udistrital.avanzada.pacman_servidor.conexion.*;
-import udistrital.avanzada.pacman_servidor.modelo.*;
+import udistrital.avanzada.pacman_servidor.protocolo.DecodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
 import udistrital.avanzada.pacman_servidor.util.ConfiguracionServidor;
-import udistrital.avanzada.pacman_servidor.util.HiloEnvioFrames;
-import udistrital.avanzada.pacman_servidor.vista.*;
 
 /**
- * Hilo que atiende a un cliente conectado.
- * Gestiona autenticación, juego y cierre de sesión.
+ * Tarea que atiende a un cliente conectado (un hilo por cliente).
+ * Lee los mensajes del socket de forma bloqueante y los entrega a
+ * ProtocoloSesion, que gestiona autenticación, juego y cierre de sesión.
+ * Si el primer mensaje acepta el protocolo binario, los siguientes se
+ * leen como mensajes binarios.
+ * El servidor la ejecuta en un hilo de plataforma o en uno virtual.
+ * Las tareas del protocolo que no nacen de un mensaje (como el fin de la
+ * partida) corren en el executor de streaming, excluidas con el
+ * procesamiento de mensajes; si terminan la sesión, se cierra la entrada
+ * del socket para que el hilo lector salga de la lectura bloqueante.
  * 
  * @author Steban
  * @version 1.0
  */
-public class HiloClienteServidor extends Thread {
+public class HiloClienteServidor implements Runnable {
+    
+    /**
+     * Milisegundos que se espera a entregar el último mensaje antes de cerrar
+     */
+    private static final long ESPERA_VACIADO = 5000;
     
     private Socket socketCliente;
     private DataInputStream entrada;
     private DataOutputStream salida;
     
+    // Excluye el procesamiento de mensajes y las tareas del protocolo
+    private final Lock bloqueoProtocolo = new ReentrantLock();
+    
     // Controladores
     private ControladorServidor controladorServidor;
-    private ControladorModelo controladorModelo;
     private ControladorVista controladorVista;
+    private RegistroSesiones registroSesiones;
     
     // Servicios
     private UsuarioDAO usuarioDAO;
     private ArchivoResultadosManager archivoManager;
     private ConfiguracionServidor config;
     
-    // Estado del juego
-    private String nombreJugador;
-    private VentanaJuego ventanaJuego;
-    private HiloEnvioFrames hiloStreaming;
-    private volatile boolean juegoActivo;
-    private Timer timerActualizacion;
-    
     /**
      * Constructor del hilo.
      * 
      * @param socketCliente Socket del cliente conectado
      * @param controladorServidor Orquestador principal
      * @param usuarioDAO DAO para validación de usuarios
-     * @param controladorModelo Controlador del modelo
+     * @param registroSesiones Registro de sesiones activas
      * @param controladorVista Controlador de la vista
      * @param archivoManager Gestor del archivo de resultados
      * @param config Configuración del servidor
@@ -57,341 +68,166 @@ public class HiloClienteServidor extends Thread {
     public HiloClienteServidor(Socket socketCliente,
                                ControladorServidor controladorServidor,
                                UsuarioDAO usuarioDAO,
-                               ControladorModelo controladorModelo,
+                               RegistroSesiones registroSesiones,
                                ControladorVista controladorVista,
                                ArchivoResultadosManager archivoManager,
                                ConfiguracionServidor config) {
         this.socketCliente = socketCliente;
         this.controladorServidor = controladorServidor;
         this.usuarioDAO = usuarioDAO;
-        this.controladorModelo = controladorModelo;
+        this.registroSesiones = registroSesiones;
         this.controladorVista = controladorVista;
         this.archivoManager = archivoManager;
         this.config = config;
-        this.juegoActivo = false;
     }
     
     @Override
     public void run() {
+        ProtocoloSesion protocolo = null;
+        
         try {
             // Inicializar streams
-            entrada = new DataInputStream(socketCliente.getInputStream());
+            entrada = new DataInputStream(new BufferedInputStream(socketCliente.getInputStream()));
             salida = new DataOutputStream(socketCliente.getOutputStream());
             
             controladorServidor.agregarLog("Streams inicializados para cliente");
             
-            // Fase 1: Autenticación
-            if (!autenticar()) {
-                controladorServidor.agregarLog("Cliente rechazado - autenticación fallida");
-                return;
+            // Las escrituras son bloqueantes: no hay cola propia que medir
+            protocolo = new ProtocoloSesion(salida, () -> 0, controladorServidor, usuarioDAO,
+                registroSesiones, controladorVista, archivoManager, config);
+            ProtocoloSesion protocoloSesion = protocolo;
+            protocolo.setEjecutorConexion(tarea -> controladorServidor.getEjecutorStreaming()
+                .execute(() -> ejecutarTarea(protocoloSesion, tarea)));
+            protocolo.iniciar();
+            
+            // El primer mensaje decide el formato de los siguientes
+            String primerMensaje = entrada.readUTF();
+            boolean binario = protocolo.aceptaProtocoloBinario(primerMensaje);
+            procesarMensaje(protocolo, primerMensaje);
+            
+            // Entregar cada mensaje al protocolo hasta que termine la sesión
+            if (binario) {
+                recibirMensajesBinarios(protocolo);
+            } else {
+                while (protocolo.isActivo()) {
+                    procesarMensaje(protocolo, entrada.readUTF());
+                }
             }
-            
-            // Fase 2: Inicializar juego
-            inicializarJuego();
-            
-            // Fase 3: Bucle de juego
-            ejecutarBucleJuego();
-            
-            // Fase 4: Finalizar juego
-            finalizarJuego();
-            
+        
         } catch (IOException e) {
-            controladorServidor.agregarLog("Error en comunicación con cliente: " + e.getMessage());
+            // Tras el fin de la sesión la lectura termina al cerrar la entrada
+            if (protocolo == null || protocolo.isActivo()) {
+                controladorServidor.agregarLog("Error en comunicación con cliente: " + e.getMessage());
+            }
         } finally {
+            if (protocolo != null && !protocolo.isActivo()) {
+                esperarUltimoMensaje(protocolo);
+            }
+            if (protocolo != null) {
+                bloqueoProtocolo.lock();
+                try {
+                    protocolo.cerrar();
+                } finally {
+                    bloqueoProtocolo.unlock();
+                }
+            }
             cerrarRecursos();
         }
     }
     
     /**
-     * Autentica al cliente contra la base de datos.
+     * Espera a que salga el último mensaje (rechazo o resultado final)
+     * antes de cerrar el socket. Este hilo es propio del cliente, así que
+     * la espera no retiene a otras conexiones.
      * 
-     * @return true si la autenticación es exitosa, false en caso contrario
-     * @throws IOException Si hay error de comunicación
+     * @param protocolo Protocolo de la sesión terminada
      */
-    private boolean autenticar() throws IOException {
-        // Solicitar usuario
-        salida.writeUTF(TipoMensaje.AUTENTICACION.getCodigo());
-        salida.writeUTF("SOLICITUD_USUARIO");
-        salida.flush();
-        
-        String usuario = entrada.readUTF();
-        controladorServidor.agregarLog("Usuario recibido: " + usuario);
-        
-        // Solicitar password
-        salida.writeUTF(TipoMensaje.AUTENTICACION.getCodigo());
-        salida.writeUTF("SOLICITUD_PASSWORD");
-        salida.flush();
-        
-        String password = entrada.readUTF();
-        
-        // Validar con BD
+    private void esperarUltimoMensaje(ProtocoloSesion protocolo) {
+        CountDownLatch entregado = new CountDownLatch(1);
+        protocolo.alEntregarPendientes(entregado::countDown);
         try {
-            boolean esValido = usuarioDAO.validarCredenciales(usuario, password);
-            
-            if (esValido) {
-                this.nombreJugador = usuario;
-                
-                salida.writeUTF(TipoMensaje.AUTENTICACION.getCodigo());
-                salida.writeUTF("AUTENTICADO");
-                salida.flush();
-                
-                controladorServidor.agregarLog("Cliente autenticado: " + usuario);
-                return true;
-            } else {
-                salida.writeUTF(TipoMensaje.AUTENTICACION.getCodigo());
-                salida.writeUTF("RECHAZADO");
-                salida.flush();
-                
-                return false;
+            if (!entregado.await(ESPERA_VACIADO, TimeUnit.MILLISECONDS)) {
+                controladorServidor.agregarLog("No se pudo entregar el último mensaje al cliente");
             }
-            
-        } catch (SQLException e) {
-            controladorServidor.agregarLog("Error al validar usuario: " + e.getMessage());
-            
-            salida.writeUTF(TipoMensaje.AUTENTICACION.getCodigo());
-            salida.writeUTF("ERROR_BD");
-            salida.flush();
-            
-            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
     /**
-     * Inicializa el juego para el cliente autenticado.
-     * Crea ventana, modelo y hilo de streaming.
-     */
-    private void inicializarJuego() {
-        controladorServidor.agregarLog("Inicializando juego para: " + nombreJugador);
-        
-        // Crear juego en el modelo
-        int ancho = config.getAnchoVentana();
-        int alto = config.getAltoVentana();
-        controladorModelo.crearJuego(ancho, alto);
-        controladorModelo.inicializarJuego(nombreJugador);
-        
-        // Crear ventana de juego
-        ventanaJuego = controladorVista.crearVentanaJuego(ancho, alto);
-        
-        // Configurar dibujado
-        PanelJuego panel = ventanaJuego.getPanelJuego();
-        controladorServidor.configurarDibujadoJuego(panel);
-        
-        // Configurar botón salir (aunque el cliente no lo usará)
-        controladorServidor.configurarBotonSalirJuego(ventanaJuego);
-        
-        // Actualizar estadísticas iniciales
-        controladorVista.actualizarNombreJugador(nombreJugador);
-        controladorVista.actualizarPuntaje(0);
-        controladorVista.actualizarTiempo(0);
-        controladorVista.actualizarFrutas(4);
-        
-        // Mostrar ventana
-        controladorVista.mostrarVentanaJuego();
-        
-        // Iniciar streaming de video
-        iniciarStreaming();
-        
-        // Timer para actualizar estadísticas
-        iniciarTimerActualizacion();
-        
-        juegoActivo = true;
-        
-        controladorServidor.agregarLog("Juego iniciado para: " + nombreJugador);
-    }
-    
-    /**
-     * Inicia el hilo de streaming de video.
-     */
-    private void iniciarStreaming() {
-        PanelJuego panel = ventanaJuego.getPanelJuego();
-        int fps = config.getStreamingFPS();
-        float calidad = config.getCalidadJPEG();
-        
-        hiloStreaming = new HiloEnvioFrames(salida, panel, fps, calidad);
-        hiloStreaming.start();
-        
-        controladorServidor.agregarLog("Streaming iniciado: " + fps + " FPS");
-    }
-    
-    /**
-     * Inicia un timer para actualizar estadísticas periódicamente.
-     */
-    private void iniciarTimerActualizacion() {
-        timerActualizacion = new Timer(1000, e -> {
-            if (juegoActivo) {
-                actualizarEstadisticas();
-            }
-        });
-        timerActualizacion.start();
-    }
-    
-    /**
-     * Actualiza las estadísticas en la ventana de juego.
-     */
-    private void actualizarEstadisticas() {
-        int puntaje = controladorModelo.obtenerPuntaje();
-        long tiempo = controladorModelo.obtenerTiempo();
-        int frutas = controladorModelo.obtenerFrutasRestantes();
-        
-        controladorVista.actualizarPuntaje(puntaje);
-        controladorVista.actualizarTiempo(tiempo);
-        controladorVista.actualizarFrutas(frutas);
-    }
-    
-    /**
-     * Bucle principal del juego.
-     * Recibe comandos del cliente y procesa movimientos.
+     * Entrega al protocolo los mensajes binarios hasta que termine la sesión.
      * 
-     * @throws IOException Si hay error de comunicación
+     * @param protocolo Protocolo de la sesión
+     * @throws IOException Si hay error de lectura o un mensaje es inválido
      */
-    private void ejecutarBucleJuego() throws IOException {
-        controladorServidor.agregarLog("Entrando al bucle de juego");
+    private void recibirMensajesBinarios(ProtocoloSesion protocolo) throws IOException {
+        DecodificadorMensajes decodificador = new DecodificadorMensajes(entrada);
         
-        while (juegoActivo && !controladorModelo.juegoTerminado()) {
+        while (protocolo.isActivo()) {
+            decodificador.leerEncabezado();
+            if (decodificador.getRestante() > ProtocoloBinario.TAMANIO_MAXIMO_CONTROL) {
+                throw new IOException("Mensaje demasiado grande: " + decodificador.getRestante());
+            }
+            
+            bloqueoProtocolo.lock();
             try {
-                // Leer tipo de mensaje
-                String tipoStr = entrada.readUTF();
-                TipoMensaje tipo = TipoMensaje.fromCodigo(tipoStr);
-                
-                if (tipo == TipoMensaje.COMANDO) {
-                    procesarComando();
-                }
-                
-            } catch (IOException e) {
-                controladorServidor.agregarLog("Cliente desconectado");
-                juegoActivo = false;
-                break;
+                protocolo.procesarMensajeBinario(decodificador);
+            } finally {
+                bloqueoProtocolo.unlock();
             }
+            decodificador.descartarResto();
         }
-        
-        controladorServidor.agregarLog("Juego terminado para: " + nombreJugador);
     }
     
     /**
-     * Procesa un comando de movimiento del cliente.
+     * Entrega un mensaje de texto al protocolo.
      * 
-     * @throws IOException Si hay error al enviar respuesta
+     * @param protocolo Protocolo de la sesión
+     * @param mensaje Mensaje recibido
+     * @throws IOException Si hay error al responder
      */
-    private void procesarComando() throws IOException {
-        // Leer dirección
-        String comandoStr = entrada.readUTF();
-        
+    private void procesarMensaje(ProtocoloSesion protocolo, String mensaje) throws IOException {
+        bloqueoProtocolo.lock();
         try {
-            // Parsear dirección
-            Direccion direccion = controladorModelo.parsearDireccion(comandoStr);
-            
-            // Mover Pac-Man
-            ResultadoMovimiento resultado = controladorModelo.moverPacMan(direccion);
-            
-            // Redibujar
-            controladorVista.redibujarPanelJuego();
-            
-            // Enviar resultado al cliente
-            enviarResultadoMovimiento(resultado);
-            
-            // Actualizar estadísticas
-            actualizarEstadisticas();
-            
-        } catch (IllegalArgumentException e) {
-            // Comando inválido
-            enviarMensajeTexto("COMANDO_INVALIDO");
+            protocolo.procesarMensaje(mensaje);
+        } finally {
+            bloqueoProtocolo.unlock();
         }
     }
     
     /**
-     * Envía el resultado de un movimiento al cliente.
+     * Ejecuta una tarea propia del protocolo y cierra la entrada si la
+     * sesión terminó o la tarea falló.
      * 
-     * @param resultado Resultado del movimiento
-     * @throws IOException Si hay error al enviar
+     * @param protocolo Protocolo de la sesión
+     * @param tarea Tarea a ejecutar
      */
-    private void enviarResultadoMovimiento(ResultadoMovimiento resultado) throws IOException {
-        StringBuilder mensaje = new StringBuilder();
-        
-        // Información sobre límite
-        if (resultado.isLimiteAlcanzado()) {
-            mensaje.append("LIMITE_ALCANZADO");
-            int casillas = resultado.getCasillasMovidas();
-            if (casillas > 0) {
-                mensaje.append("|Movido ").append(casillas).append(" casillas");
-            }
-        } else {
-            mensaje.append("MOVIMIENTO_OK|4 casillas");
+    private void ejecutarTarea(ProtocoloSesion protocolo, Runnable tarea) {
+        bloqueoProtocolo.lock();
+        try {
+            tarea.run();
+        } catch (RuntimeException e) {
+            controladorServidor.agregarLog("Error en tarea de la sesión: " + e.getMessage());
+            cerrarEntrada();
+            return;
+        } finally {
+            bloqueoProtocolo.unlock();
         }
         
-        enviarMensajeTexto(mensaje.toString());
-        
-        // Información sobre fruta
-        if (resultado.isFrutaComida()) {
-            String mensajeFruta = String.format("FRUTA_COMIDA|%s|%d|Puntaje Total: %d",
-                resultado.getNombreFruta(),
-                resultado.getPuntosGanados(),
-                controladorModelo.obtenerPuntaje());
-            
-            enviarMensajeTexto(mensajeFruta);
+        if (!protocolo.isActivo()) {
+            cerrarEntrada();
         }
     }
     
     /**
-     * Envía un mensaje de texto al cliente.
-     * 
-     * @param mensaje Mensaje a enviar
-     * @throws IOException Si hay error al enviar
+     * Cierra la entrada del socket; la lectura en curso termina con EOF.
      */
-    private void enviarMensajeTexto(String mensaje) throws IOException {
-        synchronized (salida) {
-            salida.writeUTF(TipoMensaje.MENSAJE_TEXTO.getCodigo());
-            salida.writeUTF(mensaje);
-            salida.flush();
-        }
-    }
-    
-    /**
-     * Finaliza el juego y guarda resultados.
-     */
-    private void finalizarJuego() {
-        juegoActivo = false;
-        
-        // Detener timer
-        if (timerActualizacion != null) {
-            timerActualizacion.stop();
-        }
-        
-        // Detener streaming
-        if (hiloStreaming != null) {
-            hiloStreaming.detener();
-        }
-        
-        // Obtener datos finales
-        int puntaje = controladorModelo.obtenerPuntaje();
-        long tiempo = controladorModelo.obtenerTiempo();
-        
-        // Guardar en archivo
+    private void cerrarEntrada() {
         try {
-            RegistroJuego registro = new RegistroJuego(nombreJugador, puntaje, tiempo);
-            archivoManager.guardarResultado(registro);
-            
-            controladorServidor.agregarLog("Resultado guardado: " + registro);
-            
-            // Enviar resultado final al cliente
-            String mensajeFinal = String.format("JUEGO_TERMINADO|%s|%d|%d",
-                nombreJugador, puntaje, tiempo);
-            
-            salida.writeUTF(TipoMensaje.RESULTADO.getCodigo());
-            salida.writeUTF(mensajeFinal);
-            salida.flush();
-            
+            socketCliente.shutdownInput();
         } catch (IOException e) {
-            controladorServidor.agregarLog("Error al guardar resultado: " + e.getMessage());
-        }
-        
-        // Ocultar ventana de juego
-        try {
-            Thread.sleep(2000); // Dar tiempo para ver resultado
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            // Ignorar: el socket ya está cerrado
         }
-        
-        controladorVista.ocultarVentanaJuego();
     }
     
     /**
@@ -402,9 +238,7 @@ public class HiloClienteServidor extends Thread {
             if (entrada != null) entrada.close();
             if (salida != null) salida.close();
             if (socketCliente != null) socketCliente.close();
-            
-            controladorServidor.agregarLog("Recursos liberados para: " + nombreJugador);
-            
+        
         } catch (IOException e) {
             controladorServidor.agregarLog("Error al cerrar recursos");
         }
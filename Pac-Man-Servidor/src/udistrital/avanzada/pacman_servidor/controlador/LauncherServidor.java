@@ -1,31 +1,42 @@
 package udistrital.avanzada.pacman_servidor.controlador;
 
+import java.awt.GraphicsEnvironment;
+import java.io.File;
 import javax.swing.UIManager;
 
 /**
  * Clase principal del Servidor Pac-Man. Punto de entrada de la aplicación.
- *
+ * 
  * @author Steban
  * @version 1.0
  */
 public class LauncherServidor {
-
+    
     /**
      * Método principal.
      * 
-     * @param args Argumentos de línea de comandos (no usados)
+     * @param args Ruta opcional del archivo properties; si se indica
+     *             (o no hay pantalla) el servidor arranca sin interfaz
      */
     public static void main(String[] args) {
         
-        configurarLookAndFeel();
         // Instanciar el orquestador
         ControladorServidor controlador = new ControladorServidor();
         
+        // Modo sin interfaz para hosts headless
+        if (args.length > 0 || GraphicsEnvironment.isHeadless()) {
+            String ruta = args.length > 0 ? args[0] : "data/servidor.properties";
+            controlador.iniciarSinInterfaz(new File(ruta));
+            return;
+        }
+        
+        configurarLookAndFeel();
+        
         // Iniciar la aplicación
         controlador.iniciar();
-        
+    
     }
-
+    
     /**
      * Configura el Look and Feel para que use el del sistema operativo.
      */
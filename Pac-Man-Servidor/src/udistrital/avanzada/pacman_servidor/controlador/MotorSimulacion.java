@@ -0,0 +1,318 @@
+package udistrital.avanzada.pacman_servidor.controlador;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import udistrital.avanzada.pacman_servidor.util.HistogramaTicks;
+
+/**
+ * Planificador de ticks de simulación compartido por todas las sesiones.
+ * Las partidas se reparten en fragmentos, uno por hilo del pool: cada
+ * fragmento ejecuta en cada tick, en lote, el tick de todas sus partidas.
+ * Una partida queda en el mismo fragmento (y el mismo hilo) toda su vida,
+ * y solo ese hilo recorre la lista del fragmento; las altas llegan por
+ * una cola propia del fragmento. Así la cantidad de hilos y de tareas
+ * programadas no crece con la cantidad de partidas.
+ * 
+ * Cada fragmento mide la duración de sus ticks en un histograma y cuenta
+ * las sobrecargas: ticks que terminan después de que debía empezar el
+ * siguiente. Un fragmento atrasado salta los ticks perdidos en lugar de
+ * encadenarlos, para no quedar atrasado para siempre. El motor publica
+ * periódicamente el resumen de todos los fragmentos.
+ * 
+ * Un tick no debe bloquearse: lo que dependa de la conexión (enviar
+ * resultados, cerrar) se delega al transporte de la sesión.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class MotorSimulacion {
+    
+    /**
+     * Partida programada en un fragmento.
+     */
+    public static final class Tarea {
+        
+        private final Runnable tick;
+        private final Consumer<RuntimeException> accionError;
+        private final Fragmento fragmento;
+        private final AtomicBoolean cancelada;
+        
+        private Tarea(Runnable tick, Consumer<RuntimeException> accionError,
+                      Fragmento fragmento) {
+            this.tick = tick;
+            this.accionError = accionError;
+            this.fragmento = fragmento;
+            this.cancelada = new AtomicBoolean(false);
+        }
+        
+        /**
+         * Detiene la simulación de la partida; el fragmento la quita en
+         * su próximo tick. Idempotente.
+         */
+        public void cancelar() {
+            if (cancelada.compareAndSet(false, true)) {
+                fragmento.cantidad.decrementAndGet();
+            }
+        }
+    }
+    
+    private final Fragmento[] fragmentos;
+    private final long periodoNanos;
+    private final Consumer<String> log;
+    private final long intervaloReporteNanos;
+    private volatile boolean activo;
+    private Thread hiloReporte;
+    
+    /**
+     * Constructor del motor.
+     * 
+     * @param hilos Hilos del pool de simulación (uno por fragmento)
+     * @param ticksPorSegundo Ticks por segundo de cada partida
+     * @param segundosReporte Intervalo del resumen periódico; 0 lo desactiva
+     * @param log Destino de los mensajes del motor
+     */
+    public MotorSimulacion(int hilos, int ticksPorSegundo, int segundosReporte,
+                           Consumer<String> log) {
+        this.periodoNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ticksPorSegundo);
+        this.intervaloReporteNanos = TimeUnit.SECONDS.toNanos(segundosReporte);
+        this.log = log;
+        this.fragmentos = new Fragmento[Math.max(1, hilos)];
+        for (int i = 0; i < fragmentos.length; i++) {
+            fragmentos[i] = new Fragmento();
+        }
+    }
+    
+    /**
+     * Arranca los hilos de los fragmentos y el del resumen periódico.
+     */
+    public void iniciar() {
+        activo = true;
+        Thread.Builder fabrica = Thread.ofPlatform().name("simulacion-", 0).daemon(true);
+        for (Fragmento fragmento : fragmentos) {
+            fragmento.hilo = fabrica.start(fragmento);
+        }
+        if (intervaloReporteNanos > 0) {
+            hiloReporte = Thread.ofPlatform().name("simulacion-reporte").daemon(true)
+                .start(this::publicarPeriodicamente);
+        }
+    }
+    
+    /**
+     * Programa el tick de una partida en el fragmento con menos partidas.
+     * Si un tick lanza una excepción, la partida deja de simularse y se
+     * ejecuta la acción de error en el hilo del fragmento, por lo que no
+     * debe bloquearse.
+     * 
+     * @param tick Tarea a ejecutar en cada tick
+     * @param accionError Acción a ejecutar si un tick falla
+     * @return Tarea programada; cancelarla detiene la simulación
+     */
+    public Tarea programar(Runnable tick, Consumer<RuntimeException> accionError) {
+        Fragmento elegido = fragmentos[0];
+        for (Fragmento fragmento : fragmentos) {
+            if (fragmento.cantidad.get() < elegido.cantidad.get()) {
+                elegido = fragmento;
+            }
+        }
+        
+        Tarea tarea = new Tarea(tick, accionError, elegido);
+        elegido.cantidad.incrementAndGet();
+        elegido.altas.add(tarea);
+        return tarea;
+    }
+    
+    /**
+     * Obtiene la duración fija de un tick.
+     * 
+     * @return Periodo en milisegundos
+     */
+    public long getPeriodoMilisegundos() {
+        return TimeUnit.NANOSECONDS.toMillis(periodoNanos);
+    }
+    
+    /**
+     * Obtiene la cantidad de partidas que se simulan.
+     * 
+     * @return Partidas programadas
+     */
+    public int getCantidadSimulaciones() {
+        int total = 0;
+        for (Fragmento fragmento : fragmentos) {
+            total += fragmento.cantidad.get();
+        }
+        return total;
+    }
+    
+    /**
+     * Obtiene las sobrecargas de todos los fragmentos desde el inicio.
+     * 
+     * @return Ticks que terminaron después del inicio del siguiente
+     */
+    public long getSobrecargas() {
+        long total = 0;
+        for (Fragmento fragmento : fragmentos) {
+            total += fragmento.sobrecargas;
+        }
+        return total;
+    }
+    
+    /**
+     * Toma el histograma de los ticks desde la llamada anterior, sumando
+     * todos los fragmentos, y los deja vacíos.
+     * 
+     * @return Histograma del intervalo
+     */
+    public HistogramaTicks tomarHistograma() {
+        HistogramaTicks total = new HistogramaTicks();
+        for (Fragmento fragmento : fragmentos) {
+            fragmento.histograma.transferirA(total);
+        }
+        return total;
+    }
+    
+    /**
+     * Detiene los fragmentos y todas las simulaciones.
+     */
+    public void detener() {
+        activo = false;
+        for (Fragmento fragmento : fragmentos) {
+            LockSupport.unpark(fragmento.hilo);
+        }
+        if (hiloReporte != null) {
+            hiloReporte.interrupt();
+        }
+    }
+    
+    /**
+     * Publica el resumen del motor cada intervalo, si hubo ticks.
+     */
+    private void publicarPeriodicamente() {
+        long sobrecargasAnteriores = 0;
+        long perdidosAnteriores = 0;
+        while (activo) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervaloReporteNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            
+            HistogramaTicks histograma = tomarHistograma();
+            if (histograma.getCantidad() == 0) {
+                continue;
+            }
+            
+            long sobrecargas = getSobrecargas();
+            long perdidos = 0;
+            for (Fragmento fragmento : fragmentos) {
+                perdidos += fragmento.ticksPerdidos;
+            }
+            log.accept("Simulación: " + getCantidadSimulaciones() + " partidas en "
+                + fragmentos.length + " fragmentos, " + histograma
+                + ", sobrecargas: " + (sobrecargas - sobrecargasAnteriores)
+                + ", ticks perdidos: " + (perdidos - perdidosAnteriores));
+            sobrecargasAnteriores = sobrecargas;
+            perdidosAnteriores = perdidos;
+        }
+    }
+    
+    /**
+     * Grupo de partidas que un mismo hilo avanza en cada tick.
+     */
+    private final class Fragmento implements Runnable {
+        
+        // Solo los usa el hilo del fragmento
+        private final List<Tarea> tareas = new ArrayList<>();
+        
+        // Altas pendientes (cualquier hilo) y partidas activas
+        private final Queue<Tarea> altas = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger cantidad = new AtomicInteger();
+        
+        // Métricas (un único escritor: el hilo del fragmento)
+        private final HistogramaTicks histograma = new HistogramaTicks();
+        private volatile long sobrecargas;
+        private volatile long ticksPerdidos;
+        
+        private Thread hilo;
+        
+        @Override
+        public void run() {
+            long siguiente = System.nanoTime() + periodoNanos;
+            while (activo) {
+                long espera = siguiente - System.nanoTime();
+                if (espera > 0) {
+                    LockSupport.parkNanos(espera);
+                    continue;
+                }
+                
+                long inicio = System.nanoTime();
+                if (ejecutarTick()) {
+                    histograma.registrar(System.nanoTime() - inicio);
+                }
+                
+                // Si ya pasó el inicio del siguiente tick, saltar los perdidos
+                siguiente += periodoNanos;
+                long atraso = System.nanoTime() - siguiente;
+                if (atraso > 0) {
+                    long perdidos = atraso / periodoNanos;
+                    sobrecargas++;
+                    ticksPerdidos += perdidos;
+                    siguiente += perdidos * periodoNanos;
+                }
+            }
+        }
+        
+        /**
+         * Incorpora las altas y ejecuta el tick de cada partida activa,
+         * quitando las canceladas.
+         * 
+         * @return true si había partidas
+         */
+        private boolean ejecutarTick() {
+            Tarea alta;
+            while ((alta = altas.poll()) != null) {
+                tareas.add(alta);
+            }
+            if (tareas.isEmpty()) {
+                return false;
+            }
+            
+            int vigentes = 0;
+            for (int i = 0; i < tareas.size(); i++) {
+                Tarea tarea = tareas.get(i);
+                if (tarea.cancelada.get()) {
+                    continue;
+                }
+                try {
+                    tarea.tick.run();
+                } catch (RuntimeException e) {
+                    tarea.cancelar();
+                    log.accept("Simulación detenida por error en un tick: " + e);
+                    avisarError(tarea, e);
+                    continue;
+                }
+                tareas.set(vigentes++, tarea);
+            }
+            tareas.subList(vigentes, tareas.size()).clear();
+            return true;
+        }
+        
+        /**
+         * Avisa a la partida que su simulación se detuvo por un error.
+         * Un fallo de la acción no debe detener al resto del fragmento.
+         */
+        private void avisarError(Tarea tarea, RuntimeException error) {
+            try {
+                tarea.accionError.accept(error);
+            } catch (RuntimeException e) {
+                log.accept("Error al avisar la detención de una simulación: " + e);
+            }
+        }
+    }
+}
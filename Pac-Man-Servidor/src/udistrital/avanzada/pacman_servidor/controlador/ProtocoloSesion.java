@@ -0,0 +1,853 @@
+package udistrital.avanzada.pacman_servidor.controlador;
+
+import javax.swing.Timer;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import udistrital.avanzada.pacman_servidor.conexion.ArchivoResultadosManager;
+import udistrital.avanzada.pacman_servidor.dao.UsuarioDAO;
+import udistrital.avanzada.pacman_servidor.modelo.*;
+import udistrital.avanzada.pacman_servidor.protocolo.CodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.DecodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+import udistrital.avanzada.pacman_servidor.protocolo.TipoMensaje;
+import udistrital.avanzada.pacman_servidor.red.ColaSalidaSesion;
+import udistrital.avanzada.pacman_servidor.red.ManejadorConexion;
+import udistrital.avanzada.pacman_servidor.util.ConfiguracionServidor;
+import udistrital.avanzada.pacman_servidor.util.ControlCalidadStreaming;
+import udistrital.avanzada.pacman_servidor.vista.PanelJuego;
+import udistrital.avanzada.pacman_servidor.vista.VentanaJuego;
+
+/**
+ * Protocolo de una conexión de cliente: autenticación, juego y cierre.
+ * Es una máquina de estados que consume un mensaje a la vez, por lo que
+ * la usan tanto el modo de un hilo por cliente como el motor NIO.
+ * Los mensajes hacia el cliente pasan por la cola de salida de la sesión,
+ * que los envía antes que los frames del streaming: la respuesta a un
+ * movimiento no espera detrás del video aunque el cliente lea lento.
+ * 
+ * Los movimientos se encolan en el juego y avanzan en los ticks del
+ * MotorSimulacion; cuando uno termina, su resultado (y el fin de la
+ * partida, si corresponde) se entrega con el ejecutor de la conexión,
+ * en orden con los mensajes del cliente.
+ * 
+ * Si el cliente acepta la oferta de protocolo binario, la sesión pasa a
+ * enviar y recibir mensajes binarios tipados; si no, sigue con el
+ * protocolo de texto original.
+ * 
+ * Una conexión binaria puede pedir, antes de autenticarse, ver la partida
+ * de otro jugador: queda suscrita como espectador al streaming de esa
+ * sesión, recibe sus frames y el resultado final, y no puede mover.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class ProtocoloSesion implements ManejadorConexion {
+    
+    /**
+     * Qué mensaje espera el protocolo a continuación
+     */
+    private enum Estado {
+        ESPERANDO_USUARIO,
+        ESPERANDO_PASSWORD,
+        ESPERANDO_TIPO,
+        ESPERANDO_COMANDO,
+        ESPECTANDO,
+        TERMINADO
+    }
+    
+    /**
+     * Nombres de los codecs en la configuración; el índice es el código CODEC_*
+     */
+    private static final String[] NOMBRES_CODECS = {"JPEG", "PALETA", "ESCENA"};
+    
+    private final ColaSalidaSesion colaSalida;
+    private final DataOutputStream salida;
+    private CodificadorMensajes codificador;
+    private int codecFrames;
+    
+    // Controladores
+    private final ControladorServidor controladorServidor;
+    private final ControladorVista controladorVista;
+    private final RegistroSesiones registroSesiones;
+    
+    // Servicios
+    private final UsuarioDAO usuarioDAO;
+    private final ArchivoResultadosManager archivoManager;
+    private final ConfiguracionServidor config;
+    
+    // Estado del protocolo
+    private volatile Estado estado;
+    private String usuarioPendiente;
+    
+    // Estado del juego
+    private String nombreJugador;
+    private SesionJuego sesion;
+    private ControladorModelo controladorModelo;
+    private volatile boolean juegoActivo;
+    private Timer timerActualizacion;
+    
+    // Movimientos terminados en los ticks, pendientes de entregar al cliente
+    private final Queue<ResultadoMovimiento> movimientosCompletados;
+    private Executor ejecutorConexion;
+    
+    // Espectador: partida que se ve y aviso de su fin
+    private String jugadorEspectado;
+    private SesionJuego sesionEspectada;
+    private final Runnable accionFinEspectador;
+    
+    /**
+     * Constructor del protocolo.
+     * 
+     * @param salida Stream de salida hacia el cliente
+     * @param bytesPendientes Bytes escritos en salida que aún no se enviaron
+     * @param controladorServidor Orquestador principal
+     * @param usuarioDAO DAO para validación de usuarios
+     * @param registroSesiones Registro de sesiones activas
+     * @param controladorVista Controlador de la vista
+     * @param archivoManager Gestor del archivo de resultados
+     * @param config Configuración del servidor
+     */
+    public ProtocoloSesion(DataOutputStream salida,
+                           LongSupplier bytesPendientes,
+                           ControladorServidor controladorServidor,
+                           UsuarioDAO usuarioDAO,
+                           RegistroSesiones registroSesiones,
+                           ControladorVista controladorVista,
+                           ArchivoResultadosManager archivoManager,
+                           ConfiguracionServidor config) {
+        this.colaSalida = new ColaSalidaSesion(salida, bytesPendientes);
+        this.salida = colaSalida.getSalidaControl();
+        this.controladorServidor = controladorServidor;
+        this.usuarioDAO = usuarioDAO;
+        this.registroSesiones = registroSesiones;
+        this.controladorVista = controladorVista;
+        this.archivoManager = archivoManager;
+        this.config = config;
+        this.codecFrames = ProtocoloBinario.CODEC_JPEG;
+        this.juegoActivo = false;
+        this.accionFinEspectador = this::recibirFinEspectado;
+        this.movimientosCompletados = new ConcurrentLinkedQueue<>();
+        this.ejecutorConexion = Runnable::run;
+    }
+    
+    @Override
+    public void setEjecutorConexion(Executor ejecutor) {
+        this.ejecutorConexion = ejecutor;
+    }
+    
+    @Override
+    public void iniciar() throws IOException {
+        // Único escritor de la conexión durante toda la sesión
+        controladorServidor.getEjecutorStreaming().execute(colaSalida);
+        
+        // Ofrecer protocolo binario; un cliente antiguo solo la muestra
+        if (config.isProtocoloBinarioHabilitado()) {
+            enviarAutenticacion(ProtocoloBinario.OFERTA);
+        }
+        
+        // Fase 1: Autenticación - solicitar usuario
+        estado = Estado.ESPERANDO_USUARIO;
+        enviarAutenticacion("SOLICITUD_USUARIO");
+    }
+    
+    @Override
+    public boolean aceptaProtocoloBinario(String primerMensaje) {
+        return config.isProtocoloBinarioHabilitado()
+            && ProtocoloBinario.ACEPTACION.equals(primerMensaje);
+    }
+    
+    @Override
+    public void procesarMensaje(String mensaje) throws IOException {
+        switch (estado) {
+            case ESPERANDO_USUARIO:
+                if (codificador == null && aceptaProtocoloBinario(mensaje)) {
+                    activarProtocoloBinario();
+                } else {
+                    recibirUsuario(mensaje);
+                }
+                break;
+            case ESPERANDO_PASSWORD:
+                recibirPassword(mensaje);
+                break;
+            case ESPERANDO_TIPO:
+                recibirTipo(mensaje);
+                break;
+            case ESPERANDO_COMANDO:
+                estado = Estado.ESPERANDO_TIPO;
+                procesarComando(mensaje);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    @Override
+    public void procesarMensajeBinario(DecodificadorMensajes mensaje) throws IOException {
+        switch (mensaje.getOpcode()) {
+            case ProtocoloBinario.CREDENCIAL:
+                String credencial = mensaje.leerCadena();
+                if (estado == Estado.ESPERANDO_USUARIO) {
+                    recibirUsuario(credencial);
+                } else if (estado == Estado.ESPERANDO_PASSWORD) {
+                    recibirPassword(credencial);
+                }
+                break;
+            case ProtocoloBinario.MOVIMIENTO:
+                int codigo = mensaje.leerByte();
+                if (estado == Estado.ESPERANDO_TIPO || estado == Estado.ESPERANDO_COMANDO) {
+                    String direccion;
+                    try {
+                        direccion = ProtocoloBinario.nombreDireccion(codigo);
+                    } catch (IllegalArgumentException e) {
+                        enviarMensajeTexto("COMANDO_INVALIDO");
+                        break;
+                    }
+                    procesarComando(direccion);
+                }
+                break;
+            case ProtocoloBinario.CODECS:
+                recibirCodecs(mensaje);
+                break;
+            case ProtocoloBinario.ESPECTAR:
+                String jugador = mensaje.leerCadena();
+                if (estado == Estado.ESPERANDO_USUARIO) {
+                    jugadorEspectado = jugador;
+                }
+                break;
+            default:
+                controladorServidor.agregarLog("Opcode desconocido ignorado: " + mensaje.getOpcode());
+                break;
+        }
+    }
+    
+    /**
+     * El último mensaje (rechazo o resultado final) puede seguir en la cola
+     * de salida: la acción se ejecuta cuando la cola lo entregó.
+     */
+    @Override
+    public void alEntregarPendientes(Runnable accion) {
+        colaSalida.alVaciar(accion);
+    }
+    
+    @Override
+    public void salidaLiberada() {
+        colaSalida.conexionLiberada();
+    }
+    
+    @Override
+    public boolean isActivo() {
+        return estado != Estado.TERMINADO;
+    }
+    
+    @Override
+    public void cerrar() {
+        // Desconexión a mitad de juego: se guarda el resultado igualmente
+        if (juegoActivo) {
+            controladorServidor.agregarLog("Cliente desconectado");
+            finalizarJuego();
+        }
+        estado = Estado.TERMINADO;
+        
+        if (sesionEspectada != null) {
+            sesionEspectada.quitarEspectador(colaSalida, accionFinEspectador);
+        }
+        if (sesion != null) {
+            sesion.detenerSimulacion();
+            sesion.detenerStreaming();
+            registroSesiones.eliminarSesion(sesion);
+            
+            if (colaSalida.getFramesDescartados() > 0) {
+                controladorServidor.agregarLog("Salida de " + nombreJugador + ": " + colaSalida);
+            }
+        }
+        colaSalida.cerrar();
+        
+        controladorServidor.agregarLog("Recursos liberados para: " + nombreJugador);
+    }
+    
+    // ========== AUTENTICACIÓN ==========
+    
+    /**
+     * Pasa la sesión al protocolo binario. El último mensaje de texto
+     * confirma el cambio; desde ahí el cliente lee binario.
+     * 
+     * @throws IOException Si hay error de comunicación
+     */
+    private void activarProtocoloBinario() throws IOException {
+        enviarAutenticacion(ProtocoloBinario.ACEPTACION);
+        codificador = new CodificadorMensajes(salida);
+        colaSalida.enviarControl(() ->
+            codificador.escribirSolicitudAutenticacion(ProtocoloBinario.SOLICITUD_USUARIO));
+        
+        controladorServidor.agregarLog("Protocolo binario v" + ProtocoloBinario.VERSION + " activado");
+    }
+    
+    /**
+     * Elige el codec de frames entre los que el cliente sabe decodificar:
+     * el primero de los configurados que el cliente soporte, o JPEG si
+     * no soporta ninguno.
+     * 
+     * @param mensaje Mensaje CODECS
+     * @throws IOException Si el mensaje es inválido
+     */
+    private void recibirCodecs(DecodificadorMensajes mensaje) throws IOException {
+        boolean[] soportados = new boolean[NOMBRES_CODECS.length];
+        int cantidad = mensaje.leerVarint();
+        for (int i = 0; i < cantidad; i++) {
+            int codec = mensaje.leerByte();
+            if (codec < soportados.length) {
+                soportados[codec] = true;
+            }
+        }
+        
+        codecFrames = ProtocoloBinario.CODEC_JPEG;
+        for (String nombre : config.getCodecsFrames()) {
+            int codec = Arrays.asList(NOMBRES_CODECS).indexOf(nombre);
+            if (codec >= 0 && soportados[codec]) {
+                codecFrames = codec;
+                break;
+            }
+        }
+        
+        controladorServidor.agregarLog("Codec de frames: " + NOMBRES_CODECS[codecFrames]);
+    }
+    
+    /**
+     * Recibe el usuario y solicita la contraseña.
+     * 
+     * @param usuario Usuario enviado por el cliente
+     * @throws IOException Si hay error de comunicación
+     */
+    private void recibirUsuario(String usuario) throws IOException {
+        controladorServidor.agregarLog("Usuario recibido: " + usuario);
+        usuarioPendiente = usuario;
+        
+        estado = Estado.ESPERANDO_PASSWORD;
+        enviarSolicitud("SOLICITUD_PASSWORD", ProtocoloBinario.SOLICITUD_PASSWORD);
+    }
+    
+    /**
+     * Valida las credenciales contra la base de datos.
+     * 
+     * @param password Contraseña enviada por el cliente
+     * @throws IOException Si hay error de comunicación
+     */
+    private void recibirPassword(String password) throws IOException {
+        String usuario = usuarioPendiente;
+        usuarioPendiente = null;
+        
+        try {
+            if (usuarioDAO == null) {
+                throw new SQLException("Base de datos no disponible");
+            }
+            
+            if (usuarioDAO.validarCredenciales(usuario, password)) {
+                this.nombreJugador = usuario;
+                enviarResultadoAutenticacion("AUTENTICADO", ProtocoloBinario.AUTENTICACION_OK);
+                controladorServidor.agregarLog("Cliente autenticado: " + usuario);
+                
+                if (jugadorEspectado != null) {
+                    iniciarEspectador();
+                    return;
+                }
+                
+                // Fase 2: Inicializar juego
+                inicializarJuego();
+                
+                // Fase 3: Bucle de juego
+                estado = Estado.ESPERANDO_TIPO;
+                controladorServidor.agregarLog("Entrando al bucle de juego");
+            } else {
+                estado = Estado.TERMINADO;
+                enviarResultadoAutenticacion("RECHAZADO", ProtocoloBinario.AUTENTICACION_RECHAZADA);
+                controladorServidor.agregarLog("Cliente rechazado - autenticación fallida");
+            }
+        
+        } catch (SQLException e) {
+            controladorServidor.agregarLog("Error al validar usuario: " + e.getMessage());
+            
+            estado = Estado.TERMINADO;
+            enviarResultadoAutenticacion("ERROR_BD", ProtocoloBinario.AUTENTICACION_ERROR);
+        }
+    }
+    
+    /**
+     * Envía un mensaje de la fase de autenticación.
+     * 
+     * @param mensaje Contenido del mensaje
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarAutenticacion(String mensaje) throws IOException {
+        enviar(TipoMensaje.AUTENTICACION, mensaje);
+    }
+    
+    /**
+     * Solicita una credencial en el protocolo activo.
+     * 
+     * @param texto Mensaje del protocolo de texto
+     * @param tipo Tipo de solicitud del protocolo binario
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarSolicitud(String texto, int tipo) throws IOException {
+        if (codificador == null) {
+            enviarAutenticacion(texto);
+            return;
+        }
+        
+        colaSalida.enviarControl(() -> codificador.escribirSolicitudAutenticacion(tipo));
+    }
+    
+    /**
+     * Informa el resultado de la autenticación en el protocolo activo.
+     * 
+     * @param texto Mensaje del protocolo de texto
+     * @param resultado Resultado del protocolo binario
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarResultadoAutenticacion(String texto, int resultado) throws IOException {
+        if (codificador == null) {
+            enviarAutenticacion(texto);
+            return;
+        }
+        
+        colaSalida.enviarControl(() -> codificador.escribirResultadoAutenticacion(resultado));
+    }
+    
+    /**
+     * Encola un mensaje de texto con su tipo, por delante de los frames.
+     * 
+     * @param tipo Tipo del mensaje
+     * @param contenido Contenido del mensaje
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviar(TipoMensaje tipo, String contenido) throws IOException {
+        colaSalida.enviarControl(() -> {
+            salida.writeUTF(tipo.getCodigo());
+            salida.writeUTF(contenido);
+        });
+    }
+    
+    // ========== ESPECTADOR ==========
+    
+    /**
+     * Suscribe la conexión al streaming de la partida pedida. Si el
+     * jugador no está jugando se informa y se cierra la conexión.
+     * 
+     * @throws IOException Si hay error al enviar
+     */
+    private void iniciarEspectador() throws IOException {
+        sesionEspectada = registroSesiones.buscarSesion(jugadorEspectado);
+        estado = Estado.ESPECTANDO;
+        
+        if (sesionEspectada == null
+                || !sesionEspectada.agregarEspectador(colaSalida, codificador != null, codecFrames,
+                    config, controladorServidor.getEjecutorStreaming(), accionFinEspectador)) {
+            sesionEspectada = null;
+            estado = Estado.TERMINADO;
+            enviarMensajeTexto("SESION_NO_ENCONTRADA");
+            controladorServidor.agregarLog(nombreJugador + " no puede espectar a "
+                + jugadorEspectado + ": no está jugando");
+            return;
+        }
+        
+        controladorServidor.agregarLog(nombreJugador + " espectando a " + jugadorEspectado
+            + " (sesión " + sesionEspectada.getId() + ", streams: "
+            + sesionEspectada.cantidadStreams() + ")");
+    }
+    
+    /**
+     * Recibe el fin de la partida espectada (hilo que la finaliza) y pasa
+     * el aviso al ejecutor de la conexión, como los movimientos: así no
+     * compite con cerrar() y el transporte cierra la conexión al terminar.
+     */
+    private void recibirFinEspectado() {
+        ejecutorConexion.execute(this::terminarEspectador);
+    }
+    
+    /**
+     * Envía al espectador el resultado de la partida que terminó.
+     * Se ejecuta en el ejecutor de la conexión.
+     */
+    private void terminarEspectador() {
+        if (estado != Estado.ESPECTANDO) {
+            return;
+        }
+        estado = Estado.TERMINADO;
+        
+        ControladorModelo modeloEspectado = sesionEspectada.getControladorModelo();
+        try {
+            enviarFinJuego(jugadorEspectado, modeloEspectado.obtenerPuntaje(),
+                modeloEspectado.obtenerTiempo());
+        } catch (IOException e) {
+            controladorServidor.agregarLog("No se pudo avisar el fin a " + nombreJugador
+                + ": " + e.getMessage());
+        }
+    }
+    
+    // ========== JUEGO ==========
+    
+    /**
+     * Inicializa el juego para el cliente autenticado.
+     * Registra la sesión y crea su modelo, ventana y hilo de streaming.
+     */
+    private void inicializarJuego() {
+        controladorServidor.agregarLog("Inicializando juego para: " + nombreJugador);
+        
+        // Crear la sesión con su propio juego
+        int ancho = config.getAnchoVentana();
+        int alto = config.getAltoVentana();
+        sesion = registroSesiones.crearSesion(nombreJugador);
+        controladorModelo = sesion.getControladorModelo();
+        sesion.iniciarJuego(ancho, alto, config.getCantidadFrutas());
+        
+        // Ventana de monitoreo opcional (no disponible en modo headless)
+        if (controladorServidor.isVentanaJuegoHabilitada()) {
+            mostrarVentanaMonitoreo(ancho, alto);
+        }
+        
+        // Iniciar streaming de video (renderizado fuera de pantalla)
+        iniciarStreaming();
+        
+        juegoActivo = true;
+        
+        // La simulación avanza los movimientos encolados en ticks
+        sesion.iniciarSimulacion(controladorServidor.getMotorSimulacion(),
+            this::recibirMovimientoCompletado, this::recibirErrorSimulacion);
+        
+        controladorServidor.agregarLog("Juego iniciado para: " + nombreJugador
+            + " (sesión " + sesion.getId() + ", activas: "
+            + registroSesiones.cantidadSesiones() + ")");
+    }
+    
+    /**
+     * Crea y muestra la ventana de monitoreo del juego en el servidor.
+     * 
+     * @param ancho Ancho del área de juego
+     * @param alto Alto del área de juego
+     */
+    private void mostrarVentanaMonitoreo(int ancho, int alto) {
+        // Crear ventana de juego propia de la sesión
+        VentanaJuego ventanaJuego = controladorVista.crearVentanaJuego(ancho, alto);
+        sesion.setVentanaJuego(ventanaJuego);
+        
+        // Configurar dibujado
+        PanelJuego panel = ventanaJuego.getPanelJuego();
+        controladorServidor.configurarDibujadoJuego(panel, controladorModelo);
+        
+        // Configurar botón salir (aunque el cliente no lo usará)
+        controladorServidor.configurarBotonSalirJuego(ventanaJuego);
+        
+        // Actualizar estadísticas iniciales
+        controladorVista.actualizarNombreJugador(ventanaJuego, nombreJugador);
+        controladorVista.actualizarPuntaje(ventanaJuego, 0);
+        controladorVista.actualizarTiempo(ventanaJuego, 0);
+        controladorVista.actualizarFrutas(ventanaJuego, controladorModelo.obtenerFrutasRestantes());
+        
+        // Mostrar ventana
+        controladorVista.mostrarVentanaJuego(ventanaJuego);
+        
+        // Timer para actualizar estadísticas
+        iniciarTimerActualizacion();
+    }
+    
+    /**
+     * Inicia el hilo de streaming de video de la sesión.
+     */
+    private void iniciarStreaming() {
+        sesion.iniciarStreaming(colaSalida, codificador != null, codecFrames,
+            config, controladorServidor.getEjecutorStreaming());
+        
+        controladorServidor.agregarLog("Streaming iniciado: hasta "
+            + config.getStreamingFPS() + " FPS"
+            + (config.isStreamingAdaptativo() ? " (adaptativo)" : ""));
+    }
+    
+    /**
+     * Inicia un timer para actualizar estadísticas periódicamente.
+     */
+    private void iniciarTimerActualizacion() {
+        timerActualizacion = new Timer(1000, e -> {
+            if (juegoActivo) {
+                actualizarEstadisticas();
+            }
+        });
+        timerActualizacion.start();
+    }
+    
+    /**
+     * Actualiza las estadísticas en la ventana de juego.
+     */
+    private void actualizarEstadisticas() {
+        VentanaJuego ventanaJuego = sesion.getVentanaJuego();
+        if (ventanaJuego == null) {
+            return;
+        }
+        
+        int puntaje = controladorModelo.obtenerPuntaje();
+        long tiempo = controladorModelo.obtenerTiempo();
+        int frutas = controladorModelo.obtenerFrutasRestantes();
+        
+        controladorVista.actualizarPuntaje(ventanaJuego, puntaje);
+        controladorVista.actualizarTiempo(ventanaJuego, tiempo);
+        controladorVista.actualizarFrutas(ventanaJuego, frutas);
+    }
+    
+    /**
+     * Recibe el tipo del siguiente mensaje del cliente.
+     * 
+     * @param codigo Código del tipo de mensaje
+     */
+    private void recibirTipo(String codigo) {
+        TipoMensaje tipo = TipoMensaje.buscar(codigo);
+        
+        if (tipo == TipoMensaje.COMANDO) {
+            estado = Estado.ESPERANDO_COMANDO;
+        } else if (tipo == null) {
+            controladorServidor.agregarLog("Mensaje desconocido ignorado: " + codigo);
+        }
+    }
+    
+    /**
+     * Procesa un comando de movimiento del cliente: lo encola en el juego.
+     * El resultado se envía cuando la simulación termina el movimiento.
+     * 
+     * @param comandoStr Dirección recibida
+     * @throws IOException Si hay error al enviar respuesta
+     */
+    private void procesarComando(String comandoStr) throws IOException {
+        try {
+            // Parsear dirección
+            Direccion direccion = controladorModelo.parsearDireccion(comandoStr);
+            
+            // Encolar el movimiento para los próximos ticks
+            if (!controladorModelo.encolarMovimiento(direccion)) {
+                enviarMensajeTexto("COMANDO_DESCARTADO");
+            }
+        
+        } catch (IllegalArgumentException e) {
+            // Comando inválido
+            enviarMensajeTexto("COMANDO_INVALIDO");
+        }
+    }
+    
+    /**
+     * Recibe un movimiento terminado (hilo del tick) y pasa su entrega al
+     * ejecutor de la conexión, para no bloquear la simulación.
+     * 
+     * @param resultado Resultado del movimiento
+     */
+    private void recibirMovimientoCompletado(ResultadoMovimiento resultado) {
+        movimientosCompletados.add(resultado);
+        ejecutorConexion.execute(this::entregarMovimientos);
+    }
+    
+    /**
+     * Recibe el error de un tick (hilo del tick) y pasa el fin del juego
+     * al ejecutor de la conexión, como los movimientos.
+     * 
+     * @param error Excepción del tick
+     */
+    private void recibirErrorSimulacion(RuntimeException error) {
+        ejecutorConexion.execute(() -> terminarPorErrorSimulacion(error));
+    }
+    
+    /**
+     * Termina el juego cuya simulación se detuvo por un error: entrega los
+     * movimientos que ya terminaron, avisa al cliente y finaliza el juego
+     * como de costumbre (guarda el resultado y envía el resultado final).
+     * 
+     * @param error Excepción del tick
+     */
+    private void terminarPorErrorSimulacion(RuntimeException error) {
+        entregarMovimientos();
+        if (!juegoActivo) {
+            return;
+        }
+        
+        controladorServidor.agregarLog("Juego de " + nombreJugador
+            + " detenido por un error de la simulación: " + error.getMessage());
+        try {
+            enviarMensajeTexto("ERROR_SIMULACION");
+        } catch (IOException e) {
+            // Al cerrar la conexión se finaliza el juego igualmente
+            throw new UncheckedIOException(e);
+        }
+        finalizarJuego();
+    }
+    
+    /**
+     * Envía al cliente los movimientos terminados, en orden, y finaliza
+     * el juego si el último lo dejó terminado.
+     */
+    private void entregarMovimientos() {
+        try {
+            ResultadoMovimiento resultado;
+            while (juegoActivo && (resultado = movimientosCompletados.poll()) != null) {
+                // Redibujar
+                controladorVista.redibujarPanelJuego(sesion.getVentanaJuego());
+                
+                // Enviar resultado al cliente
+                enviarResultadoMovimiento(resultado);
+                
+                // Actualizar estadísticas
+                actualizarEstadisticas();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        // Fase 4: Finalizar juego
+        if (juegoActivo && controladorModelo.juegoTerminado()) {
+            controladorServidor.agregarLog("Juego terminado para: " + nombreJugador);
+            finalizarJuego();
+        }
+    }
+    
+    /**
+     * Envía el resultado de un movimiento al cliente.
+     * 
+     * @param resultado Resultado del movimiento
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarResultadoMovimiento(ResultadoMovimiento resultado) throws IOException {
+        if (codificador != null) {
+            enviarResultadoMovimientoBinario(resultado);
+            return;
+        }
+        
+        StringBuilder mensaje = new StringBuilder();
+        
+        // Información sobre límite
+        if (resultado.isLimiteAlcanzado()) {
+            mensaje.append("LIMITE_ALCANZADO");
+            int casillas = resultado.getCasillasMovidas();
+            if (casillas > 0) {
+                mensaje.append("|Movido ").append(casillas).append(" casillas");
+            }
+        } else {
+            mensaje.append("MOVIMIENTO_OK|4 casillas");
+        }
+        
+        enviarMensajeTexto(mensaje.toString());
+        
+        // Información sobre fruta
+        if (resultado.isFrutaComida()) {
+            String mensajeFruta = String.format("FRUTA_COMIDA|%s|%d|Puntaje Total: %d",
+                resultado.getNombreFruta(),
+                resultado.getPuntosGanados(),
+                controladorModelo.obtenerPuntaje());
+            
+            enviarMensajeTexto(mensajeFruta);
+        }
+    }
+    
+    /**
+     * Envía el resultado de un movimiento y el estado del juego en binario.
+     * 
+     * @param resultado Resultado del movimiento
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarResultadoMovimientoBinario(ResultadoMovimiento resultado) throws IOException {
+        String fruta = resultado.isFrutaComida() ? resultado.getNombreFruta() : null;
+        
+        colaSalida.enviarControl(() -> {
+            codificador.escribirResultadoMovimiento(resultado.isLimiteAlcanzado(),
+                resultado.getCasillasMovidas(), fruta, resultado.getPuntosGanados());
+            codificador.escribirPuntaje(controladorModelo.obtenerPuntaje(),
+                controladorModelo.obtenerTiempo(),
+                controladorModelo.obtenerFrutasRestantes());
+        });
+    }
+    
+    /**
+     * Envía un mensaje de texto al cliente.
+     * 
+     * @param mensaje Mensaje a enviar
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarMensajeTexto(String mensaje) throws IOException {
+        if (codificador == null) {
+            enviar(TipoMensaje.MENSAJE_TEXTO, mensaje);
+            return;
+        }
+        
+        colaSalida.enviarControl(() -> codificador.escribirTexto(mensaje));
+    }
+    
+    /**
+     * Envía el resultado final del juego en el protocolo activo.
+     * 
+     * @param jugador Jugador de la partida
+     * @param puntaje Puntaje final
+     * @param tiempo Duración del juego en segundos
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarFinJuego(String jugador, int puntaje, long tiempo) throws IOException {
+        if (codificador == null) {
+            String mensajeFinal = String.format("JUEGO_TERMINADO|%s|%d|%d",
+                jugador, puntaje, tiempo);
+            
+            enviar(TipoMensaje.RESULTADO, mensajeFinal);
+            return;
+        }
+        
+        colaSalida.enviarControl(() -> codificador.escribirFinJuego(jugador, puntaje, tiempo));
+    }
+    
+    /**
+     * Finaliza el juego y guarda resultados.
+     */
+    private void finalizarJuego() {
+        juegoActivo = false;
+        estado = Estado.TERMINADO;
+        
+        // Detener timer
+        if (timerActualizacion != null) {
+            timerActualizacion.stop();
+        }
+        
+        // Detener simulación y streaming
+        sesion.detenerSimulacion();
+        ControlCalidadStreaming controlStreaming = sesion.getControlStreaming();
+        if (controlStreaming != null && controlStreaming.getDegradaciones() > 0) {
+            controladorServidor.agregarLog("Streaming de " + nombreJugador + " adaptado: "
+                + controlStreaming + ", degradaciones: " + controlStreaming.getDegradaciones());
+        }
+        sesion.detenerStreaming();
+        
+        // Obtener datos finales
+        int puntaje = controladorModelo.obtenerPuntaje();
+        long tiempo = controladorModelo.obtenerTiempo();
+        
+        // Guardar en archivo
+        try {
+            RegistroJuego registro = new RegistroJuego(nombreJugador, puntaje, tiempo);
+            archivoManager.guardarResultado(registro);
+            
+            controladorServidor.agregarLog("Resultado guardado: " + registro);
+            
+            // Enviar resultado final al cliente
+            enviarFinJuego(nombreJugador, puntaje, tiempo);
+        
+        } catch (IOException e) {
+            controladorServidor.agregarLog("Error al guardar resultado: " + e.getMessage());
+        }
+        
+        // Ocultar ventana de juego
+        VentanaJuego ventanaJuego = sesion.getVentanaJuego();
+        if (ventanaJuego != null) {
+            // Dar tiempo para ver resultado sin retener el hilo de la conexión
+            Timer timerCierre = new Timer(2000, e ->
+                controladorVista.ocultarVentanaJuego(ventanaJuego));
+            timerCierre.setRepeats(false);
+            timerCierre.start();
+        }
+    }
+}
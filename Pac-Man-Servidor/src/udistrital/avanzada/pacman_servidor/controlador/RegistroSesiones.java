@@ -0,0 +1,96 @@
+package udistrital.avanzada.pacman_servidor.controlador;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registro de las sesiones de juego activas del servidor.
+ * Las sesiones se crean y eliminan concurrentemente desde los hilos
+ * de cada cliente sin bloquear a las demás.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class RegistroSesiones {
+    
+    private final Map<Long, SesionJuego> sesiones;
+    private final AtomicLong siguienteId;
+    
+    /**
+     * Constructor del registro vacío.
+     */
+    public RegistroSesiones() {
+        this.sesiones = new ConcurrentHashMap<>();
+        this.siguienteId = new AtomicLong(1);
+    }
+    
+    /**
+     * Crea y registra una nueva sesión para el jugador.
+     * 
+     * @param nombreJugador Jugador autenticado
+     * @return Sesión creada
+     */
+    public SesionJuego crearSesion(String nombreJugador) {
+        SesionJuego sesion = new SesionJuego(siguienteId.getAndIncrement(), nombreJugador);
+        sesiones.put(sesion.getId(), sesion);
+        return sesion;
+    }
+    
+    /**
+     * Elimina una sesión del registro.
+     * 
+     * @param sesion Sesión a eliminar
+     */
+    public void eliminarSesion(SesionJuego sesion) {
+        sesiones.remove(sesion.getId());
+    }
+    
+    /**
+     * Obtiene una sesión por su identificador.
+     * 
+     * @param id Identificador de la sesión
+     * @return Sesión o null si no existe
+     */
+    public SesionJuego obtenerSesion(long id) {
+        return sesiones.get(id);
+    }
+    
+    /**
+     * Busca la sesión activa de un jugador. Si tiene varias, devuelve
+     * la más reciente.
+     * 
+     * @param nombreJugador Jugador dueño de la sesión
+     * @return Sesión o null si el jugador no está jugando
+     */
+    public SesionJuego buscarSesion(String nombreJugador) {
+        SesionJuego encontrada = null;
+        for (SesionJuego sesion : sesiones.values()) {
+            if (sesion.getNombreJugador().equals(nombreJugador)
+                    && (encontrada == null || sesion.getId() > encontrada.getId())) {
+                encontrada = sesion;
+            }
+        }
+        return encontrada;
+    }
+    
+    /**
+     * Obtiene una vista de solo lectura de las sesiones activas.
+     * 
+     * @return Sesiones activas
+     */
+    public Collection<SesionJuego> getSesiones() {
+        return Collections.unmodifiableCollection(sesiones.values());
+    }
+    
+    /**
+     * Cantidad de sesiones activas.
+     * 
+     * @return Número de sesiones
+     */
+    public int cantidadSesiones() {
+        return sesiones.size();
+    }
+}
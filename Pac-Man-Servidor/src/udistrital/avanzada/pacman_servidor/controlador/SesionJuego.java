@@ -0,0 +1,289 @@
+package udistrital.avanzada.pacman_servidor.controlador;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import udistrital.avanzada.pacman_servidor.modelo.ResultadoMovimiento;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+import udistrital.avanzada.pacman_servidor.red.ColaSalidaSesion;
+import udistrital.avanzada.pacman_servidor.util.ConfiguracionServidor;
+import udistrital.avanzada.pacman_servidor.util.ControlCalidadStreaming;
+import udistrital.avanzada.pacman_servidor.util.HiloEnvioFrames;
+import udistrital.avanzada.pacman_servidor.util.RenderizadorJuego;
+import udistrital.avanzada.pacman_servidor.vista.VentanaJuego;
+
+/**
+ * Sesión de juego de un cliente conectado.
+ * Cada sesión es dueña de su propio modelo (ControladorModelo/Juego),
+ * renderizador, hilo de streaming y ventana de monitoreo opcional,
+ * de modo que varias partidas simultáneas no comparten estado mutable.
+ * El juego avanza en ticks que ejecuta el MotorSimulacion compartido.
+ * 
+ * Los espectadores se suscriben al streaming de la partida: los que
+ * usan el mismo protocolo y codec que otro suscriptor reciben los mismos
+ * frames, codificados una sola vez; por cada formato distinto hay un
+ * hilo de streaming.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class SesionJuego {
+    
+    private final long id;
+    private final String nombreJugador;
+    private final ControladorModelo controladorModelo;
+    
+    private RenderizadorJuego renderizador;
+    private volatile HiloEnvioFrames hiloStreaming;
+    private VentanaJuego ventanaJuego;
+    
+    // Simulación: tick programado y aviso de cada movimiento terminado
+    private MotorSimulacion.Tarea simulacion;
+    private Consumer<ResultadoMovimiento> accionMovimiento;
+    
+    // Streaming por formato (el del jugador primero) y espectadores
+    private final List<HiloEnvioFrames> streams;
+    private final List<Runnable> accionesFin;
+    private boolean terminada;
+    
+    /**
+     * Constructor de la sesión.
+     * 
+     * @param id Identificador único de la sesión
+     * @param nombreJugador Jugador autenticado dueño de la sesión
+     */
+    public SesionJuego(long id, String nombreJugador) {
+        this.id = id;
+        this.nombreJugador = nombreJugador;
+        this.controladorModelo = new ControladorModelo();
+        this.streams = new CopyOnWriteArrayList<>();
+        this.accionesFin = new ArrayList<>();
+    }
+    
+    /**
+     * Crea e inicializa el juego de la sesión y su renderizador.
+     * 
+     * @param ancho Ancho del área de juego
+     * @param alto Alto del área de juego
+     * @param cantidadFrutas Cantidad de frutas del juego
+     */
+    public void iniciarJuego(int ancho, int alto, int cantidadFrutas) {
+        controladorModelo.crearJuego(ancho, alto, cantidadFrutas);
+        controladorModelo.inicializarJuego(nombreJugador);
+        renderizador = new RenderizadorJuego(ancho, alto, controladorModelo::dibujarJuego);
+    }
+    
+    /**
+     * Programa la simulación del juego en el motor compartido.
+     * La acción recibe cada movimiento terminado en el hilo del tick, por
+     * lo que no debe bloquearse. La simulación se detiene sola cuando un
+     * movimiento deja el juego terminado, o cuando un tick falla: entonces
+     * se ejecuta la acción de error, también en el hilo del tick.
+     * 
+     * @param motor Motor de simulación compartido
+     * @param accionMovimiento Acción a ejecutar por cada movimiento terminado
+     * @param accionError Acción a ejecutar si un tick falla
+     */
+    public synchronized void iniciarSimulacion(MotorSimulacion motor,
+                                               Consumer<ResultadoMovimiento> accionMovimiento,
+                                               Consumer<RuntimeException> accionError) {
+        this.accionMovimiento = accionMovimiento;
+        this.simulacion = motor.programar(this::ejecutarTick, error -> {
+            detenerSimulacion();
+            accionError.accept(error);
+        });
+    }
+    
+    /**
+     * Un tick de la partida (hilo del motor de simulación).
+     */
+    private void ejecutarTick() {
+        ResultadoMovimiento resultado = controladorModelo.avanzarTick();
+        if (resultado == null) {
+            return;
+        }
+        if (controladorModelo.juegoTerminado()) {
+            detenerSimulacion();
+        }
+        accionMovimiento.accept(resultado);
+    }
+    
+    /**
+     * Detiene la simulación del juego. Idempotente.
+     */
+    public synchronized void detenerSimulacion() {
+        if (simulacion != null) {
+            simulacion.cancelar();
+            simulacion = null;
+        }
+    }
+    
+    /**
+     * Inicia el streaming de la sesión hacia el cliente: video, o la
+     * escena del juego si el codec negociado es CODEC_ESCENA.
+     * 
+     * @param colaSalida Cola de salida de la sesión donde se publican los frames
+     * @param binario true si la sesión usa el protocolo binario
+     * @param codecFrames Codec de frames negociado (CODEC_*)
+     * @param config Configuración del servidor
+     * @param ejecutor Executor donde corre el bucle de streaming
+     */
+    public synchronized void iniciarStreaming(ColaSalidaSesion colaSalida, boolean binario,
+                                              int codecFrames, ConfiguracionServidor config,
+                                              Executor ejecutor) {
+        hiloStreaming = crearStreaming(colaSalida, binario, codecFrames, config, ejecutor);
+        
+        // Emitir frames solo cuando el modelo de esta sesión cambie
+        controladorModelo.setAccionCambio(this::notificarCambio);
+    }
+    
+    /**
+     * Crea y ejecuta un hilo de streaming con su primer suscriptor.
+     */
+    private HiloEnvioFrames crearStreaming(ColaSalidaSesion colaSalida, boolean binario,
+                                           int codecFrames, ConfiguracionServidor config,
+                                           Executor ejecutor) {
+        ControlCalidadStreaming control = ControlCalidadStreaming.desdeConfiguracion(
+            config, renderizador.getAncho(), renderizador.getAlto());
+        
+        HiloEnvioFrames hilo = new HiloEnvioFrames(colaSalida, binario, codecFrames, renderizador,
+            control, config.isStreamingDelta(), config.getIntervaloKeyframe(),
+            config.getIntervaloLatido());
+        if (codecFrames == ProtocoloBinario.CODEC_ESCENA) {
+            // El cliente dibuja la escena: no se renderiza en el servidor
+            hilo.setFuenteEscena(controladorModelo::capturarEstado);
+        } else if (binario && config.getFranjasKeyframe() > 1) {
+            hilo.setFranjas(config.getFranjasKeyframe());
+        }
+        
+        streams.add(hilo);
+        ejecutor.execute(hilo);
+        return hilo;
+    }
+    
+    /**
+     * Avisa del cambio del modelo a todos los hilos de streaming.
+     */
+    private void notificarCambio() {
+        for (HiloEnvioFrames hilo : streams) {
+            hilo.notificarCambio();
+        }
+    }
+    
+    /**
+     * Suscribe un espectador al streaming de la partida. Si ya hay un
+     * streaming con su protocolo y codec recibe esos mismos frames; si
+     * no, se crea uno para su formato.
+     * 
+     * @param colaSalida Cola de salida del espectador
+     * @param binario true si el espectador usa el protocolo binario
+     * @param codecFrames Codec negociado con el espectador (CODEC_*)
+     * @param config Configuración del servidor
+     * @param ejecutor Executor donde corre el bucle de streaming
+     * @param accionFin Acción a ejecutar cuando termine la partida
+     * @return false si la partida ya terminó
+     */
+    public synchronized boolean agregarEspectador(ColaSalidaSesion colaSalida, boolean binario,
+                                                  int codecFrames, ConfiguracionServidor config,
+                                                  Executor ejecutor, Runnable accionFin) {
+        if (terminada || hiloStreaming == null) {
+            return false;
+        }
+        
+        accionesFin.add(accionFin);
+        for (HiloEnvioFrames hilo : streams) {
+            if (hilo.admiteFormato(binario, codecFrames)) {
+                hilo.agregarSuscriptor(colaSalida);
+                return true;
+            }
+        }
+        crearStreaming(colaSalida, binario, codecFrames, config, ejecutor);
+        return true;
+    }
+    
+    /**
+     * Quita un espectador. Un streaming que se queda sin suscriptores se
+     * detiene, salvo el del jugador.
+     * 
+     * @param colaSalida Cola de salida del espectador
+     * @param accionFin Acción registrada al suscribirlo
+     */
+    public synchronized void quitarEspectador(ColaSalidaSesion colaSalida, Runnable accionFin) {
+        accionesFin.remove(accionFin);
+        for (HiloEnvioFrames hilo : streams) {
+            if (hilo.quitarSuscriptor(colaSalida) && hilo != hiloStreaming) {
+                streams.remove(hilo);
+                hilo.detener();
+            }
+        }
+    }
+    
+    /**
+     * Cantidad de hilos de streaming de la partida (uno por formato).
+     * 
+     * @return Hilos de streaming activos
+     */
+    public int cantidadStreams() {
+        return streams.size();
+    }
+    
+    /**
+     * Detiene el streaming de la sesión y el de sus espectadores, y les
+     * avisa que la partida terminó.
+     */
+    public void detenerStreaming() {
+        List<Runnable> acciones;
+        synchronized (this) {
+            terminada = true;
+            if (hiloStreaming == null) {
+                return;
+            }
+            controladorModelo.setAccionCambio(null);
+            for (HiloEnvioFrames hilo : streams) {
+                hilo.detener();
+            }
+            streams.clear();
+            hiloStreaming = null;
+            
+            acciones = new ArrayList<>(accionesFin);
+            accionesFin.clear();
+        }
+        
+        // Fuera del lock: cada acción encola mensajes a su espectador
+        for (Runnable accion : acciones) {
+            accion.run();
+        }
+    }
+    
+    /**
+     * Obtiene el control adaptativo del streaming activo.
+     * 
+     * @return Control de calidad o null si no hay streaming
+     */
+    public ControlCalidadStreaming getControlStreaming() {
+        HiloEnvioFrames hilo = hiloStreaming;
+        return hilo != null ? hilo.getControl() : null;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public String getNombreJugador() {
+        return nombreJugador;
+    }
+    
+    public ControladorModelo getControladorModelo() {
+        return controladorModelo;
+    }
+    
+    public VentanaJuego getVentanaJuego() {
+        return ventanaJuego;
+    }
+    
+    public void setVentanaJuego(VentanaJuego ventanaJuego) {
+        this.ventanaJuego = ventanaJuego;
+    }
+}
@@ -0,0 +1,136 @@
+package udistrital.avanzada.pacman_servidor.modelo;
+
+import java.util.Arrays;
+
+/**
+ * DTO con una instantánea del estado visible del juego: Pac-Man y las
+ * frutas que quedan. Es lo que el cliente necesita para dibujar la
+ * escena por su cuenta. Se reutiliza entre capturas, así que capturar
+ * no reserva memoria salvo la primera vez.
+ * Lleva el número de tick de la simulación en que se tomó: dos
+ * instantáneas consecutivas distan (tick2 - tick1) periodos fijos, lo
+ * que permite interpolar la posición de Pac-Man entre ellas.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class EstadoJuego {
+    
+    private long tick;
+    private int ancho;
+    private int alto;
+    private int pacmanX;
+    private int pacmanY;
+    private Direccion direccion;
+    private int cantidadFrutas;
+    private String[] nombresFrutas;
+    private int[] frutasX;
+    private int[] frutasY;
+    
+    public EstadoJuego() {
+        this.nombresFrutas = new String[4];
+        this.frutasX = new int[4];
+        this.frutasY = new int[4];
+    }
+    
+    /**
+     * Establece el tick de la simulación en que se toma la instantánea.
+     * 
+     * @param tick Número de tick
+     */
+    public void setTick(long tick) {
+        this.tick = tick;
+    }
+    
+    /**
+     * Establece el tamaño del área de juego.
+     * 
+     * @param ancho Ancho en píxeles
+     * @param alto Alto en píxeles
+     */
+    public void setArea(int ancho, int alto) {
+        this.ancho = ancho;
+        this.alto = alto;
+    }
+    
+    /**
+     * Establece la posición y dirección de Pac-Man.
+     * 
+     * @param x Coordenada X
+     * @param y Coordenada Y
+     * @param direccion Dirección hacia la que mira
+     */
+    public void setPacMan(int x, int y, Direccion direccion) {
+        this.pacmanX = x;
+        this.pacmanY = y;
+        this.direccion = direccion;
+    }
+    
+    /**
+     * Quita las frutas de la captura anterior.
+     */
+    public void limpiarFrutas() {
+        cantidadFrutas = 0;
+    }
+    
+    /**
+     * Agrega una fruta a la instantánea.
+     * 
+     * @param nombre Nombre de la fruta
+     * @param x Coordenada X
+     * @param y Coordenada Y
+     */
+    public void agregarFruta(String nombre, int x, int y) {
+        if (cantidadFrutas == nombresFrutas.length) {
+            int capacidad = cantidadFrutas * 2;
+            nombresFrutas = Arrays.copyOf(nombresFrutas, capacidad);
+            frutasX = Arrays.copyOf(frutasX, capacidad);
+            frutasY = Arrays.copyOf(frutasY, capacidad);
+        }
+        nombresFrutas[cantidadFrutas] = nombre;
+        frutasX[cantidadFrutas] = x;
+        frutasY[cantidadFrutas] = y;
+        cantidadFrutas++;
+    }
+    
+    // Getters
+    public long getTick() {
+        return tick;
+    }
+    
+    public int getAncho() {
+        return ancho;
+    }
+    
+    public int getAlto() {
+        return alto;
+    }
+    
+    public int getPacmanX() {
+        return pacmanX;
+    }
+    
+    public int getPacmanY() {
+        return pacmanY;
+    }
+    
+    public Direccion getDireccion() {
+        return direccion;
+    }
+    
+    public int getCantidadFrutas() {
+        return cantidadFrutas;
+    }
+    
+    public String getNombreFruta(int indice) {
+        return nombresFrutas[indice];
+    }
+    
+    public int getFrutaX(int indice) {
+        return frutasX[indice];
+    }
+    
+    public int getFrutaY(int indice) {
+        return frutasY[indice];
+    }
+}
@@ -34,6 +34,8 @@ public abstract class Fruta {
     
     /**
      * Dibuja la fruta. Cada subclase define su apariencia.
+     * El cliente dibuja las escenas con una copia de estos métodos
+     * (DecodificadorEscena): un cambio aquí debe repetirse allá.
      * 
      * @param g Contexto gráfico
      */
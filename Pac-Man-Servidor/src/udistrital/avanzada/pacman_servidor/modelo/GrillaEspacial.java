@@ -0,0 +1,103 @@
+package udistrital.avanzada.pacman_servidor.modelo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Índice espacial de las frutas del juego sobre una grilla uniforme.
+ * Cada fruta se guarda en la celda que contiene su centro; como el lado
+ * de la celda es al menos la distancia de colisión, una consulta solo
+ * revisa la celda del punto y sus 8 vecinas, sin recorrer todas las
+ * frutas. Las distancias se comparan al cuadrado y en enteros.
+ * No es thread-safe; Juego la usa bajo su propio monitor.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class GrillaEspacial {
+    
+    private final int ladoCelda;
+    private final int columnas;
+    private final int filas;
+    private final List<List<Fruta>> celdas;
+    
+    /**
+     * Constructor de la grilla.
+     * 
+     * @param ancho Ancho del área de juego
+     * @param alto Alto del área de juego
+     * @param ladoCelda Lado de cada celda, no menor que la distancia de colisión
+     */
+    public GrillaEspacial(int ancho, int alto, int ladoCelda) {
+        this.ladoCelda = ladoCelda;
+        this.columnas = Math.max(1, (ancho + ladoCelda - 1) / ladoCelda);
+        this.filas = Math.max(1, (alto + ladoCelda - 1) / ladoCelda);
+        this.celdas = new ArrayList<>(columnas * filas);
+        for (int i = 0; i < columnas * filas; i++) {
+            celdas.add(new ArrayList<>(2));
+        }
+    }
+    
+    /**
+     * Agrega una fruta en la celda de su centro.
+     * 
+     * @param fruta Fruta a indexar
+     */
+    public void agregar(Fruta fruta) {
+        celdaDe(centroX(fruta), centroY(fruta)).add(fruta);
+    }
+    
+    /**
+     * Quita una fruta del índice.
+     * 
+     * @param fruta Fruta a quitar
+     */
+    public void quitar(Fruta fruta) {
+        celdaDe(centroX(fruta), centroY(fruta)).remove(fruta);
+    }
+    
+    /**
+     * Busca una fruta que colisione con un círculo.
+     * 
+     * @param centroX Centro X del círculo
+     * @param centroY Centro Y del círculo
+     * @param diametro Diámetro del círculo
+     * @return Primera fruta que colisiona, o null si no hay ninguna
+     */
+    public Fruta buscarColision(int centroX, int centroY, int diametro) {
+        // Colisión si distancia < (d1 + d2) / 2; se compara (2·distancia)² < (d1 + d2)²
+        int sumaDiametros = diametro + Fruta.getTamanio();
+        int limite = sumaDiametros * sumaDiametros;
+        
+        int columna = indice(centroX, columnas);
+        int fila = indice(centroY, filas);
+        for (int f = Math.max(0, fila - 1); f <= Math.min(filas - 1, fila + 1); f++) {
+            for (int c = Math.max(0, columna - 1); c <= Math.min(columnas - 1, columna + 1); c++) {
+                for (Fruta fruta : celdas.get(f * columnas + c)) {
+                    int dx = 2 * (centroX - centroX(fruta));
+                    int dy = 2 * (centroY - centroY(fruta));
+                    if (dx * dx + dy * dy < limite) {
+                        return fruta;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    private List<Fruta> celdaDe(int x, int y) {
+        return celdas.get(indice(y, filas) * columnas + indice(x, columnas));
+    }
+    
+    private int indice(int coordenada, int limite) {
+        return Math.max(0, Math.min(limite - 1, coordenada / ladoCelda));
+    }
+    
+    private static int centroX(Fruta fruta) {
+        return fruta.getX() + Fruta.getTamanio() / 2;
+    }
+    
+    private static int centroY(Fruta fruta) {
+        return fruta.getY() + Fruta.getTamanio() / 2;
+    }
+}
@@ -1,13 +1,23 @@
 package udistrital.avanzada.pacman_servidor.modelo;
 
 import java.awt.Graphics;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import udistrital.avanzada.pacman_servidor.util.FabricaFrutas;
 
 /**
  * Clase principal que gestiona la lógica del juego Pac-Man.
  * Coordina Pac-Man, frutas y reglas del juego.
+ * Las frutas se indexan en una GrillaEspacial, de modo que las colisiones
+ * no recorren todas las frutas y el juego admite miles de ellas.
+ * 
+ * El estado avanza en ticks de duración fija (avanzarTick()): los
+ * comandos del cliente se encolan y cada tick Pac-Man da un paso del
+ * movimiento en curso, con aritmética entera, así que la misma secuencia
+ * de comandos produce siempre la misma partida. Las instantáneas se
+ * toman entre ticks y llevan su número, para interpolar entre ellas.
  * 
  * @author Steban
  * @version 1.0
@@ -15,24 +25,54 @@ import udistrital.avanzada.pacman_servidor.util.FabricaFrutas;
 public class Juego {
     
     private PacMan pacman;
-    private List<Fruta> frutas;
+    private Set<Fruta> frutas;
+    private GrillaEspacial grillaFrutas;
     private int puntajeTotal;
     private long tiempoInicio;
     private int anchoVentana;
     private int altoVentana;
     private String nombreJugador;
+    private int cantidadFrutas;
     private static final int CANTIDAD_FRUTAS = 4;
     
     /**
-     * Constructor del juego.
+     * Comandos que pueden esperar detrás del movimiento en curso
+     */
+    private static final int MAX_MOVIMIENTOS_PENDIENTES = 4;
+    
+    // Simulación por ticks: comandos en espera y movimiento en curso
+    private final Deque<Direccion> movimientosPendientes;
+    private ResultadoMovimiento movimientoEnCurso;
+    private ResultadoMovimiento movimientoCompletado;
+    private long tick;
+    
+    /**
+     * Constructor del juego con la cantidad de frutas por defecto.
      * 
      * @param anchoVentana Ancho del área de juego
      * @param altoVentana Alto del área de juego
      */
     public Juego(int anchoVentana, int altoVentana) {
+        this(anchoVentana, altoVentana, CANTIDAD_FRUTAS);
+    }
+    
+    /**
+     * Constructor del juego.
+     * 
+     * @param anchoVentana Ancho del área de juego
+     * @param altoVentana Alto del área de juego
+     * @param cantidadFrutas Cantidad de frutas a generar
+     */
+    public Juego(int anchoVentana, int altoVentana, int cantidadFrutas) {
         this.anchoVentana = anchoVentana;
         this.altoVentana = altoVentana;
-        this.frutas = new ArrayList<>();
+        this.cantidadFrutas = cantidadFrutas;
+        // Orden de inserción estable para dibujar y capturar el estado
+        this.frutas = new LinkedHashSet<>();
+        this.movimientosPendientes = new ArrayDeque<>(MAX_MOVIMIENTOS_PENDIENTES);
+        // Celda del tamaño de la distancia de colisión entre centros
+        int distanciaColision = (PacMan.getTamanio() + Fruta.getTamanio() + 1) / 2;
+        this.grillaFrutas = new GrillaEspacial(anchoVentana, altoVentana, distanciaColision);
         this.puntajeTotal = 0;
     }
     
@@ -41,7 +81,7 @@ public class Juego {
      * 
      * @param nombreJugador Nombre del jugador
      */
-    public void inicializar(String nombreJugador) {
+    public synchronized void inicializar(String nombreJugador) {
         this.nombreJugador = nombreJugador;
         
         // Pac-Man en el centro
@@ -49,11 +89,12 @@ public class Juego {
         int centroY = altoVentana / 2;
         this.pacman = new PacMan(centroX, centroY);
         
-        // Generar 4 frutas aleatorias
-        for (int i = 0; i < CANTIDAD_FRUTAS; i++) {
+        // Generar las frutas aleatorias
+        for (int i = 0; i < cantidadFrutas; i++) {
             int[] pos = FabricaFrutas.generarPosicionAleatoria(anchoVentana, altoVentana);
             Fruta fruta = FabricaFrutas.crearFrutaAleatoria(pos[0], pos[1]);
             frutas.add(fruta);
+            grillaFrutas.agregar(fruta);
         }
         
         // Iniciar cronómetro
@@ -61,51 +102,106 @@ public class Juego {
     }
     
     /**
-     * Mueve a Pac-Man y procesa colisiones.
-     * Encapsula toda la lógica de movimiento.
+     * Encola un comando de movimiento; se ejecuta en los ticks siguientes,
+     * cuando termine el movimiento en curso.
      * 
      * @param direccion Dirección del movimiento
-     * @return Resultado del movimiento
+     * @return false si ya hay demasiados comandos en espera
      */
-    public ResultadoMovimiento moverPacMan(Direccion direccion) {
-        ResultadoMovimiento resultado = new ResultadoMovimiento();
+    public synchronized boolean encolarMovimiento(Direccion direccion) {
+        if (movimientosPendientes.size() >= MAX_MOVIMIENTOS_PENDIENTES) {
+            return false;
+        }
+        movimientosPendientes.add(direccion);
+        return true;
+    }
+    
+    /**
+     * Avanza la simulación un tick: Pac-Man da un paso del movimiento en
+     * curso (o empieza el siguiente comando) y come las frutas que toque.
+     * Sincronizado con dibujar(): el renderizado ocurre en otro hilo.
+     * 
+     * @return true si el estado visible cambió
+     */
+    public synchronized boolean avanzarTick() {
+        tick++;
+        
+        if (movimientoEnCurso == null) {
+            Direccion direccion = movimientosPendientes.poll();
+            if (direccion == null) {
+                return false;
+            }
+            pacman.iniciarMovimiento(direccion);
+            movimientoEnCurso = new ResultadoMovimiento();
+        }
+        
+        // Un paso; las colisiones se revisan en cada posición del recorrido
+        if (pacman.avanzarPaso(anchoVentana, altoVentana)) {
+            comerFrutas(movimientoEnCurso);
+        }
         
-        // Mover Pac-Man
-        int casillasMovidas = pacman.intentarMover(direccion, anchoVentana, altoVentana);
-        resultado.setCasillasMovidas(casillasMovidas);
+        if (!pacman.isEnMovimiento()) {
+            completarMovimiento();
+        }
+        return true;
+    }
+    
+    /**
+     * Cierra el movimiento en curso con las casillas recorridas.
+     */
+    private void completarMovimiento() {
+        int casillasMovidas = pacman.getCasillasMovidas();
+        movimientoEnCurso.setCasillasMovidas(casillasMovidas);
         
         // Verificar si alcanzó límite
-        if (casillasMovidas < 4) {
-            resultado.setLimiteAlcanzado(true);
+        if (casillasMovidas < PacMan.getCasillasPorMovimiento()) {
+            movimientoEnCurso.setLimiteAlcanzado(true);
         }
         
-        // Verificar colisiones con frutas
-        Fruta frutaColisionada = verificarColisionConFrutas();
-        if (frutaColisionada != null) {
+        movimientoCompletado = movimientoEnCurso;
+        movimientoEnCurso = null;
+    }
+    
+    /**
+     * Obtiene el movimiento que terminó en el último tick, si lo hubo.
+     * 
+     * @return Resultado del movimiento o null
+     */
+    public synchronized ResultadoMovimiento tomarMovimientoCompletado() {
+        ResultadoMovimiento resultado = movimientoCompletado;
+        movimientoCompletado = null;
+        return resultado;
+    }
+    
+    /**
+     * Come las frutas que colisionan con Pac-Man en su posición actual.
+     * Método privado - detalle de implementación.
+     * 
+     * @param resultado Resultado del movimiento donde se acumulan las frutas
+     */
+    private void comerFrutas(ResultadoMovimiento resultado) {
+        Fruta frutaColisionada;
+        while ((frutaColisionada = verificarColisionConFrutas()) != null) {
             puntajeTotal += frutaColisionada.getPuntos();
             frutas.remove(frutaColisionada);
+            grillaFrutas.quitar(frutaColisionada);
             
             resultado.setFrutaComida(true);
             resultado.setNombreFruta(frutaColisionada.getNombre());
-            resultado.setPuntosGanados(frutaColisionada.getPuntos());
+            resultado.setPuntosGanados(resultado.getPuntosGanados() + frutaColisionada.getPuntos());
+            resultado.setFrutasComidas(resultado.getFrutasComidas() + 1);
         }
-        
-        return resultado;
     }
     
     /**
-     * Verifica colisión de Pac-Man con todas las frutas.
+     * Verifica colisión de Pac-Man con las frutas cercanas.
      * Método privado - detalle de implementación.
      * 
      * @return Fruta colisionada o null
      */
     private Fruta verificarColisionConFrutas() {
-        for (Fruta fruta : frutas) {
-            if (pacman.colisionaCon(fruta.getX(), fruta.getY(), Fruta.getTamanio())) {
-                return fruta;
-            }
-        }
-        return null;
+        return grillaFrutas.buscarColision(pacman.getCentroX(), pacman.getCentroY(),
+            PacMan.getTamanio());
     }
     
     /**
@@ -114,7 +210,7 @@ public class Juego {
      * 
      * @param g Contexto gráfico
      */
-    public void dibujar(Graphics g) {
+    public synchronized void dibujar(Graphics g) {
         pacman.dibujar(g);
         
         for (Fruta fruta : frutas) {
@@ -122,12 +218,28 @@ public class Juego {
         }
     }
     
+    /**
+     * Copia el estado visible del juego (lo que dibuja dibujar()) en una
+     * instantánea, para enviarlo al cliente en lugar de un frame.
+     * 
+     * @param destino Instantánea a llenar, reutilizable entre llamadas
+     */
+    public synchronized void capturarEstado(EstadoJuego destino) {
+        destino.setTick(tick);
+        destino.setArea(anchoVentana, altoVentana);
+        destino.setPacMan(pacman.getX(), pacman.getY(), pacman.getDireccion());
+        destino.limpiarFrutas();
+        for (Fruta fruta : frutas) {
+            destino.agregarFruta(fruta.getNombre(), fruta.getX(), fruta.getY());
+        }
+    }
+    
     /**
      * Verifica si el juego terminó (todas las frutas comidas).
      * 
      * @return true si terminó, false en caso contrario
      */
-    public boolean isJuegoTerminado() {
+    public synchronized boolean isJuegoTerminado() {
         return frutas.isEmpty();
     }
     
@@ -144,11 +256,15 @@ public class Juego {
         return puntajeTotal;
     }
     
+    public synchronized long getTick() {
+        return tick;
+    }
+    
     public String getNombreJugador() {
         return nombreJugador;
     }
     
-    public int getFrutasRestantes() {
+    public synchronized int getFrutasRestantes() {
         return frutas.size();
     }
 }
\ No newline at end of file
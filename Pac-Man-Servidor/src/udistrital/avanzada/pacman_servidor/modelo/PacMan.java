@@ -38,6 +38,16 @@ public class PacMan {
      */
     private static final int CASILLAS_POR_MOVIMIENTO = 4;
     
+    /**
+     * Ticks de simulación que toma recorrer una casilla
+     */
+    private static final int PASOS_POR_CASILLA = 4;
+    
+    /**
+     * Píxeles que avanza Pac-Man en cada tick
+     */
+    private static final int PIXELES_POR_PASO = VELOCIDAD / PASOS_POR_CASILLA;
+    
     /**
      * Color de Pac-Man
      */
@@ -48,6 +58,11 @@ public class PacMan {
      */
     private Direccion direccionActual;
     
+    // Movimiento en curso: casillas que faltan, pasos dados en la actual y casillas completadas
+    private int casillasPendientes;
+    private int pasosEnCasilla;
+    private int casillasMovidas;
+    
     /**
      * Constructor de Pac-Man.
      * 
@@ -61,42 +76,90 @@ public class PacMan {
     }
     
     /**
-     * Intenta mover a Pac-Man en la dirección indicada.
-     * Mueve 4 casillas, deteniéndose si encuentra un límite.
+     * Empieza un movimiento de 4 casillas en la dirección indicada.
+     * El movimiento avanza un paso por tick con avanzarPaso().
      * 
      * @param direccion Dirección del movimiento
+     */
+    public void iniciarMovimiento(Direccion direccion) {
+        this.direccionActual = direccion;
+        this.casillasPendientes = CASILLAS_POR_MOVIMIENTO;
+        this.pasosEnCasilla = 0;
+        this.casillasMovidas = 0;
+    }
+    
+    /**
+     * Avanza un paso (un tick) del movimiento en curso.
+     * Al empezar cada casilla verifica que quepa completa dentro de los
+     * límites; si no cabe, el movimiento termina ahí. Las posiciones
+     * finales son las mismas que con el movimiento de 4 casillas de una vez.
+     * 
      * @param anchoMax Ancho máximo de la ventana
      * @param altoMax Alto máximo de la ventana
-     * @return Número de casillas efectivamente movidas (0-4)
+     * @return true si Pac-Man se movió en este paso
      */
-    public int intentarMover(Direccion direccion, int anchoMax, int altoMax) {
-        this.direccionActual = direccion;
-        int casillasMovidas = 0;
+    public boolean avanzarPaso(int anchoMax, int altoMax) {
+        if (casillasPendientes == 0) {
+            return false;
+        }
         
-        // Intentar mover 4 casillas
-        for (int i = 0; i < CASILLAS_POR_MOVIMIENTO; i++) {
-            int nuevoX = x + (direccion.getDeltaX() * VELOCIDAD);
-            int nuevoY = y + (direccion.getDeltaY() * VELOCIDAD);
-            
-            // Verificar límites (dejando espacio para el tamaño de Pac-Man)
-            if (nuevoX >= 0 && nuevoX + TAMANIO <= anchoMax &&
-                nuevoY >= 0 && nuevoY + TAMANIO <= altoMax) {
-                
-                x = nuevoX;
-                y = nuevoY;
-                casillasMovidas++;
-            } else {
+        int deltaX = direccionActual.getDeltaX();
+        int deltaY = direccionActual.getDeltaY();
+        
+        // Verificar límites de la casilla completa (dejando espacio para el tamaño de Pac-Man)
+        if (pasosEnCasilla == 0) {
+            int destinoX = x + deltaX * VELOCIDAD;
+            int destinoY = y + deltaY * VELOCIDAD;
+            if (destinoX < 0 || destinoX + TAMANIO > anchoMax ||
+                destinoY < 0 || destinoY + TAMANIO > altoMax) {
                 // Límite alcanzado, detener movimiento
-                break;
+                casillasPendientes = 0;
+                return false;
             }
         }
         
+        x += deltaX * PIXELES_POR_PASO;
+        y += deltaY * PIXELES_POR_PASO;
+        
+        pasosEnCasilla++;
+        if (pasosEnCasilla == PASOS_POR_CASILLA) {
+            pasosEnCasilla = 0;
+            casillasPendientes--;
+            casillasMovidas++;
+        }
+        return true;
+    }
+    
+    /**
+     * Indica si hay un movimiento en curso.
+     * 
+     * @return true mientras falten pasos del último movimiento
+     */
+    public boolean isEnMovimiento() {
+        return casillasPendientes > 0;
+    }
+    
+    /**
+     * Obtiene las casillas completadas en el último movimiento.
+     * 
+     * @return Casillas movidas (0-4)
+     */
+    public int getCasillasMovidas() {
         return casillasMovidas;
     }
     
+    /**
+     * Obtiene las casillas que recorre un movimiento completo.
+     * 
+     * @return Casillas por movimiento
+     */
+    public static int getCasillasPorMovimiento() {
+        return CASILLAS_POR_MOVIMIENTO;
+    }
+    
     /**
      * Verifica si Pac-Man colisiona con una posición dada.
-     * Usa detección de colisión circular.
+     * Usa detección de colisión circular con aritmética entera.
      * 
      * @param objX Coordenada X del objeto
      * @param objY Coordenada Y del objeto
@@ -104,29 +167,22 @@ public class PacMan {
      * @return true si hay colisión, false en caso contrario
      */
     public boolean colisionaCon(int objX, int objY, int objTamanio) {
-        // Centro de Pac-Man
-        int centroX = x + TAMANIO / 2;
-        int centroY = y + TAMANIO / 2;
-        
         // Centro del objeto
         int objCentroX = objX + objTamanio / 2;
         int objCentroY = objY + objTamanio / 2;
         
-        // Distancia entre centros
-        double distancia = Math.sqrt(
-            Math.pow(centroX - objCentroX, 2) + 
-            Math.pow(centroY - objCentroY, 2)
-        );
-        
-        // Suma de radios
-        double sumaRadios = (TAMANIO + objTamanio) / 2.0;
-        
-        return distancia < sumaRadios;
+        // distancia < suma de radios, comparado como (2·distancia)² < (suma de diámetros)²
+        int dx = 2 * (getCentroX() - objCentroX);
+        int dy = 2 * (getCentroY() - objCentroY);
+        int sumaDiametros = TAMANIO + objTamanio;
+        return dx * dx + dy * dy < sumaDiametros * sumaDiametros;
     }
     
     /**
      * Dibuja a Pac-Man en el contexto gráfico.
      * Respeta el principio de que el objeto se dibuja a sí mismo.
+     * El cliente dibuja las escenas con una copia de este método
+     * (DecodificadorEscena): un cambio aquí debe repetirse allá.
      * 
      * @param g Contexto gráfico donde dibujar
      */
@@ -150,7 +206,7 @@ public class PacMan {
                 xPoints[2] = x + TAMANIO;
                 yPoints[2] = y + 3 * TAMANIO / 4;
                 break;
-                
+            
             case IZQUIERDA:
                 xPoints[0] = x + TAMANIO / 2;
                 yPoints[0] = y + TAMANIO / 2;
@@ -159,7 +215,7 @@ public class PacMan {
                 xPoints[2] = x;
                 yPoints[2] = y + 3 * TAMANIO / 4;
                 break;
-                
+            
             case ARRIBA:
                 xPoints[0] = x + TAMANIO / 2;
                 yPoints[0] = y + TAMANIO / 2;
@@ -168,7 +224,7 @@ public class PacMan {
                 xPoints[2] = x + 3 * TAMANIO / 4;
                 yPoints[2] = y;
                 break;
-                
+            
             case ABAJO:
                 xPoints[0] = x + TAMANIO / 2;
                 yPoints[0] = y + TAMANIO / 2;
@@ -207,6 +263,33 @@ public class PacMan {
         return y;
     }
     
+    /**
+     * Obtiene la coordenada X del centro de Pac-Man.
+     * 
+     * @return Centro en X
+     */
+    public int getCentroX() {
+        return x + TAMANIO / 2;
+    }
+    
+    /**
+     * Obtiene la coordenada Y del centro de Pac-Man.
+     * 
+     * @return Centro en Y
+     */
+    public int getCentroY() {
+        return y + TAMANIO / 2;
+    }
+    
+    /**
+     * Obtiene la dirección hacia la que mira Pac-Man.
+     * 
+     * @return Dirección actual
+     */
+    public Direccion getDireccion() {
+        return direccionActual;
+    }
+    
     /**
      * Obtiene el tamaño de Pac-Man.
      * 
@@ -3,6 +3,8 @@ package udistrital.avanzada.pacman_servidor.modelo;
 /**
  * DTO que encapsula el resultado de un movimiento de Pac-Man.
  * Permite comunicar información sin violar Ley de Demeter.
+ * Si un movimiento come varias frutas, el nombre es el de la última y
+ * los puntos son la suma de todas.
  * 
  * @author Steban
  * @version 1.0
@@ -14,6 +16,7 @@ public class ResultadoMovimiento {
     private boolean frutaComida;
     private String nombreFruta;
     private int puntosGanados;
+    private int frutasComidas;
     
     public ResultadoMovimiento() {
         this.casillasMovidas = 0;
@@ -61,4 +64,12 @@ public class ResultadoMovimiento {
     public void setPuntosGanados(int puntosGanados) {
         this.puntosGanados = puntosGanados;
     }
+    
+    public int getFrutasComidas() {
+        return frutasComidas;
+    }
+    
+    public void setFrutasComidas(int frutasComidas) {
+        this.frutasComidas = frutasComidas;
+    }
 }
\ No newline at end of file
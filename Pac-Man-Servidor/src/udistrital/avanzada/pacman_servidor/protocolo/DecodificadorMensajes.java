@@ -0,0 +1,159 @@
+package udistrital.avanzada.pacman_servidor.protocolo;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lee mensajes del protocolo binario de un stream.
+ * Primero se lee el encabezado (opcode y longitud) y luego los campos
+ * de la carga en orden; lo que no se lea se puede descartar, lo que
+ * permite ignorar opcodes desconocidos de versiones posteriores.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class DecodificadorMensajes {
+    
+    private final DataInputStream entrada;
+    private int opcode;
+    private int restante;
+    
+    /**
+     * Constructor del decodificador.
+     * 
+     * @param entrada Stream de entrada de la conexión
+     */
+    public DecodificadorMensajes(DataInputStream entrada) {
+        this.entrada = entrada;
+        this.opcode = -1;
+        this.restante = 0;
+    }
+    
+    /**
+     * Lee el encabezado del siguiente mensaje (bloqueante).
+     * 
+     * @return Opcode del mensaje
+     * @throws IOException Si hay error de lectura o el stream terminó
+     */
+    public int leerEncabezado() throws IOException {
+        opcode = entrada.readUnsignedByte();
+        restante = leerVarintSinLimite();
+        if (restante < 0) {
+            throw new IOException("Longitud de mensaje inválida: " + restante);
+        }
+        return opcode;
+    }
+    
+    /**
+     * Opcode del mensaje actual.
+     * 
+     * @return Opcode leído en el último encabezado
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+    
+    /**
+     * Bytes de la carga que aún no se han leído.
+     * 
+     * @return Bytes restantes del mensaje actual
+     */
+    public int getRestante() {
+        return restante;
+    }
+    
+    /**
+     * Lee un byte sin signo de la carga.
+     * 
+     * @return Valor leído (0 - 255)
+     * @throws IOException Si la carga no tiene más bytes
+     */
+    public int leerByte() throws IOException {
+        consumir(1);
+        return entrada.readUnsignedByte();
+    }
+    
+    /**
+     * Lee un varint sin signo de la carga.
+     * 
+     * @return Valor leído
+     * @throws IOException Si el varint está truncado o es inválido
+     */
+    public int leerVarint() throws IOException {
+        int valor = leerVarintSinLimite();
+        if (restante < 0) {
+            throw new IOException("Mensaje truncado (opcode " + opcode + ")");
+        }
+        return valor;
+    }
+    
+    /**
+     * Lee una cadena (varint de longitud + UTF-8) de la carga.
+     * 
+     * @return Cadena leída
+     * @throws IOException Si la cadena está truncada
+     */
+    public String leerCadena() throws IOException {
+        int longitud = leerVarint();
+        consumir(longitud);
+        byte[] bytes = new byte[longitud];
+        entrada.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Lee bytes de la carga en un arreglo existente.
+     * 
+     * @param destino Arreglo destino
+     * @param desplazamiento Posición inicial en el destino
+     * @param longitud Cantidad de bytes
+     * @throws IOException Si la carga no tiene suficientes bytes
+     */
+    public void leerBytes(byte[] destino, int desplazamiento, int longitud) throws IOException {
+        consumir(longitud);
+        entrada.readFully(destino, desplazamiento, longitud);
+    }
+    
+    /**
+     * Descarta lo que quede de la carga del mensaje actual.
+     * 
+     * @throws IOException Si hay error de lectura
+     */
+    public void descartarResto() throws IOException {
+        while (restante > 0) {
+            int saltados = entrada.skipBytes(restante);
+            if (saltados <= 0) {
+                entrada.readUnsignedByte();
+                saltados = 1;
+            }
+            restante -= saltados;
+        }
+    }
+    
+    /**
+     * Lee un varint descontándolo de la carga restante.
+     */
+    private int leerVarintSinLimite() throws IOException {
+        int valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+            int b = entrada.readUnsignedByte();
+            restante--;
+            valor |= (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Varint inválido");
+    }
+    
+    /**
+     * Verifica que la carga tenga los bytes pedidos y los descuenta.
+     */
+    private void consumir(int bytes) throws IOException {
+        if (bytes < 0 || bytes > restante) {
+            throw new IOException("Mensaje truncado (opcode " + opcode + ")");
+        }
+        restante -= bytes;
+    }
+}
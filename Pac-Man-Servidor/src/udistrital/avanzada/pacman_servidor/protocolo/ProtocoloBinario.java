@@ -0,0 +1,244 @@
+package udistrital.avanzada.pacman_servidor.protocolo;
+
+/**
+ * Definición del protocolo binario versionado entre cliente y servidor.
+ * DEBE ser idéntico en Pac-Man-Servidor y Pac-Man-Cliente.
+ * 
+ * Negociación (compatible con el protocolo de texto): el servidor envía
+ * la OFERTA como mensaje de autenticación de texto; un cliente que la
+ * soporte responde con ACEPTACION (writeUTF) como primer mensaje y desde
+ * ese punto ambos lados hablan binario. Un cliente antiguo solo muestra
+ * la oferta y sigue con el protocolo de texto. La versión va en la
+ * oferta: un cliente de otra versión no la reconoce y también sigue con
+ * el protocolo de texto.
+ * 
+ * Formato de cada mensaje binario:
+ * [opcode: 1 byte][longitud de la carga: varint][carga]
+ * Los enteros de la carga son varints sin signo (LEB128) y las cadenas
+ * son varint de longitud seguido de bytes UTF-8.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public final class ProtocoloBinario {
+    
+    /**
+     * Versión del protocolo binario.
+     * 2: los frames llevan marca de tiempo de presentación
+     * 3: el cliente informa sus codecs y cada frame o tile indica el suyo
+     * 4: un FRAME_DELTA cuyos tiles cubren todo el frame es un keyframe
+     *    (franjas comprimidas en paralelo) y no requiere frame anterior
+     */
+    public static final int VERSION = 4;
+    
+    /**
+     * Oferta de protocolo binario enviada por el servidor
+     */
+    public static final String OFERTA = "PROTOCOLO_BINARIO|" + VERSION;
+    
+    /**
+     * Respuesta del cliente que acepta el protocolo binario
+     */
+    public static final String ACEPTACION = "USAR_PROTOCOLO_BINARIO|" + VERSION;
+    
+    /**
+     * Tamaño máximo de la carga de un mensaje de control
+     */
+    public static final int TAMANIO_MAXIMO_CONTROL = 64 * 1024;
+    
+    // ========== OPCODES CLIENTE -> SERVIDOR ==========
+    
+    /**
+     * Usuario o contraseña (cadena), según lo que se haya solicitado
+     */
+    public static final int CREDENCIAL = 0x01;
+    
+    /**
+     * Movimiento: código de dirección (1 byte)
+     */
+    public static final int MOVIMIENTO = 0x02;
+    
+    /**
+     * Codecs de frame que el cliente sabe decodificar: cantidad (varint)
+     * y un código CODEC_* (1 byte) por codec. Se envía justo después de
+     * la aceptación; sin él el servidor usa CODEC_JPEG
+     */
+    public static final int CODECS = 0x03;
+    
+    /**
+     * Conexión de espectador: jugador cuya partida se quiere ver (cadena).
+     * Se envía antes de las credenciales; tras autenticarse la conexión
+     * recibe los frames de esa partida y no puede mover a Pac-Man
+     */
+    public static final int ESPECTAR = 0x04;
+    
+    // ========== OPCODES SERVIDOR -> CLIENTE ==========
+    
+    /**
+     * Solicitud de credencial: SOLICITUD_USUARIO o SOLICITUD_PASSWORD (1 byte)
+     */
+    public static final int SOLICITUD_AUTENTICACION = 0x10;
+    
+    /**
+     * Resultado de autenticación: AUTENTICACION_* (1 byte)
+     */
+    public static final int RESULTADO_AUTENTICACION = 0x11;
+    
+    /**
+     * Resultado de movimiento: banderas (1 byte), casillas (varint) y,
+     * si se comió una fruta, nombre (cadena) y puntos (varint)
+     */
+    public static final int RESULTADO_MOVIMIENTO = 0x20;
+    
+    /**
+     * Estado del juego: puntaje, tiempo en segundos y frutas restantes (varints)
+     */
+    public static final int PUNTAJE = 0x21;
+    
+    /**
+     * Fin del juego: jugador (cadena), puntaje y tiempo (varints)
+     */
+    public static final int FIN_JUEGO = 0x22;
+    
+    /**
+     * Mensaje de texto libre (cadena)
+     */
+    public static final int TEXTO = 0x23;
+    
+    /**
+     * Frame completo: marca de tiempo (varint, ms), codec (1 byte) y
+     * bytes codificados (resto de la carga)
+     */
+    public static final int FRAME = 0x30;
+    
+    /**
+     * Frame parcial: marca de tiempo, ancho, alto, cantidad (varints) y
+     * por tile x, y (varints), codec (1 byte), longitud (varint) y bytes.
+     * Los tiles no se superponen; si cubren todo el frame es un keyframe
+     */
+    public static final int FRAME_DELTA = 0x31;
+    
+    // ========== VALORES ==========
+    
+    public static final int SOLICITUD_USUARIO = 0;
+    public static final int SOLICITUD_PASSWORD = 1;
+    
+    public static final int AUTENTICACION_OK = 0;
+    public static final int AUTENTICACION_RECHAZADA = 1;
+    public static final int AUTENTICACION_ERROR = 2;
+    
+    public static final int BANDERA_LIMITE = 0x01;
+    public static final int BANDERA_FRUTA = 0x02;
+    
+    /**
+     * Imagen JPEG
+     */
+    public static final int CODEC_JPEG = 0;
+    
+    /**
+     * Paleta indexada con runs, sin pérdida: ancho y alto (varints),
+     * cantidad de colores menos uno (1 byte), la paleta en RGB (3 bytes
+     * por color) y los runs de píxeles fila por fila: índice en la
+     * paleta (1 byte) y repeticiones menos uno (varint)
+     */
+    public static final int CODEC_PALETA = 1;
+    
+    /**
+     * Escena: en lugar de píxeles, el estado visible del juego, que el
+     * cliente dibuja. Ancho y alto del área de juego (varints), Pac-Man
+     * x, y (varints) y dirección (1 byte), cantidad de frutas (varint) y
+     * por fruta su tipo (1 byte) y x, y (varints). Solo se usa con los
+     * clientes que lo anuncian en CODECS; los demás reciben video
+     */
+    public static final int CODEC_ESCENA = 2;
+    
+    /**
+     * Nombres de las direcciones; el índice es el código en el cable
+     */
+    private static final String[] DIRECCIONES = {"ARRIBA", "ABAJO", "IZQUIERDA", "DERECHA"};
+    
+    /**
+     * Nombres de las frutas; el índice es el tipo en CODEC_ESCENA
+     */
+    private static final String[] FRUTAS = {
+        "Cereza", "Fresa", "Naranja", "Manzana", "Melon", "Galaxian", "Campana", "Llave"
+    };
+    
+    private ProtocoloBinario() {
+    }
+    
+    /**
+     * Obtiene el código de una dirección.
+     * 
+     * @param nombre Nombre de la dirección (ARRIBA, ABAJO, IZQUIERDA, DERECHA)
+     * @return Código de la dirección
+     * @throws IllegalArgumentException si la dirección no existe
+     */
+    public static int codigoDireccion(String nombre) {
+        for (int i = 0; i < DIRECCIONES.length; i++) {
+            if (DIRECCIONES[i].equals(nombre)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Dirección desconocida: " + nombre);
+    }
+    
+    /**
+     * Obtiene el nombre de una dirección a partir de su código.
+     * 
+     * @param codigo Código de la dirección
+     * @return Nombre de la dirección
+     * @throws IllegalArgumentException si el código no existe
+     */
+    public static String nombreDireccion(int codigo) {
+        if (codigo < 0 || codigo >= DIRECCIONES.length) {
+            throw new IllegalArgumentException("Código de dirección desconocido: " + codigo);
+        }
+        return DIRECCIONES[codigo];
+    }
+    
+    /**
+     * Obtiene el tipo de una fruta.
+     * 
+     * @param nombre Nombre de la fruta (Cereza, Fresa, ..., Llave)
+     * @return Tipo de la fruta
+     * @throws IllegalArgumentException si la fruta no existe
+     */
+    public static int codigoFruta(String nombre) {
+        for (int i = 0; i < FRUTAS.length; i++) {
+            if (FRUTAS[i].equals(nombre)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Fruta desconocida: " + nombre);
+    }
+    
+    /**
+     * Obtiene el nombre de una fruta a partir de su tipo.
+     * 
+     * @param codigo Tipo de la fruta
+     * @return Nombre de la fruta
+     * @throws IllegalArgumentException si el tipo no existe
+     */
+    public static String nombreFruta(int codigo) {
+        if (codigo < 0 || codigo >= FRUTAS.length) {
+            throw new IllegalArgumentException("Tipo de fruta desconocido: " + codigo);
+        }
+        return FRUTAS[codigo];
+    }
+    
+    /**
+     * Calcula cuántos bytes ocupa un varint.
+     * 
+     * @param valor Valor no negativo
+     * @return Bytes del varint (1 a 5)
+     */
+    public static int tamanioVarint(int valor) {
+        int bytes = 1;
+        while ((valor & ~0x7F) != 0) {
+            valor >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+}
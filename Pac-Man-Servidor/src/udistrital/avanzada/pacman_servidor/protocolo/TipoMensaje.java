@@ -0,0 +1,106 @@
+package udistrital.avanzada.pacman_servidor.protocolo;
+
+/**
+ * Enumeración que representa los tipos de mensajes del protocolo de comunicación
+ * entre cliente y servidor. Cada tipo tiene un código corto para transmisión eficiente.
+ * DEBE ser idéntico en Pac-Man-Servidor y Pac-Man-Cliente.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public enum TipoMensaje {
+    /**
+     * Comando de movimiento enviado por el cliente
+     */
+    COMANDO("CMD"),
+    
+    /**
+     * Mensaje de texto del servidor al cliente
+     */
+    MENSAJE_TEXTO("MSG"),
+    
+    /**
+     * Frame de video enviado por el servidor
+     */
+    FRAME_VIDEO("FRM"),
+    
+    /**
+     * Frame de video parcial: solo los tiles que cambiaron desde el último envío
+     */
+    FRAME_DELTA("FRD"),
+    
+    /**
+     * Mensajes de autenticación (bidireccional)
+     */
+    AUTENTICACION("AUT"),
+    
+    /**
+     * Resultado final del juego
+     */
+    RESULTADO("RES");
+    
+    private final String codigo;
+    
+    /**
+     * Constructor de la enumeración.
+     * 
+     * @param codigo Código corto para transmisión por socket
+     */
+    TipoMensaje(String codigo) {
+        this.codigo = codigo;
+    }
+    
+    /**
+     * Obtiene el código del tipo de mensaje.
+     * 
+     * @return Código corto del mensaje
+     */
+    public String getCodigo() {
+        return codigo;
+    }
+    
+    /**
+     * Obtiene el TipoMensaje a partir de un código.
+     * Se resuelve con un switch (tabla por hash), en tiempo constante.
+     * 
+     * @param codigo Código a buscar
+     * @return TipoMensaje correspondiente
+     * @throws IllegalArgumentException si el código no existe
+     */
+    public static TipoMensaje fromCodigo(String codigo) {
+        TipoMensaje tipo = buscar(codigo);
+        if (tipo == null) {
+            throw new IllegalArgumentException("Código de mensaje desconocido: " + codigo);
+        }
+        return tipo;
+    }
+    
+    /**
+     * Obtiene el TipoMensaje a partir de un código, sin lanzar excepción.
+     * 
+     * @param codigo Código a buscar
+     * @return TipoMensaje correspondiente o null si el código no existe
+     */
+    public static TipoMensaje buscar(String codigo) {
+        if (codigo == null) {
+            return null;
+        }
+        
+        switch (codigo) {
+            case "CMD":
+                return COMANDO;
+            case "MSG":
+                return MENSAJE_TEXTO;
+            case "FRM":
+                return FRAME_VIDEO;
+            case "FRD":
+                return FRAME_DELTA;
+            case "AUT":
+                return AUTENTICACION;
+            case "RES":
+                return RESULTADO;
+            default:
+                return null;
+        }
+    }
+}
\ No newline at end of file
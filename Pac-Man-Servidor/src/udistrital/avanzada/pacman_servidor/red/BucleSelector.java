@@ -0,0 +1,145 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bucle de E/S de un hilo selector del motor NIO.
+ * Atiende la lectura y escritura de muchas conexiones con un solo hilo;
+ * los demás hilos solo le encolan registros y pedidos de escritura.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+class BucleSelector implements Runnable {
+    
+    private final Selector selector;
+    private final Queue<ConexionNIO> registrosPendientes;
+    private final Queue<ConexionNIO> escriturasPendientes;
+    private volatile boolean activo;
+    
+    /**
+     * Constructor del bucle.
+     * 
+     * @throws IOException Si no se puede abrir el selector
+     */
+    BucleSelector() throws IOException {
+        this.selector = Selector.open();
+        this.registrosPendientes = new ConcurrentLinkedQueue<>();
+        this.escriturasPendientes = new ConcurrentLinkedQueue<>();
+        this.activo = true;
+    }
+    
+    /**
+     * Entrega una conexión nueva a este bucle.
+     * 
+     * @param conexion Conexión aceptada
+     */
+    void registrar(ConexionNIO conexion) {
+        registrosPendientes.add(conexion);
+        selector.wakeup();
+    }
+    
+    /**
+     * Pide al bucle que escriba lo pendiente de la conexión.
+     * 
+     * @param conexion Conexión con escrituras encoladas
+     */
+    void solicitarEscritura(ConexionNIO conexion) {
+        if (conexion.escrituraSolicitada.compareAndSet(false, true)) {
+            escriturasPendientes.add(conexion);
+            selector.wakeup();
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (activo) {
+            try {
+                selector.select();
+                procesarPendientes();
+                
+                Iterator<SelectionKey> claves = selector.selectedKeys().iterator();
+                while (claves.hasNext()) {
+                    SelectionKey clave = claves.next();
+                    claves.remove();
+                    atender(clave);
+                }
+            
+            } catch (IOException e) {
+                if (activo) {
+                    System.err.println("Error en selector: " + e.getMessage());
+                }
+            }
+        }
+        
+        cerrarConexiones();
+    }
+    
+    /**
+     * Registra canales nuevos y activa las escrituras solicitadas.
+     */
+    private void procesarPendientes() {
+        ConexionNIO conexion;
+        
+        while ((conexion = registrosPendientes.poll()) != null) {
+            try {
+                SocketChannel canal = conexion.getCanal();
+                SelectionKey clave = canal.register(selector, SelectionKey.OP_READ, conexion);
+                conexion.registrada(clave);
+            } catch (IOException e) {
+                conexion.cerrar();
+            }
+        }
+        
+        while ((conexion = escriturasPendientes.poll()) != null) {
+            conexion.habilitarEscritura();
+        }
+    }
+    
+    /**
+     * Atiende los eventos listos de una conexión.
+     */
+    private void atender(SelectionKey clave) {
+        ConexionNIO conexion = (ConexionNIO) clave.attachment();
+        
+        try {
+            if (clave.isValid() && clave.isReadable()) {
+                conexion.leer();
+            }
+            if (clave.isValid() && clave.isWritable()) {
+                conexion.escribir();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            conexion.cerrar();
+        }
+    }
+    
+    /**
+     * Cierra todas las conexiones del selector al detenerse.
+     */
+    private void cerrarConexiones() {
+        for (SelectionKey clave : selector.keys()) {
+            ((ConexionNIO) clave.attachment()).cerrar();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignorar al cerrar
+        }
+    }
+    
+    /**
+     * Detiene el bucle.
+     */
+    void detener() {
+        activo = false;
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,517 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Planificador de salida de una sesión con dos prioridades.
+ * Los mensajes de control (autenticación, resultados de movimiento,
+ * puntaje, fin de juego) se encolan en orden y siempre salen antes que
+ * el video; de video solo se guarda el último frame: si llega uno nuevo
+ * antes de enviar el anterior, el anterior se descarta.
+ * 
+ * Un único hilo emisor escribe en la salida de la conexión, de modo que
+ * un frame de varios kilobytes a un cliente lento nunca retiene al hilo
+ * que responde los movimientos. Quien produce un mensaje lo serializa
+ * en un buffer propio y lo entrega ya armado; los frames llegan como
+ * FrameCompartido, que se guarda por referencia porque el mismo frame
+ * puede estar en la cola de varios clientes (jugador y espectadores).
+ * Un frame solo se entrega cuando la conexión envió todo lo anterior y
+ * pasó el intervalo entre frames desde el último: mientras tanto sigue
+ * siendo reemplazable y no ocupa el socket delante de los mensajes de
+ * control que lleguen después.
+ * Usa locks explícitos para no fijar hilos virtuales a su portador.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class ColaSalidaSesion implements Runnable {
+    
+    /**
+     * Mensajes de control que puede haber en cola antes de frenar al productor
+     */
+    public static final int CAPACIDAD_CONTROL = 256;
+    
+    /**
+     * Milisegundos que espera un productor de control con la cola llena
+     */
+    private static final long ESPERA_COLA_LLENA = 10_000;
+    
+    /**
+     * Escritura de un mensaje completo en el stream de su prioridad.
+     */
+    @FunctionalInterface
+    public interface EscrituraMensaje {
+        
+        /**
+         * Escribe el mensaje.
+         * 
+         * @throws IOException Si hay error al serializar
+         */
+        void escribir() throws IOException;
+    }
+    
+    private final DataOutputStream destino;
+    private final LongSupplier bytesPendientesConexion;
+    
+    // Serialización de mensajes de control (cualquier hilo)
+    private final ByteArrayOutputStream bufferControl;
+    private final DataOutputStream salidaControl;
+    private final Lock bloqueoControl = new ReentrantLock();
+    
+    // Estado compartido con el emisor
+    private final Lock bloqueo = new ReentrantLock();
+    private final Condition hayTrabajo = bloqueo.newCondition();
+    private final Condition hayEspacio = bloqueo.newCondition();
+    private final ArrayDeque<byte[]> control;
+    private long bytesControl;
+    private FrameCompartido framePendiente;
+    private boolean enviando;
+    private boolean activo;
+    private IOException error;
+    private Runnable accionVaciado;
+    
+    // Contadores
+    private long mensajesControlEnviados;
+    private long framesEnviados;
+    private long framesDescartados;
+    private volatile long nanosUltimoFrame;
+    private volatile long intervaloFrames;
+    private long finUltimoFrame;
+    
+    /**
+     * Constructor de la cola.
+     * 
+     * @param destino Stream de salida de la conexión
+     * @param bytesPendientesConexion Bytes escritos en destino que aún no se enviaron
+     */
+    public ColaSalidaSesion(DataOutputStream destino, LongSupplier bytesPendientesConexion) {
+        this.destino = destino;
+        this.bytesPendientesConexion = bytesPendientesConexion;
+        this.bufferControl = new ByteArrayOutputStream(256);
+        this.salidaControl = new DataOutputStream(bufferControl);
+        this.control = new ArrayDeque<>();
+        this.activo = true;
+    }
+    
+    /**
+     * Stream donde se serializan los mensajes de control.
+     * Solo debe usarse dentro de enviarControl.
+     * 
+     * @return Stream de control
+     */
+    public DataOutputStream getSalidaControl() {
+        return salidaControl;
+    }
+    
+    /**
+     * Serializa un mensaje de control y lo encola detrás de los anteriores.
+     * Si la cola está llena espera a que el emisor la vacíe.
+     * 
+     * @param escritura Escritura del mensaje en getSalidaControl()
+     * @throws IOException Si la conexión falló o el cliente no lee
+     */
+    public void enviarControl(EscrituraMensaje escritura) throws IOException {
+        bloqueoControl.lock();
+        try {
+            bufferControl.reset();
+            escritura.escribir();
+            salidaControl.flush();
+            encolarControl(bufferControl.toByteArray());
+        } finally {
+            bloqueoControl.unlock();
+        }
+    }
+    
+    /**
+     * Encola un mensaje de control ya serializado.
+     */
+    private void encolarControl(byte[] mensaje) throws IOException {
+        bloqueo.lock();
+        try {
+            long limite = System.currentTimeMillis() + ESPERA_COLA_LLENA;
+            while (control.size() >= CAPACIDAD_CONTROL && activo) {
+                long espera = limite - System.currentTimeMillis();
+                if (espera <= 0) {
+                    throw new IOException("Cola de salida llena: el cliente no lee");
+                }
+                hayEspacio.await(espera, TimeUnit.MILLISECONDS);
+            }
+            verificarActiva();
+            
+            control.add(mensaje);
+            bytesControl += mensaje.length;
+            hayTrabajo.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Envío interrumpido");
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Descarta el frame que aún espera envío, si lo hay.
+     * El productor debe llamarlo antes de codificar el siguiente frame:
+     * si descarta uno, el cliente no lo recibirá y el siguiente debe
+     * ser un keyframe.
+     * 
+     * @return true si se descartó un frame
+     */
+    public boolean descartarFramePendiente() {
+        bloqueo.lock();
+        try {
+            if (framePendiente == null) {
+                return false;
+            }
+            framePendiente = null;
+            framesDescartados++;
+            return true;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Deja un frame como último frame a enviar, reemplazando al pendiente
+     * si el emisor aún no lo tomó. El frame se guarda por referencia.
+     * 
+     * @param frame Frame serializado, compartido con otras colas
+     * @throws IOException Si la conexión falló
+     */
+    public void publicarFrame(FrameCompartido frame) throws IOException {
+        bloqueo.lock();
+        try {
+            verificarActiva();
+            if (framePendiente != null) {
+                framesDescartados++;
+            }
+            framePendiente = frame;
+            hayTrabajo.signal();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Lanza el error de la conexión si la cola ya no envía.
+     * Debe llamarse con el lock tomado.
+     */
+    private void verificarActiva() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (!activo) {
+            throw new IOException("Cola de salida cerrada");
+        }
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                byte[] mensaje;
+                FrameCompartido frame = null;
+                int longitud;
+                Runnable vaciado = null;
+                
+                bloqueo.lock();
+                try {
+                    while (activo && control.isEmpty()) {
+                        if (framePendiente == null) {
+                            hayTrabajo.await();
+                            continue;
+                        }
+                        long espera = finUltimoFrame + intervaloFrames - System.currentTimeMillis();
+                        if (espera > 0) {
+                            hayTrabajo.await(espera, TimeUnit.MILLISECONDS);
+                        } else if (conexionLibre()) {
+                            break;
+                        } else {
+                            // La conexión avisa con conexionLiberada al enviar lo anterior
+                            hayTrabajo.await();
+                        }
+                    }
+                    if (!activo) {
+                        break;
+                    }
+                    
+                    // El control siempre va primero
+                    mensaje = control.poll();
+                    if (mensaje != null) {
+                        longitud = mensaje.length;
+                    } else {
+                        frame = framePendiente;
+                        longitud = frame.getLongitud();
+                        framePendiente = null;
+                    }
+                    enviando = true;
+                } finally {
+                    bloqueo.unlock();
+                }
+                
+                long inicio = System.nanoTime();
+                escribir(mensaje != null ? mensaje : frame.getDatos(), longitud);
+                long nanos = System.nanoTime() - inicio;
+                
+                bloqueo.lock();
+                try {
+                    enviando = false;
+                    if (mensaje != null) {
+                        bytesControl -= longitud;
+                        mensajesControlEnviados++;
+                        hayEspacio.signalAll();
+                    } else {
+                        framesEnviados++;
+                        nanosUltimoFrame = nanos;
+                        finUltimoFrame = System.currentTimeMillis();
+                    }
+                    if (control.isEmpty()) {
+                        vaciado = tomarAccionVaciado();
+                    }
+                } finally {
+                    bloqueo.unlock();
+                }
+                ejecutar(vaciado);
+            }
+        } catch (IOException e) {
+            fallar(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fallar(new InterruptedIOException("Emisor de la cola de salida interrumpido"));
+        }
+    }
+    
+    /**
+     * Deja la cola sin emisor: los productores reciben el error, los que
+     * esperan espacio despiertan y la acción de vaciado se ejecuta.
+     * 
+     * @param e Error que detuvo al emisor
+     */
+    private void fallar(IOException e) {
+        Runnable vaciado;
+        bloqueo.lock();
+        try {
+            error = e;
+            activo = false;
+            hayTrabajo.signalAll();
+            hayEspacio.signalAll();
+            vaciado = tomarAccionVaciado();
+        } finally {
+            bloqueo.unlock();
+        }
+        ejecutar(vaciado);
+    }
+    
+    /**
+     * Entrega un mensaje completo a la conexión. Ni los mensajes de control
+     * ni los frames se modifican después de encolarse, así que la salida
+     * de una conexión NIO los encola sin copiarlos.
+     * 
+     * @param datos Bytes del mensaje
+     * @param longitud Bytes válidos desde el inicio
+     * @throws IOException Si hay error de escritura
+     */
+    private void escribir(byte[] datos, int longitud) throws IOException {
+        if (destino instanceof SalidaCanal canal) {
+            canal.encolarSinCopia(datos, longitud);
+        } else {
+            destino.write(datos, 0, longitud);
+            destino.flush();
+        }
+    }
+    
+    /**
+     * Fija el tiempo mínimo entre el fin del envío de un frame y el
+     * siguiente, para que el socket no quede siempre lleno de video.
+     * 
+     * @param milisegundos Intervalo entre frames
+     */
+    public void setIntervaloFrames(long milisegundos) {
+        this.intervaloFrames = milisegundos;
+    }
+    
+    /**
+     * Avisa que la conexión terminó de enviar lo que tenía pendiente, para
+     * que el emisor entregue el frame que esperaba. La llama el transporte;
+     * con conexiones que escriben directamente no hace falta.
+     */
+    public void conexionLiberada() {
+        bloqueo.lock();
+        try {
+            hayTrabajo.signal();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Indica si la conexión ya envió todo lo que se le entregó.
+     */
+    private boolean conexionLibre() {
+        return bytesPendientesConexion.getAsLong() == 0;
+    }
+    
+    /**
+     * Ejecuta una acción cuando los mensajes de control encolados ya se
+     * entregaron a la conexión (o la cola dejó de enviar). No bloquea: si
+     * aún hay mensajes, la ejecuta el emisor al entregar el último. Se usa
+     * para cerrar la conexión tras el último mensaje. Solo se guarda una
+     * acción: una nueva reemplaza a la anterior.
+     * 
+     * @param accion Acción a ejecutar una vez
+     */
+    public void alVaciar(Runnable accion) {
+        boolean vacia;
+        bloqueo.lock();
+        try {
+            vacia = !activo || (control.isEmpty() && !enviando);
+            accionVaciado = vacia ? null : accion;
+        } finally {
+            bloqueo.unlock();
+        }
+        if (vacia) {
+            accion.run();
+        }
+    }
+    
+    /**
+     * Retira la acción de vaciado pendiente. Debe llamarse con el lock tomado.
+     */
+    private Runnable tomarAccionVaciado() {
+        Runnable accion = accionVaciado;
+        accionVaciado = null;
+        return accion;
+    }
+    
+    private static void ejecutar(Runnable accion) {
+        if (accion != null) {
+            accion.run();
+        }
+    }
+    
+    /**
+     * Detiene el emisor y descarta lo que quede en cola.
+     */
+    public void cerrar() {
+        Runnable vaciado;
+        bloqueo.lock();
+        try {
+            activo = false;
+            control.clear();
+            bytesControl = 0;
+            framePendiente = null;
+            hayTrabajo.signalAll();
+            hayEspacio.signalAll();
+            vaciado = tomarAccionVaciado();
+        } finally {
+            bloqueo.unlock();
+        }
+        ejecutar(vaciado);
+    }
+    
+    /**
+     * Obtiene los bytes que esperan envío: los encolados aquí más los
+     * que la conexión aún no entregó al cliente.
+     * 
+     * @return Bytes pendientes
+     */
+    public long getBytesPendientes() {
+        long pendientes;
+        bloqueo.lock();
+        try {
+            pendientes = bytesControl + (framePendiente != null ? framePendiente.getLongitud() : 0);
+        } finally {
+            bloqueo.unlock();
+        }
+        return pendientes + bytesPendientesConexion.getAsLong();
+    }
+    
+    /**
+     * Obtiene la profundidad de la cola de control.
+     * 
+     * @return Mensajes de control en espera
+     */
+    public int getMensajesControlPendientes() {
+        bloqueo.lock();
+        try {
+            return control.size();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Indica si hay un frame esperando envío.
+     * 
+     * @return true si hay frame pendiente
+     */
+    public boolean hayFramePendiente() {
+        bloqueo.lock();
+        try {
+            return framePendiente != null;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    public long getMensajesControlEnviados() {
+        bloqueo.lock();
+        try {
+            return mensajesControlEnviados;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    public long getFramesEnviados() {
+        bloqueo.lock();
+        try {
+            return framesEnviados;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Obtiene cuántos frames se reemplazaron sin llegar a enviarse.
+     * 
+     * @return Frames descartados
+     */
+    public long getFramesDescartados() {
+        bloqueo.lock();
+        try {
+            return framesDescartados;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+    
+    /**
+     * Obtiene cuánto tardó en escribirse el último frame en la conexión.
+     * 
+     * @return Nanosegundos del último envío de frame
+     */
+    public long getNanosUltimoFrame() {
+        return nanosUltimoFrame;
+    }
+    
+    @Override
+    public String toString() {
+        bloqueo.lock();
+        try {
+            return String.format("control=%d (en cola %d) frames=%d descartados=%d",
+                mensajesControlEnviados, control.size(), framesEnviados, framesDescartados);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+}
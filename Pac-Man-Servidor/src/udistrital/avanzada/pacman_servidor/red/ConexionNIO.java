@@ -0,0 +1,497 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import udistrital.avanzada.pacman_servidor.protocolo.DecodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * Estado de una conexión atendida por el motor NIO.
+ * El hilo selector lee y escribe el canal; los mensajes decodificados
+ * se procesan en el pool de trabajadores, en orden y de a uno por conexión.
+ * 
+ * Formato de entrada: el mismo de DataOutputStream.writeUTF
+ * (longitud de 2 bytes seguida de UTF-8 modificado), o mensajes del
+ * protocolo binario si el primer mensaje lo acepta.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+class ConexionNIO {
+    
+    private static final int TAMANIO_LECTURA_INICIAL = 1024;
+    private static final int TAMANIO_MAXIMO_MENSAJE =
+        Math.max(2 + 65535, 1 + 5 + ProtocoloBinario.TAMANIO_MAXIMO_CONTROL);
+    
+    /**
+     * Bytes pendientes de envío a partir de los cuales los escritores esperan
+     */
+    private static final long LIMITE_PENDIENTE = 4 * 1024 * 1024;
+    
+    private final SocketChannel canal;
+    private final BucleSelector bucle;
+    private final Executor trabajadores;
+    private final String direccionRemota;
+    private final DataOutputStream salida;
+    private final ManejadorConexion manejador;
+    private SelectionKey clave;
+    private ByteBuffer lectura;
+    
+    // Formato de entrada (solo los usa el hilo selector)
+    private boolean primerMensaje;
+    private boolean binario;
+    
+    // Escrituras pendientes (productores: trabajadores y streaming)
+    private final Queue<ByteBuffer> escrituras;
+    private final Lock bloqueoEscritura = new ReentrantLock();
+    private final Condition hayEspacio = bloqueoEscritura.newCondition();
+    private long bytesPendientes;
+    final AtomicBoolean escrituraSolicitada;
+    private volatile boolean cierrePendiente;
+    private final AtomicBoolean sesionTerminada;
+    
+    // Tareas de protocolo ejecutadas en orden en el pool
+    private final Queue<Runnable> tareas;
+    private final AtomicBoolean procesando;
+    
+    private final AtomicBoolean cerrada;
+    
+    /**
+     * Constructor de la conexión.
+     * 
+     * @param canal Canal del cliente (no bloqueante)
+     * @param bucle Bucle selector que atiende el canal
+     * @param trabajadores Pool donde se ejecuta el protocolo
+     * @param fabrica Fábrica del manejador de protocolo
+     * @throws IOException Si no se puede obtener la dirección remota
+     */
+    ConexionNIO(SocketChannel canal, BucleSelector bucle, Executor trabajadores,
+                FabricaManejadores fabrica) throws IOException {
+        this.canal = canal;
+        this.bucle = bucle;
+        this.trabajadores = trabajadores;
+        this.direccionRemota = String.valueOf(canal.getRemoteAddress());
+        this.lectura = ByteBuffer.allocate(TAMANIO_LECTURA_INICIAL);
+        this.primerMensaje = true;
+        this.binario = false;
+        this.escrituras = new ConcurrentLinkedQueue<>();
+        this.escrituraSolicitada = new AtomicBoolean(false);
+        this.tareas = new ConcurrentLinkedQueue<>();
+        this.procesando = new AtomicBoolean(false);
+        this.cerrada = new AtomicBoolean(false);
+        this.sesionTerminada = new AtomicBoolean(false);
+        this.salida = new SalidaCanal(this);
+        this.manejador = fabrica.crear(salida, this::getBytesPendientes);
+        this.manejador.setEjecutorConexion(tarea -> ejecutarEnOrden(() -> procesarTarea(tarea)));
+    }
+    
+    /**
+     * Llamado por el selector al registrar el canal.
+     * 
+     * @param clave Clave de selección del canal
+     */
+    void registrada(SelectionKey clave) {
+        this.clave = clave;
+        ejecutarEnOrden(() -> {
+            try {
+                manejador.iniciar();
+            } catch (IOException | RuntimeException e) {
+                cerrar();
+            }
+        });
+    }
+    
+    // ========== LECTURA (hilo selector) ==========
+    
+    /**
+     * Lee lo disponible en el canal y despacha los mensajes completos.
+     * 
+     * @throws IOException Si hay error de lectura
+     */
+    void leer() throws IOException {
+        int leidos = canal.read(lectura);
+        if (leidos < 0) {
+            cerrar();
+            return;
+        }
+        
+        lectura.flip();
+        despacharMensajes();
+        lectura.compact();
+        
+        // Mensaje incompleto que no cabe: crecer hasta el máximo permitido
+        if (!lectura.hasRemaining() && lectura.capacity() < TAMANIO_MAXIMO_MENSAJE) {
+            ByteBuffer mayor = ByteBuffer.allocate(
+                Math.min(lectura.capacity() * 2, TAMANIO_MAXIMO_MENSAJE));
+            lectura.flip();
+            mayor.put(lectura);
+            lectura = mayor;
+        }
+    }
+    
+    /**
+     * Despacha al pool los mensajes completos del buffer de lectura.
+     * El formato se decide aquí, al decodificar el primer mensaje, para
+     * que los siguientes ya se lean en el formato acordado.
+     * 
+     * @throws IOException Si un mensaje es inválido
+     */
+    private void despacharMensajes() throws IOException {
+        while (true) {
+            if (binario) {
+                DecodificadorMensajes mensaje = decodificarMensajeBinario();
+                if (mensaje == null) {
+                    return;
+                }
+                ejecutarEnOrden(() -> procesarMensajeBinario(mensaje));
+            } else {
+                String mensaje = decodificarMensaje();
+                if (mensaje == null) {
+                    return;
+                }
+                if (primerMensaje) {
+                    primerMensaje = false;
+                    binario = manejador.aceptaProtocoloBinario(mensaje);
+                }
+                ejecutarEnOrden(() -> procesarMensaje(mensaje));
+            }
+        }
+    }
+    
+    /**
+     * Extrae un mensaje binario completo del buffer de lectura.
+     * 
+     * @return Decodificador con el encabezado leído o null si aún no llegó completo
+     * @throws IOException Si el mensaje es inválido o demasiado grande
+     */
+    private DecodificadorMensajes decodificarMensajeBinario() throws IOException {
+        int inicio = lectura.position();
+        int disponibles = lectura.remaining();
+        
+        // Longitud de la carga: varint a continuación del opcode
+        int longitud = 0;
+        int bytesVarint = 0;
+        boolean completo = false;
+        while (bytesVarint < 5 && 1 + bytesVarint < disponibles) {
+            int b = lectura.get(inicio + 1 + bytesVarint) & 0xFF;
+            longitud |= (b & 0x7F) << (7 * bytesVarint);
+            bytesVarint++;
+            if ((b & 0x80) == 0) {
+                completo = true;
+                break;
+            }
+        }
+        
+        if (!completo) {
+            if (bytesVarint == 5) {
+                throw new IOException("Varint inválido");
+            }
+            return null;
+        }
+        if (longitud < 0 || longitud > ProtocoloBinario.TAMANIO_MAXIMO_CONTROL) {
+            throw new IOException("Mensaje demasiado grande: " + longitud);
+        }
+        
+        int total = 1 + bytesVarint + longitud;
+        if (disponibles < total) {
+            return null;
+        }
+        
+        byte[] datos = new byte[total];
+        lectura.get(datos);
+        
+        DecodificadorMensajes mensaje = new DecodificadorMensajes(
+            new DataInputStream(new ByteArrayInputStream(datos)));
+        mensaje.leerEncabezado();
+        return mensaje;
+    }
+    
+    /**
+     * Extrae un mensaje writeUTF completo del buffer de lectura.
+     * 
+     * @return Mensaje decodificado o null si aún no llegó completo
+     * @throws IOException Si la codificación es inválida
+     */
+    private String decodificarMensaje() throws IOException {
+        if (lectura.remaining() < 2) {
+            return null;
+        }
+        
+        int longitud = lectura.getShort(lectura.position()) & 0xFFFF;
+        if (lectura.remaining() < 2 + longitud) {
+            return null;
+        }
+        
+        byte[] datos = new byte[2 + longitud];
+        lectura.get(datos);
+        
+        // Los códigos y comandos son ASCII: evitar el decodificador general
+        boolean ascii = true;
+        for (int i = 2; i < datos.length && ascii; i++) {
+            ascii = datos[i] > 0;
+        }
+        if (ascii) {
+            return new String(datos, 2, longitud, StandardCharsets.ISO_8859_1);
+        }
+        return new DataInputStream(new ByteArrayInputStream(datos)).readUTF();
+    }
+    
+    /**
+     * Entrega un mensaje al protocolo (hilo trabajador).
+     */
+    private void procesarMensaje(String mensaje) {
+        if (cerrada.get() || !manejador.isActivo()) {
+            return;
+        }
+        
+        try {
+            manejador.procesarMensaje(mensaje);
+            if (!manejador.isActivo()) {
+                terminarSesion();
+            }
+        } catch (IOException | RuntimeException e) {
+            cerrar();
+        }
+    }
+    
+    /**
+     * Entrega un mensaje binario al protocolo (hilo trabajador).
+     */
+    private void procesarMensajeBinario(DecodificadorMensajes mensaje) {
+        if (cerrada.get() || !manejador.isActivo()) {
+            return;
+        }
+        
+        try {
+            manejador.procesarMensajeBinario(mensaje);
+            if (!manejador.isActivo()) {
+                terminarSesion();
+            }
+        } catch (IOException | RuntimeException e) {
+            cerrar();
+        }
+    }
+    
+    /**
+     * Ejecuta una tarea propia del protocolo (hilo trabajador).
+     */
+    private void procesarTarea(Runnable tarea) {
+        if (cerrada.get()) {
+            return;
+        }
+        
+        try {
+            tarea.run();
+            if (!manejador.isActivo()) {
+                terminarSesion();
+            }
+        } catch (RuntimeException e) {
+            cerrar();
+        }
+    }
+    
+    // ========== ESCRITURA ==========
+    
+    /**
+     * Encola un mensaje para enviar. Puede llamarse desde cualquier hilo.
+     * 
+     * @param mensaje Bytes del mensaje
+     * @throws IOException Si la conexión está cerrada o el hilo es interrumpido
+     */
+    void encolarEscritura(ByteBuffer mensaje) throws IOException {
+        bloqueoEscritura.lock();
+        try {
+            while (bytesPendientes > LIMITE_PENDIENTE && !cerrada.get()) {
+                hayEspacio.await();
+            }
+            if (cerrada.get()) {
+                throw new IOException("Conexión cerrada");
+            }
+            bytesPendientes += mensaje.remaining();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Escritura interrumpida");
+        } finally {
+            bloqueoEscritura.unlock();
+        }
+        
+        escrituras.add(mensaje);
+        bucle.solicitarEscritura(this);
+    }
+    
+    /**
+     * Escribe en el canal lo que admita sin bloquear (hilo selector).
+     * 
+     * @throws IOException Si hay error de escritura
+     */
+    void escribir() throws IOException {
+        ByteBuffer mensaje;
+        long escritos = 0;
+        
+        while ((mensaje = escrituras.peek()) != null) {
+            int antes = mensaje.remaining();
+            canal.write(mensaje);
+            escritos += antes - mensaje.remaining();
+            
+            if (mensaje.hasRemaining()) {
+                break; // Socket lleno: seguir cuando vuelva a ser escribible
+            }
+            escrituras.poll();
+        }
+        
+        if (escritos > 0) {
+            boolean libre;
+            bloqueoEscritura.lock();
+            try {
+                bytesPendientes -= escritos;
+                libre = bytesPendientes == 0;
+                hayEspacio.signalAll();
+            } finally {
+                bloqueoEscritura.unlock();
+            }
+            if (libre) {
+                // El emisor de la sesión espera esto para entregar el próximo frame
+                manejador.salidaLiberada();
+            }
+        }
+        
+        if (escrituras.isEmpty()) {
+            clave.interestOps(SelectionKey.OP_READ);
+            escrituraSolicitada.set(false);
+            
+            // Un productor pudo encolar entre el peek y el cambio de interés
+            if (!escrituras.isEmpty()) {
+                bucle.solicitarEscritura(this);
+            } else if (cierrePendiente) {
+                cerrar();
+            }
+        }
+    }
+    
+    /**
+     * Activa el interés de escritura (hilo selector).
+     */
+    void habilitarEscritura() {
+        if (clave != null && clave.isValid()) {
+            clave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+    
+    // ========== CIERRE ==========
+    
+    /**
+     * El protocolo terminó: la conexión se cierra cuando el protocolo haya
+     * entregado su último mensaje y el selector lo haya enviado. No espera
+     * en el hilo trabajador.
+     */
+    private void terminarSesion() {
+        if (sesionTerminada.compareAndSet(false, true)) {
+            manejador.alEntregarPendientes(this::cerrarTrasEnviar);
+        }
+    }
+    
+    /**
+     * Cierra la conexión después de enviar lo pendiente.
+     */
+    private void cerrarTrasEnviar() {
+        cierrePendiente = true;
+        bucle.solicitarEscritura(this);
+    }
+    
+    /**
+     * Cierra el canal y libera la sesión. Idempotente.
+     */
+    void cerrar() {
+        if (!cerrada.compareAndSet(false, true)) {
+            return;
+        }
+        
+        try {
+            canal.close();
+        } catch (IOException e) {
+            // Ignorar: el canal ya no se usará
+        }
+        
+        bloqueoEscritura.lock();
+        try {
+            hayEspacio.signalAll();
+        } finally {
+            bloqueoEscritura.unlock();
+        }
+        escrituras.clear();
+        
+        // Liberar la sesión en el pool, después de los mensajes ya encolados
+        tareas.add(manejador::cerrar);
+        programar();
+    }
+    
+    // ========== EJECUCIÓN ORDENADA ==========
+    
+    /**
+     * Encola una tarea de protocolo; las de una misma conexión nunca
+     * se ejecutan en paralelo ni fuera de orden.
+     */
+    private void ejecutarEnOrden(Runnable tarea) {
+        tareas.add(tarea);
+        programar();
+    }
+    
+    /**
+     * Programa el drenado de tareas si no hay uno en curso.
+     */
+    private void programar() {
+        if (procesando.compareAndSet(false, true)) {
+            trabajadores.execute(this::drenarTareas);
+        }
+    }
+    
+    /**
+     * Ejecuta las tareas pendientes de la conexión.
+     */
+    private void drenarTareas() {
+        do {
+            Runnable tarea;
+            while ((tarea = tareas.poll()) != null) {
+                tarea.run();
+            }
+            procesando.set(false);
+        } while (!tareas.isEmpty() && procesando.compareAndSet(false, true));
+    }
+    
+    /**
+     * Obtiene los bytes encolados que aún no se escribieron en el canal.
+     * Puede llamarse desde cualquier hilo.
+     * 
+     * @return Bytes pendientes de envío
+     */
+    long getBytesPendientes() {
+        bloqueoEscritura.lock();
+        try {
+            return bytesPendientes;
+        } finally {
+            bloqueoEscritura.unlock();
+        }
+    }
+    
+    SocketChannel getCanal() {
+        return canal;
+    }
+    
+    String getDireccionRemota() {
+        return direccionRemota;
+    }
+}
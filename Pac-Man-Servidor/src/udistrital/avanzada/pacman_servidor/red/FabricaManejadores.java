@@ -0,0 +1,22 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.DataOutputStream;
+import java.util.function.LongSupplier;
+
+/**
+ * Crea el manejador de protocolo de cada conexión aceptada.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public interface FabricaManejadores {
+    
+    /**
+     * Crea el manejador de una nueva conexión.
+     * 
+     * @param salida Stream de salida hacia el cliente
+     * @param bytesPendientes Bytes escritos en salida que aún no se enviaron
+     * @return Manejador de la conexión
+     */
+    ManejadorConexion crear(DataOutputStream salida, LongSupplier bytesPendientes);
+}
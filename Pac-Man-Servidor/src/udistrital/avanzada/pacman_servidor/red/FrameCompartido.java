@@ -0,0 +1,35 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+/**
+ * Frame ya serializado (mensaje completo, con su encabezado) que se
+ * entrega por referencia a las colas de salida de todos los clientes que
+ * ven la misma partida: se codifica una vez y se envía N veces sin copiarlo.
+ * Es inmutable; nadie debe modificar el arreglo después de crearlo.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public final class FrameCompartido {
+    
+    private final byte[] datos;
+    private final int longitud;
+    
+    /**
+     * Constructor del frame.
+     * 
+     * @param datos Bytes del mensaje; el arreglo pasa a ser del frame
+     * @param longitud Bytes válidos desde el inicio
+     */
+    public FrameCompartido(byte[] datos, int longitud) {
+        this.datos = datos;
+        this.longitud = longitud;
+    }
+    
+    public byte[] getDatos() {
+        return datos;
+    }
+    
+    public int getLongitud() {
+        return longitud;
+    }
+}
@@ -0,0 +1,99 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import udistrital.avanzada.pacman_servidor.protocolo.DecodificadorMensajes;
+
+/**
+ * Lógica de protocolo de una conexión, independiente del transporte.
+ * Recibe los mensajes ya decodificados uno por uno, tanto desde un hilo
+ * bloqueante como desde el motor NIO. Los mensajes son cadenas writeUTF
+ * hasta que el primer mensaje acepte el protocolo binario; desde ahí el
+ * transporte entrega mensajes binarios.
+ * El protocolo también puede tener trabajo que no nace de un mensaje
+ * (por ejemplo, el fin de la partida en un tick); lo ejecuta con el
+ * ejecutor de la conexión, en orden con los mensajes.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public interface ManejadorConexion {
+    
+    /**
+     * Envía los mensajes iniciales al cliente recién conectado.
+     * 
+     * @throws IOException Si hay error al enviar
+     */
+    void iniciar() throws IOException;
+    
+    /**
+     * Procesa un mensaje recibido del cliente.
+     * 
+     * @param mensaje Cadena recibida
+     * @throws IOException Si hay error al responder
+     */
+    void procesarMensaje(String mensaje) throws IOException;
+    
+    /**
+     * Indica si el primer mensaje del cliente acepta el protocolo binario.
+     * No modifica el estado: el transporte lo consulta al decodificar
+     * para saber cómo leer los mensajes siguientes.
+     * 
+     * @param primerMensaje Primer mensaje recibido del cliente
+     * @return true si los mensajes siguientes llegan en formato binario
+     */
+    boolean aceptaProtocoloBinario(String primerMensaje);
+    
+    /**
+     * Procesa un mensaje binario con el encabezado ya leído.
+     * La carga que no se lea la descarta el transporte.
+     * 
+     * @param mensaje Decodificador posicionado al inicio de la carga
+     * @throws IOException Si el mensaje es inválido o hay error al responder
+     */
+    void procesarMensajeBinario(DecodificadorMensajes mensaje) throws IOException;
+    
+    /**
+     * Recibe del transporte el ejecutor de tareas de la conexión. Cada
+     * tarea se ejecuta sin solaparse con el procesamiento de mensajes y,
+     * si al terminar el protocolo ya no está activo, se cierra la conexión.
+     * Se llama antes de iniciar(). Si una tarea lanza una excepción, la
+     * conexión se cierra.
+     * 
+     * @param ejecutor Ejecutor de tareas de la conexión
+     */
+    default void setEjecutorConexion(Executor ejecutor) {
+    }
+    
+    /**
+     * Ejecuta una acción cuando el protocolo ya entregó al transporte todos
+     * los mensajes que encoló. El transporte la usa para cerrar la conexión
+     * tras el último mensaje sin bloquear el hilo que procesa. Por defecto
+     * el protocolo escribe directamente y la acción se ejecuta enseguida.
+     * 
+     * @param accion Acción a ejecutar una vez, en cualquier hilo
+     */
+    default void alEntregarPendientes(Runnable accion) {
+        accion.run();
+    }
+    
+    /**
+     * El transporte avisa que envió todo lo que tenía pendiente (el valor
+     * de bytes pendientes que recibió el protocolo llegó a cero). Puede
+     * llamarse desde el hilo selector: no debe bloquear.
+     */
+    default void salidaLiberada() {
+    }
+    
+    /**
+     * Indica si la conexión debe seguir abierta.
+     * 
+     * @return true mientras el protocolo espere más mensajes
+     */
+    boolean isActivo();
+    
+    /**
+     * Libera los recursos de la sesión. Se llama una sola vez al cerrar.
+     */
+    void cerrar();
+}
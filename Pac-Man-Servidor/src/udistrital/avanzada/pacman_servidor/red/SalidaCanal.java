@@ -0,0 +1,70 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * DataOutputStream que acumula los bytes de un mensaje y, al hacer flush,
+ * los encola en la conexión NIO para que el selector los escriba.
+ * Permite reutilizar el código que escribe con DataOutputStream.
+ * 
+ * Un mensaje que ya está completo en un arreglo que nadie va a modificar
+ * (un mensaje de control armado o un FrameCompartido) se encola con
+ * encolarSinCopia: la conexión escribe directamente desde ese arreglo,
+ * así que un frame compartido por varios clientes no se copia por cada uno.
+ * 
+ * No es thread-safe: el único escritor es el emisor de la cola de
+ * salida de la sesión.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+class SalidaCanal extends DataOutputStream {
+    
+    private final ConexionNIO conexion;
+    private final ByteArrayOutputStream acumulado;
+    
+    /**
+     * Constructor de la salida.
+     * 
+     * @param conexion Conexión donde encolar los mensajes
+     */
+    SalidaCanal(ConexionNIO conexion) {
+        this(conexion, new ByteArrayOutputStream(1024));
+    }
+    
+    private SalidaCanal(ConexionNIO conexion, ByteArrayOutputStream acumulado) {
+        super(acumulado);
+        this.conexion = conexion;
+        this.acumulado = acumulado;
+    }
+    
+    /**
+     * Entrega lo acumulado a la cola de escritura de la conexión.
+     * Bloquea si el cliente tiene demasiados bytes pendientes.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (acumulado.size() > 0) {
+            ByteBuffer mensaje = ByteBuffer.wrap(acumulado.toByteArray());
+            acumulado.reset();
+            conexion.encolarEscritura(mensaje);
+        }
+    }
+    
+    /**
+     * Encola un mensaje completo sin copiarlo, detrás de lo acumulado.
+     * El arreglo no debe modificarse después: la conexión lo lee hasta
+     * terminar de enviarlo. Bloquea como flush.
+     * 
+     * @param datos Bytes del mensaje
+     * @param longitud Bytes válidos desde el inicio
+     * @throws IOException Si la conexión está cerrada
+     */
+    void encolarSinCopia(byte[] datos, int longitud) throws IOException {
+        flush();
+        conexion.encolarEscritura(ByteBuffer.wrap(datos, 0, longitud).asReadOnlyBuffer());
+    }
+}
@@ -0,0 +1,159 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Motor de conexiones no bloqueante basado en ServerSocketChannel y Selector.
+ * Un hilo acepta conexiones y las reparte entre unos pocos hilos selectores;
+ * el protocolo se ejecuta en un pool fijo de trabajadores. La cantidad de
+ * hilos no depende del número de clientes conectados.
+ * 
+ * El formato en el cable es el mismo del modo de un hilo por cliente.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class ServidorNIO {
+    
+    private final int puerto;
+    private final int backlog;
+    private final int cantidadSelectores;
+    private final int cantidadTrabajadores;
+    private final FabricaManejadores fabrica;
+    private final Consumer<String> log;
+    private int bufferEnvio;
+    
+    private ServerSocketChannel canalServidor;
+    private BucleSelector[] bucles;
+    private ExecutorService trabajadores;
+    private volatile boolean activo;
+    
+    /**
+     * Constructor del servidor.
+     * 
+     * @param puerto Puerto de escucha
+     * @param backlog Cola de conexiones pendientes de aceptar
+     * @param cantidadSelectores Hilos selectores de E/S
+     * @param cantidadTrabajadores Hilos del pool de protocolo
+     * @param fabrica Fábrica del manejador de cada conexión
+     * @param log Destino de los mensajes de log
+     */
+    public ServidorNIO(int puerto, int backlog, int cantidadSelectores, int cantidadTrabajadores,
+                       FabricaManejadores fabrica, Consumer<String> log) {
+        this.puerto = puerto;
+        this.backlog = backlog;
+        this.cantidadSelectores = Math.max(1, cantidadSelectores);
+        this.cantidadTrabajadores = Math.max(1, cantidadTrabajadores);
+        this.fabrica = fabrica;
+        this.log = log;
+    }
+    
+    /**
+     * Limita el buffer de envío del sistema de cada conexión, para que un
+     * cliente lento se note en la cola de la conexión y no quede oculto en
+     * un buffer del kernel de varios megabytes.
+     * 
+     * @param bytes Tamaño del buffer de envío, o 0 para el del sistema
+     */
+    public void setBufferEnvio(int bytes) {
+        this.bufferEnvio = bytes;
+    }
+    
+    /**
+     * Abre el puerto y arranca los hilos del motor.
+     * 
+     * @throws IOException Si no se puede abrir el puerto
+     */
+    public void iniciar() throws IOException {
+        canalServidor = ServerSocketChannel.open();
+        canalServidor.bind(new InetSocketAddress(puerto), backlog);
+        activo = true;
+        
+        trabajadores = Executors.newFixedThreadPool(cantidadTrabajadores,
+            crearFabricaHilos("nio-trabajador-"));
+        
+        bucles = new BucleSelector[cantidadSelectores];
+        for (int i = 0; i < bucles.length; i++) {
+            bucles[i] = new BucleSelector();
+            Thread hilo = new Thread(bucles[i], "nio-selector-" + i);
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+        
+        Thread aceptador = new Thread(this::aceptarConexiones, "nio-aceptador");
+        aceptador.start();
+    }
+    
+    /**
+     * Acepta conexiones (canal bloqueante) y las reparte entre los selectores.
+     */
+    private void aceptarConexiones() {
+        int siguiente = 0;
+        
+        while (activo) {
+            try {
+                SocketChannel canal = canalServidor.accept();
+                canal.configureBlocking(false);
+                canal.socket().setTcpNoDelay(true);
+                if (bufferEnvio > 0) {
+                    canal.socket().setSendBufferSize(bufferEnvio);
+                }
+                
+                BucleSelector bucle = bucles[siguiente];
+                siguiente = (siguiente + 1) % bucles.length;
+                
+                ConexionNIO conexion = new ConexionNIO(canal, bucle, trabajadores, fabrica);
+                log.accept("Cliente conectado desde: " + conexion.getDireccionRemota());
+                bucle.registrar(conexion);
+            
+            } catch (IOException e) {
+                if (activo) {
+                    log.accept("ERROR: Fallo al aceptar cliente");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Crea hilos daemon con nombre numerado.
+     */
+    private static ThreadFactory crearFabricaHilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, prefijo + contador.getAndIncrement());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+    
+    /**
+     * Detiene el servidor y cierra todas las conexiones.
+     */
+    public void detener() {
+        activo = false;
+        try {
+            if (canalServidor != null) {
+                canalServidor.close();
+            }
+        } catch (IOException e) {
+            // Ignorar al cerrar
+        }
+        
+        if (bucles != null) {
+            for (BucleSelector bucle : bucles) {
+                bucle.detener();
+            }
+        }
+        if (trabajadores != null) {
+            trabajadores.shutdown();
+        }
+    }
+}
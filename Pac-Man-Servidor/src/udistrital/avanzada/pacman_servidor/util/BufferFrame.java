@@ -0,0 +1,31 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Buffer de bytes creciente que expone su arreglo interno.
+ * Permite enviar frames comprimidos sin copiarlos a un arreglo nuevo.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class BufferFrame extends ByteArrayOutputStream {
+    
+    /**
+     * Constructor con capacidad inicial.
+     * 
+     * @param capacidadInicial Capacidad inicial en bytes
+     */
+    public BufferFrame(int capacidadInicial) {
+        super(capacidadInicial);
+    }
+    
+    /**
+     * Obtiene el arreglo interno (válido hasta size()).
+     * 
+     * @return Arreglo interno del buffer
+     */
+    public byte[] getDatos() {
+        return buf;
+    }
+}
@@ -1,27 +1,51 @@
 package udistrital.avanzada.pacman_servidor.util;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
 
 /**
- * Utilidad para capturar y comprimir frames de un JPanel.
- * Convierte el contenido visual a imágenes JPEG comprimidas.
+ * Utilidad para capturar y comprimir frames del juego.
+ * Renderiza el juego fuera de pantalla y lo comprime con el codec de la sesión.
+ * 
+ * Cada instancia es el contexto de codificación de una sesión de streaming:
+ * reutiliza los codecs, el buffer de salida y dos imágenes de captura
+ * que se alternan, de modo que no se reserva memoria por frame.
+ * El codec preferido se negocia con el cliente (CodecFrames); si no puede
+ * comprimir una región, esa región va en JPEG, que el cliente siempre acepta.
+ * Si el frame enviado es más pequeño que el juego, se renderiza en una
+ * imagen propia y se redimensiona sobre el buffer de captura.
+ * No es thread-safe; debe usarse desde un único hilo.
  * 
  * @author Steban
  * @version 1.0
  */
 public class CapturaFrames {
     
-    private float calidadCompresion;
+    /**
+     * Lado (en píxeles) de cada tile usado para detectar cambios
+     */
+    public static final int TAMANIO_TILE = 32;
+    
+    private BufferFrame bufferSalida;
+    
+    // Codecs: el preferido de la sesión y JPEG como respaldo
+    private final CodecJPEG codecJPEG;
+    private CodecFrames codecPreferido;
+    private int codecUltimo;
+    
+    // Doble buffer de captura: el frame anterior sirve de referencia delta
+    private final BufferedImage[] framesCaptura;
+    private int indiceActual;
+    private boolean referenciaValida;
+    
+    // Imagen de renderizado a tamaño del juego (solo si se redimensiona)
+    private BufferedImage frameRender;
     
     /**
      * Constructor que establece la calidad de compresión.
@@ -29,64 +53,251 @@ public class CapturaFrames {
      * @param calidad Calidad JPEG (0.0 - 1.0)
      */
     public CapturaFrames(float calidad) {
-        this.calidadCompresion = calidad;
+        this.bufferSalida = new BufferFrame(64 * 1024);
+        this.codecJPEG = new CodecJPEG(bufferSalida, calidad);
+        this.codecPreferido = codecJPEG;
+        this.codecUltimo = codecJPEG.getCodigo();
+        this.framesCaptura = new BufferedImage[2];
+        this.indiceActual = 0;
+        this.referenciaValida = false;
+    }
+    
+    /**
+     * Captura un frame del juego renderizándolo fuera de pantalla.
+     * La imagen devuelta se reutiliza dos capturas después.
+     * 
+     * @param renderizador Renderizador de la sesión
+     * @return BufferedImage con el contenido
+     */
+    public BufferedImage capturarFrame(RenderizadorJuego renderizador) {
+        return capturarFrame(renderizador, renderizador.getAncho(), renderizador.getAlto());
     }
     
     /**
-     * Captura el contenido visual de un panel.
+     * Captura un frame del juego con el tamaño de salida indicado.
+     * La imagen devuelta se reutiliza dos capturas después.
      * 
-     * @param panel Panel a capturar
+     * @param renderizador Renderizador de la sesión
+     * @param ancho Ancho del frame a enviar
+     * @param alto Alto del frame a enviar
      * @return BufferedImage con el contenido
      */
-    public BufferedImage capturarFrame(JPanel panel) {
-        int ancho = panel.getWidth();
-        int alto = panel.getHeight();
+    public BufferedImage capturarFrame(RenderizadorJuego renderizador, int ancho, int alto) {
+        BufferedImage imagen = siguienteBufferCaptura(ancho, alto);
         
-        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = imagen.createGraphics();
+        if (ancho == renderizador.getAncho() && alto == renderizador.getAlto()) {
+            // Renderizar el juego directamente en la imagen
+            Graphics2D g2d = imagen.createGraphics();
+            renderizador.renderizar(g2d);
+            g2d.dispose();
+            return imagen;
+        }
         
-        // Renderizar el panel en la imagen
-        panel.paint(g2d);
+        // Renderizar a tamaño del juego y reducir sobre el buffer de captura
+        if (frameRender == null || frameRender.getWidth() != renderizador.getAncho()
+                || frameRender.getHeight() != renderizador.getAlto()) {
+            frameRender = new BufferedImage(renderizador.getAncho(), renderizador.getAlto(),
+                BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g2d = frameRender.createGraphics();
+        renderizador.renderizar(g2d);
         g2d.dispose();
         
+        return redimensionar(frameRender, imagen);
+    }
+    
+    /**
+     * Alterna al otro buffer de captura, reservándolo solo si cambió el tamaño.
+     * 
+     * @param ancho Ancho del frame
+     * @param alto Alto del frame
+     * @return Buffer donde dibujar el nuevo frame
+     */
+    private BufferedImage siguienteBufferCaptura(int ancho, int alto) {
+        indiceActual = 1 - indiceActual;
+        BufferedImage imagen = framesCaptura[indiceActual];
+        
+        if (imagen == null || imagen.getWidth() != ancho || imagen.getHeight() != alto) {
+            imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+            framesCaptura[indiceActual] = imagen;
+        }
+        
         return imagen;
     }
     
     /**
-     * Comprime una imagen a formato JPEG.
+     * Cambia la calidad de compresión de los próximos frames.
+     * 
+     * @param calidad Calidad JPEG (0.0 - 1.0)
+     */
+    public void setCalidad(float calidad) {
+        codecJPEG.setCalidad(calidad);
+        codecPreferido.setCalidad(calidad);
+    }
+    
+    /**
+     * Elige el codec con que se comprimen los frames.
+     * 
+     * @param codigo Código CODEC_* negociado con el cliente
+     */
+    public void setCodecPreferido(int codigo) {
+        if (codecPreferido != codecJPEG) {
+            codecPreferido.cerrar();
+        }
+        
+        if (codigo == ProtocoloBinario.CODEC_PALETA) {
+            codecPreferido = new CodecPaleta(bufferSalida);
+        } else {
+            codecPreferido = codecJPEG;
+        }
+    }
+    
+    /**
+     * Vacía el buffer de salida antes de comprimir un nuevo mensaje.
+     */
+    public void reiniciarBuffer() {
+        bufferSalida.reset();
+    }
+    
+    /**
+     * Comprime el frame completo y lo agrega al buffer de salida.
      * 
      * @param imagen Imagen a comprimir
-     * @return Array de bytes con la imagen comprimida
+     * @return Cantidad de bytes agregados al buffer
      * @throws IOException Si hay error en la compresión
      */
-    public byte[] comprimirJPEG(BufferedImage imagen) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
-        // Obtener escritor JPEG
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-        if (!writers.hasNext()) {
-            throw new IOException("No hay escritor JPEG disponible");
+    public int comprimir(BufferedImage imagen) throws IOException {
+        return comprimir(imagen, null);
+    }
+    
+    /**
+     * Comprime una región de la imagen con el codec preferido, o con JPEG
+     * si el preferido no puede, y la agrega al buffer de salida.
+     * El codec usado se consulta con getCodecUltimo.
+     * 
+     * @param imagen Imagen a comprimir
+     * @param region Región a comprimir, o null para la imagen completa
+     * @return Cantidad de bytes agregados al buffer
+     * @throws IOException Si hay error en la compresión
+     */
+    public int comprimir(BufferedImage imagen, Rectangle region) throws IOException {
+        if (codecPreferido != codecJPEG) {
+            int longitud = codecPreferido.comprimir(imagen, region);
+            if (longitud >= 0) {
+                codecUltimo = codecPreferido.getCodigo();
+                return longitud;
+            }
         }
         
-        ImageWriter writer = writers.next();
-        ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-        writer.setOutput(ios);
+        codecUltimo = codecJPEG.getCodigo();
+        return codecJPEG.comprimir(imagen, region);
+    }
+    
+    /**
+     * Obtiene el codec con que se comprimió la última región.
+     * 
+     * @return Código CODEC_* de ProtocoloBinario
+     */
+    public int getCodecUltimo() {
+        return codecUltimo;
+    }
+    
+    /**
+     * Obtiene el arreglo interno del buffer de salida.
+     * Es válido hasta el próximo reinicio del buffer.
+     * 
+     * @return Bytes comprimidos desde el último reinicio
+     */
+    public byte[] getBufferSalida() {
+        return bufferSalida.getDatos();
+    }
+    
+    /**
+     * Libera los codecs. Llamar al terminar la sesión de streaming.
+     */
+    public void cerrar() {
+        if (codecPreferido != codecJPEG) {
+            codecPreferido.cerrar();
+        }
+        codecJPEG.cerrar();
+    }
+    
+    /**
+     * Compara el frame con el capturado anteriormente y devuelve los tiles
+     * que cambiaron. Como cada frame capturado se envía (completo o por
+     * tiles), el buffer de captura anterior es la referencia del cliente.
+     * Si no hay referencia o el tamaño cambió, devuelve null para indicar
+     * que debe enviarse un keyframe completo.
+     * 
+     * @param frame Frame recién capturado con capturarFrame
+     * @return Lista de regiones modificadas (vacía si no hubo cambios) o null
+     */
+    public List<Rectangle> detectarTilesModificados(BufferedImage frame) {
+        BufferedImage referencia = framesCaptura[1 - indiceActual];
+        int ancho = frame.getWidth();
+        int alto = frame.getHeight();
         
-        // Configurar parámetros de compresión
-        ImageWriteParam param = writer.getDefaultWriteParam();
-        if (param.canWriteCompressed()) {
-            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(calidadCompresion);
+        if (!referenciaValida || referencia == null || frame != framesCaptura[indiceActual]
+                || ancho != referencia.getWidth() || alto != referencia.getHeight()) {
+            return null;
         }
         
-        // Escribir imagen
-        writer.write(null, new IIOImage(imagen, null, null), param);
+        int[] pixeles = obtenerPixeles(frame);
+        int[] pixelesReferencia = obtenerPixeles(referencia);
+        List<Rectangle> tiles = new ArrayList<>();
         
-        // Limpiar
-        ios.close();
-        writer.dispose();
+        for (int tileY = 0; tileY < alto; tileY += TAMANIO_TILE) {
+            int altoTile = Math.min(TAMANIO_TILE, alto - tileY);
+            
+            for (int tileX = 0; tileX < ancho; tileX += TAMANIO_TILE) {
+                int anchoTile = Math.min(TAMANIO_TILE, ancho - tileX);
+                
+                if (tileModificado(pixeles, pixelesReferencia, ancho,
+                                   tileX, tileY, anchoTile, altoTile)) {
+                    tiles.add(new Rectangle(tileX, tileY, anchoTile, altoTile));
+                }
+            }
+        }
         
-        return baos.toByteArray();
+        return tiles;
+    }
+    
+    /**
+     * Marca el último frame capturado como referencia (tras enviar un keyframe).
+     * 
+     * @param frame Frame enviado completo
+     */
+    public void establecerReferencia(BufferedImage frame) {
+        referenciaValida = frame == framesCaptura[indiceActual];
+    }
+    
+    /**
+     * Descarta la referencia para forzar un keyframe en el próximo envío.
+     */
+    public void reiniciarReferencia() {
+        referenciaValida = false;
+    }
+    
+    /**
+     * Verifica si algún píxel del tile difiere de la referencia.
+     */
+    private boolean tileModificado(int[] pixeles, int[] referencia, int anchoFrame,
+                                   int x, int y, int ancho, int alto) {
+        for (int fila = y; fila < y + alto; fila++) {
+            int inicio = fila * anchoFrame + x;
+            if (!Arrays.equals(pixeles, inicio, inicio + ancho,
+                               referencia, inicio, inicio + ancho)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Accede directamente a los píxeles de una imagen TYPE_INT_RGB.
+     */
+    private int[] obtenerPixeles(BufferedImage imagen) {
+        return ((DataBufferInt) imagen.getRaster().getDataBuffer()).getData();
     }
     
     /**
@@ -98,13 +309,24 @@ public class CapturaFrames {
      * @return Imagen redimensionada
      */
     public BufferedImage redimensionar(BufferedImage original, int nuevoAncho, int nuevoAlto) {
-        Image tmp = original.getScaledInstance(nuevoAncho, nuevoAlto, Image.SCALE_FAST);
         BufferedImage redimensionada = new BufferedImage(nuevoAncho, nuevoAlto, BufferedImage.TYPE_INT_RGB);
-        
-        Graphics2D g2d = redimensionada.createGraphics();
-        g2d.drawImage(tmp, 0, 0, null);
+        return redimensionar(original, redimensionada);
+    }
+    
+    /**
+     * Redimensiona una imagen sobre otra existente, sin reservar memoria.
+     * 
+     * @param original Imagen original
+     * @param destino Imagen destino (define el nuevo tamaño)
+     * @return La imagen destino
+     */
+    public BufferedImage redimensionar(BufferedImage original, BufferedImage destino) {
+        Graphics2D g2d = destino.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                             RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(original, 0, 0, destino.getWidth(), destino.getHeight(), null);
         g2d.dispose();
         
-        return redimensionada;
+        return destino;
     }
-}
\ No newline at end of file
+}
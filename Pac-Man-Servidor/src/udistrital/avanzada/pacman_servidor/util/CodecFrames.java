@@ -0,0 +1,47 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Codec que comprime frames (o regiones de un frame) del streaming.
+ * Cada codec escribe en el buffer de salida de la sesión que recibe al
+ * crearse; CapturaFrames elige cuál usar en cada región.
+ * No necesita ser thread-safe: lo usa solo el hilo de streaming.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public interface CodecFrames {
+    
+    /**
+     * Obtiene el código del codec en el protocolo binario.
+     * 
+     * @return Código CODEC_* de ProtocoloBinario
+     */
+    int getCodigo();
+    
+    /**
+     * Comprime una región de la imagen y la agrega al buffer de salida.
+     * Si el codec no puede representar la región, no escribe nada.
+     * 
+     * @param imagen Imagen a comprimir
+     * @param region Región a comprimir, o null para la imagen completa
+     * @return Cantidad de bytes agregados, o -1 si no se pudo comprimir
+     * @throws IOException Si hay error en la compresión
+     */
+    int comprimir(BufferedImage imagen, Rectangle region) throws IOException;
+    
+    /**
+     * Cambia la calidad de los próximos frames (solo codecs con pérdida).
+     * 
+     * @param calidad Calidad (0.0 - 1.0)
+     */
+    void setCalidad(float calidad);
+    
+    /**
+     * Libera los recursos del codec. Llamar al terminar la sesión.
+     */
+    void cerrar();
+}
@@ -0,0 +1,135 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * Codec JPEG de ImageIO. Comprime cualquier imagen, con pérdida.
+ * Reutiliza el escritor y la caché en memoria entre frames, y el
+ * IIOImage de las dos últimas imágenes (los buffers de captura).
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CodecJPEG implements CodecFrames {
+    
+    private final BufferFrame bufferSalida;
+    private float calidadCompresion;
+    
+    // Escritor JPEG reutilizado entre frames
+    private ImageWriter escritor;
+    private ImageWriteParam parametros;
+    private ImageOutputStream salidaImagen;
+    
+    // IIOImage de los buffers de captura que se alternan
+    private final BufferedImage[] imagenes;
+    private final IIOImage[] imagenesIIO;
+    private int siguienteIIO;
+    
+    /**
+     * Constructor del codec.
+     * 
+     * @param bufferSalida Buffer donde se escriben los bytes comprimidos
+     * @param calidad Calidad JPEG (0.0 - 1.0)
+     */
+    public CodecJPEG(BufferFrame bufferSalida, float calidad) {
+        this.bufferSalida = bufferSalida;
+        this.calidadCompresion = calidad;
+        this.imagenes = new BufferedImage[2];
+        this.imagenesIIO = new IIOImage[2];
+    }
+    
+    @Override
+    public int getCodigo() {
+        return ProtocoloBinario.CODEC_JPEG;
+    }
+    
+    @Override
+    public int comprimir(BufferedImage imagen, Rectangle region) throws IOException {
+        if (escritor == null) {
+            inicializarEscritor();
+        }
+        
+        int inicio = bufferSalida.size();
+        parametros.setSourceRegion(region);
+        
+        // Escribir imagen y volcar la caché al buffer
+        escritor.write(null, obtenerIIOImage(imagen), parametros);
+        salidaImagen.flush();
+        
+        return bufferSalida.size() - inicio;
+    }
+    
+    @Override
+    public void setCalidad(float calidad) {
+        this.calidadCompresion = calidad;
+        if (parametros != null && parametros.canWriteCompressed()) {
+            parametros.setCompressionQuality(calidad);
+        }
+    }
+    
+    /**
+     * Crea el escritor JPEG y sus parámetros una sola vez por sesión.
+     * 
+     * @throws IOException Si no hay escritor JPEG disponible
+     */
+    private void inicializarEscritor() throws IOException {
+        // Obtener escritor JPEG
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (!writers.hasNext()) {
+            throw new IOException("No hay escritor JPEG disponible");
+        }
+        
+        escritor = writers.next();
+        
+        // Caché en memoria: evita archivos temporales de ImageIO
+        salidaImagen = new MemoryCacheImageOutputStream(bufferSalida);
+        escritor.setOutput(salidaImagen);
+        
+        // Configurar parámetros de compresión
+        parametros = escritor.getDefaultWriteParam();
+        if (parametros.canWriteCompressed()) {
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(calidadCompresion);
+        }
+    }
+    
+    /**
+     * Reutiliza el IIOImage de la imagen si es una de las dos últimas.
+     */
+    private IIOImage obtenerIIOImage(BufferedImage imagen) {
+        for (int i = 0; i < imagenes.length; i++) {
+            if (imagenes[i] == imagen) {
+                return imagenesIIO[i];
+            }
+        }
+        
+        IIOImage iio = new IIOImage(imagen, null, null);
+        imagenes[siguienteIIO] = imagen;
+        imagenesIIO[siguienteIIO] = iio;
+        siguienteIIO = 1 - siguienteIIO;
+        return iio;
+    }
+    
+    @Override
+    public void cerrar() {
+        if (escritor != null) {
+            try {
+                salidaImagen.close();
+            } catch (IOException e) {
+                // Ignorar: el buffer es en memoria
+            }
+            escritor.dispose();
+            escritor = null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * Codec sin pérdida de paleta indexada con runs (CODEC_PALETA).
+ * La escena es un fondo negro con unas decenas de colores sólidos, así
+ * que casi toda la imagen son runs largos de un mismo color: el frame
+ * se reduce a la paleta y a un par de bytes por run, sin pasar por la
+ * DCT del JPEG ni perder nitidez.
+ * 
+ * Si la región tiene más de 256 colores (por ejemplo tras redimensionar
+ * con interpolación) no se puede representar y se devuelve -1, para que
+ * CapturaFrames la comprima con JPEG.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CodecPaleta implements CodecFrames {
+    
+    private static final int MAXIMO_COLORES = 256;
+    
+    /**
+     * Entradas de la tabla de colores (potencia de 2, holgada para 256 colores)
+     */
+    private static final int TAMANIO_TABLA = 1024;
+    
+    /**
+     * Bit que marca una entrada ocupada (los colores son RGB de 24 bits)
+     */
+    private static final int OCUPADO = 0x1000000;
+    
+    private final BufferFrame bufferSalida;
+    
+    // Tabla hash color -> índice en la paleta, reiniciada por región
+    private final int[] tablaColores;
+    private final byte[] tablaIndices;
+    private final int[] paleta;
+    private int cantidadColores;
+    
+    // Runs de la región y encabezado con la paleta
+    private byte[] runs;
+    private int tamanioRuns;
+    private final byte[] encabezado;
+    
+    /**
+     * Constructor del codec.
+     * 
+     * @param bufferSalida Buffer donde se escriben los bytes comprimidos
+     */
+    public CodecPaleta(BufferFrame bufferSalida) {
+        this.bufferSalida = bufferSalida;
+        this.tablaColores = new int[TAMANIO_TABLA];
+        this.tablaIndices = new byte[TAMANIO_TABLA];
+        this.paleta = new int[MAXIMO_COLORES];
+        this.runs = new byte[16 * 1024];
+        this.encabezado = new byte[5 + 5 + 1 + MAXIMO_COLORES * 3];
+    }
+    
+    @Override
+    public int getCodigo() {
+        return ProtocoloBinario.CODEC_PALETA;
+    }
+    
+    @Override
+    public int comprimir(BufferedImage imagen, Rectangle region) {
+        // Los buffers de captura son TYPE_INT_RGB; otro tipo se deja al JPEG
+        if (imagen.getType() != BufferedImage.TYPE_INT_RGB) {
+            return -1;
+        }
+        
+        int x = region != null ? region.x : 0;
+        int y = region != null ? region.y : 0;
+        int ancho = region != null ? region.width : imagen.getWidth();
+        int alto = region != null ? region.height : imagen.getHeight();
+        int anchoImagen = imagen.getWidth();
+        int[] pixeles = ((DataBufferInt) imagen.getRaster().getDataBuffer()).getData();
+        
+        Arrays.fill(tablaColores, 0);
+        cantidadColores = 0;
+        tamanioRuns = 0;
+        
+        // Los runs siguen de una fila a la siguiente
+        int colorRun = -1;
+        int indiceRun = 0;
+        int largoRun = 0;
+        for (int fila = y; fila < y + alto; fila++) {
+            int inicio = fila * anchoImagen + x;
+            for (int i = inicio; i < inicio + ancho; i++) {
+                int color = pixeles[i] & 0xFFFFFF;
+                if (color == colorRun) {
+                    largoRun++;
+                    continue;
+                }
+                
+                if (largoRun > 0) {
+                    agregarRun(indiceRun, largoRun);
+                }
+                indiceRun = indiceColor(color);
+                if (indiceRun < 0) {
+                    return -1;
+                }
+                colorRun = color;
+                largoRun = 1;
+            }
+        }
+        agregarRun(indiceRun, largoRun);
+        
+        // Encabezado: tamaño y paleta
+        int tamanio = escribirVarint(encabezado, 0, ancho);
+        tamanio = escribirVarint(encabezado, tamanio, alto);
+        encabezado[tamanio++] = (byte) (cantidadColores - 1);
+        for (int i = 0; i < cantidadColores; i++) {
+            int color = paleta[i];
+            encabezado[tamanio++] = (byte) (color >>> 16);
+            encabezado[tamanio++] = (byte) (color >>> 8);
+            encabezado[tamanio++] = (byte) color;
+        }
+        
+        bufferSalida.write(encabezado, 0, tamanio);
+        bufferSalida.write(runs, 0, tamanioRuns);
+        return tamanio + tamanioRuns;
+    }
+    
+    /**
+     * Busca el índice de un color en la paleta, agregándolo si es nuevo.
+     * 
+     * @return Índice en la paleta, o -1 si ya hay 256 colores
+     */
+    private int indiceColor(int color) {
+        int clave = color | OCUPADO;
+        int posicion = (color * 0x9E3779B1) >>> 22;
+        
+        while (true) {
+            int entrada = tablaColores[posicion];
+            if (entrada == clave) {
+                return tablaIndices[posicion] & 0xFF;
+            }
+            if (entrada == 0) {
+                if (cantidadColores == MAXIMO_COLORES) {
+                    return -1;
+                }
+                tablaColores[posicion] = clave;
+                tablaIndices[posicion] = (byte) cantidadColores;
+                paleta[cantidadColores] = color;
+                return cantidadColores++;
+            }
+            posicion = (posicion + 1) & (TAMANIO_TABLA - 1);
+        }
+    }
+    
+    /**
+     * Agrega un run: índice (1 byte) y repeticiones menos uno (varint).
+     */
+    private void agregarRun(int indice, int largo) {
+        if (tamanioRuns + 6 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[tamanioRuns++] = (byte) indice;
+        tamanioRuns = escribirVarint(runs, tamanioRuns, largo - 1);
+    }
+    
+    /**
+     * Escribe un varint en el arreglo.
+     * 
+     * @return Posición siguiente al varint
+     */
+    private static int escribirVarint(byte[] destino, int posicion, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            destino[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino[posicion++] = (byte) valor;
+        return posicion;
+    }
+    
+    @Override
+    public void setCalidad(float calidad) {
+        // Sin pérdida: la calidad no aplica
+    }
+    
+    @Override
+    public void cerrar() {
+        // Sin recursos que liberar
+    }
+}
@@ -0,0 +1,71 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import udistrital.avanzada.pacman_servidor.modelo.EstadoJuego;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * Codifica una instantánea del juego en el formato CODEC_ESCENA.
+ * En lugar de renderizar y comprimir el frame, el servidor envía la
+ * posición de Pac-Man y de las frutas (unas decenas de bytes) y el
+ * cliente dibuja la escena con el mismo código de dibujo.
+ * No es thread-safe: lo usa solo el hilo de streaming de la sesión.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CodificadorEscena {
+    
+    private byte[] datos;
+    private int longitud;
+    
+    public CodificadorEscena() {
+        this.datos = new byte[64];
+    }
+    
+    /**
+     * Codifica la instantánea, reemplazando la anterior.
+     * 
+     * @param estado Estado visible del juego
+     * @return Bytes de la escena, disponibles en getDatos()
+     */
+    public int codificar(EstadoJuego estado) {
+        int cantidad = estado.getCantidadFrutas();
+        
+        // Peor caso: 5 varints de encabezado, la dirección y 11 bytes por fruta
+        int maximo = 5 * 5 + 1 + cantidad * 11;
+        if (datos.length < maximo) {
+            datos = new byte[maximo];
+        }
+        
+        longitud = 0;
+        escribirVarint(estado.getAncho());
+        escribirVarint(estado.getAlto());
+        escribirVarint(estado.getPacmanX());
+        escribirVarint(estado.getPacmanY());
+        datos[longitud++] = (byte) ProtocoloBinario.codigoDireccion(estado.getDireccion().name());
+        escribirVarint(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            datos[longitud++] = (byte) ProtocoloBinario.codigoFruta(estado.getNombreFruta(i));
+            escribirVarint(estado.getFrutaX(i));
+            escribirVarint(estado.getFrutaY(i));
+        }
+        return longitud;
+    }
+    
+    /**
+     * Obtiene el buffer con la última escena codificada.
+     * 
+     * @return Arreglo cuyos primeros bytes son la escena
+     */
+    public byte[] getDatos() {
+        return datos;
+    }
+    
+    private void escribirVarint(int valor) {
+        while ((valor & ~0x7F) != 0) {
+            datos[longitud++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        datos[longitud++] = (byte) valor;
+    }
+}
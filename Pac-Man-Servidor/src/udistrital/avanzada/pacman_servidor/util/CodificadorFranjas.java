@@ -0,0 +1,221 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/**
+ * Comprime un frame completo en franjas horizontales en paralelo.
+ * Cada franja es una imagen independiente (JPEG o paleta) que el cliente
+ * decodifica en su posición, igual que los tiles de un frame delta; como
+ * las franjas cubren todo el frame, el mensaje funciona como keyframe.
+ * 
+ * Las franjas se comprimen en un ForkJoinPool compartido por todas las
+ * sesiones, con un hilo por núcleo: con muchas sesiones el paralelismo
+ * total no pasa del número de núcleos. El hilo de streaming (que puede
+ * ser virtual) solo espera los resultados. Cada franja tiene su propio
+ * contexto de codificación (los escritores de ImageIO no son thread-safe)
+ * y su altura es múltiplo de 16 píxeles, el tamaño del bloque JPEG con
+ * submuestreo de color, para que los bordes entre franjas no se noten.
+ * No es thread-safe; debe usarse desde un único hilo de streaming.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CodificadorFranjas {
+    
+    /**
+     * Alto mínimo de una franja; en frames bajos se usan menos franjas
+     */
+    public static final int ALTO_MINIMO_FRANJA = 64;
+    
+    /**
+     * Alineación de la altura de las franjas a los bloques JPEG
+     */
+    private static final int ALINEACION = 16;
+    
+    /**
+     * Pool de compresión compartido por todas las sesiones. La clase se
+     * carga, y el pool se crea, con el primer frame en franjas; sus hilos
+     * son daemon para no impedir el cierre del servidor y los que quedan
+     * inactivos terminan solos, así que no hace falta apagarlo.
+     */
+    private static final class Pool {
+        
+        private static final ForkJoinPool INSTANCIA = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(), Pool::crearHilo, null, false);
+        
+        private static ForkJoinWorkerThread crearHilo(ForkJoinPool pool) {
+            ForkJoinWorkerThread hilo = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            hilo.setName("franjas-" + hilo.getPoolIndex());
+            hilo.setDaemon(true);
+            return hilo;
+        }
+    }
+    
+    // Un contexto de codificación y una tarea por franja
+    private final CapturaFrames[] contextos;
+    private final List<Callable<Integer>> tareas;
+    private final Rectangle[] regiones;
+    private BufferedImage frame;
+    
+    // Resultado de la última compresión
+    private int cantidad;
+    private final int[] posicionesX;
+    private final int[] posicionesY;
+    private final int[] codecs;
+    private final int[] longitudes;
+    private final BufferFrame datos;
+    
+    /**
+     * Constructor del codificador.
+     * 
+     * @param franjas Cantidad máxima de franjas por frame
+     * @param calidad Calidad JPEG (0.0 - 1.0)
+     * @param codecPreferido Código CODEC_* negociado con el cliente
+     */
+    public CodificadorFranjas(int franjas, float calidad, int codecPreferido) {
+        this.contextos = new CapturaFrames[franjas];
+        this.tareas = new ArrayList<>(franjas);
+        this.regiones = new Rectangle[franjas];
+        for (int i = 0; i < franjas; i++) {
+            CapturaFrames contexto = new CapturaFrames(calidad);
+            contexto.setCodecPreferido(codecPreferido);
+            Rectangle region = new Rectangle();
+            contextos[i] = contexto;
+            regiones[i] = region;
+            tareas.add(() -> comprimirFranja(contexto, region));
+        }
+        this.posicionesX = new int[franjas];
+        this.posicionesY = new int[franjas];
+        this.codecs = new int[franjas];
+        this.longitudes = new int[franjas];
+        this.datos = new BufferFrame(64 * 1024);
+    }
+    
+    /**
+     * Indica si conviene dividir un frame de este alto en franjas.
+     * 
+     * @param alto Alto del frame
+     * @return true si caben al menos dos franjas
+     */
+    public boolean admite(int alto) {
+        return contextos.length > 1 && alto >= 2 * ALTO_MINIMO_FRANJA;
+    }
+    
+    /**
+     * Comprime el frame en franjas en paralelo y deja los resultados
+     * concatenados en getDatos(), en el orden de las franjas.
+     * 
+     * @param frame Frame completo
+     * @return Cantidad total de bytes comprimidos
+     * @throws IOException Si hay error en la compresión de alguna franja
+     */
+    public int comprimir(BufferedImage frame) throws IOException {
+        int ancho = frame.getWidth();
+        int alto = frame.getHeight();
+        
+        // Alto de franja múltiplo de la alineación, sin pasar del máximo de franjas
+        int franjas = Math.max(1, Math.min(contextos.length, alto / ALTO_MINIMO_FRANJA));
+        int altoFranja = (alto + franjas - 1) / franjas;
+        altoFranja = (altoFranja + ALINEACION - 1) / ALINEACION * ALINEACION;
+        
+        cantidad = 0;
+        for (int y = 0; y < alto; y += altoFranja) {
+            regiones[cantidad].setBounds(0, y, ancho, Math.min(altoFranja, alto - y));
+            cantidad++;
+        }
+        
+        this.frame = frame;
+        try {
+            List<Future<Integer>> resultados = Pool.INSTANCIA.invokeAll(tareas.subList(0, cantidad));
+            for (int i = 0; i < cantidad; i++) {
+                longitudes[i] = resultados.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            throw causa instanceof IOException ? (IOException) causa
+                : new IOException("Error al comprimir franja", causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compresión interrumpida");
+        } finally {
+            this.frame = null;
+        }
+        
+        // Concatenar las franjas en el orden del mensaje
+        datos.reset();
+        for (int i = 0; i < cantidad; i++) {
+            posicionesX[i] = regiones[i].x;
+            posicionesY[i] = regiones[i].y;
+            codecs[i] = contextos[i].getCodecUltimo();
+            datos.write(contextos[i].getBufferSalida(), 0, longitudes[i]);
+        }
+        return datos.size();
+    }
+    
+    /**
+     * Comprime una franja en su contexto (hilo del pool).
+     */
+    private int comprimirFranja(CapturaFrames contexto, Rectangle region) throws IOException {
+        contexto.reiniciarBuffer();
+        return contexto.comprimir(frame, region);
+    }
+    
+    /**
+     * Cambia la calidad de compresión de los próximos frames.
+     * 
+     * @param calidad Calidad JPEG (0.0 - 1.0)
+     */
+    public void setCalidad(float calidad) {
+        for (CapturaFrames contexto : contextos) {
+            contexto.setCalidad(calidad);
+        }
+    }
+    
+    /**
+     * Libera los codecs. Llamar al terminar la sesión de streaming.
+     */
+    public void cerrar() {
+        for (CapturaFrames contexto : contextos) {
+            contexto.cerrar();
+        }
+    }
+    
+    public int getCantidad() {
+        return cantidad;
+    }
+    
+    public int[] getPosicionesX() {
+        return posicionesX;
+    }
+    
+    public int[] getPosicionesY() {
+        return posicionesY;
+    }
+    
+    public int[] getCodecs() {
+        return codecs;
+    }
+    
+    public int[] getLongitudes() {
+        return longitudes;
+    }
+    
+    /**
+     * Obtiene las franjas comprimidas, concatenadas.
+     * Es válido hasta la próxima compresión.
+     * 
+     * @return Arreglo interno con getLongitudes() bytes por franja
+     */
+    public byte[] getDatos() {
+        return datos.getDatos();
+    }
+}
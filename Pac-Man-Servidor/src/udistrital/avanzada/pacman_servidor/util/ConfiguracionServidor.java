@@ -120,6 +120,15 @@ public class ConfiguracionServidor {
         return Integer.parseInt(properties.getProperty("juego.ventana.alto", "600"));
     }
     
+    /**
+     * Obtiene la cantidad de frutas de cada juego.
+     * 
+     * @return Cantidad de frutas
+     */
+    public int getCantidadFrutas() {
+        return Integer.parseInt(properties.getProperty("juego.cantidad.frutas", "4"));
+    }
+    
     /**
      * Obtiene la ruta del archivo de resultados.
      * 
@@ -129,6 +138,67 @@ public class ConfiguracionServidor {
         return properties.getProperty("archivo.resultados", "data/resultados.dat");
     }
     
+    /**
+     * Obtiene cuándo se fuerzan a disco los resultados: NUNCA (lo decide
+     * el sistema operativo), LOTE (después de cada escritura agrupada) o
+     * PERIODICA (como máximo una vez por intervalo).
+     * 
+     * @return Política de sincronización en mayúsculas
+     */
+    public String getSincronizacionResultados() {
+        return properties.getProperty("archivo.resultados.sincronizacion", "LOTE").trim().toUpperCase();
+    }
+    
+    /**
+     * Obtiene el intervalo mínimo entre sincronizaciones de la política PERIODICA.
+     * 
+     * @return Intervalo en milisegundos
+     */
+    public long getIntervaloSincronizacionResultados() {
+        return Long.parseLong(properties.getProperty("archivo.resultados.sincronizacion.ms", "1000"));
+    }
+    
+    /**
+     * Obtiene la cantidad de registros tras la cual se abre un segmento
+     * nuevo del archivo de resultados.
+     * 
+     * @return Registros por segmento
+     */
+    public int getRegistrosPorSegmentoResultados() {
+        return Integer.parseInt(properties.getProperty("archivo.resultados.segmento.registros", "100000"));
+    }
+    
+    /**
+     * Obtiene cuántos resultados recientes se conservan por jugador al
+     * compactar. Los que están en el ranking o son el mejor de su jugador
+     * se conservan siempre.
+     * 
+     * @return Registros por jugador; 0 conserva todos (sin compactación)
+     */
+    public int getHistorialPorJugador() {
+        return Integer.parseInt(properties.getProperty("archivo.resultados.historial.por.jugador", "0"));
+    }
+    
+    /**
+     * Obtiene el intervalo entre pasadas de compactación de resultados.
+     * 
+     * @return Intervalo en segundos
+     */
+    public int getSegundosCompactacionResultados() {
+        return Integer.parseInt(properties.getProperty("archivo.resultados.compactacion.segundos", "300"));
+    }
+    
+    /**
+     * Obtiene el formato de los resultados nuevos: LEGADO (registros de
+     * tamaño fijo) o COMPACTO (UTF-8 y varints con CRC). Los segmentos
+     * escritos en el otro formato se convierten al compactar.
+     * 
+     * @return Formato en mayúsculas
+     */
+    public String getFormatoResultados() {
+        return properties.getProperty("archivo.resultados.formato", "LEGADO").trim().toUpperCase();
+    }
+    
     /**
      * Obtiene los FPS para el streaming de video.
      * 
@@ -146,4 +216,210 @@ public class ConfiguracionServidor {
     public float getCalidadJPEG() {
         return Float.parseFloat(properties.getProperty("streaming.calidad.jpeg", "0.5"));
     }
+    
+    /**
+     * Obtiene los codecs de frame en orden de preferencia. A cada cliente
+     * se le envía el primero que soporte: ESCENA (el estado del juego, que
+     * el cliente dibuja), PALETA (paleta indexada con runs, sin pérdida)
+     * o JPEG, que todos soportan.
+     * 
+     * @return Nombres de los codecs en mayúsculas
+     */
+    public String[] getCodecsFrames() {
+        String[] codecs = properties.getProperty("streaming.codec", "ESCENA,PALETA").split(",");
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = codecs[i].trim().toUpperCase();
+        }
+        return codecs;
+    }
+    
+    /**
+     * Indica si el streaming envía solo los tiles modificados (modo delta).
+     * 
+     * @return true si el modo delta está habilitado
+     */
+    public boolean isStreamingDelta() {
+        return Boolean.parseBoolean(properties.getProperty("streaming.delta.habilitado", "true"));
+    }
+    
+    /**
+     * Obtiene cada cuántos frames se envía un keyframe completo en modo delta.
+     * 
+     * @return Intervalo de keyframes en frames
+     */
+    public int getIntervaloKeyframe() {
+        return Integer.parseInt(properties.getProperty("streaming.keyframe.intervalo", "30"));
+    }
+    
+    /**
+     * Obtiene en cuántas franjas paralelas se comprimen los keyframes de
+     * video del protocolo binario.
+     * 
+     * @return Cantidad de franjas; 1 comprime el frame entero en un solo hilo
+     */
+    public int getFranjasKeyframe() {
+        return Integer.parseInt(properties.getProperty("streaming.keyframe.franjas", "1"));
+    }
+    
+    /**
+     * Obtiene cada cuántos milisegundos sin cambios se envía un keyframe de latido.
+     * 
+     * @return Intervalo de latido en milisegundos
+     */
+    public long getIntervaloLatido() {
+        return Long.parseLong(properties.getProperty("streaming.latido.ms", "1000"));
+    }
+    
+    /**
+     * Obtiene el ancho máximo de los frames enviados.
+     * 
+     * @return Ancho del frame en píxeles
+     */
+    public int getAnchoFrame() {
+        return Integer.parseInt(properties.getProperty("streaming.ancho.frame", "640"));
+    }
+    
+    /**
+     * Obtiene el alto máximo de los frames enviados.
+     * 
+     * @return Alto del frame en píxeles
+     */
+    public int getAltoFrame() {
+        return Integer.parseInt(properties.getProperty("streaming.alto.frame", "480"));
+    }
+    
+    /**
+     * Obtiene el tamaño del buffer de envío del socket de cada cliente.
+     * Un buffer acotado hace visible la congestión al streaming adaptativo
+     * y limita cuánto video puede quedar delante de un mensaje de control.
+     * 
+     * @return Bytes del buffer de envío, o 0 para el valor del sistema
+     */
+    public int getBufferEnvioSocket() {
+        return Integer.parseInt(properties.getProperty("servidor.buffer.envio", "16384"));
+    }
+    
+    /**
+     * Indica si la calidad, resolución y FPS se ajustan a la velocidad del cliente.
+     * 
+     * @return true si el streaming adaptativo está habilitado
+     */
+    public boolean isStreamingAdaptativo() {
+        return Boolean.parseBoolean(properties.getProperty("streaming.adaptativo.habilitado", "true"));
+    }
+    
+    /**
+     * Obtiene la calidad JPEG mínima a la que puede bajar el streaming adaptativo.
+     * 
+     * @return Calidad mínima (0.0 - 1.0)
+     */
+    public float getCalidadMinimaJPEG() {
+        return Float.parseFloat(properties.getProperty("streaming.calidad.minima", "0.2"));
+    }
+    
+    /**
+     * Obtiene los FPS mínimos a los que puede bajar el streaming adaptativo.
+     * 
+     * @return Frames por segundo mínimos
+     */
+    public int getStreamingFPSMinimo() {
+        return Integer.parseInt(properties.getProperty("streaming.fps.minimo", "5"));
+    }
+    
+    /**
+     * Obtiene la escala mínima del frame en el streaming adaptativo.
+     * 
+     * @return Escala mínima respecto de ancho.frame/alto.frame (0.0 - 1.0)
+     */
+    public double getEscalaMinimaFrame() {
+        return Double.parseDouble(properties.getProperty("streaming.escala.minima", "0.5"));
+    }
+    
+    /**
+     * Indica si se muestra la ventana de monitoreo de cada juego en el servidor.
+     * 
+     * @return true si la ventana está habilitada
+     */
+    public boolean isVentanaJuegoHabilitada() {
+        return Boolean.parseBoolean(properties.getProperty("juego.ventana.visible", "true"));
+    }
+    
+    /**
+     * Obtiene el tamaño de la cola de conexiones pendientes de aceptar.
+     * Con el valor por defecto de Java (50) se pierden conexiones
+     * cuando muchos clientes se conectan a la vez.
+     * 
+     * @return Backlog del socket servidor
+     */
+    public int getBacklog() {
+        return Integer.parseInt(properties.getProperty("servidor.backlog", "1024"));
+    }
+    
+    /**
+     * Obtiene el modo de atención de conexiones: HILOS (un hilo por cliente),
+     * VIRTUALES (un hilo virtual por cliente) o NIO (selector no bloqueante
+     * con pool de hilos acotado).
+     * 
+     * @return Modo de conexiones en mayúsculas
+     */
+    public String getModoConexiones() {
+        return properties.getProperty("servidor.modo.conexiones", "NIO").trim().toUpperCase();
+    }
+    
+    /**
+     * Obtiene la cantidad de hilos selectores del modo NIO.
+     * 
+     * @return Hilos selectores
+     */
+    public int getHilosSelectorNIO() {
+        return Integer.parseInt(properties.getProperty("servidor.nio.selectores", "2"));
+    }
+    
+    /**
+     * Obtiene la cantidad de hilos trabajadores del modo NIO.
+     * 
+     * @return Hilos trabajadores
+     */
+    public int getHilosTrabajadoresNIO() {
+        return Integer.parseInt(properties.getProperty("servidor.nio.trabajadores", "8"));
+    }
+    
+    /**
+     * Obtiene los ticks por segundo de la simulación de cada partida.
+     * 
+     * @return Ticks por segundo
+     */
+    public int getTicksPorSegundo() {
+        return Integer.parseInt(properties.getProperty("simulacion.ticks.por.segundo", "30"));
+    }
+    
+    /**
+     * Obtiene la cantidad de hilos del pool de simulación, compartido por
+     * todas las partidas. Por defecto, uno por núcleo.
+     * 
+     * @return Hilos de simulación
+     */
+    public int getHilosSimulacion() {
+        return Integer.parseInt(properties.getProperty("simulacion.hilos",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    }
+    
+    /**
+     * Obtiene cada cuántos segundos se publica el resumen de la simulación
+     * (histograma de duración de los ticks y sobrecargas).
+     * 
+     * @return Segundos entre resúmenes; 0 los desactiva
+     */
+    public int getSegundosReporteSimulacion() {
+        return Integer.parseInt(properties.getProperty("simulacion.reporte.segundos", "60"));
+    }
+    
+    /**
+     * Indica si el servidor ofrece el protocolo binario durante el handshake.
+     * 
+     * @return true si se ofrece el protocolo binario
+     */
+    public boolean isProtocoloBinarioHabilitado() {
+        return Boolean.parseBoolean(properties.getProperty("protocolo.binario.habilitado", "true"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+/**
+ * Control adaptativo de calidad del streaming de una sesión.
+ * Mide cuánto tarda cada frame en entregarse al socket y cuántos bytes
+ * quedan pendientes de envío, y ajusta calidad JPEG, resolución y FPS
+ * dentro de los límites configurados. Un frame descartado en la cola de
+ * salida también cuenta como congestión.
+ * 
+ * Ante congestión degrada primero la calidad, luego la resolución y por
+ * último los FPS; cuando el cliente vuelve a recibir con holgura recupera
+ * en orden inverso, de a un paso y solo tras varios frames sin congestión.
+ * No es thread-safe; lo usa únicamente el hilo de streaming.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class ControlCalidadStreaming {
+    
+    /**
+     * Peso de cada medición en los promedios móviles
+     */
+    private static final double PESO_MEDICION = 0.2;
+    
+    /**
+     * Fracción del intervalo entre frames gastada enviando que indica congestión
+     */
+    private static final double UMBRAL_CONGESTION = 0.5;
+    
+    /**
+     * Fracción del intervalo entre frames por debajo de la cual hay holgura
+     */
+    private static final double UMBRAL_HOLGURA = 0.2;
+    
+    /**
+     * Frames pendientes en la cola de salida que indican congestión
+     */
+    private static final double FRAMES_PENDIENTES_MAXIMOS = 2.0;
+    
+    /**
+     * Frames con holgura necesarios para subir un paso
+     */
+    private static final int FRAMES_PARA_MEJORAR = 30;
+    
+    /**
+     * Frames que se esperan tras un cambio antes de volver a degradar
+     */
+    private static final int FRAMES_ENFRIAMIENTO = 5;
+    
+    private static final float PASO_CALIDAD = 0.1f;
+    private static final double PASO_ESCALA = 0.125;
+    
+    // Límites
+    private final float calidadMinima;
+    private final float calidadMaxima;
+    private final int fpsMinimo;
+    private final int fpsMaximo;
+    private final double escalaMinima;
+    private final int anchoMaximo;
+    private final int altoMaximo;
+    
+    // Parámetros actuales
+    private float calidad;
+    private int fps;
+    private double escala;
+    
+    // Mediciones
+    private double tiempoEnvioPromedio;
+    private double bytesFramePromedio;
+    private int framesConHolgura;
+    private int framesDesdeCambio;
+    private int degradaciones;
+    
+    /**
+     * Constructor con los límites de adaptación.
+     * Con calidadMinima = calidadMaxima, fpsMinimo = fpsMaximo y
+     * escalaMinima = 1 el streaming queda fijo.
+     * 
+     * @param calidadMinima Calidad JPEG mínima
+     * @param calidadMaxima Calidad JPEG inicial y máxima
+     * @param fpsMinimo FPS mínimos
+     * @param fpsMaximo FPS iniciales y máximos
+     * @param escalaMinima Escala mínima de la resolución (0.0 - 1.0)
+     * @param anchoMaximo Ancho del frame a escala 1
+     * @param altoMaximo Alto del frame a escala 1
+     */
+    public ControlCalidadStreaming(float calidadMinima, float calidadMaxima,
+                                   int fpsMinimo, int fpsMaximo, double escalaMinima,
+                                   int anchoMaximo, int altoMaximo) {
+        this.calidadMaxima = calidadMaxima;
+        this.calidadMinima = Math.min(calidadMinima, calidadMaxima);
+        this.fpsMaximo = Math.max(1, fpsMaximo);
+        this.fpsMinimo = Math.max(1, Math.min(fpsMinimo, this.fpsMaximo));
+        this.escalaMinima = Math.max(0.1, Math.min(escalaMinima, 1.0));
+        this.anchoMaximo = anchoMaximo;
+        this.altoMaximo = altoMaximo;
+        
+        this.calidad = calidadMaxima;
+        this.fps = this.fpsMaximo;
+        this.escala = 1.0;
+        this.framesDesdeCambio = FRAMES_ENFRIAMIENTO;
+    }
+    
+    /**
+     * Crea el control a partir de la configuración del servidor.
+     * Si el streaming adaptativo está deshabilitado, los parámetros quedan fijos.
+     * 
+     * @param config Configuración del servidor
+     * @param anchoJuego Ancho del área de juego renderizada
+     * @param altoJuego Alto del área de juego renderizada
+     * @return Control de calidad de la sesión
+     */
+    public static ControlCalidadStreaming desdeConfiguracion(ConfiguracionServidor config,
+                                                             int anchoJuego, int altoJuego) {
+        // No tiene sentido enviar frames más grandes que el juego
+        int ancho = Math.min(config.getAnchoFrame(), anchoJuego);
+        int alto = Math.min(config.getAltoFrame(), altoJuego);
+        float calidad = config.getCalidadJPEG();
+        int fps = config.getStreamingFPS();
+        
+        if (!config.isStreamingAdaptativo()) {
+            return new ControlCalidadStreaming(calidad, calidad, fps, fps, 1.0, ancho, alto);
+        }
+        
+        return new ControlCalidadStreaming(config.getCalidadMinimaJPEG(), calidad,
+            config.getStreamingFPSMinimo(), fps, config.getEscalaMinimaFrame(), ancho, alto);
+    }
+    
+    /**
+     * Registra el envío de un frame y ajusta los parámetros si hace falta.
+     * 
+     * @param bytes Bytes del frame enviado
+     * @param nanosEnvio Tiempo que tomó entregar el frame al socket
+     * @param bytesPendientes Bytes aún en cola de salida de la conexión
+     * @return true si cambió algún parámetro
+     */
+    public boolean registrarEnvio(int bytes, long nanosEnvio, long bytesPendientes) {
+        double tiempoMs = nanosEnvio / 1_000_000.0;
+        if (bytesFramePromedio == 0) {
+            tiempoEnvioPromedio = tiempoMs;
+            bytesFramePromedio = bytes;
+        } else {
+            tiempoEnvioPromedio += PESO_MEDICION * (tiempoMs - tiempoEnvioPromedio);
+            bytesFramePromedio += PESO_MEDICION * (bytes - bytesFramePromedio);
+        }
+        framesDesdeCambio++;
+        
+        double intervaloMs = 1000.0 / fps;
+        double framesPendientes = bytesPendientes / Math.max(1.0, bytesFramePromedio);
+        
+        boolean congestion = tiempoEnvioPromedio > intervaloMs * UMBRAL_CONGESTION
+            || framesPendientes > FRAMES_PENDIENTES_MAXIMOS;
+        
+        if (congestion) {
+            framesConHolgura = 0;
+            if (framesDesdeCambio >= FRAMES_ENFRIAMIENTO && degradar()) {
+                degradaciones++;
+                framesDesdeCambio = 0;
+                return true;
+            }
+            return false;
+        }
+        
+        if (tiempoEnvioPromedio < intervaloMs * UMBRAL_HOLGURA && framesPendientes < 1.0) {
+            if (++framesConHolgura >= FRAMES_PARA_MEJORAR) {
+                framesConHolgura = 0;
+                if (mejorar()) {
+                    framesDesdeCambio = 0;
+                    return true;
+                }
+            }
+        } else {
+            framesConHolgura = 0;
+        }
+        return false;
+    }
+    
+    /**
+     * Registra un frame descartado porque el cliente no recibió el anterior
+     * a tiempo. Cuenta como congestión aunque el envío no se haya medido.
+     * 
+     * @return true si cambió algún parámetro
+     */
+    public boolean registrarDescarte() {
+        framesConHolgura = 0;
+        if (framesDesdeCambio >= FRAMES_ENFRIAMIENTO && degradar()) {
+            degradaciones++;
+            framesDesdeCambio = 0;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Baja un paso: calidad, luego resolución, luego FPS.
+     * 
+     * @return true si se pudo degradar
+     */
+    private boolean degradar() {
+        if (calidad > calidadMinima) {
+            calidad = Math.max(calidadMinima, calidad - PASO_CALIDAD);
+            return true;
+        }
+        if (escala > escalaMinima) {
+            escala = Math.max(escalaMinima, escala - PASO_ESCALA);
+            return true;
+        }
+        if (fps > fpsMinimo) {
+            fps = Math.max(fpsMinimo, fps * 3 / 4);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Sube un paso en orden inverso al de degradación.
+     * 
+     * @return true si se pudo mejorar
+     */
+    private boolean mejorar() {
+        if (fps < fpsMaximo) {
+            fps = Math.min(fpsMaximo, Math.max(fps + 1, fps * 4 / 3));
+            return true;
+        }
+        if (escala < 1.0) {
+            escala = Math.min(1.0, escala + PASO_ESCALA);
+            return true;
+        }
+        if (calidad < calidadMaxima) {
+            calidad = Math.min(calidadMaxima, calidad + PASO_CALIDAD);
+            return true;
+        }
+        return false;
+    }
+    
+    public float getCalidad() {
+        return calidad;
+    }
+    
+    public int getFps() {
+        return fps;
+    }
+    
+    /**
+     * Obtiene el intervalo mínimo entre frames para los FPS actuales.
+     * 
+     * @return Milisegundos entre frames
+     */
+    public int getDelayMilisegundos() {
+        return 1000 / fps;
+    }
+    
+    public double getEscala() {
+        return escala;
+    }
+    
+    /**
+     * Obtiene el ancho del frame a enviar con la escala actual.
+     * 
+     * @return Ancho en píxeles
+     */
+    public int getAnchoFrame() {
+        return Math.max(1, (int) Math.round(anchoMaximo * escala));
+    }
+    
+    /**
+     * Obtiene el alto del frame a enviar con la escala actual.
+     * 
+     * @return Alto en píxeles
+     */
+    public int getAltoFrame() {
+        return Math.max(1, (int) Math.round(altoMaximo * escala));
+    }
+    
+    /**
+     * Obtiene el tiempo promedio de entrega de un frame al socket.
+     * 
+     * @return Milisegundos promedio por frame
+     */
+    public double getTiempoEnvioPromedio() {
+        return tiempoEnvioPromedio;
+    }
+    
+    /**
+     * Obtiene cuántas veces se degradó el streaming en la sesión.
+     * 
+     * @return Cantidad de degradaciones
+     */
+    public int getDegradaciones() {
+        return degradaciones;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("calidad=%.2f escala=%.3f (%dx%d) fps=%d envio=%.1fms",
+            calidad, escala, getAnchoFrame(), getAltoFrame(), fps, tiempoEnvioPromedio);
+    }
+}
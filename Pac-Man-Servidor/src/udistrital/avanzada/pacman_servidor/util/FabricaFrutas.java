@@ -1,19 +1,18 @@
 package udistrital.avanzada.pacman_servidor.util;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import udistrital.avanzada.pacman_servidor.modelo.*;
 
 /**
  * Fábrica para crear frutas aleatoriamente.
  * Aplica patrón Factory para desacoplar creación de uso.
+ * Usa ThreadLocalRandom para que las sesiones concurrentes no compartan generador.
  * 
  * @author Steban
  * @version 1.0
  */
 public class FabricaFrutas {
     
-    private static final Random random = new Random();
-    
     /**
      * Tipos de frutas disponibles (índices 0-7)
      */
@@ -27,7 +26,7 @@ public class FabricaFrutas {
      * @return Fruta creada
      */
     public static Fruta crearFrutaAleatoria(int x, int y) {
-        int tipo = random.nextInt(NUM_TIPOS_FRUTAS);
+        int tipo = ThreadLocalRandom.current().nextInt(NUM_TIPOS_FRUTAS);
         
         switch (tipo) {
             case 0: return new Cereza(x, y);
@@ -51,8 +50,8 @@ public class FabricaFrutas {
      */
     public static int[] generarPosicionAleatoria(int maxX, int maxY) {
         int margen = 50; // Evitar bordes
-        int x = margen + random.nextInt(maxX - 2 * margen);
-        int y = margen + random.nextInt(maxY - 2 * margen);
+        int x = margen + ThreadLocalRandom.current().nextInt(maxX - 2 * margen);
+        int y = margen + ThreadLocalRandom.current().nextInt(maxY - 2 * margen);
         return new int[]{x, y};
     }
 }
\ No newline at end of file
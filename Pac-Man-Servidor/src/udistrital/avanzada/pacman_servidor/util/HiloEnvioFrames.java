@@ -1,95 +1,586 @@
 package udistrital.avanzada.pacman_servidor.util;
 
-import javax.swing.*;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import udistrital.avanzada.pacman_servidor.modelo.TipoMensaje;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import udistrital.avanzada.pacman_servidor.modelo.EstadoJuego;
+import udistrital.avanzada.pacman_servidor.protocolo.TipoMensaje;
+import udistrital.avanzada.pacman_servidor.protocolo.CodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+import udistrital.avanzada.pacman_servidor.red.ColaSalidaSesion;
+import udistrital.avanzada.pacman_servidor.red.ColaSalidaSesion.EscrituraMensaje;
+import udistrital.avanzada.pacman_servidor.red.FrameCompartido;
 
 /**
- * Hilo que captura y envía frames de video continuamente.
- * Controla FPS y compresión para el streaming.
+ * Tarea que captura y envía frames de video cuando cambia el juego.
+ * Espera la señal de cambio del modelo y emite un frame por cambio,
+ * sin superar los FPS configurados; si no hay cambios envía un
+ * keyframe de latido cada cierto tiempo.
+ * En modo delta solo envía los tiles que cambiaron y un keyframe
+ * completo cada cierto número de frames.
+ * 
+ * Se ejecuta en el executor que elija el servidor (hilos de plataforma
+ * o virtuales); por eso usa locks explícitos en lugar de synchronized,
+ * que fijaría el hilo virtual a su portador mientras espera.
+ * 
+ * La calidad, resolución y FPS los decide ControlCalidadStreaming según
+ * el tiempo de envío y los bytes pendientes en la salida de la conexión,
+ * de modo que un cliente lento recibe menos datos en lugar de frenar la sesión.
+ * 
+ * Los frames no se escriben en el socket: se publican en la cola de
+ * salida de la sesión, que los envía detrás de los mensajes de control
+ * y reemplaza el frame que el cliente aún no alcanzó a recibir. Si se
+ * descarta un frame el siguiente va completo, porque el cliente no
+ * tendría la referencia del delta.
+ * 
+ * Varias conexiones pueden ver la misma partida (el jugador y sus
+ * espectadores): cada frame se captura, comprime y serializa una sola
+ * vez y se entrega por referencia a la cola de cada suscriptor, así que
+ * el costo de codificar no crece con la cantidad de espectadores. Todos
+ * los suscriptores comparten protocolo y codec; la calidad la decide el
+ * primero (el jugador), y un espectador que descarta un frame provoca
+ * un keyframe para todos.
+ * 
+ * En el protocolo binario los frames se envían como mensajes
+ * FRAME/FRAME_DELTA con la marca de tiempo de su captura, que el cliente
+ * usa para presentarlos a ritmo constante, y con el codec negociado en
+ * cada frame o tile; en el de texto, en JPEG con el formato original.
+ * En frames grandes los keyframes binarios pueden comprimirse en franjas
+ * en paralelo (CodificadorFranjas) para no depender de un solo núcleo.
+ * 
+ * Con una fuente de escena (clientes que soportan CODEC_ESCENA) no se
+ * renderiza ni se comprime nada: cada cambio se envía como un FRAME con
+ * la instantánea del juego, que el cliente dibuja.
  * 
  * @author Steban
  * @version 1.0
  */
-public class HiloEnvioFrames extends Thread {
+public class HiloEnvioFrames implements Runnable {
+    
+    /**
+     * Fracción de tiles modificados a partir de la cual conviene un keyframe
+     */
+    private static final double UMBRAL_KEYFRAME = 0.5;
+    
+    private final List<ColaSalidaSesion> suscriptores;
+    private final boolean binario;
+    private final int codecFrames;
+    private volatile boolean keyframeSolicitado;
     
-    private DataOutputStream salida;
-    private JPanel panel;
+    // Serialización de los frames, compartidos por todos los suscriptores
+    private final BufferFrame bufferMensaje;
+    private final DataOutputStream salida;
+    private final CodificadorMensajes codificador;
+    private RenderizadorJuego renderizador;
     private CapturaFrames captura;
+    private CodificadorFranjas franjas;
+    private ControlCalidadStreaming control;
     private volatile boolean activo;
-    private int fps;
-    private int delayMilisegundos;
+    private boolean modoDelta;
+    private int intervaloKeyframe;
+    private int framesDesdeKeyframe;
+    private long intervaloLatido;
+    private long ultimoEnvio;
+    private long inicioStreaming;
+    private volatile Thread hiloEjecucion;
+    
+    // Modo escena: instantánea del juego en lugar de video
+    private Consumer<EstadoJuego> fuenteEscena;
+    private EstadoJuego estado;
+    private CodificadorEscena codificadorEscena;
+    
+    // Señal de "estado modificado" enviada por el modelo
+    private final Lock bloqueoCambios = new ReentrantLock();
+    private final Condition hayCambios = bloqueoCambios.newCondition();
+    private boolean cambioPendiente;
     
     /**
      * Constructor del hilo de streaming.
      * 
-     * @param salida Stream de salida hacia el cliente
-     * @param panel Panel a capturar
-     * @param fps Frames por segundo objetivo
-     * @param calidad Calidad de compresión JPEG (0.0 - 1.0)
-     */
-    public HiloEnvioFrames(DataOutputStream salida, JPanel panel, int fps, float calidad) {
-        this.salida = salida;
-        this.panel = panel;
-        this.fps = fps;
-        this.delayMilisegundos = 1000 / fps;
-        this.captura = new CapturaFrames(calidad);
+     * @param colaSalida Cola de salida del primer suscriptor (el jugador)
+     * @param binario true para enviar los frames con el protocolo binario
+     * @param codecFrames Codec preferido (CODEC_*); JPEG en el protocolo de texto
+     * @param renderizador Renderizador fuera de pantalla de la sesión
+     * @param control Control adaptativo de calidad, resolución y FPS
+     * @param modoDelta true para enviar solo los tiles modificados
+     * @param intervaloKeyframe Cada cuántos frames se envía un frame completo
+     * @param intervaloLatido Milisegundos sin cambios tras los que se envía un keyframe
+     */
+    public HiloEnvioFrames(ColaSalidaSesion colaSalida, boolean binario, int codecFrames,
+                           RenderizadorJuego renderizador,
+                           ControlCalidadStreaming control, boolean modoDelta,
+                           int intervaloKeyframe, long intervaloLatido) {
+        this.suscriptores = new CopyOnWriteArrayList<>();
+        this.suscriptores.add(colaSalida);
+        this.binario = binario;
+        this.codecFrames = codecFrames;
+        this.bufferMensaje = new BufferFrame(16 * 1024);
+        this.salida = new DataOutputStream(bufferMensaje);
+        this.codificador = binario ? new CodificadorMensajes(salida) : null;
+        this.renderizador = renderizador;
+        this.control = control;
+        this.captura = new CapturaFrames(control.getCalidad());
+        this.captura.setCodecPreferido(codecFrames);
+        this.modoDelta = modoDelta;
+        this.intervaloKeyframe = Math.max(1, intervaloKeyframe);
+        this.framesDesdeKeyframe = 0;
+        this.intervaloLatido = intervaloLatido;
+        this.ultimoEnvio = 0;
+        this.cambioPendiente = true; // El primer frame se envía de inmediato
         this.activo = true;
-        
-        // Daemon thread para no bloquear cierre
-        setDaemon(true);
+    }
+    
+    /**
+     * Comprime los keyframes en franjas horizontales en paralelo, que se
+     * envían como un FRAME_DELTA que cubre todo el frame. Debe llamarse
+     * antes de ejecutar el hilo y solo con el protocolo binario.
+     * 
+     * @param cantidad Cantidad máxima de franjas por keyframe
+     */
+    public void setFranjas(int cantidad) {
+        this.franjas = new CodificadorFranjas(cantidad, control.getCalidad(), codecFrames);
+    }
+    
+    /**
+     * Envía la escena (CODEC_ESCENA) en lugar de frames de video.
+     * Debe llamarse antes de ejecutar el hilo y solo con el protocolo binario.
+     * 
+     * @param fuenteEscena Acción que copia el estado visible del juego
+     */
+    public void setFuenteEscena(Consumer<EstadoJuego> fuenteEscena) {
+        this.fuenteEscena = fuenteEscena;
+        this.estado = new EstadoJuego();
+        this.codificadorEscena = new CodificadorEscena();
     }
     
     @Override
     public void run() {
+        hiloEjecucion = Thread.currentThread();
+        inicioStreaming = System.currentTimeMillis();
+        
         while (activo) {
-            long tiempoInicio = System.currentTimeMillis();
-            
             try {
-                // Capturar frame
-                BufferedImage frame = captura.capturarFrame(panel);
+                // Respetar el máximo de FPS: los cambios que lleguen mientras
+                // tanto se agrupan en un solo frame
+                int delayMilisegundos = control.getDelayMilisegundos();
+                for (ColaSalidaSesion cola : suscriptores) {
+                    cola.setIntervaloFrames(delayMilisegundos);
+                }
+                long desdeUltimoEnvio = System.currentTimeMillis() - ultimoEnvio;
+                if (desdeUltimoEnvio < delayMilisegundos) {
+                    Thread.sleep(delayMilisegundos - desdeUltimoEnvio);
+                }
+                
+                boolean hayCambio = esperarCambio();
+                if (!activo) {
+                    break;
+                }
                 
-                // Comprimir
-                byte[] frameComprimido = captura.comprimirJPEG(frame);
+                // Un suscriptor no alcanzó a recibir el frame anterior, o
+                // recién llegó: el nuevo debe ir completo
+                if (descartarPendientes() || keyframeSolicitado) {
+                    keyframeSolicitado = false;
+                    captura.reiniciarReferencia();
+                }
                 
-                // Enviar por socket (synchronized para evitar corrupción)
-                synchronized (salida) {
-                    salida.writeUTF(TipoMensaje.FRAME_VIDEO.getCodigo());
-                    salida.writeInt(frameComprimido.length);
-                    salida.write(frameComprimido);
-                    salida.flush();
+                int marcaTiempo = (int) (System.currentTimeMillis() - inicioStreaming);
+                if (fuenteEscena != null) {
+                    // Cada escena va completa: no hay referencia que mantener
+                    enviarEscena(marcaTiempo);
+                } else {
+                    enviarVideo(marcaTiempo, hayCambio);
                 }
                 
+                ultimoEnvio = System.currentTimeMillis();
+            
             } catch (IOException e) {
                 if (activo) {
                     System.err.println("Error enviando frame: " + e.getMessage());
                 }
                 activo = false;
                 break;
+            } catch (InterruptedException e) {
+                activo = false;
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        captura.cerrar();
+        if (franjas != null) {
+            franjas.cerrar();
+        }
+        hiloEjecucion = null;
+    }
+    
+    /**
+     * Agrega una conexión que recibirá los mismos frames. Su primer
+     * frame será un keyframe.
+     * 
+     * @param cola Cola de salida del nuevo suscriptor
+     */
+    public void agregarSuscriptor(ColaSalidaSesion cola) {
+        suscriptores.add(cola);
+        keyframeSolicitado = true;
+        notificarCambio();
+    }
+    
+    /**
+     * Deja de enviar frames a una conexión.
+     * 
+     * @param cola Cola de salida del suscriptor
+     * @return true si no quedan suscriptores
+     */
+    public boolean quitarSuscriptor(ColaSalidaSesion cola) {
+        suscriptores.remove(cola);
+        return suscriptores.isEmpty();
+    }
+    
+    /**
+     * Indica si un cliente con este protocolo y codec puede suscribirse.
+     * 
+     * @param binario true si el cliente usa el protocolo binario
+     * @param codecFrames Codec negociado con el cliente (CODEC_*)
+     * @return true si recibe exactamente los mismos bytes
+     */
+    public boolean admiteFormato(boolean binario, int codecFrames) {
+        return this.binario == binario && this.codecFrames == codecFrames;
+    }
+    
+    /**
+     * Descarta el frame pendiente de cada suscriptor. El descarte del
+     * primero (el jugador) se informa al control adaptativo.
+     * 
+     * @return true si algún suscriptor no recibió el frame anterior
+     */
+    private boolean descartarPendientes() {
+        boolean descartado = false;
+        boolean primero = true;
+        for (ColaSalidaSesion cola : suscriptores) {
+            if (cola.descartarFramePendiente()) {
+                descartado = true;
+                if (primero && control.registrarDescarte()) {
+                    aplicarCalidad();
+                }
+            }
+            primero = false;
+        }
+        return descartado;
+    }
+    
+    /**
+     * Serializa un frame una sola vez y lo publica en la cola de cada
+     * suscriptor. Un suscriptor cuya conexión falló se quita.
+     * 
+     * @param escritura Escritura del frame en el buffer compartido
+     * @throws IOException Si falló la conexión de todos los suscriptores
+     */
+    private void publicar(EscrituraMensaje escritura) throws IOException {
+        bufferMensaje.reset();
+        escritura.escribir();
+        salida.flush();
+        
+        // Una copia por frame, que las colas guardan por referencia
+        int longitud = bufferMensaje.size();
+        FrameCompartido frame = new FrameCompartido(
+            Arrays.copyOf(bufferMensaje.getDatos(), longitud), longitud);
+        
+        IOException error = null;
+        for (ColaSalidaSesion cola : suscriptores) {
+            try {
+                cola.publicarFrame(frame);
+            } catch (IOException e) {
+                suscriptores.remove(cola);
+                error = e;
             }
+        }
+        if (error != null && suscriptores.isEmpty()) {
+            throw error;
+        }
+    }
+    
+    /**
+     * Notifica que el estado del juego cambió y debe emitirse un frame.
+     * Puede llamarse desde cualquier hilo.
+     */
+    public void notificarCambio() {
+        bloqueoCambios.lock();
+        try {
+            cambioPendiente = true;
+            hayCambios.signalAll();
+        } finally {
+            bloqueoCambios.unlock();
+        }
+    }
+    
+    /**
+     * Bloquea hasta que haya un cambio pendiente o venza el latido.
+     * 
+     * @return true si hubo cambio, false si venció el intervalo de latido
+     * @throws InterruptedException Si el hilo es interrumpido
+     */
+    private boolean esperarCambio() throws InterruptedException {
+        bloqueoCambios.lock();
+        try {
+            long limite = ultimoEnvio + intervaloLatido;
             
-            // Control de FPS
-            long tiempoTranscurrido = System.currentTimeMillis() - tiempoInicio;
-            long tiempoEspera = delayMilisegundos - tiempoTranscurrido;
+            while (!cambioPendiente && activo) {
+                long espera = limite - System.currentTimeMillis();
+                if (espera <= 0) {
+                    return false;
+                }
+                hayCambios.await(espera, TimeUnit.MILLISECONDS);
+            }
             
-            if (tiempoEspera > 0) {
-                try {
-                    Thread.sleep(tiempoEspera);
-                } catch (InterruptedException e) {
-                    activo = false;
-                    Thread.currentThread().interrupt();
+            cambioPendiente = false;
+            return true;
+        } finally {
+            bloqueoCambios.unlock();
+        }
+    }
+    
+    /**
+     * Envía solo los tiles modificados, o un keyframe si corresponde.
+     * No envía nada si el frame es idéntico al anterior.
+     * 
+     * @param frame Frame capturado
+     * @param marcaTiempo Milisegundos desde el inicio del streaming
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarFrameDelta(BufferedImage frame, int marcaTiempo) throws IOException {
+        List<Rectangle> tiles = null;
+        
+        if (framesDesdeKeyframe < intervaloKeyframe) {
+            tiles = captura.detectarTilesModificados(frame);
+        }
+        
+        // Sin referencia, keyframe periódico o demasiados cambios: frame completo
+        if (tiles == null || tiles.size() > totalTiles(frame) * UMBRAL_KEYFRAME) {
+            enviarKeyframe(frame, marcaTiempo);
+            captura.establecerReferencia(frame);
+            return;
+        }
+        
+        framesDesdeKeyframe++;
+        
+        if (tiles.isEmpty()) {
+            return;
+        }
+        
+        // Comprimir cada tile por separado en el buffer de la sesión
+        captura.reiniciarBuffer();
+        int[] codecs = new int[tiles.size()];
+        int[] longitudes = new int[tiles.size()];
+        for (int i = 0; i < tiles.size(); i++) {
+            longitudes[i] = captura.comprimir(frame, tiles.get(i));
+            codecs[i] = captura.getCodecUltimo();
+        }
+        byte[] datos = captura.getBufferSalida();
+        int totalBytes = 0;
+        for (int longitud : longitudes) {
+            totalBytes += longitud;
+        }
+        
+        // Publicar como último frame de la sesión
+        List<Rectangle> modificados = tiles;
+        publicar(() -> {
+            if (codificador != null) {
+                enviarFrameDeltaBinario(marcaTiempo, frame, modificados, codecs, longitudes, datos);
+            } else {
+                salida.writeUTF(TipoMensaje.FRAME_DELTA.getCodigo());
+                salida.writeInt(frame.getWidth());
+                salida.writeInt(frame.getHeight());
+                salida.writeInt(modificados.size());
+                int desplazamiento = 0;
+                for (int i = 0; i < modificados.size(); i++) {
+                    Rectangle r = modificados.get(i);
+                    salida.writeShort(r.x);
+                    salida.writeShort(r.y);
+                    salida.writeInt(longitudes[i]);
+                    salida.write(datos, desplazamiento, longitudes[i]);
+                    desplazamiento += longitudes[i];
                 }
             }
+        });
+        
+        registrarEnvio(totalBytes);
+    }
+    
+    /**
+     * Escribe los tiles como mensaje FRAME_DELTA del protocolo binario.
+     */
+    private void enviarFrameDeltaBinario(int marcaTiempo, BufferedImage frame, List<Rectangle> tiles,
+                                         int[] codecs, int[] longitudes, byte[] datos)
+            throws IOException {
+        int cantidad = tiles.size();
+        int[] posicionesX = new int[cantidad];
+        int[] posicionesY = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            posicionesX[i] = tiles.get(i).x;
+            posicionesY[i] = tiles.get(i).y;
+        }
+        
+        codificador.escribirFrameDelta(marcaTiempo, frame.getWidth(), frame.getHeight(), cantidad,
+            posicionesX, posicionesY, codecs, longitudes, datos);
+    }
+    
+    /**
+     * Envía el frame completo comprimido.
+     * 
+     * @param frame Frame capturado
+     * @param marcaTiempo Milisegundos desde el inicio del streaming
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarKeyframe(BufferedImage frame, int marcaTiempo) throws IOException {
+        if (franjas != null && franjas.admite(frame.getHeight())) {
+            enviarKeyframeEnFranjas(frame, marcaTiempo);
+            return;
         }
+        
+        // Comprimir en el buffer reutilizable de la sesión
+        captura.reiniciarBuffer();
+        int longitud = captura.comprimir(frame);
+        int codec = captura.getCodecUltimo();
+        
+        // Publicar como último frame de la sesión
+        publicar(() -> {
+            if (codificador != null) {
+                codificador.escribirFrame(marcaTiempo, codec, captura.getBufferSalida(), longitud);
+            } else {
+                salida.writeUTF(TipoMensaje.FRAME_VIDEO.getCodigo());
+                salida.writeInt(longitud);
+                salida.write(captura.getBufferSalida(), 0, longitud);
+            }
+        });
+        
+        framesDesdeKeyframe = 0;
+        registrarEnvio(longitud);
     }
     
     /**
-     * Detiene el hilo de streaming.
+     * Envía el frame completo comprimido en franjas paralelas, como un
+     * FRAME_DELTA cuyas regiones cubren todo el frame.
+     * 
+     * @param frame Frame capturado
+     * @param marcaTiempo Milisegundos desde el inicio del streaming
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarKeyframeEnFranjas(BufferedImage frame, int marcaTiempo) throws IOException {
+        int totalBytes = franjas.comprimir(frame);
+        
+        publicar(() -> codificador.escribirFrameDelta(marcaTiempo, frame.getWidth(),
+            frame.getHeight(), franjas.getCantidad(), franjas.getPosicionesX(),
+            franjas.getPosicionesY(), franjas.getCodecs(), franjas.getLongitudes(),
+            franjas.getDatos()));
+        
+        framesDesdeKeyframe = 0;
+        registrarEnvio(totalBytes);
+    }
+    
+    /**
+     * Captura un frame con la resolución actual y lo envía completo o
+     * como delta.
+     * 
+     * @param marcaTiempo Milisegundos desde el inicio del streaming
+     * @param hayCambio false si es un latido sin cambios
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarVideo(int marcaTiempo, boolean hayCambio) throws IOException {
+        BufferedImage frame = captura.capturarFrame(renderizador,
+            control.getAnchoFrame(), control.getAltoFrame());
+        
+        if (modoDelta && hayCambio) {
+            enviarFrameDelta(frame, marcaTiempo);
+        } else {
+            // Latido sin cambios: keyframe para resincronizar al cliente
+            enviarKeyframe(frame, marcaTiempo);
+            captura.establecerReferencia(frame);
+        }
+    }
+    
+    /**
+     * Envía la instantánea actual del juego como escena.
+     * 
+     * @param marcaTiempo Milisegundos desde el inicio del streaming
+     * @throws IOException Si hay error al enviar
+     */
+    private void enviarEscena(int marcaTiempo) throws IOException {
+        fuenteEscena.accept(estado);
+        int longitud = codificadorEscena.codificar(estado);
+        
+        publicar(() -> codificador.escribirFrame(marcaTiempo,
+            ProtocoloBinario.CODEC_ESCENA, codificadorEscena.getDatos(), longitud));
+        
+        registrarEnvio(longitud);
+    }
+    
+    /**
+     * Informa el envío al control adaptativo y aplica la nueva calidad.
+     * El tiempo de envío es el del último frame que la cola escribió en
+     * la conexión. Un cambio de resolución se aplica solo en la próxima
+     * captura, que al no coincidir con la referencia se envía como keyframe.
+     * 
+     * @param bytes Bytes del frame publicado
+     */
+    private void registrarEnvio(int bytes) {
+        // Se adapta al primer suscriptor; la lista puede cambiar entretanto
+        Iterator<ColaSalidaSesion> iterador = suscriptores.iterator();
+        if (!iterador.hasNext()) {
+            return;
+        }
+        ColaSalidaSesion colaSalida = iterador.next();
+        if (control.registrarEnvio(bytes, colaSalida.getNanosUltimoFrame(),
+                colaSalida.getBytesPendientes())) {
+            aplicarCalidad();
+        }
+    }
+    
+    /**
+     * Aplica la calidad del control adaptativo a los codificadores.
+     */
+    private void aplicarCalidad() {
+        captura.setCalidad(control.getCalidad());
+        if (franjas != null) {
+            franjas.setCalidad(control.getCalidad());
+        }
+    }
+    
+    /**
+     * Obtiene el control adaptativo de la sesión (para monitoreo).
+     * 
+     * @return Control de calidad del streaming
+     */
+    public ControlCalidadStreaming getControl() {
+        return control;
+    }
+    
+    /**
+     * Calcula cuántos tiles componen un frame.
+     */
+    private int totalTiles(BufferedImage frame) {
+        int tamanio = CapturaFrames.TAMANIO_TILE;
+        int columnas = (frame.getWidth() + tamanio - 1) / tamanio;
+        int filas = (frame.getHeight() + tamanio - 1) / tamanio;
+        return columnas * filas;
+    }
+    
+    /**
+     * Detiene el streaming e interrumpe el hilo que lo ejecuta.
      */
     public void detener() {
         activo = false;
-        interrupt();
+        Thread hilo = hiloEjecucion;
+        if (hilo != null) {
+            hilo.interrupt();
+        }
     }
-}
\ No newline at end of file
+}
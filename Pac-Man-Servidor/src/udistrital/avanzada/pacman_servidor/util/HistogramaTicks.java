@@ -0,0 +1,112 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de duraciones de ticks en cubetas logarítmicas de base 2:
+ * la cubeta i cuenta las duraciones entre 2^i y 2^(i+1) microsegundos.
+ * Los percentiles se informan con el límite superior de su cubeta, así
+ * que tienen a lo sumo un factor 2 de error, suficiente para ver colas.
+ * Tiene un único escritor (el hilo de un fragmento de simulación) y se
+ * puede leer y vaciar desde otro hilo sin perder muestras.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class HistogramaTicks {
+    
+    /**
+     * Cantidad de cubetas; la última acumula todo lo que pase de ~33 s
+     */
+    private static final int CUBETAS = 26;
+    
+    private final AtomicLongArray cubetas;
+    private final AtomicLong maximoNanos;
+    
+    public HistogramaTicks() {
+        this.cubetas = new AtomicLongArray(CUBETAS);
+        this.maximoNanos = new AtomicLong();
+    }
+    
+    /**
+     * Registra la duración de un tick.
+     * 
+     * @param nanos Duración en nanosegundos
+     */
+    public void registrar(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int cubeta = Math.min(CUBETAS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        cubetas.incrementAndGet(cubeta);
+        if (nanos > maximoNanos.get()) {
+            maximoNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+    
+    /**
+     * Suma este histograma al destino y lo deja vacío.
+     * 
+     * @param destino Histograma donde se acumulan las muestras
+     */
+    public void transferirA(HistogramaTicks destino) {
+        for (int i = 0; i < CUBETAS; i++) {
+            long cantidad = cubetas.getAndSet(i, 0);
+            if (cantidad > 0) {
+                destino.cubetas.addAndGet(i, cantidad);
+            }
+        }
+        destino.maximoNanos.accumulateAndGet(maximoNanos.getAndSet(0), Math::max);
+    }
+    
+    /**
+     * Obtiene la cantidad de muestras registradas.
+     * 
+     * @return Cantidad de ticks
+     */
+    public long getCantidad() {
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            total += cubetas.get(i);
+        }
+        return total;
+    }
+    
+    /**
+     * Obtiene un percentil de las duraciones.
+     * 
+     * @param percentil Percentil entre 0 y 100
+     * @return Límite superior de la cubeta del percentil, en microsegundos
+     */
+    public long getPercentilMicros(double percentil) {
+        long total = getCantidad();
+        if (total == 0) {
+            return 0;
+        }
+        
+        long objetivo = (long) Math.ceil(total * percentil / 100.0);
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cubetas.get(i);
+            if (acumulado >= Math.max(1, objetivo)) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << CUBETAS;
+    }
+    
+    /**
+     * Obtiene la duración máxima registrada.
+     * 
+     * @return Máximo en microsegundos
+     */
+    public long getMaximoMicros() {
+        return maximoNanos.get() / 1000;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ticks=%d p50<%dus p99<%dus p99.9<%dus max=%dus",
+            getCantidad(), getPercentilMicros(50), getPercentilMicros(99),
+            getPercentilMicros(99.9), getMaximoMicros());
+    }
+}
@@ -0,0 +1,55 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.util.function.Consumer;
+
+/**
+ * Renderizador fuera de pantalla de una sesión de juego.
+ * Dibuja el juego directamente sobre una imagen, sin JFrame ni EDT,
+ * por lo que funciona con java.awt.headless=true.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class RenderizadorJuego {
+    
+    private static final Color COLOR_FONDO = Color.BLACK;
+    
+    private final int ancho;
+    private final int alto;
+    private final Consumer<Graphics> accionDibujar;
+    
+    /**
+     * Constructor del renderizador.
+     * 
+     * @param ancho Ancho del área de juego
+     * @param alto Alto del área de juego
+     * @param accionDibujar Lógica de dibujado inyectada por el controlador
+     */
+    public RenderizadorJuego(int ancho, int alto, Consumer<Graphics> accionDibujar) {
+        this.ancho = ancho;
+        this.alto = alto;
+        this.accionDibujar = accionDibujar;
+    }
+    
+    /**
+     * Dibuja un frame completo: fondo y elementos del juego.
+     * 
+     * @param g2d Contexto gráfico de la imagen destino
+     */
+    public void renderizar(Graphics2D g2d) {
+        g2d.setColor(COLOR_FONDO);
+        g2d.fillRect(0, 0, ancho, alto);
+        accionDibujar.accept(g2d);
+    }
+    
+    public int getAncho() {
+        return ancho;
+    }
+    
+    public int getAlto() {
+        return alto;
+    }
+}
@@ -2,17 +2,19 @@ package udistrital.avanzada.pacman_servidor.vista;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.function.Consumer;
 
 /**
  * Panel donde se dibuja el juego de Pac-Man.
  * Solo responsable de renderizar, no tiene lógica.
+ * Es un visor opcional: el streaming renderiza fuera de pantalla.
  * 
  * @author Steban
  * @version 1.0
  */
 public class PanelJuego extends JPanel {
     
-    private Runnable accionDibujar;
+    private Consumer<Graphics> accionDibujar;
     
     /**
      * Constructor del panel de juego.
@@ -30,9 +32,9 @@ public class PanelJuego extends JPanel {
      * Establece la acción a ejecutar al dibujar.
      * El controlador inyectará la lógica de dibujado.
      * 
-     * @param accion Runnable con la lógica de dibujado
+     * @param accion Lógica de dibujado sobre el contexto gráfico del panel
      */
-    public void setAccionDibujar(Runnable accion) {
+    public void setAccionDibujar(Consumer<Graphics> accion) {
         this.accionDibujar = accion;
     }
     
@@ -42,7 +44,7 @@ public class PanelJuego extends JPanel {
         
         // Si hay una acción de dibujar configurada, ejecutarla
         if (accionDibujar != null) {
-            accionDibujar.run();
+            accionDibujar.accept(g);
         }
     }
     
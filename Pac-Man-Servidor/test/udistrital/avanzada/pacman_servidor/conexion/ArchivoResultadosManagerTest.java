@@ -0,0 +1,122 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import udistrital.avanzada.pacman_servidor.conexion.ArchivoResultadosManager.PoliticaSincronizacion;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * La compactación reescribe los segmentos sellados sin los registros
+ * descartados, así que las posiciones que guarda el índice cambian. Después
+ * de compactar, obtenerHistorial y leerRegistroPorIndice deben devolver lo
+ * mismo que recorrer el archivo completo, también mientras otra sesión
+ * escribe y al volver a abrir el archivo (con y sin instantánea).
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class ArchivoResultadosManagerTest {
+    
+    private static final int JUGADORES = 30;
+    private static final int REGISTROS_POR_SEGMENTO = 200;
+    private static final int HISTORIAL = 4;
+    
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+    
+    @Test
+    public void historialCoincideConElArchivoTrasCompactar() throws Exception {
+        String ruta = new File(carpeta.getRoot(), "resultados.dat").getPath();
+        Random aleatorio = new Random(11);
+        
+        ArchivoResultadosManager archivo = abrir(ruta);
+        for (int i = 0; i < 3000; i++) {
+            archivo.guardarResultado(registroAleatorio(aleatorio));
+        }
+        RegistroJuego mejor = archivo.obtenerMejorJugador();
+        
+        // Compactar mientras otra sesión sigue guardando
+        Thread escritor = Thread.ofPlatform().start(() -> {
+            Random otro = new Random(12);
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    archivo.guardarResultado(registroAleatorio(otro));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long descartados = archivo.compactar();
+        escritor.join();
+        descartados += archivo.compactar();
+        
+        assertTrue("La compactación no descartó registros", descartados > 0);
+        assertEquals(String.valueOf(mejor), String.valueOf(archivo.obtenerMejorJugador()));
+        String esperado = verificarPosiciones(archivo);
+        archivo.cerrar();
+        
+        // Al reabrir con la instantánea
+        ArchivoResultadosManager conInstantanea = abrir(ruta);
+        assertEquals(esperado, verificarPosiciones(conInstantanea));
+        conInstantanea.cerrar();
+        
+        // Y reconstruyendo el índice desde los segmentos
+        assertTrue(new File(ruta + ".idx").delete());
+        ArchivoResultadosManager reconstruido = abrir(ruta);
+        assertEquals(esperado, verificarPosiciones(reconstruido));
+        reconstruido.cerrar();
+    }
+    
+    private static ArchivoResultadosManager abrir(String ruta) throws IOException {
+        // Sin hilo de compactación: la prueba compacta a mano
+        return new ArchivoResultadosManager(ruta, PoliticaSincronizacion.NUNCA, 0,
+            REGISTROS_POR_SEGMENTO, HISTORIAL, 0);
+    }
+    
+    private static RegistroJuego registroAleatorio(Random aleatorio) {
+        return new RegistroJuego("jugador" + aleatorio.nextInt(JUGADORES), aleatorio.nextInt(5000),
+            aleatorio.nextInt(600));
+    }
+    
+    /**
+     * Compara el historial de cada jugador y cada lectura por posición con
+     * el recorrido completo del archivo.
+     * 
+     * @return Todos los registros, como texto, para comparar entre aperturas
+     */
+    private static String verificarPosiciones(ArchivoResultadosManager archivo) throws IOException {
+        List<RegistroJuego> todos = archivo.leerTodosLosRegistros();
+        assertEquals(todos.size(), archivo.obtenerCantidadRegistros());
+        
+        for (int j = 0; j < JUGADORES; j++) {
+            String nombre = "jugador" + j;
+            List<String> esperado = new ArrayList<>();
+            for (RegistroJuego registro : todos) {
+                if (registro.getNombreJugador().equals(nombre)) {
+                    esperado.add(registro.toString());
+                }
+            }
+            List<String> historial = new ArrayList<>();
+            for (RegistroJuego registro : archivo.obtenerHistorial(nombre)) {
+                historial.add(registro.toString());
+            }
+            assertEquals("Historial de " + nombre, esperado, historial);
+        }
+        
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < todos.size(); i++) {
+            assertEquals("Registro " + i, todos.get(i).toString(), archivo.leerRegistroPorIndice(i).toString());
+            texto.append(todos.get(i)).append('\n');
+        }
+        return texto.toString();
+    }
+}
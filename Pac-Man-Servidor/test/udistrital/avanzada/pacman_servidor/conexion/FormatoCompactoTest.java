@@ -0,0 +1,156 @@
+package udistrital.avanzada.pacman_servidor.conexion;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import udistrital.avanzada.pacman_servidor.conexion.ArchivoResultadosManager.PoliticaSincronizacion;
+import udistrital.avanzada.pacman_servidor.conexion.SegmentoResultados.Formato;
+import udistrital.avanzada.pacman_servidor.modelo.RegistroJuego;
+
+/**
+ * Pruebas del formato compacto: los registros dañados al final de un
+ * segmento se descartan al abrir sin impedir el arranque, y la
+ * compactación convierte los segmentos entre el formato antiguo y el
+ * compacto sin cambiar ningún registro.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class FormatoCompactoTest {
+    
+    /**
+     * Longitud de nombre 0x80000000: un varint de 5 bytes bien formado
+     * que como int es negativo
+     */
+    private static final byte[] LONGITUD_NEGATIVA = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08};
+    
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+    
+    @Test
+    public void longitudDeNombreNegativaEsDaniado() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(LONGITUD_NEGATIVA);
+        buffer.put(new byte[] {2, 4, 0, 0, 0, 0});
+        assertEquals(FormatoCompacto.DANIADO, FormatoCompacto.medir(buffer, 0, buffer.position()));
+    }
+    
+    @Test
+    public void longitudDeNombreExcesivaEsDaniado() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.put((byte) 0xFF).put((byte) 0x01);
+        assertEquals(FormatoCompacto.DANIADO, FormatoCompacto.medir(buffer, 0, buffer.position()));
+    }
+    
+    @Test
+    public void registroDaniadoAlFinalSeDescartaAlAbrir() throws IOException {
+        String ruta = new File(carpeta.getRoot(), "resultados.dat").getPath();
+        ArchivoResultadosManager archivo = abrir(ruta, Formato.COMPACTO);
+        for (int i = 0; i < 1000; i++) {
+            archivo.guardarResultado(new RegistroJuego("p" + i, i, i));
+        }
+        archivo.cerrar();
+        
+        File segmento = new File(ruta);
+        long tamanio = segmento.length();
+        try (FileChannel canal = FileChannel.open(segmento.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer basura = ByteBuffer.allocate(16);
+            basura.put(LONGITUD_NEGATIVA).put(new byte[] {2, 4, 1, 2, 3, 4}).flip();
+            canal.write(basura, tamanio);
+        }
+        
+        ArchivoResultadosManager reabierto = abrir(ruta, Formato.COMPACTO);
+        assertEquals(1000, reabierto.obtenerCantidadRegistros());
+        assertEquals(new RegistroJuego("p999", 999, 999).toString(),
+            reabierto.leerRegistroPorIndice(999).toString());
+        assertEquals(tamanio, segmento.length());
+        
+        // Lo siguiente se escribe donde estaba el registro dañado
+        reabierto.guardarResultado(new RegistroJuego("nuevo", 1, 1));
+        assertEquals(new RegistroJuego("nuevo", 1, 1).toString(),
+            reabierto.leerRegistroPorIndice(1000).toString());
+        reabierto.cerrar();
+    }
+    
+    @Test
+    public void conversionEntreFormatosConservaLosRegistros() throws IOException {
+        String ruta = new File(carpeta.getRoot(), "resultados.dat").getPath();
+        List<RegistroJuego> esperados = new ArrayList<>();
+        
+        // Nombres con caracteres de varios bytes, espacios y el largo máximo
+        String[] nombres = {"", " a ", "ñandú", "日本語プレイヤー", "x".repeat(60), "é".repeat(50)};
+        for (String nombre : nombres) {
+            for (long tiempo : new long[] {0, -1, Long.MAX_VALUE, Long.MIN_VALUE}) {
+                esperados.add(new RegistroJuego(nombre, (int) tiempo, tiempo));
+            }
+        }
+        esperados.add(new RegistroJuego("m", Integer.MIN_VALUE, 5));
+        esperados.add(new RegistroJuego("m", Integer.MAX_VALUE, 5));
+        Random aleatorio = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            esperados.add(new RegistroJuego("jugador" + aleatorio.nextInt(100), aleatorio.nextInt(5000),
+                aleatorio.nextInt(600)));
+        }
+        
+        ArchivoResultadosManager legado = abrir(ruta, Formato.LEGADO);
+        for (RegistroJuego registro : esperados) {
+            legado.guardarResultado(registro);
+        }
+        String antes = texto(legado.leerTodosLosRegistros());
+        legado.cerrar();
+        
+        // A compacto: el segmento activo se sella al escribir y compactar lo convierte
+        ArchivoResultadosManager compacto = abrir(ruta, Formato.COMPACTO);
+        compacto.guardarResultado(new RegistroJuego("ultimo", 1, 1));
+        compacto.compactar();
+        String convertido = texto(compacto.leerTodosLosRegistros());
+        compacto.cerrar();
+        assertEquals(FormatoCompacto.MAGIA, primerEntero(ruta));
+        assertEquals(antes + new RegistroJuego("ultimo", 1, 1) + "\n", convertido);
+        
+        // Y de vuelta al formato antiguo
+        ArchivoResultadosManager deVuelta = abrir(ruta, Formato.LEGADO);
+        deVuelta.guardarResultado(new RegistroJuego("otro", 2, 2));
+        deVuelta.compactar();
+        String enLegado = texto(deVuelta.leerTodosLosRegistros());
+        deVuelta.cerrar();
+        assertNotEquals(FormatoCompacto.MAGIA, primerEntero(ruta));
+        assertEquals(convertido + new RegistroJuego("otro", 2, 2) + "\n", enLegado);
+        
+        // Sin instantánea el índice se reconstruye igual desde los segmentos convertidos
+        new File(ruta + ".idx").delete();
+        ArchivoResultadosManager reconstruido = abrir(ruta, Formato.LEGADO);
+        assertEquals(enLegado, texto(reconstruido.leerTodosLosRegistros()));
+        reconstruido.cerrar();
+    }
+    
+    private static ArchivoResultadosManager abrir(String ruta, Formato formato) throws IOException {
+        return new ArchivoResultadosManager(ruta, PoliticaSincronizacion.NUNCA, 0, 500, 0, 0, formato);
+    }
+    
+    private static String texto(List<RegistroJuego> registros) {
+        StringBuilder texto = new StringBuilder();
+        for (RegistroJuego registro : registros) {
+            texto.append(registro).append('\n');
+        }
+        return texto.toString();
+    }
+    
+    private static int primerEntero(String ruta) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new FileInputStream(ruta))) {
+            return entrada.readInt();
+        }
+    }
+}
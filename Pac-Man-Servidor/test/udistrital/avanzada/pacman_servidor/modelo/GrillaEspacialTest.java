@@ -0,0 +1,112 @@
+package udistrital.avanzada.pacman_servidor.modelo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * La grilla espacial debe encontrar exactamente las mismas colisiones
+ * que recorrer todas las frutas con PacMan.colisionaCon (la búsqueda
+ * por fuerza bruta que reemplazó), incluidas las frutas en los bordes
+ * del área y en los límites entre celdas.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class GrillaEspacialTest {
+    
+    private static final int ANCHO = 800;
+    private static final int ALTO = 600;
+    
+    /**
+     * Mismo lado de celda que usa Juego.
+     */
+    private static final int LADO_CELDA = (PacMan.getTamanio() + Fruta.getTamanio() + 1) / 2;
+    
+    @Test
+    public void mismasColisionesQueFuerzaBruta() {
+        Random aleatorio = new Random(2024);
+        for (int ronda = 0; ronda < 20; ronda++) {
+            GrillaEspacial grilla = new GrillaEspacial(ANCHO, ALTO, LADO_CELDA);
+            List<Fruta> frutas = new ArrayList<>();
+            int cantidad = 1 + aleatorio.nextInt(60);
+            for (int i = 0; i < cantidad; i++) {
+                Fruta fruta = new Cereza(aleatorio.nextInt(ANCHO - Fruta.getTamanio() + 1),
+                    aleatorio.nextInt(ALTO - Fruta.getTamanio() + 1));
+                frutas.add(fruta);
+                grilla.agregar(fruta);
+            }
+            
+            for (int consulta = 0; consulta < 2000; consulta++) {
+                PacMan pacman = new PacMan(aleatorio.nextInt(ANCHO - PacMan.getTamanio() + 1),
+                    aleatorio.nextInt(ALTO - PacMan.getTamanio() + 1));
+                verificar(grilla, frutas, pacman);
+            }
+        }
+    }
+    
+    @Test
+    public void barridoCompletoAlrededorDeFrutasEnBordesYEsquinas() {
+        GrillaEspacial grilla = new GrillaEspacial(ANCHO, ALTO, LADO_CELDA);
+        List<Fruta> frutas = new ArrayList<>();
+        int maxX = ANCHO - Fruta.getTamanio();
+        int maxY = ALTO - Fruta.getTamanio();
+        int[][] posiciones = {
+            {0, 0}, {maxX, 0}, {0, maxY}, {maxX, maxY},
+            {LADO_CELDA - 1, LADO_CELDA - 1}, {LADO_CELDA * 5, LADO_CELDA * 3}, {400, 300}
+        };
+        for (int[] posicion : posiciones) {
+            Fruta fruta = new Fresa(posicion[0], posicion[1]);
+            frutas.add(fruta);
+            grilla.agregar(fruta);
+        }
+        
+        // Todas las posiciones de Pac-Man cerca de cada fruta, de a un píxel
+        for (Fruta fruta : frutas) {
+            for (int y = fruta.getY() - 60; y <= fruta.getY() + 60; y++) {
+                for (int x = fruta.getX() - 60; x <= fruta.getX() + 60; x++) {
+                    if (x >= 0 && y >= 0 && x <= ANCHO - PacMan.getTamanio() && y <= ALTO - PacMan.getTamanio()) {
+                        verificar(grilla, frutas, new PacMan(x, y));
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void frutaQuitadaNoColisiona() {
+        GrillaEspacial grilla = new GrillaEspacial(ANCHO, ALTO, LADO_CELDA);
+        Fruta fruta = new Manzana(100, 100);
+        grilla.agregar(fruta);
+        PacMan pacman = new PacMan(100, 100);
+        
+        assertEquals(fruta, grilla.buscarColision(pacman.getCentroX(), pacman.getCentroY(), PacMan.getTamanio()));
+        grilla.quitar(fruta);
+        assertNull(grilla.buscarColision(pacman.getCentroX(), pacman.getCentroY(), PacMan.getTamanio()));
+    }
+    
+    /**
+     * La grilla devuelve una fruta si y solo si la fuerza bruta encuentra
+     * alguna, y la que devuelve colisiona de verdad.
+     */
+    private static void verificar(GrillaEspacial grilla, List<Fruta> frutas, PacMan pacman) {
+        boolean hayColision = false;
+        for (Fruta fruta : frutas) {
+            if (pacman.colisionaCon(fruta.getX(), fruta.getY(), Fruta.getTamanio())) {
+                hayColision = true;
+                break;
+            }
+        }
+        
+        Fruta encontrada = grilla.buscarColision(pacman.getCentroX(), pacman.getCentroY(), PacMan.getTamanio());
+        String contexto = "Pac-Man en (" + pacman.getX() + ", " + pacman.getY() + ")";
+        assertEquals(contexto, hayColision, encontrada != null);
+        if (encontrada != null) {
+            assertTrue(contexto, pacman.colisionaCon(encontrada.getX(), encontrada.getY(), Fruta.getTamanio()));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package udistrital.avanzada.pacman_servidor.protocolo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compatibilidad del protocolo entre servidor y cliente: lo que escribe
+ * el CodificadorMensajes de un proyecto lo entiende el
+ * DecodificadorMensajes del otro, campo por campo y en el mismo orden en
+ * que lo leen ProtocoloSesion y ConexionServidor. Los tipos de texto
+ * (TipoMensaje) se resuelven igual en los dos lados.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CompatibilidadProtocoloTest {
+    
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream salida = new DataOutputStream(bytes);
+    
+    /**
+     * Decodificador del cliente sobre lo escrito hasta ahora.
+     */
+    private udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificadorCliente() {
+        return new udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+    
+    /**
+     * Decodificador del servidor sobre lo escrito hasta ahora.
+     */
+    private DecodificadorMensajes decodificadorServidor() {
+        return new DecodificadorMensajes(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+    
+    @Test
+    public void constantesDeNegociacionIguales() {
+        assertEquals(ProtocoloBinario.VERSION,
+            udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario.VERSION);
+        assertEquals(ProtocoloBinario.OFERTA,
+            udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario.OFERTA);
+        assertEquals(ProtocoloBinario.ACEPTACION,
+            udistrital.avanzada.pacman_cliente.protocolo.ProtocoloBinario.ACEPTACION);
+    }
+    
+    @Test
+    public void cadaTipoMensajeSeResuelveEnElCliente() throws IOException {
+        for (TipoMensaje tipo : TipoMensaje.values()) {
+            bytes.reset();
+            salida.writeUTF(tipo.getCodigo());
+            salida.writeUTF("contenido " + tipo);
+            
+            DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            udistrital.avanzada.pacman_cliente.protocolo.TipoMensaje recibido =
+                udistrital.avanzada.pacman_cliente.protocolo.TipoMensaje.fromCodigo(entrada.readUTF());
+            assertEquals(tipo.name(), recibido.name());
+            assertEquals("contenido " + tipo, entrada.readUTF());
+        }
+        assertEquals(TipoMensaje.values().length,
+            udistrital.avanzada.pacman_cliente.protocolo.TipoMensaje.values().length);
+    }
+    
+    @Test
+    public void solicitudYResultadoDeAutenticacion() throws IOException {
+        CodificadorMensajes codificador = new CodificadorMensajes(salida);
+        codificador.escribirSolicitudAutenticacion(ProtocoloBinario.SOLICITUD_PASSWORD);
+        codificador.escribirResultadoAutenticacion(ProtocoloBinario.AUTENTICACION_RECHAZADA);
+        
+        udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificador = decodificadorCliente();
+        assertEquals(ProtocoloBinario.SOLICITUD_AUTENTICACION, decodificador.leerEncabezado());
+        assertEquals(ProtocoloBinario.SOLICITUD_PASSWORD, decodificador.leerByte());
+        assertEquals(0, decodificador.getRestante());
+        assertEquals(ProtocoloBinario.RESULTADO_AUTENTICACION, decodificador.leerEncabezado());
+        assertEquals(ProtocoloBinario.AUTENTICACION_RECHAZADA, decodificador.leerByte());
+        assertEquals(0, decodificador.getRestante());
+    }
+    
+    @Test
+    public void resultadoDeMovimientoConYSinFruta() throws IOException {
+        CodificadorMensajes codificador = new CodificadorMensajes(salida);
+        codificador.escribirResultadoMovimiento(true, 3, null, 0);
+        codificador.escribirResultadoMovimiento(false, 200, "Melón", 1000);
+        
+        udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificador = decodificadorCliente();
+        assertEquals(ProtocoloBinario.RESULTADO_MOVIMIENTO, decodificador.leerEncabezado());
+        assertEquals(ProtocoloBinario.BANDERA_LIMITE, decodificador.leerByte());
+        assertEquals(3, decodificador.leerVarint());
+        assertEquals(0, decodificador.getRestante());
+        
+        assertEquals(ProtocoloBinario.RESULTADO_MOVIMIENTO, decodificador.leerEncabezado());
+        assertEquals(ProtocoloBinario.BANDERA_FRUTA, decodificador.leerByte());
+        assertEquals(200, decodificador.leerVarint());
+        assertEquals("Melón", decodificador.leerCadena());
+        assertEquals(1000, decodificador.leerVarint());
+        assertEquals(0, decodificador.getRestante());
+    }
+    
+    @Test
+    public void puntajeFinDeJuegoYTexto() throws IOException {
+        CodificadorMensajes codificador = new CodificadorMensajes(salida);
+        codificador.escribirPuntaje(1500, 95, 2);
+        codificador.escribirFinJuego("jugador1", 4200, 301);
+        codificador.escribirTexto("LIMITE_ALCANZADO");
+        
+        udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificador = decodificadorCliente();
+        assertEquals(ProtocoloBinario.PUNTAJE, decodificador.leerEncabezado());
+        assertEquals(1500, decodificador.leerVarint());
+        assertEquals(95, decodificador.leerVarint());
+        assertEquals(2, decodificador.leerVarint());
+        assertEquals(0, decodificador.getRestante());
+        
+        assertEquals(ProtocoloBinario.FIN_JUEGO, decodificador.leerEncabezado());
+        assertEquals("jugador1", decodificador.leerCadena());
+        assertEquals(4200, decodificador.leerVarint());
+        assertEquals(301, decodificador.leerVarint());
+        assertEquals(0, decodificador.getRestante());
+        
+        assertEquals(ProtocoloBinario.TEXTO, decodificador.leerEncabezado());
+        assertEquals("LIMITE_ALCANZADO", decodificador.leerCadena());
+        assertEquals(0, decodificador.getRestante());
+    }
+    
+    @Test
+    public void frameCompleto() throws IOException {
+        byte[] datos = new byte[1000];
+        Arrays.fill(datos, (byte) 0x5A);
+        new CodificadorMensajes(salida).escribirFrame(123456, ProtocoloBinario.CODEC_PALETA, datos, 700);
+        
+        udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificador = decodificadorCliente();
+        assertEquals(ProtocoloBinario.FRAME, decodificador.leerEncabezado());
+        assertEquals(123456, decodificador.leerVarint());
+        assertEquals(ProtocoloBinario.CODEC_PALETA, decodificador.leerByte());
+        assertEquals(700, decodificador.getRestante());
+        byte[] leidos = new byte[700];
+        decodificador.leerBytes(leidos, 0, leidos.length);
+        assertArrayEquals(Arrays.copyOf(datos, 700), leidos);
+    }
+    
+    @Test
+    public void frameDelta() throws IOException {
+        int[] xs = {0, 64, 640};
+        int[] ys = {0, 128, 448};
+        int[] codecs = {ProtocoloBinario.CODEC_JPEG, ProtocoloBinario.CODEC_PALETA, ProtocoloBinario.CODEC_JPEG};
+        int[] longitudes = {5, 300, 1};
+        byte[] datos = new byte[306];
+        for (int i = 0; i < datos.length; i++) {
+            datos[i] = (byte) i;
+        }
+        new CodificadorMensajes(salida).escribirFrameDelta(77, 800, 600, 3, xs, ys, codecs, longitudes, datos);
+        
+        udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificador = decodificadorCliente();
+        assertEquals(ProtocoloBinario.FRAME_DELTA, decodificador.leerEncabezado());
+        assertEquals(77, decodificador.leerVarint());
+        assertEquals(800, decodificador.leerVarint());
+        assertEquals(600, decodificador.leerVarint());
+        assertEquals(3, decodificador.leerVarint());
+        int desplazamiento = 0;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(xs[i], decodificador.leerVarint());
+            assertEquals(ys[i], decodificador.leerVarint());
+            assertEquals(codecs[i], decodificador.leerByte());
+            assertEquals(longitudes[i], decodificador.leerVarint());
+            byte[] tile = new byte[longitudes[i]];
+            decodificador.leerBytes(tile, 0, tile.length);
+            assertArrayEquals(Arrays.copyOfRange(datos, desplazamiento, desplazamiento + longitudes[i]), tile);
+            desplazamiento += longitudes[i];
+        }
+        assertEquals(0, decodificador.getRestante());
+    }
+    
+    @Test
+    public void mensajesDelClienteAlServidor() throws IOException {
+        udistrital.avanzada.pacman_cliente.protocolo.CodificadorMensajes codificador =
+            new udistrital.avanzada.pacman_cliente.protocolo.CodificadorMensajes(salida);
+        codificador.escribirEspectar("jugador2");
+        codificador.escribirCodecs(ProtocoloBinario.CODEC_JPEG, ProtocoloBinario.CODEC_ESCENA);
+        codificador.escribirCredencial("contraseña");
+        codificador.escribirMovimiento(ProtocoloBinario.codigoDireccion("IZQUIERDA"));
+        
+        DecodificadorMensajes decodificador = decodificadorServidor();
+        assertEquals(ProtocoloBinario.ESPECTAR, decodificador.leerEncabezado());
+        assertEquals("jugador2", decodificador.leerCadena());
+        assertEquals(ProtocoloBinario.CODECS, decodificador.leerEncabezado());
+        assertEquals(2, decodificador.leerVarint());
+        assertEquals(ProtocoloBinario.CODEC_JPEG, decodificador.leerByte());
+        assertEquals(ProtocoloBinario.CODEC_ESCENA, decodificador.leerByte());
+        assertEquals(ProtocoloBinario.CREDENCIAL, decodificador.leerEncabezado());
+        assertEquals("contraseña", decodificador.leerCadena());
+        assertEquals(ProtocoloBinario.MOVIMIENTO, decodificador.leerEncabezado());
+        assertEquals("IZQUIERDA", ProtocoloBinario.nombreDireccion(decodificador.leerByte()));
+        assertEquals(0, decodificador.getRestante());
+    }
+    
+    @Test
+    public void opcodeDesconocidoSeDescarta() throws IOException {
+        salida.write(0x7F);
+        salida.write(3);
+        salida.write(new byte[] {1, 2, 3});
+        new CodificadorMensajes(salida).escribirTexto("después");
+        
+        udistrital.avanzada.pacman_cliente.protocolo.DecodificadorMensajes decodificador = decodificadorCliente();
+        assertEquals(0x7F, decodificador.leerEncabezado());
+        decodificador.descartarResto();
+        assertEquals(ProtocoloBinario.TEXTO, decodificador.leerEncabezado());
+        assertEquals("después", decodificador.leerCadena());
+        assertNull(udistrital.avanzada.pacman_cliente.protocolo.TipoMensaje.buscar("XYZ"));
+    }
+}
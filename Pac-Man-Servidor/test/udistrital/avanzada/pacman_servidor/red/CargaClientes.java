@@ -0,0 +1,313 @@
+package udistrital.avanzada.pacman_servidor.red;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import udistrital.avanzada.pacman_servidor.protocolo.CodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.DecodificadorMensajes;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+import udistrital.avanzada.pacman_servidor.protocolo.TipoMensaje;
+
+/**
+ * Prueba de carga: un enjambre de clientes contra un servidor en marcha.
+ * Cada cliente negocia el protocolo binario, se autentica, envía un
+ * movimiento cada cierto tiempo y lee todo lo que llega (frames
+ * incluidos) hasta que termina la prueba o su juego.
+ * 
+ * Al final informa conexiones, frames y bytes recibidos, y la latencia
+ * entre un movimiento y su resultado (p50, p95, p99 y máximo).
+ * 
+ * Para comprobar que el modo VIRTUALES no ancla hilos virtuales a su
+ * portador, se arranca el servidor con servidor.modo.conexiones=VIRTUALES
+ * y la opción de JVM -Djdk.tracePinnedThreads=full, se corre la carga y
+ * se revisa que el servidor no haya impreso ninguna pila de hilo anclado.
+ * La misma carga contra HILOS y NIO sirve de comparación.
+ * 
+ *   ant -Dcarga.args="localhost 5000 200 60 jugador1:pass1,jugador2:pass2" carga
+ * 
+ * Argumentos: host, puerto, clientes, segundos y usuarios (usuario:password
+ * separados por comas, se reparten entre los clientes). Opcionales: ms
+ * entre movimientos (100) y ms entre conexiones (5). Los movimientos
+ * salen de una semilla fija para que dos corridas sean comparables.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CargaClientes {
+    
+    private static final String[] DIRECCIONES = {"ARRIBA", "ABAJO", "IZQUIERDA", "DERECHA"};
+    
+    private final String host;
+    private final int puerto;
+    private final String[][] usuarios;
+    private final long msMovimiento;
+    private final long fin;
+    
+    private final AtomicInteger conectados = new AtomicInteger();
+    private final AtomicInteger autenticados = new AtomicInteger();
+    private final AtomicInteger juegosTerminados = new AtomicInteger();
+    private final AtomicInteger errores = new AtomicInteger();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytesFrames = new AtomicLong();
+    private final ConcurrentLinkedQueue<Long> latencias = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> primerosErrores = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Constructor de la prueba.
+     * 
+     * @param host Host del servidor
+     * @param puerto Puerto del servidor
+     * @param usuarios Pares usuario, password
+     * @param msMovimiento Milisegundos entre movimientos de un cliente
+     * @param fin Instante (System.nanoTime) en que termina la prueba
+     */
+    public CargaClientes(String host, int puerto, String[][] usuarios, long msMovimiento, long fin) {
+        this.host = host;
+        this.puerto = puerto;
+        this.usuarios = usuarios;
+        this.msMovimiento = msMovimiento;
+        this.fin = fin;
+    }
+    
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 5) {
+            System.err.println("Uso: CargaClientes host puerto clientes segundos usuario:password[,...]"
+                + " [msMovimiento] [msEntreConexiones]");
+            System.exit(1);
+        }
+        
+        String host = args[0];
+        int puerto = Integer.parseInt(args[1]);
+        int clientes = Integer.parseInt(args[2]);
+        int segundos = Integer.parseInt(args[3]);
+        String[][] usuarios = Arrays.stream(args[4].split(","))
+            .map(par -> par.split(":", 2))
+            .toArray(String[][]::new);
+        long msMovimiento = args.length > 5 ? Long.parseLong(args[5]) : 100;
+        long msEntreConexiones = args.length > 6 ? Long.parseLong(args[6]) : 5;
+        
+        long inicio = System.nanoTime();
+        CargaClientes carga = new CargaClientes(host, puerto, usuarios, msMovimiento,
+            inicio + TimeUnit.SECONDS.toNanos(segundos));
+        carga.ejecutar(clientes, msEntreConexiones);
+        carga.imprimirResumen(clientes, System.nanoTime() - inicio);
+        System.exit(carga.errores.get() == 0 ? 0 : 2);
+    }
+    
+    /**
+     * Conecta los clientes escalonados y espera a que terminen todos.
+     * 
+     * @param clientes Cantidad de clientes
+     * @param msEntreConexiones Pausa entre una conexión y la siguiente
+     * @throws InterruptedException Si se interrumpe la espera
+     */
+    public void ejecutar(int clientes, long msEntreConexiones) throws InterruptedException {
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clientes; i++) {
+                int numero = i;
+                ejecutor.execute(() -> {
+                    try {
+                        ejecutarCliente(numero);
+                    } catch (IOException | RuntimeException e) {
+                        registrarError(numero, e);
+                    } finally {
+                        terminados.countDown();
+                    }
+                });
+                Thread.sleep(msEntreConexiones);
+            }
+            terminados.await();
+        }
+    }
+    
+    /**
+     * Sesión completa de un cliente.
+     * 
+     * @param numero Número del cliente
+     * @throws IOException Si hay error de comunicación
+     */
+    private void ejecutarCliente(int numero) throws IOException {
+        String[] usuario = usuarios[numero % usuarios.length];
+        
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, puerto), 10_000);
+            socket.setTcpNoDelay(true);
+            conectados.incrementAndGet();
+            
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            negociarBinario(entrada, salida);
+            
+            CodificadorMensajes codificador = new CodificadorMensajes(salida);
+            DecodificadorMensajes decodificador = new DecodificadorMensajes(entrada);
+            esperarSolicitud(decodificador);
+            codificador.escribirCredencial(usuario[0]);
+            esperarSolicitud(decodificador);
+            codificador.escribirCredencial(usuario[1]);
+            
+            while (decodificador.leerEncabezado() != ProtocoloBinario.RESULTADO_AUTENTICACION) {
+                decodificador.descartarResto();
+            }
+            int resultado = decodificador.leerByte();
+            if (resultado != ProtocoloBinario.AUTENTICACION_OK) {
+                throw new IOException("Autenticación rechazada para " + usuario[0] + ": " + resultado);
+            }
+            autenticados.incrementAndGet();
+            
+            jugar(socket, codificador, decodificador, new Random(numero));
+        }
+    }
+    
+    /**
+     * Acepta la oferta de protocolo binario y descarta los mensajes de
+     * texto hasta la confirmación del servidor.
+     * 
+     * @param entrada Entrada de la conexión
+     * @param salida Salida de la conexión
+     * @throws IOException Si el servidor no ofrece el protocolo binario
+     */
+    private void negociarBinario(DataInputStream entrada, DataOutputStream salida) throws IOException {
+        boolean ofertado = false;
+        while (true) {
+            String tipo = entrada.readUTF();
+            String contenido = entrada.readUTF();
+            if (!tipo.equals(TipoMensaje.AUTENTICACION.getCodigo())) {
+                continue;
+            }
+            if (contenido.equals(ProtocoloBinario.OFERTA)) {
+                salida.writeUTF(ProtocoloBinario.ACEPTACION);
+                salida.flush();
+                ofertado = true;
+            } else if (contenido.equals(ProtocoloBinario.ACEPTACION)) {
+                return;
+            } else if (!ofertado && contenido.equals("SOLICITUD_USUARIO")) {
+                throw new IOException("El servidor no ofrece el protocolo binario v" + ProtocoloBinario.VERSION);
+            }
+        }
+    }
+    
+    /**
+     * Espera la siguiente solicitud de credencial.
+     * 
+     * @param decodificador Decodificador de la conexión
+     * @throws IOException Si hay error de lectura
+     */
+    private void esperarSolicitud(DecodificadorMensajes decodificador) throws IOException {
+        while (decodificador.leerEncabezado() != ProtocoloBinario.SOLICITUD_AUTENTICACION) {
+            decodificador.descartarResto();
+        }
+        decodificador.descartarResto();
+    }
+    
+    /**
+     * Envía movimientos desde un hilo virtual mientras este hilo lee
+     * todo lo que llega, hasta el fin de la prueba o del juego. Al llegar
+     * el fin de la prueba el emisor cierra el socket y la lectura termina.
+     * 
+     * @param socket Socket del cliente
+     * @param codificador Codificador de la conexión
+     * @param decodificador Decodificador de la conexión
+     * @param aleatorio Fuente de direcciones
+     * @throws IOException Si hay error de comunicación antes del fin
+     */
+    private void jugar(Socket socket, CodificadorMensajes codificador, DecodificadorMensajes decodificador,
+            Random aleatorio) throws IOException {
+        ConcurrentLinkedQueue<Long> enviados = new ConcurrentLinkedQueue<>();
+        Thread emisor = Thread.ofVirtual().start(() -> {
+            try {
+                while (System.nanoTime() < fin) {
+                    String direccion = DIRECCIONES[aleatorio.nextInt(DIRECCIONES.length)];
+                    enviados.add(System.nanoTime());
+                    codificador.escribirMovimiento(ProtocoloBinario.codigoDireccion(direccion));
+                    Thread.sleep(msMovimiento);
+                }
+                socket.close();
+            } catch (IOException | InterruptedException e) {
+                // El lector ya cerró el socket
+            }
+        });
+        
+        try {
+            while (true) {
+                switch (decodificador.leerEncabezado()) {
+                    case ProtocoloBinario.RESULTADO_MOVIMIENTO:
+                        Long enviado = enviados.poll();
+                        if (enviado != null) {
+                            latencias.add(System.nanoTime() - enviado);
+                        }
+                        break;
+                    case ProtocoloBinario.FRAME:
+                    case ProtocoloBinario.FRAME_DELTA:
+                        frames.incrementAndGet();
+                        bytesFrames.addAndGet(decodificador.getRestante());
+                        break;
+                    case ProtocoloBinario.FIN_JUEGO:
+                        juegosTerminados.incrementAndGet();
+                        return;
+                    default:
+                        break;
+                }
+                decodificador.descartarResto();
+            }
+        } catch (IOException e) {
+            if (System.nanoTime() < fin) {
+                throw e;
+            }
+        } finally {
+            emisor.interrupt();
+            socket.close();
+        }
+    }
+    
+    private void registrarError(int numero, Exception e) {
+        if (errores.incrementAndGet() <= 10) {
+            primerosErrores.add("cliente " + numero + ": " + e);
+        }
+    }
+    
+    /**
+     * Imprime el resumen de la prueba.
+     * 
+     * @param clientes Clientes lanzados
+     * @param duracion Duración total en nanosegundos
+     */
+    public void imprimirResumen(int clientes, long duracion) {
+        List<Long> ordenadas = new ArrayList<>(latencias);
+        ordenadas.sort(null);
+        double segundos = duracion / 1e9;
+        
+        System.out.printf("Clientes: %d lanzados, %d conectados, %d autenticados, %d juegos terminados%n",
+            clientes, conectados.get(), autenticados.get(), juegosTerminados.get());
+        System.out.printf("Frames: %d (%.1f/s), %.1f KB/frame%n", frames.get(), frames.get() / segundos,
+            frames.get() == 0 ? 0.0 : bytesFrames.get() / 1024.0 / frames.get());
+        System.out.printf("Latencia de movimiento (ms, n=%d): p50 %.1f, p95 %.1f, p99 %.1f, max %.1f%n",
+            ordenadas.size(), percentil(ordenadas, 50), percentil(ordenadas, 95), percentil(ordenadas, 99),
+            percentil(ordenadas, 100));
+        System.out.printf("Errores: %d%n", errores.get());
+        primerosErrores.forEach(error -> System.out.println("  " + error));
+    }
+    
+    private static double percentil(List<Long> ordenadas, int percentil) {
+        if (ordenadas.isEmpty()) {
+            return 0.0;
+        }
+        int indice = Math.min(ordenadas.size() - 1, ordenadas.size() * percentil / 100);
+        return ordenadas.get(indice) / 1e6;
+    }
+}
@@ -0,0 +1,137 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import udistrital.avanzada.pacman_cliente.util.DecodificadorFrames;
+import udistrital.avanzada.pacman_servidor.controlador.ControladorModelo;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * Ida y vuelta de CodecPaleta contra el decodificador del cliente: lo
+ * que comprime el servidor se decodifica en el cliente píxel por píxel
+ * igual, sin pérdida, tanto frames completos como tiles de un delta.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class CodecPaletaTest {
+    
+    private final BufferFrame buffer = new BufferFrame(64 * 1024);
+    private final CodecPaleta codec = new CodecPaleta(buffer);
+    private final DecodificadorFrames decodificador = new DecodificadorFrames();
+    
+    @Test
+    public void frameDelJuegoSinPerdida() throws IOException {
+        ControladorModelo modelo = new ControladorModelo();
+        modelo.crearJuego(640, 480, 8);
+        modelo.inicializarJuego("prueba");
+        RenderizadorJuego renderizador = new RenderizadorJuego(640, 480, modelo::dibujarJuego);
+        BufferedImage frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        renderizador.renderizar(g2d);
+        g2d.dispose();
+        
+        verificarFrame(frame);
+    }
+    
+    @Test
+    public void runsQueCruzanFilasYRunsLargos() throws IOException {
+        // Un run de 100.000 píxeles necesita un varint de 3 bytes
+        BufferedImage frame = new BufferedImage(500, 400, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < 500 * 400; i++) {
+            frame.setRGB(i % 500, i / 500, i < 100_000 ? 0x000000 : (i / 333) % 7 * 0x112233);
+        }
+        
+        verificarFrame(frame);
+    }
+    
+    @Test
+    public void paletaCompletaDe256Colores() throws IOException {
+        // Los primeros 256 píxeles usan cada color una vez; el resto, al azar
+        Random aleatorio = new Random(42);
+        BufferedImage frame = new BufferedImage(97, 61, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < 97 * 61; i++) {
+            int indice = i < 256 ? i : aleatorio.nextInt(256);
+            frame.setRGB(i % 97, i / 97, (indice * 0x010305) & 0xFFFFFF);
+        }
+        
+        verificarFrame(frame);
+    }
+    
+    @Test
+    public void masDe256ColoresSeDejanAlJPEG() {
+        BufferedImage frame = new BufferedImage(300, 1, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 300; x++) {
+            frame.setRGB(x, 0, x * 0x010101);
+        }
+        
+        assertEquals(-1, codec.comprimir(frame, null));
+    }
+    
+    @Test
+    public void tileDeUnDeltaSinPerdida() throws IOException {
+        BufferedImage frame = new BufferedImage(256, 192, BufferedImage.TYPE_INT_RGB);
+        Random aleatorio = new Random(7);
+        for (int y = 0; y < 192; y++) {
+            for (int x = 0; x < 256; x++) {
+                frame.setRGB(x, y, aleatorio.nextInt(4) == 0 ? 0xFFFF00 : 0x0000FF);
+            }
+        }
+        
+        // Keyframe de una sola franja y luego un tile interior
+        int longitud = codec.comprimir(frame, null);
+        decodificar(0, 0, 256, 192, longitud);
+        for (int y = 64; y < 128; y++) {
+            for (int x = 64; x < 128; x++) {
+                frame.setRGB(x, y, (x * 31 + y) % 5 == 0 ? 0xFF0000 : 0x00FF00);
+            }
+        }
+        buffer.reset();
+        longitud = codec.comprimir(frame, new Rectangle(64, 64, 64, 64));
+        BufferedImage decodificado = decodificar(64, 64, 256, 192, longitud);
+        
+        assertIguales(frame, decodificado);
+    }
+    
+    /**
+     * Comprime el frame completo, lo decodifica en el cliente y compara.
+     */
+    private void verificarFrame(BufferedImage frame) throws IOException {
+        buffer.reset();
+        int longitud = codec.comprimir(frame, null);
+        assertTrue("el frame debería caber en la paleta", longitud > 0);
+        assertEquals(buffer.size(), longitud);
+        
+        BufferedImage decodificado = decodificador.decodificarFrame(ProtocoloBinario.CODEC_PALETA,
+            buffer.getDatos(), 0, longitud);
+        assertIguales(frame, decodificado);
+    }
+    
+    /**
+     * Decodifica lo que hay en el buffer como un delta de un solo tile.
+     */
+    private BufferedImage decodificar(int x, int y, int ancho, int alto, int longitud) throws IOException {
+        return decodificador.decodificarFragmentos(ancho, alto, 1, new int[] {x}, new int[] {y},
+            new int[] {ProtocoloBinario.CODEC_PALETA}, new int[] {longitud}, buffer.getDatos());
+    }
+    
+    private static void assertIguales(BufferedImage esperado, BufferedImage obtenido) {
+        assertEquals(esperado.getWidth(), obtenido.getWidth());
+        assertEquals(esperado.getHeight(), obtenido.getHeight());
+        for (int y = 0; y < esperado.getHeight(); y++) {
+            for (int x = 0; x < esperado.getWidth(); x++) {
+                int color = esperado.getRGB(x, y) & 0xFFFFFF;
+                if (color != (obtenido.getRGB(x, y) & 0xFFFFFF)) {
+                    assertEquals("píxel (" + x + ", " + y + ")", Integer.toHexString(color),
+                        Integer.toHexString(obtenido.getRGB(x, y) & 0xFFFFFF));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import udistrital.avanzada.pacman_cliente.util.DecodificadorFrames;
+import udistrital.avanzada.pacman_servidor.modelo.Campana;
+import udistrital.avanzada.pacman_servidor.modelo.Cereza;
+import udistrital.avanzada.pacman_servidor.modelo.Direccion;
+import udistrital.avanzada.pacman_servidor.modelo.EstadoJuego;
+import udistrital.avanzada.pacman_servidor.modelo.Fresa;
+import udistrital.avanzada.pacman_servidor.modelo.Fruta;
+import udistrital.avanzada.pacman_servidor.modelo.Galaxian;
+import udistrital.avanzada.pacman_servidor.modelo.Llave;
+import udistrital.avanzada.pacman_servidor.modelo.Manzana;
+import udistrital.avanzada.pacman_servidor.modelo.Melon;
+import udistrital.avanzada.pacman_servidor.modelo.Naranja;
+import udistrital.avanzada.pacman_servidor.modelo.PacMan;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * El cliente dibuja las escenas CODEC_ESCENA con una copia del código de
+ * dibujo de PacMan y de las frutas del servidor (DecodificadorEscena).
+ * Esta prueba dibuja la misma escena en los dos lados, con Pac-Man en
+ * cada dirección y todos los tipos de fruta, y exige que las imágenes
+ * sean idénticas: un cambio de dibujo hecho en una sola copia la rompe.
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+public class DibujoEscenaTest {
+    
+    private static final int ANCHO = 420;
+    private static final int ALTO = 200;
+    
+    @Test
+    public void escenaIgualEnServidorYCliente() throws IOException {
+        DecodificadorFrames decodificador = new DecodificadorFrames();
+        CodificadorEscena codificador = new CodificadorEscena();
+        List<Fruta> frutas = List.of(new Cereza(20, 120), new Fresa(70, 120), new Naranja(120, 120),
+            new Manzana(170, 120), new Melon(220, 120), new Galaxian(270, 120), new Campana(320, 120),
+            new Llave(370, 120));
+        
+        for (Direccion direccion : Direccion.values()) {
+            PacMan pacman = new PacMan(195, 40);
+            pacman.iniciarMovimiento(direccion);
+            
+            BufferedImage servidor = new BufferedImage(ANCHO, ALTO, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = servidor.createGraphics();
+            new RenderizadorJuego(ANCHO, ALTO, g -> dibujar(g, pacman, frutas)).renderizar(g2d);
+            g2d.dispose();
+            
+            EstadoJuego estado = new EstadoJuego();
+            estado.setArea(ANCHO, ALTO);
+            estado.setPacMan(pacman.getX(), pacman.getY(), pacman.getDireccion());
+            for (Fruta fruta : frutas) {
+                estado.agregarFruta(fruta.getNombre(), fruta.getX(), fruta.getY());
+            }
+            int longitud = codificador.codificar(estado);
+            BufferedImage cliente = decodificador.decodificarFrame(ProtocoloBinario.CODEC_ESCENA,
+                codificador.getDatos(), 0, longitud);
+            
+            assertIguales(direccion, servidor, cliente);
+        }
+    }
+    
+    /**
+     * Mismo orden que Juego.dibujar.
+     */
+    private static void dibujar(Graphics g, PacMan pacman, List<Fruta> frutas) {
+        pacman.dibujar(g);
+        for (Fruta fruta : frutas) {
+            fruta.dibujar(g);
+        }
+    }
+    
+    private static void assertIguales(Direccion direccion, BufferedImage esperado, BufferedImage obtenido) {
+        assertEquals(esperado.getWidth(), obtenido.getWidth());
+        assertEquals(esperado.getHeight(), obtenido.getHeight());
+        for (int y = 0; y < esperado.getHeight(); y++) {
+            for (int x = 0; x < esperado.getWidth(); x++) {
+                int color = esperado.getRGB(x, y) & 0xFFFFFF;
+                if (color != (obtenido.getRGB(x, y) & 0xFFFFFF)) {
+                    assertEquals("Pac-Man hacia " + direccion + ", píxel (" + x + ", " + y + ")",
+                        Integer.toHexString(color), Integer.toHexString(obtenido.getRGB(x, y) & 0xFFFFFF));
+                }
+            }
+        }
+    }
+}
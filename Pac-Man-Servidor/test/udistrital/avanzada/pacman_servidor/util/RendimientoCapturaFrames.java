@@ -0,0 +1,113 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import udistrital.avanzada.pacman_servidor.controlador.ControladorModelo;
+
+/**
+ * Benchmark JMH de la captura y compresión JPEG de un frame del juego.
+ * Compara el contexto de codificación reutilizado de CapturaFrames con
+ * lo que se hacía antes por cada frame: buscar el escritor JPEG, crear
+ * sus parámetros, el stream de salida y una imagen de captura nueva.
+ * 
+ * Con el perfilador gc se ve la memoria reservada por frame:
+ *   ant -Djmh.args="RendimientoCapturaFrames -prof gc" benchmark
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class RendimientoCapturaFrames {
+    
+    /**
+     * Tamaño del juego (ancho x alto)
+     */
+    @Param({"800x600", "1280x960"})
+    public String tamanio;
+    
+    private static final float CALIDAD = 0.5f;
+    
+    private RenderizadorJuego renderizador;
+    private CapturaFrames captura;
+    
+    @Setup(Level.Trial)
+    public void preparar() {
+        String[] partes = tamanio.split("x");
+        int ancho = Integer.parseInt(partes[0]);
+        int alto = Integer.parseInt(partes[1]);
+        
+        ControladorModelo modelo = new ControladorModelo();
+        modelo.crearJuego(ancho, alto, 10);
+        modelo.inicializarJuego("benchmark");
+        renderizador = new RenderizadorJuego(ancho, alto, modelo::dibujarJuego);
+        captura = new CapturaFrames(CALIDAD);
+    }
+    
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        captura.cerrar();
+    }
+    
+    /**
+     * Contexto de la sesión: escritor, buffer e imágenes reutilizados.
+     */
+    @Benchmark
+    public int codificadorReutilizado() throws IOException {
+        BufferedImage frame = captura.capturarFrame(renderizador);
+        captura.reiniciarBuffer();
+        return captura.comprimir(frame);
+    }
+    
+    /**
+     * Lo que se hacía antes en cada frame.
+     */
+    @Benchmark
+    public int codificadorPorFrame() throws IOException {
+        BufferedImage frame = new BufferedImage(renderizador.getAncho(), renderizador.getAlto(),
+            BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        renderizador.renderizar(g2d);
+        g2d.dispose();
+        
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        ImageWriter escritor = writers.next();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (ImageOutputStream salidaImagen = ImageIO.createImageOutputStream(salida)) {
+            escritor.setOutput(salidaImagen);
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(CALIDAD);
+            escritor.write(null, new IIOImage(frame, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+        return salida.size();
+    }
+}
@@ -0,0 +1,112 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import udistrital.avanzada.pacman_cliente.util.DecodificadorFrames;
+import udistrital.avanzada.pacman_servidor.controlador.ControladorModelo;
+
+/**
+ * Benchmark JMH de los codecs de frame: PALETA (paleta indexada con
+ * runs, sin pérdida) contra JPEG, en tiempo de compresión en el
+ * servidor y de decodificación en el cliente, sobre un frame real del
+ * juego. El tamaño comprimido de cada codec se imprime al preparar la
+ * prueba, antes de las iteraciones:
+ * 
+ *   ant -Djmh.args="RendimientoCodecsFrames" benchmark
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class RendimientoCodecsFrames {
+    
+    /**
+     * Codec a medir
+     */
+    @Param({"JPEG", "PALETA"})
+    public String codec;
+    
+    /**
+     * Tamaño del frame (ancho x alto)
+     */
+    @Param({"640x480", "1280x960"})
+    public String tamanio;
+    
+    private static final float CALIDAD = 0.5f;
+    
+    private BufferedImage frame;
+    private BufferFrame buffer;
+    private CodecFrames codecFrames;
+    private DecodificadorFrames decodificador;
+    private byte[] comprimido;
+    private int longitud;
+    
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        String[] partes = tamanio.split("x");
+        int ancho = Integer.parseInt(partes[0]);
+        int alto = Integer.parseInt(partes[1]);
+        
+        ControladorModelo modelo = new ControladorModelo();
+        modelo.crearJuego(ancho, alto, 10);
+        modelo.inicializarJuego("benchmark");
+        frame = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        new RenderizadorJuego(ancho, alto, modelo::dibujarJuego).renderizar(g2d);
+        g2d.dispose();
+        
+        buffer = new BufferFrame(256 * 1024);
+        codecFrames = codec.equals("PALETA") ? new CodecPaleta(buffer) : new CodecJPEG(buffer, CALIDAD);
+        decodificador = new DecodificadorFrames();
+        
+        longitud = codecFrames.comprimir(frame, null);
+        if (longitud < 0) {
+            throw new IllegalStateException("El frame no cabe en el codec " + codec);
+        }
+        comprimido = buffer.toByteArray();
+        System.out.printf("%n%s %s: %d bytes por frame (%.3f bits por pixel)%n", codec, tamanio, longitud,
+            longitud * 8.0 / (ancho * alto));
+    }
+    
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        codecFrames.cerrar();
+    }
+    
+    /**
+     * Compresión en el servidor.
+     */
+    @Benchmark
+    public int comprimir() throws IOException {
+        buffer.reset();
+        return codecFrames.comprimir(frame, null);
+    }
+    
+    /**
+     * Decodificación en el cliente.
+     */
+    @Benchmark
+    public BufferedImage decodificar() throws IOException {
+        return decodificador.decodificarFrame(codecFrames.getCodigo(), comprimido, 0, longitud);
+    }
+}
@@ -0,0 +1,102 @@
+package udistrital.avanzada.pacman_servidor.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import udistrital.avanzada.pacman_servidor.controlador.ControladorModelo;
+import udistrital.avanzada.pacman_servidor.protocolo.ProtocoloBinario;
+
+/**
+ * Benchmark JMH de la compresión de keyframes en franjas paralelas
+ * (CodificadorFranjas) contra la compresión del frame completo en el
+ * hilo de streaming, por resolución y cantidad de franjas.
+ * 
+ * El pool de franjas tiene un hilo por núcleo visible para la JVM; para
+ * barrer la cantidad de hilos se repite con otro número de núcleos:
+ * 
+ *   ant -Djmh.args="RendimientoFranjas -jvmArgsAppend -XX:ActiveProcessorCount=2" benchmark
+ * 
+ * @author Steban
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class RendimientoFranjas {
+    
+    /**
+     * Tamaño del frame (ancho x alto)
+     */
+    @Param({"640x480", "1280x960", "1920x1440"})
+    public String tamanio;
+    
+    /**
+     * Cantidad máxima de franjas por keyframe
+     */
+    @Param({"2", "4", "8"})
+    public int franjas;
+    
+    private static final float CALIDAD = 0.5f;
+    
+    private BufferedImage frame;
+    private CapturaFrames completo;
+    private CodificadorFranjas codificador;
+    
+    @Setup(Level.Trial)
+    public void preparar() {
+        String[] partes = tamanio.split("x");
+        int ancho = Integer.parseInt(partes[0]);
+        int alto = Integer.parseInt(partes[1]);
+        
+        ControladorModelo modelo = new ControladorModelo();
+        modelo.crearJuego(ancho, alto, 10);
+        modelo.inicializarJuego("benchmark");
+        frame = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        new RenderizadorJuego(ancho, alto, modelo::dibujarJuego).renderizar(g2d);
+        g2d.dispose();
+        
+        completo = new CapturaFrames(CALIDAD);
+        codificador = new CodificadorFranjas(franjas, CALIDAD, ProtocoloBinario.CODEC_JPEG);
+    }
+    
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        completo.cerrar();
+        codificador.cerrar();
+    }
+    
+    /**
+     * Frame completo en el hilo que llama (sin franjas).
+     */
+    @Benchmark
+    public int frameCompleto() throws IOException {
+        completo.reiniciarBuffer();
+        return completo.comprimir(frame);
+    }
+    
+    /**
+     * Frame en franjas comprimidas en el pool compartido.
+     */
+    @Benchmark
+    public int enFranjas() throws IOException {
+        return codificador.comprimir(frame);
+    }
+}